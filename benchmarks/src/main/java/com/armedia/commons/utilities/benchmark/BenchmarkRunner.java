@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * #%L
+ * Armedia Caliente
+ * %%
+ * Copyright (C) 2013 - 2025 Armedia, LLC
+ * %%
+ * This file is part of the Caliente software.
+ *
+ * If the software was purchased under a paid Caliente license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Caliente is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Caliente is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Caliente. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ *******************************************************************************/
+package com.armedia.commons.utilities.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>
+ * Entry point for the benchmarks jar. It accepts the same command line as the stock JMH launcher
+ * (i.e. {@code -f}, {@code -wi}, {@code -i}, or a regular expression to select the benchmarks to
+ * run), but always attaches the {@link GCProfiler} so allocation rates are reported alongside the
+ * throughput and latency figures, and writes the results in JSON format to
+ * {@value #DEFAULT_RESULT} (unless {@code -rff} is given) so they can be archived and compared
+ * between releases.
+ * </p>
+ */
+public final class BenchmarkRunner {
+
+	public static final String DEFAULT_RESULT = "jmh-result.json";
+
+	private BenchmarkRunner() {
+	}
+
+	public static void main(String... args) throws RunnerException, CommandLineOptionException {
+		CommandLineOptions cmd = new CommandLineOptions(args);
+		OptionsBuilder builder = new OptionsBuilder();
+		builder.parent(cmd);
+		builder.addProfiler(GCProfiler.class);
+		if (!cmd.getResult().hasValue()) {
+			builder.result(BenchmarkRunner.DEFAULT_RESULT);
+		}
+		if (!cmd.getResultFormat().hasValue()) {
+			builder.resultFormat(ResultFormatType.JSON);
+		}
+		Options options = builder.build();
+		new Runner(options).run();
+	}
+}
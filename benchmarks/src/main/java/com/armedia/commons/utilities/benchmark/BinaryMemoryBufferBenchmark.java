@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * #%L
+ * Armedia Caliente
+ * %%
+ * Copyright (C) 2013 - 2025 Armedia, LLC
+ * %%
+ * This file is part of the Caliente software.
+ *
+ * If the software was purchased under a paid Caliente license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Caliente is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Caliente is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Caliente. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ *******************************************************************************/
+package com.armedia.commons.utilities.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.armedia.commons.utilities.io.BinaryMemoryBuffer;
+
+@State(Scope.Thread)
+@BenchmarkMode({
+	Mode.Throughput, Mode.SampleTime
+})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BinaryMemoryBufferBenchmark {
+
+	@Param({
+		"1024", "1048576"
+	})
+	public int size;
+
+	@Param({
+		"4096"
+	})
+	public int writeSize;
+
+	private byte[] data;
+	private final byte[] readBuffer = new byte[8192];
+
+	@Setup
+	public void setup() {
+		this.data = new byte[this.writeSize];
+		new Random(0x5eed).nextBytes(this.data);
+	}
+
+	@Benchmark
+	public long writeAndRead() throws IOException {
+		long total = 0;
+		try (BinaryMemoryBuffer buf = new BinaryMemoryBuffer()) {
+			for (int written = 0; written < this.size; written += this.data.length) {
+				buf.write(this.data, 0, Math.min(this.data.length, this.size - written));
+			}
+			buf.flush();
+			try (InputStream in = buf.getInputStream()) {
+				int r = 0;
+				while ((r = in.read(this.readBuffer)) >= 0) {
+					total += r;
+				}
+			}
+		}
+		return total;
+	}
+}
@@ -0,0 +1,186 @@
+/*******************************************************************************
+ * #%L
+ * Armedia Caliente
+ * %%
+ * Copyright (C) 2013 - 2025 Armedia, LLC
+ * %%
+ * This file is part of the Caliente software.
+ *
+ * If the software was purchased under a paid Caliente license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Caliente is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Caliente is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Caliente. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ *******************************************************************************/
+package com.armedia.commons.utilities.benchmark;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.armedia.commons.utilities.BucketHasher;
+
+@State(Scope.Thread)
+@BenchmarkMode({
+	Mode.Throughput, Mode.SampleTime
+})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BucketHasherBenchmark {
+
+	private static final int KEYS = 1024;
+	private static final int MASK = BucketHasherBenchmark.KEYS - 1;
+
+	@Param({
+		"16", "256"
+	})
+	public int stringLength;
+
+	@Param({
+		"1023"
+	})
+	public long maxBucket;
+
+	@Param({
+		"SHA1", "XXHASH64"
+	})
+	public BucketHasher.Algorithm algorithm;
+
+	private CharSequence[] strings;
+	private byte[][] bytes;
+	private Integer[] integers;
+	private Long[] longs;
+	private long[] longValues;
+	private Double[] doubles;
+	private BucketHasher.Hasher hasher;
+	private int pos = 0;
+
+	@Setup
+	public void setup() {
+		final Random r = new Random(0x5eed);
+		this.hasher = this.algorithm.newHasher();
+		this.strings = new CharSequence[BucketHasherBenchmark.KEYS];
+		this.bytes = new byte[BucketHasherBenchmark.KEYS][];
+		this.integers = new Integer[BucketHasherBenchmark.KEYS];
+		this.longs = new Long[BucketHasherBenchmark.KEYS];
+		this.longValues = new long[BucketHasherBenchmark.KEYS];
+		this.doubles = new Double[BucketHasherBenchmark.KEYS];
+		final char[] c = new char[this.stringLength];
+		for (int i = 0; i < BucketHasherBenchmark.KEYS; i++) {
+			for (int j = 0; j < c.length; j++) {
+				c[j] = (char) ('a' + r.nextInt(26));
+			}
+			this.strings[i] = new String(c);
+			this.bytes[i] = this.strings[i].toString().getBytes(StandardCharsets.UTF_8);
+			this.integers[i] = r.nextInt();
+			this.longs[i] = r.nextLong();
+			this.longValues[i] = this.longs[i];
+			this.doubles[i] = r.nextDouble();
+		}
+	}
+
+	private int next() {
+		return (this.pos++ & BucketHasherBenchmark.MASK);
+	}
+
+	@Benchmark
+	public long hashString() {
+		return BucketHasher.hash(this.strings[next()], this.maxBucket);
+	}
+
+	@Benchmark
+	public long hashBytes() {
+		return BucketHasher.hash(this.bytes[next()], this.maxBucket);
+	}
+
+	@Benchmark
+	public long hashByteBuffer() {
+		return BucketHasher.hash(ByteBuffer.wrap(this.bytes[next()]), this.maxBucket);
+	}
+
+	@Benchmark
+	public long hashInteger() {
+		return BucketHasher.hash(this.integers[next()], this.maxBucket);
+	}
+
+	@Benchmark
+	public long hashLong() {
+		return BucketHasher.hash(this.longs[next()], this.maxBucket);
+	}
+
+	@Benchmark
+	public long hashPrimitiveLong() {
+		return BucketHasher.hash(this.longs[next()].longValue(), this.maxBucket);
+	}
+
+	@Benchmark
+	public long hashDouble() {
+		return BucketHasher.hash(this.doubles[next()], this.maxBucket);
+	}
+
+	@Benchmark
+	public long hashSerializable() {
+		return BucketHasher.hash((Serializable) this.strings[next()], this.maxBucket);
+	}
+
+	@Benchmark
+	public long hasherString() {
+		return this.hasher.hash(this.strings[next()], this.maxBucket);
+	}
+
+	@Benchmark
+	public long hasherBytes() {
+		return this.hasher.hash(this.bytes[next()], this.maxBucket);
+	}
+
+	@Benchmark
+	public long hasherLong() {
+		return this.hasher.hash(this.longs[next()].longValue(), this.maxBucket);
+	}
+
+	@Benchmark
+	public long hasherDouble() {
+		return this.hasher.hash(this.doubles[next()].doubleValue(), this.maxBucket);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BucketHasherBenchmark.KEYS)
+	public long[] hashAllLongs() {
+		return BucketHasher.hashAll(this.longValues, this.maxBucket, BucketHasher.DEF_SEED, this.algorithm, false);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BucketHasherBenchmark.KEYS)
+	public long[] hashAllLongsParallel() {
+		return BucketHasher.hashAll(this.longValues, this.maxBucket, BucketHasher.DEF_SEED, this.algorithm, true);
+	}
+}
@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * #%L
+ * Armedia Caliente
+ * %%
+ * Copyright (C) 2013 - 2025 Armedia, LLC
+ * %%
+ * This file is part of the Caliente software.
+ *
+ * If the software was purchased under a paid Caliente license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Caliente is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Caliente is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Caliente. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ *******************************************************************************/
+package com.armedia.commons.utilities.benchmark;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.armedia.commons.utilities.CfgTools;
+
+@State(Scope.Thread)
+@BenchmarkMode({
+	Mode.Throughput, Mode.SampleTime
+})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CfgToolsBenchmark {
+
+	private final Map<String, Object> settings = new HashMap<>();
+
+	@Setup
+	public void setup() {
+		this.settings.put("int.native", 12345);
+		this.settings.put("int.string", "12345");
+		this.settings.put("long.string", "1234567890123");
+		this.settings.put("double.string", "12345.6789");
+		this.settings.put("boolean.string", "true");
+		this.settings.put("string", "some string value");
+		this.settings.put("strings", Arrays.asList("a", "b", "c", "d", "e", "f", "g", "h"));
+	}
+
+	@Benchmark
+	public Integer decodeIntegerNative() {
+		return CfgTools.decodeInteger("int.native", this.settings);
+	}
+
+	@Benchmark
+	public Integer decodeIntegerString() {
+		return CfgTools.decodeInteger("int.string", this.settings);
+	}
+
+	@Benchmark
+	public Long decodeLong() {
+		return CfgTools.decodeLong("long.string", this.settings);
+	}
+
+	@Benchmark
+	public Double decodeDouble() {
+		return CfgTools.decodeDouble("double.string", this.settings);
+	}
+
+	@Benchmark
+	public Boolean decodeBoolean() {
+		return CfgTools.decodeBoolean("boolean.string", this.settings);
+	}
+
+	@Benchmark
+	public String decodeString() {
+		return CfgTools.decodeString("string", this.settings);
+	}
+
+	@Benchmark
+	public List<String> decodeStrings() {
+		return CfgTools.decodeStrings("strings", this.settings);
+	}
+
+	@Benchmark
+	public Integer decodeMissing() {
+		return CfgTools.decodeInteger("missing", this.settings, 0);
+	}
+}
@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * #%L
+ * Armedia Caliente
+ * %%
+ * Copyright (C) 2013 - 2025 Armedia, LLC
+ * %%
+ * This file is part of the Caliente software.
+ *
+ * If the software was purchased under a paid Caliente license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Caliente is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Caliente is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Caliente. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ *******************************************************************************/
+package com.armedia.commons.utilities.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.armedia.commons.utilities.Interpolator;
+
+@State(Scope.Thread)
+@BenchmarkMode({
+	Mode.Throughput, Mode.SampleTime
+})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InterpolatorBenchmark {
+
+	@Param({
+		"1", "16"
+	})
+	public int expressions;
+
+	private final Interpolator interpolator = new Interpolator();
+	private final Map<String, String> values = new HashMap<>();
+	private String template;
+
+	@Setup
+	public void setup() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < this.expressions; i++) {
+			final String key = String.format("key.%d", i);
+			this.values.put(key, String.format("value number %d", i));
+			sb.append("Some literal text before the expression ") //
+				.append(Interpolator.DEFAULT_PREFIX).append(key).append(Interpolator.DEFAULT_SUFFIX) //
+				.append(" and some after it").append(Interpolator.NEWLINE);
+		}
+		this.template = sb.toString();
+	}
+
+	@Benchmark
+	public String interpolate() {
+		return this.interpolator.interpolate(this.values::get, this.template);
+	}
+}
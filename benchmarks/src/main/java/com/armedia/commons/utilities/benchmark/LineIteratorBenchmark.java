@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * #%L
+ * Armedia Caliente
+ * %%
+ * Copyright (C) 2013 - 2025 Armedia, LLC
+ * %%
+ * This file is part of the Caliente software.
+ *
+ * If the software was purchased under a paid Caliente license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Caliente is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Caliente is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Caliente. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ *******************************************************************************/
+package com.armedia.commons.utilities.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.armedia.commons.utilities.line.LineIterator;
+import com.armedia.commons.utilities.line.LineScanner;
+
+@State(Scope.Thread)
+@BenchmarkMode({
+	Mode.Throughput, Mode.SampleTime
+})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LineIteratorBenchmark {
+
+	@Param({
+		"1000"
+	})
+	public int lines;
+
+	private final LineScanner scanner = new LineScanner();
+	private List<String> source;
+
+	@Setup
+	public void setup() {
+		this.source = new ArrayList<>(this.lines);
+		for (int i = 0; i < this.lines; i++) {
+			switch (i % 10) {
+				case 0:
+					this.source.add("# a comment line that must be skipped");
+					break;
+				case 1:
+					this.source.add("");
+					break;
+				case 2:
+					this.source.add(String.format("a line that continues onto the next one %d \\", i));
+					break;
+				default:
+					this.source.add(String.format("   a regular line of content number %d   ", i));
+					break;
+			}
+		}
+	}
+
+	@Benchmark
+	public void iterate(Blackhole bh) {
+		try (LineIterator it = this.scanner.iterator(this.source)) {
+			while (it.hasNext()) {
+				bh.consume(it.next());
+			}
+		}
+	}
+}
@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * #%L
+ * Armedia Caliente
+ * %%
+ * Copyright (C) 2013 - 2025 Armedia, LLC
+ * %%
+ * This file is part of the Caliente software.
+ *
+ * If the software was purchased under a paid Caliente license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Caliente is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Caliente is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Caliente. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ *******************************************************************************/
+package com.armedia.commons.utilities.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.armedia.commons.utilities.PooledWorkers;
+import com.armedia.commons.utilities.PooledWorkersLogic;
+
+/**
+ * <p>
+ * Measures the per-item overhead of pushing tiny work items through a {@link PooledWorkers}
+ * instance, which is dominated by the queue handoff. Each invocation starts a pool, submits
+ * {@link #ITEMS} items, and waits for completion, so the reported figures are per item.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode({
+	Mode.Throughput, Mode.SampleTime
+})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PooledWorkersBenchmark {
+
+	private static final int ITEMS = 10000;
+
+	@Param({
+		"1", "4", "16"
+	})
+	public int threads;
+
+	@Param({
+		"0", "1000"
+	})
+	public int backlog;
+
+	@Param({
+		"1", "64"
+	})
+	public int batchSize;
+
+	@Param({
+		"SHARED", "WORK_STEALING"
+	})
+	public PooledWorkers.QueueStrategy queueStrategy;
+
+	private final LongAdder processed = new LongAdder();
+
+	@Benchmark
+	@OperationsPerInvocation(PooledWorkersBenchmark.ITEMS)
+	public long submitAndProcess() throws InterruptedException {
+		PooledWorkers<Object, Integer> workers = new PooledWorkers.Builder<Object, Integer, RuntimeException>() //
+			.logic(PooledWorkersLogic.of((s, i) -> this.processed.add(i))) //
+			.threads(this.threads) //
+			.backlogLimit(this.backlog) //
+			.batchSize(this.batchSize) //
+			.queueStrategy(this.queueStrategy) //
+			.name("benchmark") //
+			.start();
+		try {
+			for (int i = 0; i < PooledWorkersBenchmark.ITEMS; i++) {
+				workers.addWorkItem(i);
+			}
+		} finally {
+			workers.waitForCompletion();
+		}
+		return this.processed.sum();
+	}
+}
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * #%L
+ * Armedia Caliente
+ * %%
+ * Copyright (C) 2013 - 2025 Armedia, LLC
+ * %%
+ * This file is part of the Caliente software.
+ *
+ * If the software was purchased under a paid Caliente license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Caliente is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Caliente is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Caliente. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ *******************************************************************************/
+package com.armedia.commons.utilities.benchmark;
+
+import java.util.HashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.armedia.commons.utilities.concurrent.ShareableMap;
+
+@State(Scope.Group)
+@BenchmarkMode({
+	Mode.Throughput, Mode.SampleTime
+})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShareableMapBenchmark {
+
+	@Param({
+		"10000"
+	})
+	public int keys;
+
+	private ShareableMap<Integer, Integer> map;
+
+	@Setup
+	public void setup() {
+		this.map = new ShareableMap<>(new HashMap<>());
+		for (int i = 0; i < this.keys; i++) {
+			this.map.put(i, i);
+		}
+	}
+
+	private Integer randomKey() {
+		return ThreadLocalRandom.current().nextInt(this.keys);
+	}
+
+	@Benchmark
+	@Group("readOnly")
+	@GroupThreads(4)
+	public Integer readOnlyGet() {
+		return this.map.get(randomKey());
+	}
+
+	@Benchmark
+	@Group("readMostly")
+	@GroupThreads(3)
+	public Integer readMostlyGet() {
+		return this.map.get(randomKey());
+	}
+
+	@Benchmark
+	@Group("readMostly")
+	@GroupThreads(1)
+	public Integer readMostlyPut() {
+		final Integer key = randomKey();
+		return this.map.put(key, key);
+	}
+
+	@Benchmark
+	@Group("writeHeavy")
+	@GroupThreads(4)
+	public Integer writeHeavyPut() {
+		final Integer key = randomKey();
+		return this.map.put(key, key);
+	}
+
+	@Benchmark
+	@Group("computeIfAbsent")
+	@GroupThreads(4)
+	public Integer computeIfAbsent() {
+		return this.map.computeIfAbsent(randomKey(), (k) -> k);
+	}
+}
@@ -34,14 +34,25 @@ import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
-import java.nio.CharBuffer;
-import java.nio.channels.Channels;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.IllegalBlockingModeException;
 import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
 import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
 import java.security.MessageDigest;
-import java.util.function.BiConsumer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.apache.commons.codec.digest.DigestUtils;
 
@@ -75,6 +86,12 @@ import com.armedia.commons.utilities.io.BinaryMemoryBuffer;
  * seed computations will be performed. For the methods taht accept a {@link Boolean} parameter, the
  * seed will always be {@code 0}.
  * </p>
+ * <p>
+ * The methods that take primitives, {@link CharSequence CharSequences}, {@code byte[]} or
+ * {@link ByteBuffer ByteBuffers} don't generate any garbage in the steady state, as they reuse a
+ * per-thread digest. For tight loops, or to use a non-cryptographic {@link Algorithm}, a
+ * {@link Hasher} instance may be obtained via {@link #newHasher(Algorithm)} and reused.
+ * </p>
  */
 public class BucketHasher {
 
@@ -120,6 +137,28 @@ public class BucketHasher {
 	 */
 	public static final long DEF_SEED = BucketHasher.MIN_SEED;
 
+	/**
+	 * <p>
+	 * The minimum number of bytes remaining in a {@link FileChannel} for it to be memory-mapped
+	 * (instead of read into a buffer) when calculating its hash
+	 * </p>
+	 */
+	public static final long MAP_THRESHOLD = 0x400000L;
+
+	/**
+	 * <p>
+	 * The size of the buffer used to read {@link ReadableByteChannel channels}
+	 * </p>
+	 */
+	private static final int CHANNEL_BUFFER_SIZE = 0x10000;
+
+	/**
+	 * <p>
+	 * The largest region of a {@link FileChannel} that will be mapped at once
+	 * </p>
+	 */
+	private static final long MAP_CHUNK_SIZE = 0x40000000L;
+
 	/**
 	 * <p>
 	 * Return a sanitized, guaranteed-valid value for the {@code seed} parameter, where any value
@@ -216,7 +255,41 @@ public class BucketHasher {
 	 * @see BucketHasher
 	 */
 	public static long hash(Byte value, long maxBucketNumber, long seed) {
-		return BucketHasher.calculate(ByteBuffer::put, Number::byteValue, value, maxBucketNumber, seed);
+		if (value == null) { return -1; }
+		return BucketHasher.hash(value.byteValue(), maxBucketNumber, seed);
+	}
+
+	/**
+	 * <p>
+	 * See the {@link BucketHasher class documentation} for details.
+	 * </p>
+	 *
+	 * @see BucketHasher
+	 */
+	public static long hash(byte value) {
+		return BucketHasher.hash(value, BucketHasher.DEF_BUCKET, BucketHasher.DEF_SEED);
+	}
+
+	/**
+	 * <p>
+	 * See the {@link BucketHasher class documentation} for details.
+	 * </p>
+	 *
+	 * @see BucketHasher
+	 */
+	public static long hash(byte value, long maxBucketNumber) {
+		return BucketHasher.hash(value, maxBucketNumber, BucketHasher.DEF_SEED);
+	}
+
+	/**
+	 * <p>
+	 * See the {@link BucketHasher class documentation} for details.
+	 * </p>
+	 *
+	 * @see BucketHasher
+	 */
+	public static long hash(byte value, long maxBucketNumber, long seed) {
+		return Algorithm.SHA1.hasher().hash(value, maxBucketNumber, seed);
 	}
 
 	/**
@@ -249,7 +322,41 @@ public class BucketHasher {
 	 * @see BucketHasher
 	 */
 	public static long hash(Short value, long maxBucketNumber, long seed) {
-		return BucketHasher.calculate(ByteBuffer::putShort, Number::shortValue, value, maxBucketNumber, seed);
+		if (value == null) { return -1; }
+		return BucketHasher.hash(value.shortValue(), maxBucketNumber, seed);
+	}
+
+	/**
+	 * <p>
+	 * See the {@link BucketHasher class documentation} for details.
+	 * </p>
+	 *
+	 * @see BucketHasher
+	 */
+	public static long hash(short value) {
+		return BucketHasher.hash(value, BucketHasher.DEF_BUCKET, BucketHasher.DEF_SEED);
+	}
+
+	/**
+	 * <p>
+	 * See the {@link BucketHasher class documentation} for details.
+	 * </p>
+	 *
+	 * @see BucketHasher
+	 */
+	public static long hash(short value, long maxBucketNumber) {
+		return BucketHasher.hash(value, maxBucketNumber, BucketHasher.DEF_SEED);
+	}
+
+	/**
+	 * <p>
+	 * See the {@link BucketHasher class documentation} for details.
+	 * </p>
+	 *
+	 * @see BucketHasher
+	 */
+	public static long hash(short value, long maxBucketNumber, long seed) {
+		return Algorithm.SHA1.hasher().hash(value, maxBucketNumber, seed);
 	}
 
 	/**
@@ -282,7 +389,41 @@ public class BucketHasher {
 	 * @see BucketHasher
 	 */
 	public static long hash(Integer value, long maxBucketNumber, long seed) {
-		return BucketHasher.calculate(ByteBuffer::putInt, Number::intValue, value, maxBucketNumber, seed);
+		if (value == null) { return -1; }
+		return BucketHasher.hash(value.intValue(), maxBucketNumber, seed);
+	}
+
+	/**
+	 * <p>
+	 * See the {@link BucketHasher class documentation} for details.
+	 * </p>
+	 *
+	 * @see BucketHasher
+	 */
+	public static long hash(int value) {
+		return BucketHasher.hash(value, BucketHasher.DEF_BUCKET, BucketHasher.DEF_SEED);
+	}
+
+	/**
+	 * <p>
+	 * See the {@link BucketHasher class documentation} for details.
+	 * </p>
+	 *
+	 * @see BucketHasher
+	 */
+	public static long hash(int value, long maxBucketNumber) {
+		return BucketHasher.hash(value, maxBucketNumber, BucketHasher.DEF_SEED);
+	}
+
+	/**
+	 * <p>
+	 * See the {@link BucketHasher class documentation} for details.
+	 * </p>
+	 *
+	 * @see BucketHasher
+	 */
+	public static long hash(int value, long maxBucketNumber, long seed) {
+		return Algorithm.SHA1.hasher().hash(value, maxBucketNumber, seed);
 	}
 
 	/**
@@ -315,7 +456,41 @@ public class BucketHasher {
 	 * @see BucketHasher
 	 */
 	public static long hash(Long value, long maxBucketNumber, long seed) {
-		return BucketHasher.calculate(ByteBuffer::putLong, Number::longValue, value, maxBucketNumber, seed);
+		if (value == null) { return -1; }
+		return BucketHasher.hash(value.longValue(), maxBucketNumber, seed);
+	}
+
+	/**
+	 * <p>
+	 * See the {@link BucketHasher class documentation} for details.
+	 * </p>
+	 *
+	 * @see BucketHasher
+	 */
+	public static long hash(long value) {
+		return BucketHasher.hash(value, BucketHasher.DEF_BUCKET, BucketHasher.DEF_SEED);
+	}
+
+	/**
+	 * <p>
+	 * See the {@link BucketHasher class documentation} for details.
+	 * </p>
+	 *
+	 * @see BucketHasher
+	 */
+	public static long hash(long value, long maxBucketNumber) {
+		return BucketHasher.hash(value, maxBucketNumber, BucketHasher.DEF_SEED);
+	}
+
+	/**
+	 * <p>
+	 * See the {@link BucketHasher class documentation} for details.
+	 * </p>
+	 *
+	 * @see BucketHasher
+	 */
+	public static long hash(long value, long maxBucketNumber, long seed) {
+		return Algorithm.SHA1.hasher().hash(value, maxBucketNumber, seed);
 	}
 
 	/**
@@ -382,7 +557,41 @@ public class BucketHasher {
 	 * @see BucketHasher
 	 */
 	public static long hash(Float value, long maxBucketNumber, long seed) {
-		return BucketHasher.calculate(ByteBuffer::putFloat, Number::floatValue, value, maxBucketNumber, seed);
+		if (value == null) { return -1; }
+		return BucketHasher.hash(value.floatValue(), maxBucketNumber, seed);
+	}
+
+	/**
+	 * <p>
+	 * See the {@link BucketHasher class documentation} for details.
+	 * </p>
+	 *
+	 * @see BucketHasher
+	 */
+	public static long hash(float value) {
+		return BucketHasher.hash(value, BucketHasher.DEF_BUCKET, BucketHasher.DEF_SEED);
+	}
+
+	/**
+	 * <p>
+	 * See the {@link BucketHasher class documentation} for details.
+	 * </p>
+	 *
+	 * @see BucketHasher
+	 */
+	public static long hash(float value, long maxBucketNumber) {
+		return BucketHasher.hash(value, maxBucketNumber, BucketHasher.DEF_SEED);
+	}
+
+	/**
+	 * <p>
+	 * See the {@link BucketHasher class documentation} for details.
+	 * </p>
+	 *
+	 * @see BucketHasher
+	 */
+	public static long hash(float value, long maxBucketNumber, long seed) {
+		return Algorithm.SHA1.hasher().hash(value, maxBucketNumber, seed);
 	}
 
 	/**
@@ -415,7 +624,41 @@ public class BucketHasher {
 	 * @see BucketHasher
 	 */
 	public static long hash(Double value, long maxBucketNumber, long seed) {
-		return BucketHasher.calculate(ByteBuffer::putDouble, Number::doubleValue, value, maxBucketNumber, seed);
+		if (value == null) { return -1; }
+		return BucketHasher.hash(value.doubleValue(), maxBucketNumber, seed);
+	}
+
+	/**
+	 * <p>
+	 * See the {@link BucketHasher class documentation} for details.
+	 * </p>
+	 *
+	 * @see BucketHasher
+	 */
+	public static long hash(double value) {
+		return BucketHasher.hash(value, BucketHasher.DEF_BUCKET, BucketHasher.DEF_SEED);
+	}
+
+	/**
+	 * <p>
+	 * See the {@link BucketHasher class documentation} for details.
+	 * </p>
+	 *
+	 * @see BucketHasher
+	 */
+	public static long hash(double value, long maxBucketNumber) {
+		return BucketHasher.hash(value, maxBucketNumber, BucketHasher.DEF_SEED);
+	}
+
+	/**
+	 * <p>
+	 * See the {@link BucketHasher class documentation} for details.
+	 * </p>
+	 *
+	 * @see BucketHasher
+	 */
+	public static long hash(double value, long maxBucketNumber, long seed) {
+		return Algorithm.SHA1.hasher().hash(value, maxBucketNumber, seed);
 	}
 
 	/**
@@ -454,19 +697,41 @@ public class BucketHasher {
 
 	/**
 	 * <p>
-	 * See the {@link BucketHasher class documentation} for details.
+	 * See the {@link BucketHasher class documentation} for details. For compatibility, the value is
+	 * hashed as a serialized {@link Character} (i.e. as {@link #hash(Serializable, long, long)}
+	 * would), instead of being widened to an {@code int}.
+	 * </p>
+	 *
+	 * @see BucketHasher
+	 */
+	public static long hash(char value) {
+		return BucketHasher.hash(value, BucketHasher.DEF_BUCKET, BucketHasher.DEF_SEED);
+	}
+
+	/**
+	 * <p>
+	 * See the {@link BucketHasher class documentation} for details. For compatibility, the value is
+	 * hashed as a serialized {@link Character} (i.e. as {@link #hash(Serializable, long, long)}
+	 * would), instead of being widened to an {@code int}.
+	 * </p>
+	 *
+	 * @see BucketHasher
+	 */
+	public static long hash(char value, long maxBucketNumber) {
+		return BucketHasher.hash(value, maxBucketNumber, BucketHasher.DEF_SEED);
+	}
+
+	/**
+	 * <p>
+	 * See the {@link BucketHasher class documentation} for details. For compatibility, the value is
+	 * hashed as a serialized {@link Character} (i.e. as {@link #hash(Serializable, long, long)}
+	 * would), instead of being widened to an {@code int}.
 	 * </p>
 	 *
 	 * @see BucketHasher
 	 */
-	private static <N extends Number> long calculate(BiConsumer<ByteBuffer, N> consumer, Function<Number, N> producer,
-		Number value, long maxBucketNumber, long seed) {
-		if ((consumer == null) || (producer == null) || (value == null)) { return -1; }
-		// The largest primitive is 8 bytes long, so let's use that
-		ByteBuffer buf = ByteBuffer.allocate(8);
-		consumer.accept(buf, producer.apply(value));
-		buf.flip();
-		return BucketHasher.hash(buf, maxBucketNumber, seed);
+	public static long hash(char value, long maxBucketNumber, long seed) {
+		return BucketHasher.hash((Serializable) Character.valueOf(value), maxBucketNumber, seed);
 	}
 
 	/**
@@ -552,11 +817,7 @@ public class BucketHasher {
 	 * @see BucketHasher
 	 */
 	public static long hash(CharSequence value, long maxBucketNumber, long seed) {
-		ByteBuffer buf = null;
-		if (value != null) {
-			buf = StandardCharsets.UTF_8.encode(CharBuffer.wrap(value));
-		}
-		return BucketHasher.hash(buf, maxBucketNumber, seed);
+		return Algorithm.SHA1.hasher().hash(value, maxBucketNumber, seed);
 	}
 
 	/**
@@ -589,11 +850,7 @@ public class BucketHasher {
 	 * @see BucketHasher
 	 */
 	public static long hash(byte[] value, long maxBucketNumber, long seed) {
-		ByteBuffer buf = null;
-		if (value != null) {
-			buf = ByteBuffer.wrap(value);
-		}
-		return BucketHasher.hash(buf, maxBucketNumber, seed);
+		return Algorithm.SHA1.hasher().hash(value, maxBucketNumber, seed);
 	}
 
 	/**
@@ -663,11 +920,7 @@ public class BucketHasher {
 	 * @see BucketHasher
 	 */
 	public static long hash(ByteBuffer value, long maxBucketNumber, long seed) {
-		CheckedConsumer<MessageDigest, RuntimeException> updater = null;
-		if (value != null) {
-			updater = (md) -> DigestUtils.updateDigest(md, value);
-		}
-		return BucketHasher.hash(updater, maxBucketNumber, seed);
+		return Algorithm.SHA1.hasher().hash(value, maxBucketNumber, seed);
 	}
 
 	/**
@@ -701,7 +954,7 @@ public class BucketHasher {
 	 */
 	public static long hash(ReadableByteChannel value, long maxBucketNumber, long seed) throws IOException {
 		if (value == null) { return -1; }
-		return BucketHasher.hash(Channels.newInputStream(value), maxBucketNumber, seed);
+		return Algorithm.SHA1.hasher().hash(value, maxBucketNumber, seed);
 	}
 
 	/**
@@ -743,47 +996,336 @@ public class BucketHasher {
 
 	/**
 	 * <p>
-	 * Verifies that the given value is within the given limits, or explodes loudly otherwise.
+	 * Calculates the bucket for the given value using <i>jump consistent hashing</i>. See
+	 * {@link #jump(long, long, long)} for details.
 	 * </p>
 	 *
-	 * @param name
-	 *            the name of the value (for the exception message)
-	 * @param value
-	 *            the value to validate
-	 * @param min
-	 *            the lower limit
-	 * @param max
-	 *            the upper limit
+	 * @see #jump(long, long, long)
 	 */
-	private static void validateValue(String name, long value, long min, long max) {
-		if ((value < min) || (value > max)) {
-			throw new IllegalArgumentException(
-				String.format("The %s must be between %d and %d (%d was given)", name, min, max, value));
-		}
+	public static long jump(long value, long maxBucketNumber) {
+		return BucketHasher.jump(value, maxBucketNumber, BucketHasher.DEF_SEED);
 	}
 
 	/**
 	 * <p>
-	 * Implements the actual hash calculation.
+	 * Calculates the bucket for the given value using the <i>jump consistent hashing</i> algorithm
+	 * by Lamping and Veach (<a href="https://arxiv.org/abs/1406.2294">https://arxiv.org/abs/1406.2294</a>),
+	 * seeded with the 64-bit hash of the value. The parameters and return values have the same
+	 * meaning and limits as for {@link #hash(long, long, long)}, but when {@code maxBucketNumber}
+	 * grows by one, only about {@code 1/(maxBucketNumber + 2)} of the values move (all of them to
+	 * the new bucket), instead of nearly all of them. The buckets must thus be numbered
+	 * sequentially, and may only be added or removed at the end of the range.
 	 * </p>
 	 *
-	 * @param <E>
-	 * @param updater
-	 * @param maxBucketNumber
-	 * @param seed
-	 * @return
-	 * @throws E
+	 * @see BucketHasher
 	 */
-	private static <E extends Exception> long hash(CheckedConsumer<MessageDigest, E> updater, long maxBucketNumber,
-		long seed) throws E {
-
-		// Parameter sanity
-		BucketHasher.validateValue("maximum bucket", maxBucketNumber, BucketHasher.MIN_BUCKET, BucketHasher.MAX_BUCKET);
-		BucketHasher.validateValue("seed", seed, BucketHasher.MIN_SEED, BucketHasher.MAX_SEED);
+	public static long jump(long value, long maxBucketNumber, long seed) {
+		return Algorithm.SHA1.hasher().jump(value, maxBucketNumber, seed);
+	}
 
-		// Now proceed to the calculation, applying any shortcuts as appropriate
-		if (updater == null) { return -1; }
-		if (maxBucketNumber == 0) { return 0; }
+	/**
+	 * <p>
+	 * Calculates the bucket for the given value using <i>jump consistent hashing</i>. See
+	 * {@link #jump(CharSequence, long, long)} for details.
+	 * </p>
+	 *
+	 * @see #jump(CharSequence, long, long)
+	 */
+	public static long jump(CharSequence value, long maxBucketNumber) {
+		return BucketHasher.jump(value, maxBucketNumber, BucketHasher.DEF_SEED);
+	}
+
+	/**
+	 * <p>
+	 * Calculates the bucket for the given value using the <i>jump consistent hashing</i> algorithm
+	 * by Lamping and Veach (<a href="https://arxiv.org/abs/1406.2294">https://arxiv.org/abs/1406.2294</a>),
+	 * seeded with the 64-bit hash of the value. The parameters and return values have the same
+	 * meaning and limits as for {@link #hash(CharSequence, long, long)}, but when {@code maxBucketNumber}
+	 * grows by one, only about {@code 1/(maxBucketNumber + 2)} of the values move (all of them to
+	 * the new bucket), instead of nearly all of them. The buckets must thus be numbered
+	 * sequentially, and may only be added or removed at the end of the range.
+	 * </p>
+	 *
+	 * @see BucketHasher
+	 */
+	public static long jump(CharSequence value, long maxBucketNumber, long seed) {
+		return Algorithm.SHA1.hasher().jump(value, maxBucketNumber, seed);
+	}
+
+	/**
+	 * <p>
+	 * Calculates the bucket for the given value using <i>jump consistent hashing</i>. See
+	 * {@link #jump(byte[], long, long)} for details.
+	 * </p>
+	 *
+	 * @see #jump(byte[], long, long)
+	 */
+	public static long jump(byte[] value, long maxBucketNumber) {
+		return BucketHasher.jump(value, maxBucketNumber, BucketHasher.DEF_SEED);
+	}
+
+	/**
+	 * <p>
+	 * Calculates the bucket for the given value using the <i>jump consistent hashing</i> algorithm
+	 * by Lamping and Veach (<a href="https://arxiv.org/abs/1406.2294">https://arxiv.org/abs/1406.2294</a>),
+	 * seeded with the 64-bit hash of the value. The parameters and return values have the same
+	 * meaning and limits as for {@link #hash(byte[], long, long)}, but when {@code maxBucketNumber}
+	 * grows by one, only about {@code 1/(maxBucketNumber + 2)} of the values move (all of them to
+	 * the new bucket), instead of nearly all of them. The buckets must thus be numbered
+	 * sequentially, and may only be added or removed at the end of the range.
+	 * </p>
+	 *
+	 * @see BucketHasher
+	 */
+	public static long jump(byte[] value, long maxBucketNumber, long seed) {
+		return Algorithm.SHA1.hasher().jump(value, maxBucketNumber, seed);
+	}
+
+	/**
+	 * <p>
+	 * Implements the actual jump consistent hash calculation, returning a value between {@code 0}
+	 * and {@code maxBucketNumber} (inclusive).
+	 * </p>
+	 */
+	private static long jumpBucket(long key, long maxBucketNumber) {
+		final long buckets = maxBucketNumber + 1;
+		long b = -1;
+		long j = 0;
+		while (j < buckets) {
+			b = j;
+			key = (key * 2862933555777941757L) + 1;
+			j = (long) ((b + 1) * ((1L << 31) / (double) ((key >>> 33) + 1)));
+		}
+		return b;
+	}
+
+	/**
+	 * <p>
+	 * Calculates the buckets for all the given values in a single pass, using the default
+	 * {@link Algorithm}. See {@link #hashAll(long[], long, long, Algorithm, boolean)} for details.
+	 * </p>
+	 *
+	 * @see BucketHasher
+	 */
+	public static long[] hashAll(long[] values, long maxBucketNumber, long seed) {
+		return BucketHasher.hashAll(values, maxBucketNumber, seed, BucketHasher.DEF_ALGORITHM, false);
+	}
+
+	/**
+	 * <p>
+	 * Calculates the buckets for all the given values in a single pass, validating the parameters
+	 * only once. The value at each position of the returned array is the bucket for the value at
+	 * the same position in the given array, exactly as would be returned by
+	 * {@link Hasher#hash(long, long, long)} for the given {@link Algorithm} ({@link #DEF_ALGORITHM}
+	 * if {@code null}). If {@code parallel} is {@code true}, the work will be split across the
+	 * {@link ForkJoinPool#commonPool() common pool}.
+	 * </p>
+	 *
+	 * @param values
+	 *            the values to calculate the buckets for
+	 * @param maxBucketNumber
+	 *            the maximum bucket number
+	 * @param seed
+	 *            the seed
+	 * @param algorithm
+	 *            the algorithm to calculate the buckets with
+	 * @param parallel
+	 *            whether to calculate the buckets in parallel
+	 * @return the buckets for the given values
+	 * @throws NullPointerException
+	 *             if {@code values} is {@code null}
+	 */
+	public static long[] hashAll(long[] values, long maxBucketNumber, long seed, Algorithm algorithm,
+		boolean parallel) {
+		final Algorithm a = Tools.coalesce(algorithm, BucketHasher.DEF_ALGORITHM);
+		if (!parallel) { return a.hasher().hashAll(values, maxBucketNumber, seed); }
+		Objects.requireNonNull(values, "Must provide a non-null array of values");
+		final long[] ret = new long[values.length];
+		if (!BucketHasher.validate(maxBucketNumber, seed)) { return ret; }
+		Arrays.parallelSetAll(ret, (i) -> a.hasher().bucket(values[i], maxBucketNumber, seed));
+		return ret;
+	}
+
+	/**
+	 * <p>
+	 * Calculates the buckets for all the given values in a single pass, using the default
+	 * {@link Algorithm}. See {@link #hashAll(Collection, long, long, Algorithm, boolean)} for
+	 * details.
+	 * </p>
+	 *
+	 * @see BucketHasher
+	 */
+	public static long[] hashAll(Collection<? extends CharSequence> values, long maxBucketNumber, long seed) {
+		return BucketHasher.hashAll(values, maxBucketNumber, seed, BucketHasher.DEF_ALGORITHM, false);
+	}
+
+	/**
+	 * <p>
+	 * Calculates the buckets for all the given values in a single pass, validating the parameters
+	 * only once. The value at each position of the returned array is the bucket for the value at
+	 * the same position in the collection's iteration order, exactly as would be returned by
+	 * {@link Hasher#hash(CharSequence, long, long)} for the given {@link Algorithm}
+	 * ({@link #DEF_ALGORITHM} if {@code null}). If {@code parallel} is {@code true}, the work will
+	 * be split across the {@link ForkJoinPool#commonPool() common pool}.
+	 * </p>
+	 *
+	 * @param values
+	 *            the values to calculate the buckets for
+	 * @param maxBucketNumber
+	 *            the maximum bucket number
+	 * @param seed
+	 *            the seed
+	 * @param algorithm
+	 *            the algorithm to calculate the buckets with
+	 * @param parallel
+	 *            whether to calculate the buckets in parallel
+	 * @return the buckets for the given values
+	 * @throws NullPointerException
+	 *             if {@code values} is {@code null}
+	 */
+	public static long[] hashAll(Collection<? extends CharSequence> values, long maxBucketNumber, long seed,
+		Algorithm algorithm, boolean parallel) {
+		final Algorithm a = Tools.coalesce(algorithm, BucketHasher.DEF_ALGORITHM);
+		if (!parallel) { return a.hasher().hashAll(values, maxBucketNumber, seed); }
+		Objects.requireNonNull(values, "Must provide a non-null collection of values");
+		return values.parallelStream().mapToLong(BucketHasher.bucketer(a, maxBucketNumber, seed)).toArray();
+	}
+
+	/**
+	 * <p>
+	 * Returns a {@link LongStream} with the buckets for the keys of all the elements in the given
+	 * {@link Stream}, as would be returned by {@link Hasher#hash(CharSequence, long, long)} for the
+	 * given {@link Algorithm} ({@link #DEF_ALGORITHM} if {@code null}). The parameters are
+	 * validated only once, when this method is invoked. The returned stream is lazy, and will be
+	 * parallel if the given stream is (in which case the work is split across the
+	 * {@link ForkJoinPool#commonPool() common pool}). If the buckets must be {@code int} values,
+	 * the result may be converted using {@link LongStream#mapToInt(java.util.function.LongToIntFunction)}
+	 * as long as {@code maxBucketNumber} doesn't exceed {@link Integer#MAX_VALUE}.
+	 * </p>
+	 *
+	 * @param <T>
+	 *            the type of the stream's elements
+	 * @param values
+	 *            the elements to calculate the buckets for
+	 * @param key
+	 *            the function that extracts each element's key
+	 * @param maxBucketNumber
+	 *            the maximum bucket number
+	 * @param seed
+	 *            the seed
+	 * @param algorithm
+	 *            the algorithm to calculate the buckets with
+	 * @return a {@link LongStream} with the buckets for the given elements, in encounter order
+	 * @throws NullPointerException
+	 *             if {@code values} or {@code key} are {@code null}
+	 */
+	public static <T> LongStream hashAll(Stream<T> values, Function<? super T, ? extends CharSequence> key,
+		long maxBucketNumber, long seed, Algorithm algorithm) {
+		Objects.requireNonNull(values, "Must provide a non-null stream of values");
+		Objects.requireNonNull(key, "Must provide a non-null key function");
+		final ToLongFunction<CharSequence> bucketer = BucketHasher
+			.bucketer(Tools.coalesce(algorithm, BucketHasher.DEF_ALGORITHM), maxBucketNumber, seed);
+		return values.mapToLong((v) -> bucketer.applyAsLong(key.apply(v)));
+	}
+
+	/**
+	 * <p>
+	 * Returns a {@link LongStream} with the buckets for the keys of all the elements in the given
+	 * {@link Spliterator}. See {@link #hashAll(Stream, Function, long, long, Algorithm)} for
+	 * details.
+	 * </p>
+	 *
+	 * @param <T>
+	 *            the type of the spliterator's elements
+	 * @param values
+	 *            the elements to calculate the buckets for
+	 * @param key
+	 *            the function that extracts each element's key
+	 * @param maxBucketNumber
+	 *            the maximum bucket number
+	 * @param seed
+	 *            the seed
+	 * @param algorithm
+	 *            the algorithm to calculate the buckets with
+	 * @param parallel
+	 *            whether the returned stream should be parallel
+	 * @return a {@link LongStream} with the buckets for the given elements, in encounter order
+	 * @throws NullPointerException
+	 *             if {@code values} or {@code key} are {@code null}
+	 */
+	public static <T> LongStream hashAll(Spliterator<T> values, Function<? super T, ? extends CharSequence> key,
+		long maxBucketNumber, long seed, Algorithm algorithm, boolean parallel) {
+		Objects.requireNonNull(values, "Must provide a non-null spliterator of values");
+		return BucketHasher.hashAll(StreamSupport.stream(values, parallel), key, maxBucketNumber, seed, algorithm);
+	}
+
+	/**
+	 * <p>
+	 * Validates the parameters (once), and returns a function which calculates the buckets for
+	 * {@link CharSequence} values using the calling thread's {@link Hasher} for the given
+	 * algorithm, and is thus safe to use from multiple threads.
+	 * </p>
+	 */
+	private static ToLongFunction<CharSequence> bucketer(Algorithm algorithm, long maxBucketNumber, long seed) {
+		if (!BucketHasher.validate(maxBucketNumber, seed)) { return (v) -> (v != null ? 0 : -1); }
+		return (v) -> algorithm.hasher().bucket(v, maxBucketNumber, seed);
+	}
+
+	/**
+	 * <p>
+	 * Validates the {@code maxBucketNumber} and {@code seed} parameters, and returns {@code true}
+	 * if the buckets need to be calculated, or {@code false} if there's only one bucket (i.e. the
+	 * result is always {@code 0}).
+	 * </p>
+	 */
+	private static boolean validate(long maxBucketNumber, long seed) {
+		BucketHasher.validateValue("maximum bucket", maxBucketNumber, BucketHasher.MIN_BUCKET, BucketHasher.MAX_BUCKET);
+		BucketHasher.validateValue("seed", seed, BucketHasher.MIN_SEED, BucketHasher.MAX_SEED);
+		return (maxBucketNumber != 0);
+	}
+
+	/**
+	 * <p>
+	 * Verifies that the given value is within the given limits, or explodes loudly otherwise.
+	 * </p>
+	 *
+	 * @param name
+	 *            the name of the value (for the exception message)
+	 * @param value
+	 *            the value to validate
+	 * @param min
+	 *            the lower limit
+	 * @param max
+	 *            the upper limit
+	 */
+	private static void validateValue(String name, long value, long min, long max) {
+		if ((value < min) || (value > max)) {
+			throw new IllegalArgumentException(
+				String.format("The %s must be between %d and %d (%d was given)", name, min, max, value));
+		}
+	}
+
+	/**
+	 * <p>
+	 * Implements the actual hash calculation.
+	 * </p>
+	 *
+	 * @param <E>
+	 * @param updater
+	 * @param maxBucketNumber
+	 * @param seed
+	 * @return
+	 * @throws E
+	 */
+	private static <E extends Exception> long hash(CheckedConsumer<MessageDigest, E> updater, long maxBucketNumber,
+		long seed) throws E {
+
+		// Parameter sanity
+		final boolean calculate = BucketHasher.validate(maxBucketNumber, seed);
+
+		// Now proceed to the calculation, applying any shortcuts as appropriate
+		if (updater == null) { return -1; }
+		if (!calculate) { return 0; }
 
 		// First things first: consume the primary data
 		MessageDigest md = DigestUtils.getSha1Digest();
@@ -806,4 +1348,1044 @@ public class BucketHasher {
 		// Strip the signum, and ensure the value is within our bucket range
 		return ((bucket & Long.MAX_VALUE) % (maxBucketNumber + 1));
 	}
+
+	/**
+	 * <p>
+	 * The hashing algorithms available for bucket calculation. {@link #SHA1} is the algorithm used
+	 * by all the static methods in {@link BucketHasher}, and must remain the default in order to
+	 * preserve bucket assignments across versions. {@link #XXHASH64} is a non-cryptographic
+	 * algorithm which is significantly cheaper to compute, and is thus better suited for
+	 * high-volume sharding where bucket stability with existing data isn't a concern.
+	 * </p>
+	 * <p>
+	 * Regardless of the algorithm, the value's bytes are fed to it in the same manner (i.e.
+	 * big-endian for primitives, UTF-8 for strings), and the seed (if any) is applied by appending
+	 * its lowest 4 bytes (big-endian) after the value's bytes. The bucket is computed from the
+	 * first 64 bits of the resulting hash value.
+	 * </p>
+	 */
+	public static enum Algorithm {
+		//
+		SHA1(Sha1Engine::new), //
+		XXHASH64(XxHash64Engine::new), //
+		//
+		;
+
+		private final Supplier<Engine> engine;
+
+		/**
+		 * <p>
+		 * The per-thread {@link Hasher} instances used by the static methods, so the engine state
+		 * (and its buffers) can be reused between invocations.
+		 * </p>
+		 */
+		private final ThreadLocal<Hasher> hashers = ThreadLocal.withInitial(this::newHasher);
+
+		private Algorithm(Supplier<Engine> engine) {
+			this.engine = engine;
+		}
+
+		Hasher hasher() {
+			return this.hashers.get();
+		}
+
+		/**
+		 * <p>
+		 * Returns a new {@link Hasher} instance which uses this algorithm.
+		 * </p>
+		 *
+		 * @return a new {@link Hasher} instance which uses this algorithm
+		 */
+		public Hasher newHasher() {
+			return new Hasher(this, this.engine.get());
+		}
+	}
+
+	/**
+	 * <p>
+	 * The default algorithm, which is also the one used by the static methods in this class
+	 * </p>
+	 */
+	public static final Algorithm DEF_ALGORITHM = Algorithm.SHA1;
+
+	/**
+	 * <p>
+	 * Returns a new {@link Hasher} instance which uses the given {@link Algorithm}, or
+	 * {@link #DEF_ALGORITHM} if {@code null}.
+	 * </p>
+	 *
+	 * @param algorithm
+	 *            the algorithm to use
+	 * @return a new {@link Hasher} instance which uses the given algorithm
+	 */
+	public static Hasher newHasher(Algorithm algorithm) {
+		return Tools.coalesce(algorithm, BucketHasher.DEF_ALGORITHM).newHasher();
+	}
+
+	/**
+	 * <p>
+	 * The internal, stateful incarnation of a hashing algorithm. Instances are reused between
+	 * calculations (via {@link #reset()}) so no garbage is generated in the steady state.
+	 * </p>
+	 */
+	private static abstract class Engine {
+
+		protected abstract void reset();
+
+		protected abstract void update(byte b);
+
+		protected abstract void update(byte[] b, int off, int len);
+
+		protected void update(ByteBuffer buf) {
+			if (buf.hasArray()) {
+				final int pos = buf.position();
+				final int len = buf.remaining();
+				update(buf.array(), buf.arrayOffset() + pos, len);
+				buf.position(pos + len);
+			} else {
+				while (buf.hasRemaining()) {
+					update(buf.get());
+				}
+			}
+		}
+
+		/**
+		 * <p>
+		 * Completes the computation and returns the first 64 bits of the hash value
+		 * </p>
+		 *
+		 * @return the first 64 bits of the hash value
+		 */
+		protected abstract long finish();
+	}
+
+	private static final class Sha1Engine extends Engine {
+		private final MessageDigest md = DigestUtils.getSha1Digest();
+		private final byte[] digest = new byte[this.md.getDigestLength()];
+
+		@Override
+		protected void reset() {
+			this.md.reset();
+		}
+
+		@Override
+		protected void update(byte b) {
+			this.md.update(b);
+		}
+
+		@Override
+		protected void update(byte[] b, int off, int len) {
+			this.md.update(b, off, len);
+		}
+
+		@Override
+		protected void update(ByteBuffer buf) {
+			this.md.update(buf);
+		}
+
+		@Override
+		protected long finish() {
+			try {
+				this.md.digest(this.digest, 0, this.digest.length);
+			} catch (DigestException e) {
+				throw new IllegalStateException("Failed to compute the SHA-1 digest", e);
+			}
+			long ret = 0;
+			for (int i = 0; i < Long.BYTES; i++) {
+				ret = (ret << 8) | (this.digest[i] & 0xFF);
+			}
+			return ret;
+		}
+	}
+
+	/**
+	 * <p>
+	 * A streaming implementation of the xxHash64 algorithm (using a seed of {@code 0}), as
+	 * described in <a href="https://github.com/Cyan4973/xxHash">https://github.com/Cyan4973/xxHash</a>.
+	 * </p>
+	 */
+	private static final class XxHash64Engine extends Engine {
+		private static final long PRIME1 = 0x9E3779B185EBCA87L;
+		private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+		private static final long PRIME3 = 0x165667B19E3779F9L;
+		private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+		private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+		private static final int STRIPE = 32;
+
+		private final byte[] buffer = new byte[XxHash64Engine.STRIPE];
+		private int buffered = 0;
+		private long total = 0;
+		private long v1 = 0;
+		private long v2 = 0;
+		private long v3 = 0;
+		private long v4 = 0;
+
+		private XxHash64Engine() {
+			reset();
+		}
+
+		private static long round(long acc, long input) {
+			acc += input * XxHash64Engine.PRIME2;
+			acc = Long.rotateLeft(acc, 31);
+			return acc * XxHash64Engine.PRIME1;
+		}
+
+		private static long mergeRound(long acc, long val) {
+			acc ^= XxHash64Engine.round(0, val);
+			return (acc * XxHash64Engine.PRIME1) + XxHash64Engine.PRIME4;
+		}
+
+		private static long readLong(byte[] b, int off) {
+			return (b[off] & 0xFFL) //
+				| ((b[off + 1] & 0xFFL) << 8) //
+				| ((b[off + 2] & 0xFFL) << 16) //
+				| ((b[off + 3] & 0xFFL) << 24) //
+				| ((b[off + 4] & 0xFFL) << 32) //
+				| ((b[off + 5] & 0xFFL) << 40) //
+				| ((b[off + 6] & 0xFFL) << 48) //
+				| ((b[off + 7] & 0xFFL) << 56);
+		}
+
+		private static long readInt(byte[] b, int off) {
+			return (b[off] & 0xFFL) //
+				| ((b[off + 1] & 0xFFL) << 8) //
+				| ((b[off + 2] & 0xFFL) << 16) //
+				| ((b[off + 3] & 0xFFL) << 24);
+		}
+
+		private void consumeStripe(byte[] b, int off) {
+			this.v1 = XxHash64Engine.round(this.v1, XxHash64Engine.readLong(b, off));
+			this.v2 = XxHash64Engine.round(this.v2, XxHash64Engine.readLong(b, off + 8));
+			this.v3 = XxHash64Engine.round(this.v3, XxHash64Engine.readLong(b, off + 16));
+			this.v4 = XxHash64Engine.round(this.v4, XxHash64Engine.readLong(b, off + 24));
+		}
+
+		@Override
+		protected void reset() {
+			this.buffered = 0;
+			this.total = 0;
+			this.v1 = XxHash64Engine.PRIME1 + XxHash64Engine.PRIME2;
+			this.v2 = XxHash64Engine.PRIME2;
+			this.v3 = 0;
+			this.v4 = -XxHash64Engine.PRIME1;
+		}
+
+		@Override
+		protected void update(byte b) {
+			this.total++;
+			this.buffer[this.buffered++] = b;
+			if (this.buffered == XxHash64Engine.STRIPE) {
+				consumeStripe(this.buffer, 0);
+				this.buffered = 0;
+			}
+		}
+
+		@Override
+		protected void update(byte[] b, int off, int len) {
+			this.total += len;
+			final int end = off + len;
+			if (this.buffered > 0) {
+				final int n = Math.min(len, XxHash64Engine.STRIPE - this.buffered);
+				System.arraycopy(b, off, this.buffer, this.buffered, n);
+				this.buffered += n;
+				off += n;
+				if (this.buffered < XxHash64Engine.STRIPE) { return; }
+				consumeStripe(this.buffer, 0);
+				this.buffered = 0;
+			}
+			for (; (off + XxHash64Engine.STRIPE) <= end; off += XxHash64Engine.STRIPE) {
+				consumeStripe(b, off);
+			}
+			if (off < end) {
+				this.buffered = end - off;
+				System.arraycopy(b, off, this.buffer, 0, this.buffered);
+			}
+		}
+
+		@Override
+		protected void update(ByteBuffer buf) {
+			if (buf.hasArray()) {
+				super.update(buf);
+				return;
+			}
+
+			// Complete any partial stripe first...
+			while ((this.buffered > 0) && buf.hasRemaining()) {
+				update(buf.get());
+			}
+
+			// ... then consume whole stripes straight from the buffer ...
+			final boolean swap = (buf.order() == ByteOrder.BIG_ENDIAN);
+			final int start = buf.position();
+			final int limit = buf.limit();
+			int pos = start;
+			for (; (pos + XxHash64Engine.STRIPE) <= limit; pos += XxHash64Engine.STRIPE) {
+				this.v1 = XxHash64Engine.round(this.v1, XxHash64Engine.readLong(buf, pos, swap));
+				this.v2 = XxHash64Engine.round(this.v2, XxHash64Engine.readLong(buf, pos + 8, swap));
+				this.v3 = XxHash64Engine.round(this.v3, XxHash64Engine.readLong(buf, pos + 16, swap));
+				this.v4 = XxHash64Engine.round(this.v4, XxHash64Engine.readLong(buf, pos + 24, swap));
+			}
+			this.total += (pos - start);
+			buf.position(pos);
+
+			// ... and buffer whatever's left
+			while (buf.hasRemaining()) {
+				update(buf.get());
+			}
+		}
+
+		private static long readLong(ByteBuffer buf, int pos, boolean swap) {
+			final long l = buf.getLong(pos);
+			return (swap ? Long.reverseBytes(l) : l);
+		}
+
+		@Override
+		protected long finish() {
+			long h = 0;
+			if (this.total >= XxHash64Engine.STRIPE) {
+				h = Long.rotateLeft(this.v1, 1) + Long.rotateLeft(this.v2, 7) + Long.rotateLeft(this.v3, 12)
+					+ Long.rotateLeft(this.v4, 18);
+				h = XxHash64Engine.mergeRound(h, this.v1);
+				h = XxHash64Engine.mergeRound(h, this.v2);
+				h = XxHash64Engine.mergeRound(h, this.v3);
+				h = XxHash64Engine.mergeRound(h, this.v4);
+			} else {
+				h = XxHash64Engine.PRIME5;
+			}
+			h += this.total;
+
+			int off = 0;
+			for (; (off + 8) <= this.buffered; off += 8) {
+				h ^= XxHash64Engine.round(0, XxHash64Engine.readLong(this.buffer, off));
+				h = (Long.rotateLeft(h, 27) * XxHash64Engine.PRIME1) + XxHash64Engine.PRIME4;
+			}
+			if ((off + 4) <= this.buffered) {
+				h ^= XxHash64Engine.readInt(this.buffer, off) * XxHash64Engine.PRIME1;
+				h = (Long.rotateLeft(h, 23) * XxHash64Engine.PRIME2) + XxHash64Engine.PRIME3;
+				off += 4;
+			}
+			for (; off < this.buffered; off++) {
+				h ^= (this.buffer[off] & 0xFFL) * XxHash64Engine.PRIME5;
+				h = Long.rotateLeft(h, 11) * XxHash64Engine.PRIME1;
+			}
+
+			h ^= (h >>> 33);
+			h *= XxHash64Engine.PRIME2;
+			h ^= (h >>> 29);
+			h *= XxHash64Engine.PRIME3;
+			h ^= (h >>> 32);
+			return h;
+		}
+	}
+
+	/**
+	 * <p>
+	 * A reusable bucket calculator bound to a specific {@link Algorithm}. The semantics for all
+	 * methods (parameter limits, return values, etc.) are identical to those of their static
+	 * counterparts in {@link BucketHasher}, except that the calculation is performed with the
+	 * instance's algorithm. The hashing state is kept and reused between invocations, so no
+	 * garbage is generated when hashing primitives, {@link CharSequence CharSequences},
+	 * {@code byte[]} or {@link ByteBuffer ByteBuffers}.
+	 * </p>
+	 * <p>
+	 * <b>Instances are not thread-safe</b>: they're meant to be confined to a single thread (i.e.
+	 * one instance per worker, or via a {@link ThreadLocal}).
+	 * </p>
+	 */
+	public static final class Hasher {
+
+		private final Algorithm algorithm;
+		private final Engine engine;
+		private ByteBuffer channelBuffer = null;
+
+		private Hasher(Algorithm algorithm, Engine engine) {
+			this.algorithm = algorithm;
+			this.engine = engine;
+		}
+
+		/**
+		 * <p>
+		 * Returns the {@link Algorithm} this instance calculates buckets with.
+		 * </p>
+		 *
+		 * @return the {@link Algorithm} this instance calculates buckets with
+		 */
+		public Algorithm getAlgorithm() {
+			return this.algorithm;
+		}
+
+		/**
+		 * <p>
+		 * Validates the parameters, and returns {@code true} if the value's bytes must be fed to
+		 * the engine (after resetting it), or {@code false} if the result is already known to be
+		 * {@code 0} because there's only one bucket.
+		 * </p>
+		 */
+		private boolean start(long maxBucketNumber, long seed) {
+			if (!BucketHasher.validate(maxBucketNumber, seed)) { return false; }
+			this.engine.reset();
+			return true;
+		}
+
+		private void updateBigEndian(long value, int bytes) {
+			for (int shift = (bytes - 1) * 8; shift >= 0; shift -= 8) {
+				this.engine.update((byte) (value >> shift));
+			}
+		}
+
+		private void updateUtf8(CharSequence value) {
+			final Engine engine = this.engine;
+			final int length = value.length();
+			for (int i = 0; i < length; i++) {
+				final char c = value.charAt(i);
+				if (c < 0x80) {
+					engine.update((byte) c);
+				} else if (c < 0x800) {
+					engine.update((byte) (0xC0 | (c >> 6)));
+					engine.update((byte) (0x80 | (c & 0x3F)));
+				} else if (Character.isSurrogate(c)) {
+					final char n = ((i + 1) < length ? value.charAt(i + 1) : 0);
+					if (Character.isHighSurrogate(c) && Character.isLowSurrogate(n)) {
+						final int cp = Character.toCodePoint(c, n);
+						engine.update((byte) (0xF0 | (cp >> 18)));
+						engine.update((byte) (0x80 | ((cp >> 12) & 0x3F)));
+						engine.update((byte) (0x80 | ((cp >> 6) & 0x3F)));
+						engine.update((byte) (0x80 | (cp & 0x3F)));
+						i++;
+					} else {
+						// Malformed input gets replaced the same way the UTF-8 encoder does it
+						engine.update((byte) '?');
+					}
+				} else {
+					engine.update((byte) (0xE0 | (c >> 12)));
+					engine.update((byte) (0x80 | ((c >> 6) & 0x3F)));
+					engine.update((byte) (0x80 | (c & 0x3F)));
+				}
+			}
+		}
+
+		private long digest(long seed) {
+			if (seed != 0L) {
+				updateBigEndian(seed, Integer.BYTES);
+			}
+			return this.engine.finish();
+		}
+
+		private long finish(long maxBucketNumber, long seed) {
+			final long bucket = digest(seed);
+			// Strip the signum, and ensure the value is within our bucket range
+			return ((bucket & Long.MAX_VALUE) % (maxBucketNumber + 1));
+		}
+
+		/**
+		 * <p>
+		 * Returns the full 64-bit hash for the given value (which must not be {@code null}), with
+		 * the seed applied as per the {@link BucketHasher class documentation}.
+		 * </p>
+		 */
+		long digest(long value, long seed) {
+			BucketHasher.validateValue("seed", seed, BucketHasher.MIN_SEED, BucketHasher.MAX_SEED);
+			this.engine.reset();
+			updateBigEndian(value, Long.BYTES);
+			return digest(seed);
+		}
+
+		/**
+		 * <p>
+		 * Returns the full 64-bit hash for the given value (which must not be {@code null}), with
+		 * the seed applied as per the {@link BucketHasher class documentation}.
+		 * </p>
+		 */
+		long digest(CharSequence value, long seed) {
+			BucketHasher.validateValue("seed", seed, BucketHasher.MIN_SEED, BucketHasher.MAX_SEED);
+			this.engine.reset();
+			updateUtf8(value);
+			return digest(seed);
+		}
+
+		/**
+		 * <p>
+		 * Returns the full 64-bit hash for the given value (which must not be {@code null}), with
+		 * the seed applied as per the {@link BucketHasher class documentation}.
+		 * </p>
+		 */
+		long digest(byte[] value, long seed) {
+			BucketHasher.validateValue("seed", seed, BucketHasher.MIN_SEED, BucketHasher.MAX_SEED);
+			this.engine.reset();
+			this.engine.update(value, 0, value.length);
+			return digest(seed);
+		}
+
+		private long hashPrimitive(long value, int bytes, long maxBucketNumber, long seed) {
+			if (!start(maxBucketNumber, seed)) { return 0; }
+			updateBigEndian(value, bytes);
+			return finish(maxBucketNumber, seed);
+		}
+
+		/**
+		 * <p>
+		 * Calculates the bucket for the given value without validating the parameters, so they
+		 * must have been validated beforehand (and {@code maxBucketNumber} must not be {@code 0}).
+		 * </p>
+		 */
+		private long bucket(long value, long maxBucketNumber, long seed) {
+			this.engine.reset();
+			updateBigEndian(value, Long.BYTES);
+			return finish(maxBucketNumber, seed);
+		}
+
+		/**
+		 * <p>
+		 * Calculates the bucket for the given value without validating the parameters, so they
+		 * must have been validated beforehand (and {@code maxBucketNumber} must not be {@code 0}).
+		 * </p>
+		 */
+		private long bucket(CharSequence value, long maxBucketNumber, long seed) {
+			if (value == null) { return -1; }
+			this.engine.reset();
+			updateUtf8(value);
+			return finish(maxBucketNumber, seed);
+		}
+
+		/**
+		 * <p>
+		 * See the {@link BucketHasher class documentation} for details.
+		 * </p>
+		 *
+		 * @see BucketHasher
+		 */
+		public long hash(byte value) {
+			return hash(value, BucketHasher.DEF_BUCKET, BucketHasher.DEF_SEED);
+		}
+
+		/**
+		 * <p>
+		 * See the {@link BucketHasher class documentation} for details.
+		 * </p>
+		 *
+		 * @see BucketHasher
+		 */
+		public long hash(byte value, long maxBucketNumber) {
+			return hash(value, maxBucketNumber, BucketHasher.DEF_SEED);
+		}
+
+		/**
+		 * <p>
+		 * See the {@link BucketHasher class documentation} for details.
+		 * </p>
+		 *
+		 * @see BucketHasher
+		 */
+		public long hash(byte value, long maxBucketNumber, long seed) {
+			return hashPrimitive(value, Byte.BYTES, maxBucketNumber, seed);
+		}
+
+		/**
+		 * <p>
+		 * See the {@link BucketHasher class documentation} for details.
+		 * </p>
+		 *
+		 * @see BucketHasher
+		 */
+		public long hash(short value) {
+			return hash(value, BucketHasher.DEF_BUCKET, BucketHasher.DEF_SEED);
+		}
+
+		/**
+		 * <p>
+		 * See the {@link BucketHasher class documentation} for details.
+		 * </p>
+		 *
+		 * @see BucketHasher
+		 */
+		public long hash(short value, long maxBucketNumber) {
+			return hash(value, maxBucketNumber, BucketHasher.DEF_SEED);
+		}
+
+		/**
+		 * <p>
+		 * See the {@link BucketHasher class documentation} for details.
+		 * </p>
+		 *
+		 * @see BucketHasher
+		 */
+		public long hash(short value, long maxBucketNumber, long seed) {
+			return hashPrimitive(value, Short.BYTES, maxBucketNumber, seed);
+		}
+
+		/**
+		 * <p>
+		 * See the {@link BucketHasher class documentation} for details.
+		 * </p>
+		 *
+		 * @see BucketHasher
+		 */
+		public long hash(int value) {
+			return hash(value, BucketHasher.DEF_BUCKET, BucketHasher.DEF_SEED);
+		}
+
+		/**
+		 * <p>
+		 * See the {@link BucketHasher class documentation} for details.
+		 * </p>
+		 *
+		 * @see BucketHasher
+		 */
+		public long hash(int value, long maxBucketNumber) {
+			return hash(value, maxBucketNumber, BucketHasher.DEF_SEED);
+		}
+
+		/**
+		 * <p>
+		 * See the {@link BucketHasher class documentation} for details.
+		 * </p>
+		 *
+		 * @see BucketHasher
+		 */
+		public long hash(int value, long maxBucketNumber, long seed) {
+			return hashPrimitive(value, Integer.BYTES, maxBucketNumber, seed);
+		}
+
+		/**
+		 * <p>
+		 * See the {@link BucketHasher class documentation} for details.
+		 * </p>
+		 *
+		 * @see BucketHasher
+		 */
+		public long hash(long value) {
+			return hash(value, BucketHasher.DEF_BUCKET, BucketHasher.DEF_SEED);
+		}
+
+		/**
+		 * <p>
+		 * See the {@link BucketHasher class documentation} for details.
+		 * </p>
+		 *
+		 * @see BucketHasher
+		 */
+		public long hash(long value, long maxBucketNumber) {
+			return hash(value, maxBucketNumber, BucketHasher.DEF_SEED);
+		}
+
+		/**
+		 * <p>
+		 * See the {@link BucketHasher class documentation} for details.
+		 * </p>
+		 *
+		 * @see BucketHasher
+		 */
+		public long hash(long value, long maxBucketNumber, long seed) {
+			return hashPrimitive(value, Long.BYTES, maxBucketNumber, seed);
+		}
+
+		/**
+		 * <p>
+		 * See the {@link BucketHasher class documentation} for details.
+		 * </p>
+		 *
+		 * @see BucketHasher
+		 */
+		public long hash(float value) {
+			return hash(value, BucketHasher.DEF_BUCKET, BucketHasher.DEF_SEED);
+		}
+
+		/**
+		 * <p>
+		 * See the {@link BucketHasher class documentation} for details.
+		 * </p>
+		 *
+		 * @see BucketHasher
+		 */
+		public long hash(float value, long maxBucketNumber) {
+			return hash(value, maxBucketNumber, BucketHasher.DEF_SEED);
+		}
+
+		/**
+		 * <p>
+		 * See the {@link BucketHasher class documentation} for details.
+		 * </p>
+		 *
+		 * @see BucketHasher
+		 */
+		public long hash(float value, long maxBucketNumber, long seed) {
+			return hashPrimitive(Float.floatToRawIntBits(value), Float.BYTES, maxBucketNumber, seed);
+		}
+
+		/**
+		 * <p>
+		 * See the {@link BucketHasher class documentation} for details.
+		 * </p>
+		 *
+		 * @see BucketHasher
+		 */
+		public long hash(double value) {
+			return hash(value, BucketHasher.DEF_BUCKET, BucketHasher.DEF_SEED);
+		}
+
+		/**
+		 * <p>
+		 * See the {@link BucketHasher class documentation} for details.
+		 * </p>
+		 *
+		 * @see BucketHasher
+		 */
+		public long hash(double value, long maxBucketNumber) {
+			return hash(value, maxBucketNumber, BucketHasher.DEF_SEED);
+		}
+
+		/**
+		 * <p>
+		 * See the {@link BucketHasher class documentation} for details.
+		 * </p>
+		 *
+		 * @see BucketHasher
+		 */
+		public long hash(double value, long maxBucketNumber, long seed) {
+			return hashPrimitive(Double.doubleToRawLongBits(value), Double.BYTES, maxBucketNumber, seed);
+		}
+
+		/**
+		 * <p>
+		 * See the {@link BucketHasher class documentation} for details. The bytes from the string
+		 * are the same as the ones obtained by invoking
+		 * {@link String#getBytes(java.nio.charset.Charset)} with {@link StandardCharsets#UTF_8}, but
+		 * they're fed directly into the hash calculation without encoding them into a buffer.
+		 * </p>
+		 *
+		 * @see BucketHasher
+		 */
+		public long hash(CharSequence value) {
+			return hash(value, BucketHasher.DEF_BUCKET, BucketHasher.DEF_SEED);
+		}
+
+		/**
+		 * <p>
+		 * See the {@link BucketHasher class documentation} for details. The bytes from the string
+		 * are the same as the ones obtained by invoking
+		 * {@link String#getBytes(java.nio.charset.Charset)} with {@link StandardCharsets#UTF_8}, but
+		 * they're fed directly into the hash calculation without encoding them into a buffer.
+		 * </p>
+		 *
+		 * @see BucketHasher
+		 */
+		public long hash(CharSequence value, long maxBucketNumber) {
+			return hash(value, maxBucketNumber, BucketHasher.DEF_SEED);
+		}
+
+		/**
+		 * <p>
+		 * See the {@link BucketHasher class documentation} for details. The bytes from the string
+		 * are the same as the ones obtained by invoking
+		 * {@link String#getBytes(java.nio.charset.Charset)} with {@link StandardCharsets#UTF_8}, but
+		 * they're fed directly into the hash calculation without encoding them into a buffer.
+		 * </p>
+		 *
+		 * @see BucketHasher
+		 */
+		public long hash(CharSequence value, long maxBucketNumber, long seed) {
+			if (!start(maxBucketNumber, seed)) { return (value != null ? 0 : -1); }
+			if (value == null) { return -1; }
+			updateUtf8(value);
+			return finish(maxBucketNumber, seed);
+		}
+
+		/**
+		 * <p>
+		 * See the {@link BucketHasher class documentation} for details.
+		 * </p>
+		 *
+		 * @see BucketHasher
+		 */
+		public long hash(byte[] value) {
+			return hash(value, BucketHasher.DEF_BUCKET, BucketHasher.DEF_SEED);
+		}
+
+		/**
+		 * <p>
+		 * See the {@link BucketHasher class documentation} for details.
+		 * </p>
+		 *
+		 * @see BucketHasher
+		 */
+		public long hash(byte[] value, long maxBucketNumber) {
+			return hash(value, maxBucketNumber, BucketHasher.DEF_SEED);
+		}
+
+		/**
+		 * <p>
+		 * See the {@link BucketHasher class documentation} for details.
+		 * </p>
+		 *
+		 * @see BucketHasher
+		 */
+		public long hash(byte[] value, long maxBucketNumber, long seed) {
+			if (!start(maxBucketNumber, seed)) { return (value != null ? 0 : -1); }
+			if (value == null) { return -1; }
+			this.engine.update(value, 0, value.length);
+			return finish(maxBucketNumber, seed);
+		}
+
+		/**
+		 * <p>
+		 * See the {@link BucketHasher class documentation} for details. The buffer's remaining
+		 * bytes are consumed.
+		 * </p>
+		 *
+		 * @see BucketHasher
+		 */
+		public long hash(ByteBuffer value) {
+			return hash(value, BucketHasher.DEF_BUCKET, BucketHasher.DEF_SEED);
+		}
+
+		/**
+		 * <p>
+		 * See the {@link BucketHasher class documentation} for details. The buffer's remaining
+		 * bytes are consumed.
+		 * </p>
+		 *
+		 * @see BucketHasher
+		 */
+		public long hash(ByteBuffer value, long maxBucketNumber) {
+			return hash(value, maxBucketNumber, BucketHasher.DEF_SEED);
+		}
+
+		/**
+		 * <p>
+		 * See the {@link BucketHasher class documentation} for details. The buffer's remaining
+		 * bytes are consumed.
+		 * </p>
+		 *
+		 * @see BucketHasher
+		 */
+		public long hash(ByteBuffer value, long maxBucketNumber, long seed) {
+			if (!start(maxBucketNumber, seed)) { return (value != null ? 0 : -1); }
+			if (value == null) { return -1; }
+			this.engine.update(value);
+			return finish(maxBucketNumber, seed);
+		}
+
+		/**
+		 * <p>
+		 * See the {@link BucketHasher class documentation} for details. The channel is read until
+		 * its end, using a reusable direct buffer. If the channel is a {@link FileChannel} with at
+		 * least {@link BucketHasher#MAP_THRESHOLD} bytes remaining, the remaining contents are
+		 * memory-mapped instead, and the channel's position is moved to its end.
+		 * </p>
+		 *
+		 * @throws IOException
+		 *             if there's a problem reading from the channel
+		 * @throws IllegalBlockingModeException
+		 *             if the channel is in non-blocking mode
+		 * @see BucketHasher
+		 */
+		public long hash(ReadableByteChannel value) throws IOException {
+			return hash(value, BucketHasher.DEF_BUCKET, BucketHasher.DEF_SEED);
+		}
+
+		/**
+		 * <p>
+		 * See the {@link BucketHasher class documentation} for details, and
+		 * {@link #hash(ReadableByteChannel)} for how the channel is read.
+		 * </p>
+		 *
+		 * @throws IOException
+		 *             if there's a problem reading from the channel
+		 * @throws IllegalBlockingModeException
+		 *             if the channel is in non-blocking mode
+		 * @see BucketHasher
+		 */
+		public long hash(ReadableByteChannel value, long maxBucketNumber) throws IOException {
+			return hash(value, maxBucketNumber, BucketHasher.DEF_SEED);
+		}
+
+		/**
+		 * <p>
+		 * See the {@link BucketHasher class documentation} for details, and
+		 * {@link #hash(ReadableByteChannel)} for how the channel is read.
+		 * </p>
+		 *
+		 * @throws IOException
+		 *             if there's a problem reading from the channel
+		 * @throws IllegalBlockingModeException
+		 *             if the channel is in non-blocking mode
+		 * @see BucketHasher
+		 */
+		public long hash(ReadableByteChannel value, long maxBucketNumber, long seed) throws IOException {
+			if (!start(maxBucketNumber, seed)) { return (value != null ? 0 : -1); }
+			if (value == null) { return -1; }
+			if ((value instanceof SelectableChannel) && !((SelectableChannel) value).isBlocking()) {
+				throw new IllegalBlockingModeException();
+			}
+
+			if (value instanceof FileChannel) {
+				final FileChannel file = (FileChannel) value;
+				final long size = file.size();
+				long position = file.position();
+				if ((size - position) >= BucketHasher.MAP_THRESHOLD) {
+					while (position < size) {
+						final long length = Math.min(size - position, BucketHasher.MAP_CHUNK_SIZE);
+						this.engine.update(file.map(FileChannel.MapMode.READ_ONLY, position, length));
+						position += length;
+					}
+					file.position(position);
+					return finish(maxBucketNumber, seed);
+				}
+			}
+
+			if (this.channelBuffer == null) {
+				this.channelBuffer = ByteBuffer.allocateDirect(BucketHasher.CHANNEL_BUFFER_SIZE);
+			}
+			final ByteBuffer buf = this.channelBuffer;
+			buf.clear();
+			while (value.read(buf) >= 0) {
+				buf.flip();
+				this.engine.update(buf);
+				buf.clear();
+			}
+			return finish(maxBucketNumber, seed);
+		}
+
+		/**
+		 * <p>
+		 * Calculates the buckets for all the given values in a single pass, validating the
+		 * parameters only once. The value at each position of the returned array is the bucket
+		 * for the value at the same position in the given array, exactly as would be returned by
+		 * {@link #hash(long, long, long)}.
+		 * </p>
+		 *
+		 * @param values
+		 *            the values to calculate the buckets for
+		 * @param maxBucketNumber
+		 *            the maximum bucket number
+		 * @param seed
+		 *            the seed
+		 * @return the buckets for the given values
+		 * @throws NullPointerException
+		 *             if {@code values} is {@code null}
+		 */
+		public long[] hashAll(long[] values, long maxBucketNumber, long seed) {
+			Objects.requireNonNull(values, "Must provide a non-null array of values");
+			final long[] ret = new long[values.length];
+			if (!BucketHasher.validate(maxBucketNumber, seed)) { return ret; }
+			for (int i = 0; i < values.length; i++) {
+				ret[i] = bucket(values[i], maxBucketNumber, seed);
+			}
+			return ret;
+		}
+
+		/**
+		 * <p>
+		 * Calculates the buckets for all the given values in a single pass, validating the
+		 * parameters only once. The value at each position of the returned array is the bucket
+		 * for the value at the same position in the collection's iteration order, exactly as would
+		 * be returned by {@link #hash(CharSequence, long, long)} (i.e. {@code null} values yield
+		 * {@code -1}).
+		 * </p>
+		 *
+		 * @param values
+		 *            the values to calculate the buckets for
+		 * @param maxBucketNumber
+		 *            the maximum bucket number
+		 * @param seed
+		 *            the seed
+		 * @return the buckets for the given values
+		 * @throws NullPointerException
+		 *             if {@code values} is {@code null}
+		 */
+		public long[] hashAll(Collection<? extends CharSequence> values, long maxBucketNumber, long seed) {
+			Objects.requireNonNull(values, "Must provide a non-null collection of values");
+			final boolean calculate = BucketHasher.validate(maxBucketNumber, seed);
+			final long[] ret = new long[values.size()];
+			int i = 0;
+			for (CharSequence value : values) {
+				if (calculate) {
+					ret[i++] = bucket(value, maxBucketNumber, seed);
+				} else {
+					ret[i++] = (value != null ? 0 : -1);
+				}
+			}
+			return ret;
+		}
+
+		/**
+		 * <p>
+		 * Calculates the bucket for the given value using <i>jump consistent hashing</i>, as
+		 * described in {@link BucketHasher#jump(long, long, long)}.
+		 * </p>
+		 *
+		 * @see BucketHasher#jump(long, long, long)
+		 */
+		public long jump(long value, long maxBucketNumber) {
+			return jump(value, maxBucketNumber, BucketHasher.DEF_SEED);
+		}
+
+		/**
+		 * <p>
+		 * Calculates the bucket for the given value using <i>jump consistent hashing</i>, as
+		 * described in {@link BucketHasher#jump(long, long, long)}.
+		 * </p>
+		 *
+		 * @see BucketHasher#jump(long, long, long)
+		 */
+		public long jump(long value, long maxBucketNumber, long seed) {
+			if (!BucketHasher.validate(maxBucketNumber, seed)) { return 0; }
+			return BucketHasher.jumpBucket(digest(value, seed), maxBucketNumber);
+		}
+
+		/**
+		 * <p>
+		 * Calculates the bucket for the given value using <i>jump consistent hashing</i>, as
+		 * described in {@link BucketHasher#jump(CharSequence, long, long)}.
+		 * </p>
+		 *
+		 * @see BucketHasher#jump(CharSequence, long, long)
+		 */
+		public long jump(CharSequence value, long maxBucketNumber) {
+			return jump(value, maxBucketNumber, BucketHasher.DEF_SEED);
+		}
+
+		/**
+		 * <p>
+		 * Calculates the bucket for the given value using <i>jump consistent hashing</i>, as
+		 * described in {@link BucketHasher#jump(CharSequence, long, long)}.
+		 * </p>
+		 *
+		 * @see BucketHasher#jump(CharSequence, long, long)
+		 */
+		public long jump(CharSequence value, long maxBucketNumber, long seed) {
+			final boolean calculate = BucketHasher.validate(maxBucketNumber, seed);
+			if (value == null) { return -1; }
+			if (!calculate) { return 0; }
+			return BucketHasher.jumpBucket(digest(value, seed), maxBucketNumber);
+		}
+
+		/**
+		 * <p>
+		 * Calculates the bucket for the given value using <i>jump consistent hashing</i>, as
+		 * described in {@link BucketHasher#jump(byte[], long, long)}.
+		 * </p>
+		 *
+		 * @see BucketHasher#jump(byte[], long, long)
+		 */
+		public long jump(byte[] value, long maxBucketNumber) {
+			return jump(value, maxBucketNumber, BucketHasher.DEF_SEED);
+		}
+
+		/**
+		 * <p>
+		 * Calculates the bucket for the given value using <i>jump consistent hashing</i>, as
+		 * described in {@link BucketHasher#jump(byte[], long, long)}.
+		 * </p>
+		 *
+		 * @see BucketHasher#jump(byte[], long, long)
+		 */
+		public long jump(byte[] value, long maxBucketNumber, long seed) {
+			final boolean calculate = BucketHasher.validate(maxBucketNumber, seed);
+			if (value == null) { return -1; }
+			if (!calculate) { return 0; }
+			return BucketHasher.jumpBucket(digest(value, seed), maxBucketNumber);
+		}
+	}
 }
@@ -0,0 +1,328 @@
+/*******************************************************************************
+ * #%L
+ * Armedia Caliente
+ * %%
+ * Copyright (C) 2013 - 2025 Armedia, LLC
+ * %%
+ * This file is part of the Caliente software.
+ *
+ * If the software was purchased under a paid Caliente license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Caliente is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Caliente is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Caliente. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ *******************************************************************************/
+package com.armedia.commons.utilities;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+import com.armedia.commons.utilities.concurrent.BaseShareableLockable;
+import com.armedia.commons.utilities.concurrent.MutexAutoLock;
+
+/**
+ * <p>
+ * A consistent-hash ring which maps keys to nodes such that adding or removing a node only moves
+ * about {@code 1/N} of the keys (where {@code N} is the number of nodes), instead of nearly all
+ * of them as happens with {@link BucketHasher#hash(CharSequence, long, long) modulo bucketing}.
+ * Each node is placed on the ring at {@link #getVirtualNodes() several points} (its
+ * <i>virtual nodes</i>) to even out the distribution, and a key is mapped to the node that owns
+ * the first point at or after the key's hash, wrapping around as needed. Lookups are
+ * {@code O(log(N * virtualNodes))} and lock-free.
+ * </p>
+ * <p>
+ * The hashes are calculated with {@link BucketHasher.Algorithm the given algorithm} and follow the
+ * same seed semantics as {@link BucketHasher}, so rings with the same nodes, virtual node count,
+ * algorithm and seed always map keys identically. Nodes are placed on the ring based on the
+ * string their {@code nodeKey} function returns (by default, {@link Object#toString()}), so those
+ * strings should be unique and stable.
+ * </p>
+ * <p>
+ * If the buckets are numbered sequentially and only ever added or removed at the end of the
+ * range, {@link BucketHasher#jump(CharSequence, long, long) jump consistent hashing} is a cheaper
+ * alternative which requires no state at all.
+ * </p>
+ *
+ * @param <NODE>
+ *            the type of the nodes
+ */
+public class ConsistentHashRing<NODE> extends BaseShareableLockable {
+
+	/**
+	 * <p>
+	 * The default number of points each node is placed at
+	 * </p>
+	 */
+	public static final int DEF_VIRTUAL_NODES = 160;
+
+	/**
+	 * <p>
+	 * An immutable snapshot of the ring: the sorted points, and the owner for each point.
+	 * </p>
+	 */
+	private static final class Ring {
+		private static final Ring EMPTY = new Ring(new long[0], new Object[0]);
+
+		private final long[] points;
+		private final Object[] owners;
+
+		private Ring(long[] points, Object[] owners) {
+			this.points = points;
+			this.owners = owners;
+		}
+
+		private Object get(long hash) {
+			if (this.points.length == 0) { return null; }
+			int idx = Arrays.binarySearch(this.points, hash);
+			if (idx < 0) {
+				idx = -(idx + 1);
+			}
+			if (idx == this.points.length) {
+				// Wrap around
+				idx = 0;
+			}
+			return this.owners[idx];
+		}
+	}
+
+	private static final class Point {
+		private final long hash;
+		private final String key;
+		private final Object owner;
+
+		private Point(long hash, String key, Object owner) {
+			this.hash = hash;
+			this.key = key;
+			this.owner = owner;
+		}
+	}
+
+	private static final Comparator<Point> POINT_ORDER = Comparator.<Point> comparingLong((p) -> p.hash)
+		.thenComparing((p) -> p.key);
+
+	private final int virtualNodes;
+	private final Function<? super NODE, ? extends CharSequence> nodeKey;
+	private final BucketHasher.Algorithm algorithm;
+	private final long seed;
+	private final Map<NODE, Point[]> nodes = new LinkedHashMap<>();
+	private volatile Ring ring = Ring.EMPTY;
+
+	public ConsistentHashRing() {
+		this(ConsistentHashRing.DEF_VIRTUAL_NODES);
+	}
+
+	public ConsistentHashRing(int virtualNodes) {
+		this(virtualNodes, Object::toString, BucketHasher.DEF_ALGORITHM, BucketHasher.DEF_SEED);
+	}
+
+	/**
+	 * <p>
+	 * Creates a new, empty ring.
+	 * </p>
+	 *
+	 * @param virtualNodes
+	 *            the number of points each node will be placed at (must be greater than
+	 *            {@code 0})
+	 * @param nodeKey
+	 *            the function which returns the string used to place each node on the ring
+	 * @param algorithm
+	 *            the algorithm to calculate the hashes with ({@link BucketHasher#DEF_ALGORITHM}
+	 *            if {@code null})
+	 * @param seed
+	 *            the seed to apply to the hashes, as per {@link BucketHasher}
+	 * @throws IllegalArgumentException
+	 *             if {@code virtualNodes} or {@code seed} are out of range
+	 * @throws NullPointerException
+	 *             if {@code nodeKey} is {@code null}
+	 */
+	public ConsistentHashRing(int virtualNodes, Function<? super NODE, ? extends CharSequence> nodeKey,
+		BucketHasher.Algorithm algorithm, long seed) {
+		if (virtualNodes < 1) {
+			throw new IllegalArgumentException(
+				String.format("The number of virtual nodes must be greater than 0 (%d was given)", virtualNodes));
+		}
+		if ((seed < BucketHasher.MIN_SEED) || (seed > BucketHasher.MAX_SEED)) {
+			throw new IllegalArgumentException(String.format("The seed must be between %d and %d (%d was given)",
+				BucketHasher.MIN_SEED, BucketHasher.MAX_SEED, seed));
+		}
+		this.virtualNodes = virtualNodes;
+		this.nodeKey = Objects.requireNonNull(nodeKey, "Must provide a non-null node key function");
+		this.algorithm = Tools.coalesce(algorithm, BucketHasher.DEF_ALGORITHM);
+		this.seed = seed;
+	}
+
+	public int getVirtualNodes() {
+		return this.virtualNodes;
+	}
+
+	public BucketHasher.Algorithm getAlgorithm() {
+		return this.algorithm;
+	}
+
+	public long getSeed() {
+		return this.seed;
+	}
+
+	/**
+	 * <p>
+	 * Adds the given node to the ring, if it isn't there already.
+	 * </p>
+	 *
+	 * @param node
+	 *            the node to add
+	 * @return {@code true} if the node was added, {@code false} if it was already in the ring
+	 * @throws NullPointerException
+	 *             if {@code node} (or its key) is {@code null}
+	 */
+	public boolean add(NODE node) {
+		Objects.requireNonNull(node, "Must provide a non-null node");
+		try (MutexAutoLock lock = mutexAutoLock()) {
+			if (this.nodes.containsKey(node)) { return false; }
+			final String key = Objects.requireNonNull(this.nodeKey.apply(node), "The node key may not be null")
+				.toString();
+			final BucketHasher.Hasher hasher = this.algorithm.hasher();
+			final StringBuilder b = new StringBuilder(key.length() + 12).append(key).append('#');
+			final int base = b.length();
+			final Point[] points = new Point[this.virtualNodes];
+			for (int i = 0; i < points.length; i++) {
+				b.setLength(base);
+				b.append(i);
+				points[i] = new Point(hasher.digest(b, this.seed), key, node);
+			}
+			this.nodes.put(node, points);
+			rebuild();
+			return true;
+		}
+	}
+
+	/**
+	 * <p>
+	 * Removes the given node from the ring. Only the keys which were mapped to it will be
+	 * remapped.
+	 * </p>
+	 *
+	 * @param node
+	 *            the node to remove
+	 * @return {@code true} if the node was removed, {@code false} if it wasn't in the ring
+	 */
+	public boolean remove(NODE node) {
+		if (node == null) { return false; }
+		try (MutexAutoLock lock = mutexAutoLock()) {
+			if (this.nodes.remove(node) == null) { return false; }
+			rebuild();
+			return true;
+		}
+	}
+
+	private void rebuild() {
+		final List<Point> points = new ArrayList<>(this.nodes.size() * this.virtualNodes);
+		this.nodes.values().forEach((p) -> points.addAll(Arrays.asList(p)));
+		points.sort(ConsistentHashRing.POINT_ORDER);
+
+		final long[] hashes = new long[points.size()];
+		final Object[] owners = new Object[points.size()];
+		int size = 0;
+		for (Point p : points) {
+			// On (very unlikely) collisions, the first point in order wins
+			if ((size > 0) && (hashes[size - 1] == p.hash)) {
+				continue;
+			}
+			hashes[size] = p.hash;
+			owners[size] = p.owner;
+			size++;
+		}
+		this.ring = new Ring(Arrays.copyOf(hashes, size), Arrays.copyOf(owners, size));
+	}
+
+	/**
+	 * <p>
+	 * Returns the nodes currently in the ring, in the order they were added.
+	 * </p>
+	 *
+	 * @return the nodes currently in the ring
+	 */
+	public Set<NODE> getNodes() {
+		return shareLocked(() -> Collections.unmodifiableSet(new LinkedHashSet<>(this.nodes.keySet())));
+	}
+
+	public int size() {
+		return shareLocked(this.nodes::size);
+	}
+
+	public boolean isEmpty() {
+		return (this.ring.points.length == 0);
+	}
+
+	@SuppressWarnings("unchecked")
+	private NODE lookup(Ring ring, long hash) {
+		return (NODE) ring.get(hash);
+	}
+
+	/**
+	 * <p>
+	 * Returns the node the given key is mapped to, or {@code null} if the key is {@code null} or
+	 * the ring is empty.
+	 * </p>
+	 *
+	 * @param key
+	 *            the key to find the node for
+	 * @return the node the given key is mapped to
+	 */
+	public NODE get(CharSequence key) {
+		final Ring ring = this.ring;
+		if ((key == null) || (ring.points.length == 0)) { return null; }
+		return lookup(ring, this.algorithm.hasher().digest(key, this.seed));
+	}
+
+	/**
+	 * <p>
+	 * Returns the node the given key is mapped to, or {@code null} if the ring is empty.
+	 * </p>
+	 *
+	 * @param key
+	 *            the key to find the node for
+	 * @return the node the given key is mapped to
+	 */
+	public NODE get(long key) {
+		final Ring ring = this.ring;
+		if (ring.points.length == 0) { return null; }
+		return lookup(ring, this.algorithm.hasher().digest(key, this.seed));
+	}
+
+	/**
+	 * <p>
+	 * Returns the node the given key is mapped to, or {@code null} if the key is {@code null} or
+	 * the ring is empty.
+	 * </p>
+	 *
+	 * @param key
+	 *            the key to find the node for
+	 * @return the node the given key is mapped to
+	 */
+	public NODE get(byte[] key) {
+		final Ring ring = this.ring;
+		if ((key == null) || (ring.points.length == 0)) { return null; }
+		return lookup(ring, this.algorithm.hasher().digest(key, this.seed));
+	}
+}
@@ -29,21 +29,42 @@ package com.armedia.commons.utilities;
 import java.util.Collections;
 import java.util.EnumMap;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.commons.lang3.StringUtils;
 
 import com.armedia.commons.utilities.concurrent.BaseShareableLockable;
 import com.armedia.commons.utilities.concurrent.MutexAutoLock;
-import com.armedia.commons.utilities.concurrent.SharedAutoLock;
 
+/**
+ * <p>
+ * Counts the outcomes (of enum type {@code R}) for each type of object (of enum type {@code T}),
+ * and produces reports from those counts. The counters are kept in a flat array of
+ * {@link LongAdder} instances indexed by {@code (type.ordinal() * results) + result.ordinal()},
+ * so {@link #count(Enum, Enum) counting} requires neither locks nor map lookups, and scales well
+ * as the number of threads counting concurrently grows. The cumulative counts for each result
+ * are calculated on demand from the per-type counts.
+ * </p>
+ * <p>
+ * The snapshots, reports and resets take the mutex lock amongst themselves, but don't block the
+ * threads which are counting. Thus, counts made while a snapshot is being taken may or may not be
+ * reflected in it, but each snapshot is internally consistent: the cumulative counts always match
+ * the per-type counts they were calculated from.
+ * </p>
+ *
+ * @param <T>
+ *            the object type enum
+ * @param <R>
+ *            the result enum
+ */
 public class EnumeratedCounter<T extends Enum<T>, R extends Enum<R>> extends BaseShareableLockable {
 
 	private static final String TOTAL_LABEL = "processed".intern();
 	private static final String NEW_LINE = String.format("%n");
 
-	private final Map<T, Map<R, AtomicLong>> counters;
-	private final Map<R, AtomicLong> cummulative;
+	private final LongAdder[] counters;
+	private final T[] types;
+	private final R[] results;
 	private final Class<T> tClass;
 	private final Class<R> rClass;
 	private final String formatString;
@@ -53,91 +74,145 @@ public class EnumeratedCounter<T extends Enum<T>, R extends Enum<R>> extends Bas
 		if (rClass == null) { throw new IllegalArgumentException("Must provide an enum class for the result"); }
 		this.rClass = rClass;
 		this.tClass = tClass;
+		this.types = tClass.getEnumConstants();
+		this.results = rClass.getEnumConstants();
 
 		int maxWidth = 0;
-		Map<R, AtomicLong> cummulative = new EnumMap<>(rClass);
-		for (R result : this.rClass.getEnumConstants()) {
-			cummulative.put(result, new AtomicLong(0));
+		for (R result : this.results) {
 			maxWidth = Math.max(maxWidth, result.name().length());
 		}
-		this.cummulative = Collections.unmodifiableMap(cummulative);
 
-		Map<T, Map<R, AtomicLong>> counters = new EnumMap<>(tClass);
-		for (T type : tClass.getEnumConstants()) {
-			Map<R, AtomicLong> results = new EnumMap<>(rClass);
-			for (R result : this.rClass.getEnumConstants()) {
-				results.put(result, new AtomicLong(0));
-			}
-			counters.put(type, Collections.unmodifiableMap(results));
+		this.counters = new LongAdder[this.types.length * this.results.length];
+		for (int i = 0; i < this.counters.length; i++) {
+			this.counters[i] = new LongAdder();
 		}
-		this.counters = Collections.unmodifiableMap(counters);
 
 		maxWidth = Math.max(maxWidth, EnumeratedCounter.TOTAL_LABEL.length());
 		this.formatString = String.format("%%s objects %%-%ds: %%6d%%n", maxWidth);
 	}
 
-	public final long increment(T type, R result) {
+	private LongAdder getCounter(T type, R result) {
 		if (type == null) { throw new IllegalArgumentException("Unsupported null object type"); }
 		if (result == null) { throw new IllegalArgumentException("Must provide a valid result to count for"); }
-		try (SharedAutoLock lock = sharedAutoLock()) {
-			AtomicLong counter = getLiveCounters(type).get(result);
-			final long ret = counter.incrementAndGet();
-			this.cummulative.get(result).incrementAndGet();
-			return ret;
-		}
+		return this.counters[(type.ordinal() * this.results.length) + result.ordinal()];
 	}
 
-	private Map<R, AtomicLong> getLiveCounters(T type) {
-		return (type != null ? this.counters.get(type) : this.cummulative);
+	/**
+	 * <p>
+	 * Counts one more occurrence of the given result for the given object type. This is the
+	 * cheapest way to count, and should be preferred over {@link #increment(Enum, Enum)} when the
+	 * new value isn't needed.
+	 * </p>
+	 *
+	 * @param type
+	 *            the object type
+	 * @param result
+	 *            the result to count for
+	 */
+	public final void count(T type, R result) {
+		getCounter(type, result).increment();
 	}
 
-	public final Map<R, Long> getCounters(T type) {
+	/**
+	 * <p>
+	 * Counts one more occurrence of the given result for the given object type, and returns the
+	 * updated count. Under concurrent counting, the returned value may also include other threads'
+	 * increments. Use {@link #count(Enum, Enum)} when the new value isn't needed, as it's cheaper.
+	 * </p>
+	 *
+	 * @param type
+	 *            the object type
+	 * @param result
+	 *            the result to count for
+	 * @return the updated count
+	 */
+	public final long increment(T type, R result) {
+		final LongAdder counter = getCounter(type, result);
+		counter.increment();
+		return counter.sum();
+	}
+
+	private long[] snapshot() {
+		final long[] ret = new long[this.counters.length];
+		for (int i = 0; i < ret.length; i++) {
+			ret[i] = this.counters[i].sum();
+		}
+		return ret;
+	}
+
+	private Map<R, Long> getCounters(long[] snapshot, T type) {
 		Map<R, Long> ret = new EnumMap<>(this.rClass);
-		Map<R, AtomicLong> m = getLiveCounters(type);
-		try (MutexAutoLock lock = mutexAutoLock()) {
-			for (Map.Entry<R, AtomicLong> e : m.entrySet()) {
-				ret.put(e.getKey(), e.getValue().get());
+		for (R r : this.results) {
+			if (type != null) {
+				ret.put(r, snapshot[(type.ordinal() * this.results.length) + r.ordinal()]);
+				continue;
+			}
+
+			// The cumulative count is the sum for this result across all types
+			long total = 0;
+			for (int i = r.ordinal(); i < snapshot.length; i += this.results.length) {
+				total += snapshot[i];
 			}
-			return Collections.unmodifiableMap(ret);
+			ret.put(r, total);
 		}
+		return Collections.unmodifiableMap(ret);
+	}
+
+	public final Map<R, Long> getCounters(T type) {
+		return mutexLocked(() -> getCounters(snapshot(), type));
 	}
 
 	public final Map<T, Map<R, Long>> getCounters() {
 		Map<T, Map<R, Long>> ret = new EnumMap<>(this.tClass);
-		try (MutexAutoLock lock = mutexAutoLock()) {
-			for (T t : this.counters.keySet()) {
-				ret.put(t, getCounters(t));
-			}
-			return Collections.unmodifiableMap(ret);
+		final long[] snapshot = mutexLocked(this::snapshot);
+		for (T t : this.types) {
+			ret.put(t, getCounters(snapshot, t));
 		}
+		return Collections.unmodifiableMap(ret);
 	}
 
 	public final Map<R, Long> getCummulative() {
 		return getCounters(null);
 	}
 
+	/**
+	 * <p>
+	 * Resets the counters for the given object type to 0, returning their values prior to the
+	 * reset. If {@code type} is {@code null}, all the counters are reset and the cumulative values
+	 * are returned.
+	 * </p>
+	 *
+	 * @param type
+	 *            the object type to reset the counters for
+	 * @return the values of the counters prior to the reset
+	 */
 	public final Map<R, Long> reset(T type) {
-		Map<R, Long> ret = new EnumMap<>(this.rClass);
-		Map<R, AtomicLong> m = getLiveCounters(type);
 		try (MutexAutoLock lock = mutexAutoLock()) {
-			for (Map.Entry<R, AtomicLong> e : m.entrySet()) {
-				final R r = e.getKey();
-				final long val = e.getValue().getAndSet(0);
-				ret.put(r, val);
-				this.cummulative.get(r).addAndGet(-val);
+			if (type == null) { return getCounters(resetAll(), null); }
+			final long[] snapshot = new long[this.counters.length];
+			final int base = type.ordinal() * this.results.length;
+			for (int i = base; i < (base + this.results.length); i++) {
+				snapshot[i] = this.counters[i].sumThenReset();
 			}
-			return Collections.unmodifiableMap(ret);
+			return getCounters(snapshot, type);
 		}
 	}
 
 	public final Map<T, Map<R, Long>> reset() {
 		Map<T, Map<R, Long>> ret = new EnumMap<>(this.tClass);
-		try (MutexAutoLock lock = mutexAutoLock()) {
-			for (T t : this.tClass.getEnumConstants()) {
-				ret.put(t, reset(t));
-			}
-			return Collections.unmodifiableMap(ret);
+		final long[] snapshot = mutexLocked(this::resetAll);
+		for (T t : this.types) {
+			ret.put(t, getCounters(snapshot, t));
+		}
+		return Collections.unmodifiableMap(ret);
+	}
+
+	private long[] resetAll() {
+		final long[] ret = new long[this.counters.length];
+		for (int i = 0; i < ret.length; i++) {
+			ret[i] = this.counters[i].sumThenReset();
 		}
+		return ret;
 	}
 
 	public final String generateCummulativeReport() {
@@ -145,7 +220,7 @@ public class EnumeratedCounter<T extends Enum<T>, R extends Enum<R>> extends Bas
 	}
 
 	public final String generateCummulativeReport(int indentLevel) {
-		return generateReport(this.cummulative, indentLevel, "Total");
+		return generateReport(getCummulative(), indentLevel, "Total");
 	}
 
 	public final String generateReport(T type) {
@@ -153,26 +228,25 @@ public class EnumeratedCounter<T extends Enum<T>, R extends Enum<R>> extends Bas
 	}
 
 	public final String generateFullReport(int indentlevel) {
-		try (MutexAutoLock lock = mutexAutoLock()) {
-			StringBuilder buf = new StringBuilder();
-			for (T type : this.tClass.getEnumConstants()) {
-				if (buf.length() > 0) {
-					buf.append(EnumeratedCounter.NEW_LINE).append(EnumeratedCounter.NEW_LINE);
-				}
-				buf.append(generateReport(type, indentlevel));
+		final Map<T, Map<R, Long>> counters = getCounters();
+		StringBuilder buf = new StringBuilder();
+		for (T type : this.types) {
+			if (buf.length() > 0) {
+				buf.append(EnumeratedCounter.NEW_LINE).append(EnumeratedCounter.NEW_LINE);
 			}
-			return buf.toString();
+			buf.append(generateReport(counters.get(type), indentlevel, String.format("Number of %s", type)));
 		}
+		return buf.toString();
 	}
 
 	public final String generateReport(T type, int indentLevel) {
 		if (type == null) { throw new IllegalArgumentException("Unsupported null object type"); }
-		return generateReport(getLiveCounters(type), indentLevel, String.format("Number of %s", type));
+		return generateReport(getCounters(type), indentLevel, String.format("Number of %s", type));
 	}
 
-	private final String generateReport(Map<R, AtomicLong> results, int indentLevel, String entryLabel) {
-		return mutexLocked(() -> EnumeratedCounter.generateSummary(this.rClass, results, indentLevel, entryLabel,
-			EnumeratedCounter.TOTAL_LABEL, this.formatString));
+	private final String generateReport(Map<R, Long> results, int indentLevel, String entryLabel) {
+		return EnumeratedCounter.generateSummary(this.rClass, results, indentLevel, entryLabel,
+			EnumeratedCounter.TOTAL_LABEL, this.formatString);
 	}
 
 	private static <E extends Enum<E>> String calculateFormatString(Class<E> klass, String totalLabel) {
@@ -0,0 +1,314 @@
+/*******************************************************************************
+ * #%L
+ * Armedia Caliente
+ * %%
+ * Copyright (C) 2013 - 2025 Armedia, LLC
+ * %%
+ * This file is part of the Caliente software.
+ *
+ * If the software was purchased under a paid Caliente license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Caliente is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Caliente is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Caliente. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ *******************************************************************************/
+package com.armedia.commons.utilities;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * A lock-free histogram of non-negative values, typically durations in nanoseconds. The values
+ * are counted in log-linear buckets: each power of two is split into {@value #SUB_BUCKETS}
+ * equally-sized buckets, so {@link Snapshot#getPercentile(double) percentiles} are accurate to
+ * within 25% of the actual value while using a fixed, small amount of memory regardless of how
+ * many values are recorded. The exact count, sum, minimum and maximum are also tracked.
+ * </p>
+ * <p>
+ * Recording is wait-free for the buckets and the sum, so it scales well as the number of threads
+ * recording concurrently grows. {@link #snapshot() Snapshots} don't block the threads which are
+ * recording, so values recorded while a snapshot is being taken may or may not be reflected in
+ * it, and its count and sum may be slightly out of step with its buckets.
+ * </p>
+ */
+public final class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 2;
+
+	/**
+	 * <p>
+	 * The number of buckets each power of two is split into.
+	 * </p>
+	 */
+	public static final int SUB_BUCKETS = (1 << LatencyHistogram.SUB_BUCKET_BITS);
+
+	private static final int SUB_BUCKET_MASK = (LatencyHistogram.SUB_BUCKETS - 1);
+
+	private static final int BUCKETS = LatencyHistogram.index(Long.MAX_VALUE) + 1;
+
+	private static int index(long value) {
+		if (value < LatencyHistogram.SUB_BUCKETS) { return (int) value; }
+		final int exponent = 63 - Long.numberOfLeadingZeros(value);
+		final int sub = (int) ((value >>> (exponent - LatencyHistogram.SUB_BUCKET_BITS))
+			& LatencyHistogram.SUB_BUCKET_MASK);
+		return ((exponent - LatencyHistogram.SUB_BUCKET_BITS + 1) << LatencyHistogram.SUB_BUCKET_BITS) | sub;
+	}
+
+	private static long lowerBound(int index) {
+		if (index < LatencyHistogram.SUB_BUCKETS) { return index; }
+		final int shift = (index >>> LatencyHistogram.SUB_BUCKET_BITS) - 1;
+		final long sub = (index & LatencyHistogram.SUB_BUCKET_MASK);
+		return (LatencyHistogram.SUB_BUCKETS + sub) << shift;
+	}
+
+	private static long upperBound(int index) {
+		if (index < LatencyHistogram.SUB_BUCKETS) { return index; }
+		final int shift = (index >>> LatencyHistogram.SUB_BUCKET_BITS) - 1;
+		return LatencyHistogram.lowerBound(index) + ((1L << shift) - 1);
+	}
+
+	/**
+	 * <p>
+	 * An immutable snapshot of a {@link LatencyHistogram}.
+	 * </p>
+	 */
+	public static final class Snapshot {
+		private static final Snapshot EMPTY = new Snapshot(new long[LatencyHistogram.BUCKETS], 0, 0, 0, 0);
+
+		private final long[] buckets;
+		private final long count;
+		private final long sum;
+		private final long min;
+		private final long max;
+
+		private Snapshot(long[] buckets, long count, long sum, long min, long max) {
+			this.buckets = buckets;
+			this.count = count;
+			this.sum = sum;
+			this.min = min;
+			this.max = max;
+		}
+
+		/**
+		 * <p>
+		 * Returns an empty snapshot.
+		 * </p>
+		 *
+		 * @return an empty snapshot
+		 */
+		public static Snapshot empty() {
+			return Snapshot.EMPTY;
+		}
+
+		public long getCount() {
+			return this.count;
+		}
+
+		public long getSum() {
+			return this.sum;
+		}
+
+		/**
+		 * <p>
+		 * Returns the smallest value recorded, or {@code 0} if none were.
+		 * </p>
+		 *
+		 * @return the smallest value recorded
+		 */
+		public long getMin() {
+			return this.min;
+		}
+
+		/**
+		 * <p>
+		 * Returns the largest value recorded, or {@code 0} if none were.
+		 * </p>
+		 *
+		 * @return the largest value recorded
+		 */
+		public long getMax() {
+			return this.max;
+		}
+
+		/**
+		 * <p>
+		 * Returns the average of the values recorded, or {@code 0} if none were.
+		 * </p>
+		 *
+		 * @return the average of the values recorded
+		 */
+		public double getMean() {
+			return (this.count > 0 ? (double) this.sum / this.count : 0);
+		}
+
+		/**
+		 * <p>
+		 * Returns an estimate of the value below which the given percentage of the recorded values
+		 * fall. The estimate is the upper bound of the bucket the percentile falls into (but never
+		 * more than the {@link #getMax() maximum}), so it's never lower than the actual value.
+		 * Returns {@code 0} if no values were recorded.
+		 * </p>
+		 *
+		 * @param percentile
+		 *            the percentile, between {@code 0} and {@code 100} (inclusive)
+		 * @return the estimated value for the given percentile
+		 * @throws IllegalArgumentException
+		 *             if the percentile is out of range
+		 */
+		public long getPercentile(double percentile) {
+			if (!((percentile >= 0) && (percentile <= 100))) {
+				throw new IllegalArgumentException(
+					String.format("The percentile must be between 0 and 100 (%f was given)", percentile));
+			}
+			long total = 0;
+			for (long b : this.buckets) {
+				total += b;
+			}
+			if (total == 0) { return 0; }
+			final long rank = Math.max(1, (long) Math.ceil((percentile / 100.0) * total));
+			long seen = 0;
+			for (int i = 0; i < this.buckets.length; i++) {
+				seen += this.buckets[i];
+				if (seen >= rank) { return Tools.ensureBetween(this.min, LatencyHistogram.upperBound(i), this.max); }
+			}
+			return this.max;
+		}
+
+		public long getP50() {
+			return getPercentile(50);
+		}
+
+		public long getP90() {
+			return getPercentile(90);
+		}
+
+		public long getP99() {
+			return getPercentile(99);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("count=%d, mean=%.1f, min=%d, p50=%d, p90=%d, p99=%d, max=%d", this.count,
+				getMean(), this.min, getP50(), getP90(), getP99(), this.max);
+		}
+	}
+
+	private final AtomicLongArray buckets = new AtomicLongArray(LatencyHistogram.BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+	private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+	/**
+	 * <p>
+	 * Records the given value. Negative values are recorded as {@code 0}.
+	 * </p>
+	 *
+	 * @param value
+	 *            the value to record
+	 */
+	public void record(long value) {
+		record(value, 1);
+	}
+
+	/**
+	 * <p>
+	 * Records the given value {@code times} times over. Negative values are recorded as
+	 * {@code 0}, and nothing is recorded if {@code times} is less than {@code 1}.
+	 * </p>
+	 *
+	 * @param value
+	 *            the value to record
+	 * @param times
+	 *            the number of times to record it
+	 */
+	public void record(long value, long times) {
+		if (times < 1) { return; }
+		if (value < 0) {
+			value = 0;
+		}
+		this.buckets.addAndGet(LatencyHistogram.index(value), times);
+		this.count.add(times);
+		this.sum.add(value * times);
+		// Only write when there's actually something to change, to avoid needless contention
+		long current = this.min.get();
+		while ((value < current) && !this.min.compareAndSet(current, value)) {
+			current = this.min.get();
+		}
+		current = this.max.get();
+		while ((value > current) && !this.max.compareAndSet(current, value)) {
+			current = this.max.get();
+		}
+	}
+
+	/**
+	 * <p>
+	 * Records the time elapsed since the given start time (as returned by
+	 * {@link System#nanoTime()}), and returns the current time so it can be used as the start time
+	 * for the next measurement.
+	 * </p>
+	 *
+	 * @param startNanos
+	 *            the start time, as returned by {@link System#nanoTime()}
+	 * @return the current time, as returned by {@link System#nanoTime()}
+	 */
+	public long recordSince(long startNanos) {
+		final long now = System.nanoTime();
+		record(now - startNanos);
+		return now;
+	}
+
+	/**
+	 * <p>
+	 * Returns an immutable snapshot of the values recorded so far.
+	 * </p>
+	 *
+	 * @return an immutable snapshot of the values recorded so far
+	 */
+	public Snapshot snapshot() {
+		final long[] buckets = new long[LatencyHistogram.BUCKETS];
+		for (int i = 0; i < buckets.length; i++) {
+			buckets[i] = this.buckets.get(i);
+		}
+		final long count = this.count.sum();
+		if (count == 0) { return Snapshot.EMPTY; }
+		final long min = this.min.get();
+		final long max = this.max.get();
+		return new Snapshot(buckets, count, this.sum.sum(), (min <= max ? min : 0), (min <= max ? max : 0));
+	}
+
+	/**
+	 * <p>
+	 * Clears all the values recorded so far. Values recorded concurrently with the reset may or
+	 * may not survive it.
+	 * </p>
+	 */
+	public void reset() {
+		for (int i = 0; i < LatencyHistogram.BUCKETS; i++) {
+			this.buckets.set(i, 0);
+		}
+		this.count.reset();
+		this.sum.reset();
+		this.min.set(Long.MAX_VALUE);
+		this.max.set(Long.MIN_VALUE);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("LatencyHistogram [%s]", snapshot());
+	}
+}
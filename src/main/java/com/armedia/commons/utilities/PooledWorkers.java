@@ -26,42 +26,76 @@
  *******************************************************************************/
 package com.armedia.commons.utilities;
 
+import java.lang.management.ManagementFactory;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.armedia.commons.utilities.concurrent.AdaptiveConcurrencyLimit;
 import com.armedia.commons.utilities.concurrent.BaseShareableLockable;
+import com.armedia.commons.utilities.concurrent.BoundedPriorityBlockingQueue;
 import com.armedia.commons.utilities.concurrent.MutexAutoLock;
+import com.armedia.commons.utilities.concurrent.PartitionedBlockingQueue;
 import com.armedia.commons.utilities.concurrent.SharedAutoLock;
+import com.armedia.commons.utilities.concurrent.TokenBucket;
+import com.armedia.commons.utilities.concurrent.VirtualThreads;
+import com.armedia.commons.utilities.concurrent.WorkStealingBlockingQueue;
 
 /**
  * A simple multi-threaded worker pool that supports having an optionally size-constrained work
- * queue, and items submitted are processed in order, concurrently. It supports pre-filling the
+ * queue, and items submitted are processed in order, concurrently (unless a
+ * {@link QueueStrategy#WORK_STEALING work-stealing} queue is used, which trades the ordering for
+ * scalability, or a {@link QueueStrategy#PRIORITY priority} queue is used, which lets urgent items
+ * overtake the rest, or a {@link QueueStrategy#PARTITIONED partitioned} queue is used, which only
+ * keeps the ordering among items with the same key). It supports pre-filling the
  * queue for immediate consumption, as well a blocking mode where the worker threads wait for work
- * to be submitted and execute it as it arrives.
+ * to be submitted and execute it as it arrives. The number of workers actively processing items
+ * may be fixed, or {@link Builder#minThreads(int) adapt} to the measured throughput.
  *
  * @param <STATE>
  *            The state class that will be produced by
@@ -76,29 +110,403 @@ import com.armedia.commons.utilities.concurrent.SharedAutoLock;
 public final class PooledWorkers<STATE, ITEM> extends BaseShareableLockable {
 	protected static final Duration DEFAULT_MAX_WAIT = Duration.ofMinutes(5);
 
+	private static final long STARTUP_POLL_MILLIS = 100;
+	private static final long ADOPTION_POLL_MILLIS = 100;
+	protected static final Duration DEFAULT_ADAPTIVE_INTERVAL = Duration.ofSeconds(1);
+
+	/**
+	 * <p>
+	 * The strategies available for queueing the work items between the producers and the worker
+	 * threads.
+	 * </p>
+	 */
+	public static enum QueueStrategy {
+		//
+		/**
+		 * <p>
+		 * All producers and workers share a single FIFO queue (the default). Items are dequeued in
+		 * the order they were submitted, but the queue's lock becomes a contention point as the
+		 * number of threads grows.
+		 * </p>
+		 */
+		SHARED,
+
+		/**
+		 * <p>
+		 * Items are spread over per-worker lanes, and idle workers steal items from the other
+		 * workers' lanes (see {@link WorkStealingBlockingQueue}). This scales much better with
+		 * many threads, but items are no longer dequeued in the order they were submitted.
+		 * </p>
+		 */
+		WORK_STEALING,
+
+		/**
+		 * <p>
+		 * Items are dequeued in the order set by the {@link Builder#priority(Comparator)
+		 * comparator} (lowest first), or their natural ordering if none is given, and in the order
+		 * they were submitted when they compare as equal (see
+		 * {@link BoundedPriorityBlockingQueue}). This lets small or urgent items overtake large or
+		 * less urgent ones, at the cost of a slightly more expensive queue. Items which always
+		 * compare as lower can starve the rest, so if that's a concern, order the items by a
+		 * deadline (see {@link PooledWorkers#earliestDeadlineFirst(Function)}) which gets closer
+		 * as they wait.
+		 * </p>
+		 */
+		PRIORITY,
+
+		/**
+		 * <p>
+		 * Items are routed to per-worker lanes by their {@link Builder#partitionKey(Function)
+		 * key}, and each worker only processes the items in its own lane (see
+		 * {@link PartitionedBlockingQueue}). Items with the same key are thus processed one at a
+		 * time, in the order they were submitted, while items with different keys are processed in
+		 * parallel (unless they happen to share a lane) - all without the workers ever blocking on
+		 * each other. A hot key can only ever keep one worker busy, though, and its lane's other
+		 * keys wait behind it. The number of active workers can't {@link Builder#minThreads(int)
+		 * adapt} with this strategy, since every lane needs its worker. If a worker fails to
+		 * initialize, or exits early (i.e. it's interrupted), its lanes are taken over by the
+		 * first of the remaining workers to look for work.
+		 * </p>
+		 */
+		PARTITIONED
+		//
+		;
+	}
+
+	/**
+	 * <p>
+	 * Returns a comparator for use with {@link QueueStrategy#PRIORITY} which orders items
+	 * earliest-deadline-first, as computed by the given function. Items without a deadline (for
+	 * which the function returns {@code null}) go after all the items which have one. Deriving the
+	 * deadline from the submission time (i.e. submission time plus an allowance which is shorter
+	 * for more urgent items) ensures that every item eventually becomes the most urgent one.
+	 * </p>
+	 *
+	 * @param <T>
+	 *            the type of the items
+	 * @param deadline
+	 *            the function which returns each item's deadline
+	 * @return a comparator which orders items earliest-deadline-first
+	 * @throws NullPointerException
+	 *             if {@code deadline} is {@code null}
+	 */
+	public static <T> Comparator<T> earliestDeadlineFirst(Function<? super T, ? extends Instant> deadline) {
+		Objects.requireNonNull(deadline, "Must provide a non-null deadline function");
+		return Comparator.comparing(deadline, Comparator.nullsLast(Comparator.naturalOrder()));
+	}
+
 	protected final Logger log = LoggerFactory.getLogger(getClass());
 
 	private final BlockingQueue<ITEM> workQueue;
+	private final PartitionedBlockingQueue<ITEM> partitions;
+	private final AtomicInteger nextLane = new AtomicInteger(0);
+	private final Queue<BlockingQueue<ITEM>> orphanedLanes = new ConcurrentLinkedQueue<>();
 	private final List<Future<?>> futures;
 	private final AtomicInteger activeCounter;
 	private final AtomicBoolean aborted = new AtomicBoolean(false);
 	private final AtomicBoolean terminated = new AtomicBoolean(false);
 	private final int threadCount;
-	private final ThreadPoolExecutor executor;
-	private final Collection<Thread> threads = new ArrayList<>();
-	private final Set<Long> blocked = new HashSet<>();
+	private final ExecutorService executor;
+	private final boolean ownExecutor;
+	private final Set<Waiter> waiters = ConcurrentHashMap.newKeySet();
+	private final Throttle throttle;
+	private final Limiter limiter;
+	private final LongAdder submitted = new LongAdder();
+	private final LongAdder completed = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final boolean timed;
+	private final LatencyHistogram processingTime = new LatencyHistogram();
+	private final LatencyHistogram workerWaitTime = new LatencyHistogram();
+	private final LatencyHistogram producerWaitTime = new LatencyHistogram();
+	private final AtomicReference<ObjectName> objectName = new AtomicReference<>();
+	private final Map<Identity, Deque<CompletableFuture<Object>>> futuresByItem = new ConcurrentHashMap<>();
+	private final List<ITEM> returned = Collections.synchronizedList(new ArrayList<>());
 
 	private final CountDownLatch startupLatch;
 
+	/**
+	 * <p>
+	 * Wraps an item so it's compared by identity, which is how {@link #submit(Object) submitted}
+	 * items are matched with their futures: the items' own {@code equals()} may consider distinct
+	 * items equal, or be expensive.
+	 * </p>
+	 */
+	private static final class Identity {
+		private final Object item;
+
+		private Identity(Object item) {
+			this.item = item;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(this.item);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return (obj instanceof Identity) && (((Identity) obj).item == this.item);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Tracks whether a worker thread is blocked waiting for work, so the shutdown only interrupts
+	 * the threads which are actually waiting. The flag is only accessed while holding this
+	 * object's monitor, so once a worker has cleared it, no interrupt can still be on its way, and
+	 * any interrupt which arrived after the worker dequeued an item can be safely discarded.
+	 * </p>
+	 */
+	private static final class Waiter {
+		private final Thread thread = Thread.currentThread();
+		private boolean blocked = false;
+
+		private synchronized void block() {
+			this.blocked = true;
+		}
+
+		private synchronized void unblock() {
+			this.blocked = false;
+			Thread.interrupted();
+		}
+
+		private synchronized boolean wake() {
+			if (!this.blocked) { return false; }
+			this.thread.interrupt();
+			return true;
+		}
+	}
+
+	/**
+	 * <p>
+	 * Keeps the number of workers actively processing items within the limit set by an
+	 * {@link AdaptiveConcurrencyLimit}, which is periodically fed the measured throughput, per-item
+	 * latency and queue depth. Each worker holds a fixed slot number, and those whose slot is at or
+	 * above the current limit park until the limit grows again, or the work is done. The samples
+	 * are taken by whichever worker finishes an item once the sampling interval has elapsed, so no
+	 * additional thread is needed.
+	 * </p>
+	 */
+	private final class Throttle {
+		private final AdaptiveConcurrencyLimit controller;
+		private final long intervalNanos;
+		private final AtomicInteger slots = new AtomicInteger(0);
+		private final ReentrantLock lock = new ReentrantLock();
+		private final Condition limitChanged = this.lock.newCondition();
+		private final ReentrantLock sampleLock = new ReentrantLock();
+		private final LongAdder completed = new LongAdder();
+		private final LongAdder busyNanos = new LongAdder();
+		private volatile int limit;
+		private volatile long nextSample;
+		private long lastSample;
+		private long lastCompleted = 0;
+		private long lastBusyNanos = 0;
+
+		private Throttle(int min, int max, Duration interval) {
+			this.controller = new AdaptiveConcurrencyLimit(min, max);
+			this.limit = this.controller.getLimit();
+			this.intervalNanos = interval.toNanos();
+			this.lastSample = System.nanoTime();
+			this.nextSample = this.lastSample + this.intervalNanos;
+		}
+
+		private int nextSlot() {
+			return this.slots.getAndIncrement();
+		}
+
+		private boolean isParked(int slot) {
+			// Once the work is done, every worker helps drain the queue
+			return (slot >= this.limit) && !PooledWorkers.this.terminated.get()
+				&& !PooledWorkers.this.aborted.get();
+		}
+
+		private void awaitSlot(int slot) throws InterruptedException {
+			this.lock.lockInterruptibly();
+			try {
+				while (isParked(slot)) {
+					this.limitChanged.await();
+				}
+			} finally {
+				this.lock.unlock();
+			}
+		}
+
+		private void wakeAll() {
+			this.lock.lock();
+			try {
+				this.limitChanged.signalAll();
+			} finally {
+				this.lock.unlock();
+			}
+		}
+
+		private void completed(int items, long nanos) {
+			this.completed.add(items);
+			this.busyNanos.add(nanos);
+			final long now = System.nanoTime();
+			if (((now - this.nextSample) < 0) || !this.sampleLock.tryLock()) { return; }
+			try {
+				// Someone else may have taken the sample while we were getting here
+				if ((now - this.nextSample) < 0) { return; }
+				final long completed = this.completed.sum();
+				final long busyNanos = this.busyNanos.sum();
+				final int oldLimit = this.limit;
+				final int newLimit = this.controller.update(completed - this.lastCompleted, now - this.lastSample,
+					busyNanos - this.lastBusyNanos, PooledWorkers.this.workQueue.size());
+				this.lastCompleted = completed;
+				this.lastBusyNanos = busyNanos;
+				this.lastSample = now;
+				this.nextSample = now + this.intervalNanos;
+				if (newLimit != oldLimit) {
+					PooledWorkers.this.log.debug("Adjusting the worker limit from {} to {}", oldLimit, newLimit);
+					this.limit = newLimit;
+					if (newLimit > oldLimit) {
+						wakeAll();
+					}
+				}
+			} finally {
+				this.sampleLock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * <p>
+	 * Applies the rate limit and the in-flight limit before each item (or batch) is processed.
+	 * Both limits may change at any time. Workers waiting on either limit are woken up when the
+	 * work is aborted, so they can return their items to the queue instead of processing them.
+	 * </p>
+	 */
+	private final class Limiter {
+		private final TokenBucket rate;
+		private final AtomicInteger inFlight = new AtomicInteger(0);
+		private final AtomicInteger waiting = new AtomicInteger(0);
+		private final ReentrantLock lock = new ReentrantLock();
+		private final Condition changed = this.lock.newCondition();
+		private volatile int maxInFlight;
+
+		private Limiter(double rate, int burst, int maxInFlight) {
+			this.rate = new TokenBucket(rate, burst);
+			this.maxInFlight = Math.max(0, maxInFlight);
+		}
+
+		private boolean isFull() {
+			final int max = this.maxInFlight;
+			return ((max > 0) && (this.inFlight.get() >= max));
+		}
+
+		/**
+		 * <p>
+		 * Waits until the given items may be processed, and returns {@code true}, or returns
+		 * {@code false} if the work was aborted in the meantime. If this method returns
+		 * {@code true}, {@link #release()} must be invoked once the items are processed.
+		 * </p>
+		 */
+		private boolean acquire(int items) throws InterruptedException {
+			while (true) {
+				final int current = this.inFlight.get();
+				final int max = this.maxInFlight;
+				if ((max > 0) && (current >= max)) {
+					if (!await(this::isFull, 0)) { return false; }
+					continue;
+				}
+				if (this.inFlight.compareAndSet(current, current + 1)) {
+					break;
+				}
+			}
+			boolean ok = false;
+			try {
+				final long wait = this.rate.reserve(items);
+				if ((wait > 0) && !await(null, System.nanoTime() + wait)) { return false; }
+				ok = true;
+				return true;
+			} finally {
+				if (!ok) {
+					release();
+				}
+			}
+		}
+
+		private void release() {
+			this.inFlight.decrementAndGet();
+			// Our decrement is visible before we check for waiters, and waiters register before
+			// re-checking the count, so either they see the room we made or we see them
+			if (this.waiting.get() > 0) {
+				wakeAll();
+			}
+		}
+
+		/**
+		 * <p>
+		 * Waits while the condition holds (if given), or until the deadline (if no condition is
+		 * given). Returns {@code false} if the work was aborted, {@code true} otherwise.
+		 * </p>
+		 */
+		private boolean await(BooleanSupplier condition, long deadline) throws InterruptedException {
+			this.lock.lockInterruptibly();
+			try {
+				this.waiting.incrementAndGet();
+				try {
+					while (!PooledWorkers.this.aborted.get()) {
+						if (condition != null) {
+							if (!condition.getAsBoolean()) { return true; }
+							this.changed.await();
+						} else {
+							// Lifting the rate limit releases those who were already waiting on it
+							final long remaining = deadline - System.nanoTime();
+							if ((remaining <= 0) || (this.rate.getRate() <= 0)) { return true; }
+							this.changed.awaitNanos(remaining);
+						}
+					}
+					return false;
+				} finally {
+					this.waiting.decrementAndGet();
+				}
+			} finally {
+				this.lock.unlock();
+			}
+		}
+
+		private void wakeAll() {
+			this.lock.lock();
+			try {
+				this.changed.signalAll();
+			} finally {
+				this.lock.unlock();
+			}
+		}
+
+		private void setRate(double rate) {
+			this.rate.setRate(rate);
+			wakeAll();
+		}
+
+		private void setMaxInFlight(int maxInFlight) {
+			this.maxInFlight = Math.max(0, maxInFlight);
+			wakeAll();
+		}
+	}
+
 	private final class Task<EX extends Exception> implements Runnable {
 		private final Logger log = PooledWorkers.this.log;
 
 		private final boolean waitForWork;
 		private final PooledWorkersLogic<STATE, ITEM, EX> logic;
+		private final PooledWorkersFunction<STATE, ITEM, ?, EX> function;
+		private final int batchSize;
+		private final long batchLingerNanos;
+		private final boolean itemwise;
 
-		private Task(PooledWorkersLogic<STATE, ITEM, EX> logic, boolean waitForWork) {
+		private Task(PooledWorkersLogic<STATE, ITEM, EX> logic, boolean waitForWork, int batchSize,
+			Duration batchLinger) {
 			this.waitForWork = waitForWork;
 			this.logic = logic;
+			this.function = ((logic instanceof PooledWorkersFunction)
+				? (PooledWorkersFunction<STATE, ITEM, ?, EX>) logic
+				: null);
+			this.batchSize = batchSize;
+			this.batchLingerNanos = batchLinger.toNanos();
+			this.itemwise = ((this.function != null) || !PooledWorkers.overridesProcessBatch(logic));
 		}
 
 		@SuppressWarnings("unchecked")
@@ -108,45 +516,87 @@ public final class PooledWorkers<STATE, ITEM> extends BaseShareableLockable {
 
 		@Override
 		public void run() {
+			// Claim the lane before initializing, so it's handed over even if initialization fails
+			final List<BlockingQueue<ITEM>> lanes = new ArrayList<>(1);
+			lanes.add(workerQueue());
 			final STATE state;
 			try {
 				state = this.logic.initialize(PooledWorkers.this);
 			} catch (Exception t) {
+				PooledWorkers.this.orphaned(lanes);
 				PooledWorkers.this.startupLatch.countDown();
 				workerThreadExited("Failed to initialize the worker state", null, castException(t));
 				return;
 			}
 			PooledWorkers.this.activeCounter.incrementAndGet();
+			final Waiter waiter = new Waiter();
+			PooledWorkers.this.waiters.add(waiter);
+			final Throttle throttle = PooledWorkers.this.throttle;
+			final int slot = (throttle != null ? throttle.nextSlot() : 0);
+			final boolean measure = ((throttle != null) || PooledWorkers.this.timed);
+			final Limiter limiter = PooledWorkers.this.limiter;
+			// Each thread re-uses its own batch list, to avoid allocating one per batch
+			final List<ITEM> batch = (this.batchSize > 1 ? new ArrayList<>(this.batchSize) : null);
+			final List<ITEM> batchView = (batch != null ? Collections.unmodifiableList(batch) : null);
+			boolean first = true;
 			try {
-				boolean first = true;
 				while (!Thread.interrupted() && !PooledWorkers.this.aborted.get()) {
+					if ((throttle != null) && throttle.isParked(slot)) {
+						if (first) {
+							first = false;
+							PooledWorkers.this.startupLatch.countDown();
+						}
+						try {
+							throttle.awaitSlot(slot);
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+							workerThreadExited("Thread interrupted - worker exiting while parked", state, null);
+							return;
+						}
+						continue;
+					}
+
 					if (this.log.isDebugEnabled()) {
 						this.log.trace("Polling the queue...");
 					}
 					ITEM item = null;
+					boolean taken = false;
 					if (this.waitForWork && !PooledWorkers.this.terminated.get()) {
-						final Thread thread = Thread.currentThread();
+						boolean interrupted = false;
 						try {
-							PooledWorkers.this.blocked.add(thread.getId());
+							waiter.block();
 							if (first) {
 								first = false;
 								PooledWorkers.this.startupLatch.countDown();
 							}
-							item = PooledWorkers.this.workQueue.take();
+							// Check again now that we're flagged as blocked: either the shutdown
+							// will see the flag and interrupt us, or we'll see it and won't block
+							if (!PooledWorkers.this.terminated.get()) {
+								final long waitStart = (PooledWorkers.this.timed ? System.nanoTime() : 0);
+								item = take(lanes);
+								taken = true;
+								if (PooledWorkers.this.timed) {
+									PooledWorkers.this.workerWaitTime.recordSince(waitStart);
+								}
+							}
 						} catch (InterruptedException e) {
-							thread.interrupt();
+							interrupted = true;
+						} finally {
+							waiter.unblock();
+						}
+						if (interrupted) {
+							Thread.currentThread().interrupt();
 							workerThreadExited("Thread interrupted - worker exiting the work polling loop", state,
 								null);
 							return;
-						} finally {
-							PooledWorkers.this.blocked.remove(thread.getId());
 						}
-					} else {
+					}
+					if (!taken) {
 						if (first) {
 							first = false;
 							PooledWorkers.this.startupLatch.countDown();
 						}
-						item = PooledWorkers.this.workQueue.poll();
+						item = poll(lanes);
 						if (item == null) {
 							workerThreadExited("Queue empty - worker exiting the work polling loop", state, null);
 							return;
@@ -157,22 +607,233 @@ public final class PooledWorkers<STATE, ITEM> extends BaseShareableLockable {
 						this.log.trace("Polled {}", item);
 					}
 
+					if (batch != null) {
+						batch.add(item);
+						fillBatch(lanes, batch);
+						if (!awaitLimits(limiter, null, batch, state)) {
+							batch.clear();
+							if (Thread.currentThread().isInterrupted()) { return; }
+							continue;
+						}
+						if (this.itemwise) {
+							// Each item needs its own result (or its own failure), so they're
+							// processed one at a time
+							try {
+								for (ITEM i : batch) {
+									process(state, i, throttle, measure);
+								}
+							} finally {
+								limiter.release();
+								batch.clear();
+							}
+							continue;
+						}
+						final long start = (measure ? System.nanoTime() : 0);
+						Exception raised = null;
+						try {
+							Thread.interrupted();
+							this.logic.processBatch(state, batchView);
+						} catch (Exception t) {
+							raised = t;
+							this.logic.handleBatchFailure(state, batchView, castException(t));
+						} finally {
+							limiter.release();
+							processed(throttle, batch.size(), (raised == null),
+								(measure ? System.nanoTime() - start : 0));
+							for (ITEM i : batch) {
+								PooledWorkers.this.completeFuture(i, null, raised);
+							}
+							batch.clear();
+						}
+						continue;
+					}
+
+					if (!awaitLimits(limiter, item, null, state)) {
+						if (Thread.currentThread().isInterrupted()) { return; }
+						continue;
+					}
 					try {
-						// Make sure the interruption status is cleared just before we invoke the
-						// processing method
-						Thread.interrupted();
-						this.logic.process(state, item);
-					} catch (Exception t) {
-						this.logic.handleFailure(state, item, castException(t));
+						process(state, item, throttle, measure);
+					} finally {
+						limiter.release();
 					}
 				}
 			} catch (Exception e) {
 				workerThreadExited("Unexpected exception raised", state, e);
 			} finally {
+				if (first) {
+					// We're leaving before ever polling (i.e. the work was aborted early), so we
+					// mustn't leave the shutdown waiting for us to start up
+					PooledWorkers.this.startupLatch.countDown();
+				}
+				PooledWorkers.this.waiters.remove(waiter);
+				PooledWorkers.this.orphaned(lanes);
 				PooledWorkers.this.activeCounter.decrementAndGet();
 				this.logic.cleanup(state);
 			}
 		}
+
+		/**
+		 * <p>
+		 * Waits until the rate and in-flight limits allow the item (or batch, if not {@code null})
+		 * to be processed, and returns {@code true}. If the work is aborted or the thread is
+		 * interrupted while waiting, the items are set aside (in their original order) to be
+		 * reported as not attempted by the shutdown, and {@code false} is returned, with the
+		 * interrupted status restored if it was the cause.
+		 * </p>
+		 */
+		private boolean awaitLimits(Limiter limiter, ITEM item, List<ITEM> batch, STATE state) {
+			boolean interrupted = false;
+			try {
+				if (limiter.acquire(batch != null ? batch.size() : 1)) { return true; }
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+			PooledWorkers.this.returned.addAll(batch != null ? batch : Collections.singletonList(item));
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+				workerThreadExited("Thread interrupted - worker exiting while waiting for the processing limits",
+					state, null);
+			}
+			return false;
+		}
+
+		private void process(STATE state, ITEM item, Throttle throttle, boolean measure) {
+			final long start = (measure ? System.nanoTime() : 0);
+			Object result = null;
+			Exception raised = null;
+			try {
+				// Make sure the interruption status is cleared just before we invoke the
+				// processing method
+				Thread.interrupted();
+				if (this.function != null) {
+					result = this.function.apply(state, item);
+				} else {
+					this.logic.process(state, item);
+				}
+			} catch (Exception t) {
+				raised = t;
+				this.logic.handleFailure(state, item, castException(t));
+			}
+			processed(throttle, 1, (raised == null), (measure ? System.nanoTime() - start : 0));
+			PooledWorkers.this.completeFuture(item, result, raised);
+		}
+
+		private void processed(Throttle throttle, int items, boolean ok, long nanos) {
+			(ok ? PooledWorkers.this.completed : PooledWorkers.this.failed).add(items);
+			if (throttle != null) {
+				throttle.completed(items, nanos);
+			}
+			if (PooledWorkers.this.timed) {
+				PooledWorkers.this.processingTime.record(nanos / items, items);
+			}
+		}
+
+		/**
+		 * <p>
+		 * Adds to the batch whatever items are immediately available in the queue, and then waits
+		 * for up to the configured linger time for more items to arrive until the batch is full.
+		 * Lingering is skipped when not waiting for work, or when the workers are shutting down.
+		 * </p>
+		 */
+		private void fillBatch(List<BlockingQueue<ITEM>> lanes, List<ITEM> batch) {
+			drainTo(lanes, batch);
+			if ((this.batchLingerNanos <= 0) || !this.waitForWork) { return; }
+
+			final long deadline = System.nanoTime() + this.batchLingerNanos;
+			while ((batch.size() < this.batchSize) && !PooledWorkers.this.terminated.get()
+				&& !PooledWorkers.this.aborted.get()) {
+				final long remaining = deadline - System.nanoTime();
+				if (remaining <= 0) {
+					break;
+				}
+				final ITEM next;
+				try {
+					next = poll(lanes, remaining);
+				} catch (InterruptedException e) {
+					// Process what we have, and let the main loop deal with the interruption
+					Thread.currentThread().interrupt();
+					break;
+				}
+				if (next == null) {
+					break;
+				}
+				batch.add(next);
+				drainTo(lanes, batch);
+			}
+		}
+
+		/**
+		 * <p>
+		 * Adds to the worker's lanes any lanes left behind by the workers which have exited. Only
+		 * partitioned queues have lanes to adopt.
+		 * </p>
+		 */
+		private void adoptLanes(List<BlockingQueue<ITEM>> lanes) {
+			if (PooledWorkers.this.partitions == null) { return; }
+			BlockingQueue<ITEM> lane = null;
+			while ((lane = PooledWorkers.this.orphanedLanes.poll()) != null) {
+				this.log.debug("Adopting a lane left behind by an exited worker");
+				lanes.add(lane);
+			}
+		}
+
+		private ITEM poll(List<BlockingQueue<ITEM>> lanes) {
+			adoptLanes(lanes);
+			for (int i = 0; i < lanes.size(); i++) {
+				final ITEM item = lanes.get(i).poll();
+				if (item != null) { return item; }
+			}
+			return null;
+		}
+
+		/**
+		 * <p>
+		 * Waits for up to {@code nanos} for an item from any of the worker's lanes. Only the first
+		 * lane can be waited on, so with a partitioned queue the wait is done in short intervals,
+		 * checking the other lanes (and looking for lanes to adopt) in between.
+		 * </p>
+		 */
+		private ITEM poll(List<BlockingQueue<ITEM>> lanes, long nanos) throws InterruptedException {
+			if (PooledWorkers.this.partitions == null) { return lanes.get(0).poll(nanos, TimeUnit.NANOSECONDS); }
+			final long deadline = System.nanoTime() + nanos;
+			while (true) {
+				ITEM item = poll(lanes);
+				if (item != null) { return item; }
+				final long remaining = deadline - System.nanoTime();
+				if (remaining <= 0) { return null; }
+				item = lanes.get(0).poll(
+					Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(PooledWorkers.ADOPTION_POLL_MILLIS)),
+					TimeUnit.NANOSECONDS);
+				if (item != null) { return item; }
+			}
+		}
+
+		private ITEM take(List<BlockingQueue<ITEM>> lanes) throws InterruptedException {
+			if (PooledWorkers.this.partitions == null) { return lanes.get(0).take(); }
+			while (true) {
+				ITEM item = poll(lanes);
+				if (item != null) { return item; }
+				try {
+					item = lanes.get(0).poll(PooledWorkers.ADOPTION_POLL_MILLIS, TimeUnit.MILLISECONDS);
+				} catch (InterruptedException e) {
+					// If we're being woken up to finish the work, the other lanes may have received
+					// items while we waited on the first one, and they must not be left behind
+					if (PooledWorkers.this.terminated.get() && !PooledWorkers.this.aborted.get()) {
+						item = poll(lanes);
+						if (item != null) { return item; }
+					}
+					throw e;
+				}
+				if (item != null) { return item; }
+			}
+		}
+
+		private void drainTo(List<BlockingQueue<ITEM>> lanes, List<ITEM> batch) {
+			for (int i = 0; (i < lanes.size()) && (batch.size() < this.batchSize); i++) {
+				lanes.get(i).drainTo(batch, this.batchSize - batch.size());
+			}
+		}
 	}
 
 	/**
@@ -186,58 +847,308 @@ public final class PooledWorkers<STATE, ITEM> extends BaseShareableLockable {
 	 */
 	protected <EX extends Exception> PooledWorkers(PooledWorkersLogic<STATE, ITEM, EX> logic, int threadCount,
 		String name, int backlogSize, Collection<? extends ITEM> items, boolean waitForWork) {
-		Objects.requireNonNull(logic,
+		this(new Builder<STATE, ITEM, EX>() //
+			.logic(logic) //
+			.threads(threadCount) //
+			.name(name) //
+			.backlogLimit(backlogSize) //
+			.items(items) //
+			.waitForWork(waitForWork) //
+		);
+	}
+
+	private <EX extends Exception> PooledWorkers(Builder<STATE, ITEM, EX> builder) {
+		final PooledWorkersLogic<STATE, ITEM, EX> logic = Objects.requireNonNull(builder.logic,
 			"Must provide a valid PooledWorkersLogic instance with which to perform the work");
-		this.workQueue = (backlogSize <= 0 ? new LinkedBlockingQueue<>() : new ArrayBlockingQueue<>(backlogSize));
+		final int threadCount = builder.threads;
+		final String name = builder.name;
+		final int backlogSize = builder.backlogLimit;
+		final Collection<? extends ITEM> items = builder.items;
+		switch (builder.queueStrategy) {
+			case WORK_STEALING:
+				this.workQueue = new WorkStealingBlockingQueue<>(Math.max(1, threadCount), backlogSize);
+				break;
+			case PRIORITY:
+				this.workQueue = new BoundedPriorityBlockingQueue<>(builder.priority, backlogSize);
+				break;
+			case PARTITIONED:
+				this.workQueue = new PartitionedBlockingQueue<>(Math.max(1, threadCount), backlogSize,
+					PooledWorkers.partitioner(Objects.requireNonNull(builder.partitionKey,
+						"Must provide a partition key function to use the PARTITIONED queue strategy"),
+						Math.max(1, threadCount)));
+				break;
+			case SHARED:
+			default:
+				this.workQueue = (backlogSize <= 0 ? new LinkedBlockingQueue<>()
+					: new ArrayBlockingQueue<>(backlogSize));
+				break;
+		}
+		this.partitions = ((this.workQueue instanceof PartitionedBlockingQueue)
+			? (PartitionedBlockingQueue<ITEM>) this.workQueue
+			: null);
 		if ((items != null) && !items.isEmpty()) {
-			// TODO: What if the list of items exceeds the maximum backlog size?
+			// No worker is running yet to make room, so they must all fit in the queue right away
+			if (items.size() > this.workQueue.remainingCapacity()) {
+				throw new IllegalArgumentException(String.format(
+					"The %d initial work items exceed the backlog limit of %d", items.size(), backlogSize));
+			}
 			this.workQueue.addAll(items);
+			this.submitted.add(items.size());
 		}
 		this.futures = new LinkedList<>();
 		this.activeCounter = new AtomicInteger(0);
 
 		this.threadCount = Math.max(1, threadCount);
+		int minThreads = builder.minThreads;
+		if ((this.partitions != null) && (minThreads > 0)) {
+			this.log.warn("The number of active workers can't adapt when using a partitioned queue, using all {}",
+				this.threadCount);
+			minThreads = 0;
+		}
+		this.throttle = (((minThreads > 0) && (minThreads < this.threadCount))
+			? new Throttle(minThreads, this.threadCount, builder.adaptiveInterval)
+			: null);
+		this.limiter = new Limiter(builder.rateLimit, builder.rateBurst, builder.maxInFlight);
+		this.timed = builder.metrics;
 		this.activeCounter.set(0);
 		this.futures.clear();
 		this.terminated.set(false);
-		this.threads.clear();
-		Task<EX> task = new Task<>(logic, waitForWork);
-		ThreadFactory threadFactory = Executors.defaultThreadFactory();
-		String finalName = StringUtils.strip(name);
-		final String threadNameFormat = String.format("%s-%%0%dd", finalName, String.valueOf(threadCount).length());
-		if (!StringUtils.isEmpty(finalName)) {
-			final ThreadGroup group = new ThreadGroup(String.format("Threads for PooledWorkers task [%s]", finalName));
-			threadFactory = new ThreadFactory() {
-				private final AtomicLong counter = new AtomicLong(0);
-
-				@Override
-				public Thread newThread(Runnable r) {
-					Thread t = new Thread(group, r, String.format(threadNameFormat, this.counter.incrementAndGet()));
-					PooledWorkers.this.threads.add(t);
-					return t;
-				}
-			};
+		Task<EX> task = new Task<>(logic, builder.waitForWork, builder.batchSize, builder.batchLinger);
+		if (builder.executor != null) {
+			if ((builder.executor instanceof ThreadPoolExecutor)
+				&& (((ThreadPoolExecutor) builder.executor).getMaximumPoolSize() < this.threadCount)) {
+				throw new IllegalArgumentException(String.format(
+					"The given executor can run at most %d threads, but %d worker threads were requested",
+					((ThreadPoolExecutor) builder.executor).getMaximumPoolSize(), this.threadCount));
+			}
+			this.executor = builder.executor;
+			this.ownExecutor = false;
+		} else {
+			ThreadFactory threadFactory = builder.threadFactory;
+			if (threadFactory == null) {
+				threadFactory = newThreadFactory(name, this.threadCount, builder.virtualThreads);
+			}
+			this.executor = new ThreadPoolExecutor(this.threadCount, this.threadCount, 30, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(), threadFactory);
+			this.ownExecutor = true;
 		}
-		this.executor = new ThreadPoolExecutor(this.threadCount, this.threadCount, 30, TimeUnit.SECONDS,
-			new LinkedBlockingQueue<>(), threadFactory);
-		this.startupLatch = new CountDownLatch(threadCount);
+		this.startupLatch = new CountDownLatch(this.threadCount);
 		for (int i = 0; i < this.threadCount; i++) {
 			this.futures.add(this.executor.submit(task));
 		}
-		this.executor.shutdown();
+		if (this.ownExecutor) {
+			this.executor.shutdown();
+		}
+		if (builder.jmx) {
+			registerMBean(name);
+		}
 	}
 
-	public boolean isProcessing() {
-		try (SharedAutoLock lock = sharedAutoLock()) {
-			return (!this.terminated.get() && !this.aborted.get());
+	/**
+	 * <p>
+	 * Maps each item's key to a lane by way of its hash code, mixed with
+	 * {@link BucketHasher.Algorithm#XXHASH64} so keys with poorly-distributed hash codes still get
+	 * spread evenly. The per-thread hasher keeps this garbage-free.
+	 * </p>
+	 */
+	private static <ITEM> ToIntFunction<ITEM> partitioner(Function<? super ITEM, ?> key, int lanes) {
+		final long maxLane = (lanes - 1);
+		return (item) -> (int) BucketHasher.Algorithm.XXHASH64.hasher()
+			.hash(Objects.hashCode(key.apply(item)), maxLane);
+	}
+
+	/**
+	 * <p>
+	 * Returns {@code true} if the logic provides its own
+	 * {@link PooledWorkersLogic#processBatch(Object, List)}. If it doesn't, the default one would
+	 * hide each item's failure from the metrics and the futures, so the items are processed one
+	 * at a time instead.
+	 * </p>
+	 */
+	private static boolean overridesProcessBatch(PooledWorkersLogic<?, ?, ?> logic) {
+		try {
+			return (logic.getClass().getMethod("processBatch", Object.class, List.class)
+				.getDeclaringClass() != PooledWorkersLogic.class);
+		} catch (NoSuchMethodException e) {
+			return false;
 		}
 	}
 
 	/**
-	 * Callback to process the termination of a worker thread. Invoked before
-	 * {@link PooledWorkersLogic#cleanup(Object)} is invoked upon the passed state. If {@code state}
-	 * is {@code null}, it means that the initialization of the thread's state data failed and thus
-	 * {@code thrown} will not be {@code null}. If {@code thrown} is not {@code null} it means an
+	 * <p>
+	 * Returns the queue the calling worker should take its items from: its own lane if the queue
+	 * is partitioned (each worker claims the next one as it starts), or the work queue otherwise.
+	 * </p>
+	 */
+	private BlockingQueue<ITEM> workerQueue() {
+		if (this.partitions == null) { return this.workQueue; }
+		return this.partitions.lane(this.nextLane.getAndIncrement() % this.partitions.getLanes());
+	}
+
+	/**
+	 * <p>
+	 * Hands over the lanes of a worker which is exiting, so the remaining workers adopt them:
+	 * otherwise their items would never be processed. Lanes aren't handed over once the work is
+	 * aborted, since their items will be returned instead.
+	 * </p>
+	 */
+	private void orphaned(List<BlockingQueue<ITEM>> lanes) {
+		if ((this.partitions == null) || this.aborted.get()) { return; }
+		this.orphanedLanes.addAll(lanes);
+	}
+
+	private void registerMBean(String name) {
+		final StringBuilder b = new StringBuilder(PooledWorkersMXBean.class.getPackage().getName()) //
+			.append(":type=PooledWorkers");
+		final String finalName = StringUtils.strip(name);
+		if (!StringUtils.isEmpty(finalName)) {
+			b.append(",name=").append(ObjectName.quote(finalName));
+		}
+		// Several instances may share the same name, so this keeps them apart
+		b.append(",id=").append(Integer.toHexString(System.identityHashCode(this)));
+		try {
+			final ObjectName objectName = new ObjectName(b.toString());
+			ManagementFactory.getPlatformMBeanServer().registerMBean(new MXBean(), objectName);
+			this.objectName.set(objectName);
+		} catch (JMException e) {
+			this.log.warn("Failed to register the JMX MBean for this instance, continuing without it", e);
+		}
+	}
+
+	private void unregisterMBean() {
+		final ObjectName objectName = this.objectName.getAndSet(null);
+		if (objectName == null) { return; }
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			server.unregisterMBean(objectName);
+		} catch (JMException e) {
+			this.log.warn("Failed to unregister the JMX MBean [{}]", objectName, e);
+		}
+	}
+
+	private final class MXBean implements PooledWorkersMXBean {
+		@Override
+		public long getSubmitted() {
+			return PooledWorkers.this.submitted.sum();
+		}
+
+		@Override
+		public long getCompleted() {
+			return PooledWorkers.this.completed.sum();
+		}
+
+		@Override
+		public long getFailed() {
+			return PooledWorkers.this.failed.sum();
+		}
+
+		@Override
+		public int getThreadCount() {
+			return PooledWorkers.this.threadCount;
+		}
+
+		@Override
+		public int getActiveWorkers() {
+			return PooledWorkers.this.activeCounter.get();
+		}
+
+		@Override
+		public int getWorkerLimit() {
+			return PooledWorkers.this.getWorkerLimit();
+		}
+
+		@Override
+		public int getQueueSize() {
+			return PooledWorkers.this.workQueue.size();
+		}
+
+		@Override
+		public LatencyHistogram.Snapshot getProcessingTime() {
+			return PooledWorkers.this.processingTime.snapshot();
+		}
+
+		@Override
+		public LatencyHistogram.Snapshot getWorkerWaitTime() {
+			return PooledWorkers.this.workerWaitTime.snapshot();
+		}
+
+		@Override
+		public LatencyHistogram.Snapshot getProducerWaitTime() {
+			return PooledWorkers.this.producerWaitTime.snapshot();
+		}
+	}
+
+	private ThreadFactory newThreadFactory(String name, int threadCount, boolean virtualThreads) {
+		ThreadFactory virtual = null;
+		if (virtualThreads) {
+			if (VirtualThreads.isSupported()) {
+				virtual = VirtualThreads.newThreadFactory();
+			} else {
+				this.log.warn("Virtual threads aren't supported by this JVM, using platform threads instead");
+			}
+		}
+
+		final String finalName = StringUtils.strip(name);
+		if (StringUtils.isEmpty(finalName)) { return Tools.coalesce(virtual, Executors.defaultThreadFactory()); }
+
+		final String threadNameFormat = String.format("%s-%%0%dd", finalName, String.valueOf(threadCount).length());
+		final AtomicLong counter = new AtomicLong(0);
+		if (virtual != null) {
+			// Virtual threads can't belong to a custom ThreadGroup, so we only name them
+			final ThreadFactory factory = virtual;
+			return (r) -> {
+				Thread t = factory.newThread(r);
+				t.setName(String.format(threadNameFormat, counter.incrementAndGet()));
+				return t;
+			};
+		}
+
+		final ThreadGroup group = new ThreadGroup(String.format("Threads for PooledWorkers task [%s]", finalName));
+		return (r) -> new Thread(group, r, String.format(threadNameFormat, counter.incrementAndGet()));
+	}
+
+	/**
+	 * <p>
+	 * Forcibly stops the worker threads: if we own the executor we shut it down, but if it was
+	 * provided to us, we only cancel our own tasks.
+	 * </p>
+	 */
+	private void stopWorkers() {
+		if (this.ownExecutor) {
+			this.executor.shutdownNow();
+		} else {
+			this.futures.forEach((f) -> f.cancel(true));
+		}
+	}
+
+	private void awaitWorkers(long timeout, TimeUnit unit) throws InterruptedException {
+		if (this.ownExecutor) {
+			this.executor.awaitTermination(timeout, unit);
+			return;
+		}
+		final long deadline = System.nanoTime() + unit.toNanos(timeout);
+		for (Future<?> future : this.futures) {
+			try {
+				future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+			} catch (ExecutionException | CancellationException e) {
+				// The task is done, which is all we care about
+			} catch (TimeoutException e) {
+				return;
+			}
+		}
+	}
+
+	public boolean isProcessing() {
+		try (SharedAutoLock lock = sharedAutoLock()) {
+			return (!this.terminated.get() && !this.aborted.get());
+		}
+	}
+
+	/**
+	 * Callback to process the termination of a worker thread. Invoked before
+	 * {@link PooledWorkersLogic#cleanup(Object)} is invoked upon the passed state. If {@code state}
+	 * is {@code null}, it means that the initialization of the thread's state data failed and thus
+	 * {@code thrown} will not be {@code null}. If {@code thrown} is not {@code null} it means an
 	 * unexpected exception was raised during normal processing of the queue (i.e. an
 	 * {@link OutOfMemoryError} or some other unforeseeable problem), or during initialization (see
 	 * the previous case when {@code state} is {@code null}). The {@code message} is never
@@ -271,7 +1182,14 @@ public final class PooledWorkers<STATE, ITEM> extends BaseShareableLockable {
 	 */
 	public final void addWorkItem(ITEM item) throws InterruptedException {
 		if (item == null) { throw new NullPointerException("Must provide a non-null work item"); }
-		shareLocked(() -> this.workQueue.put(item));
+		shareLocked(() -> {
+			final long start = (this.timed ? System.nanoTime() : 0);
+			this.workQueue.put(item);
+			if (this.timed) {
+				this.producerWaitTime.recordSince(start);
+			}
+		});
+		this.submitted.increment();
 	}
 
 	/**
@@ -292,7 +1210,20 @@ public final class PooledWorkers<STATE, ITEM> extends BaseShareableLockable {
 			millis = maxWait.toMillis();
 		}
 		final long finalMillis = millis;
-		return shareLocked(() -> this.workQueue.offer(item, finalMillis, TimeUnit.MILLISECONDS));
+		final boolean added = shareLocked(() -> {
+			final long start = (this.timed ? System.nanoTime() : 0);
+			try {
+				return this.workQueue.offer(item, finalMillis, TimeUnit.MILLISECONDS);
+			} finally {
+				if (this.timed) {
+					this.producerWaitTime.recordSince(start);
+				}
+			}
+		});
+		if (added) {
+			this.submitted.increment();
+		}
+		return added;
 	}
 
 	/**
@@ -307,12 +1238,104 @@ public final class PooledWorkers<STATE, ITEM> extends BaseShareableLockable {
 	 */
 	public final boolean addWorkItemNonblock(ITEM item) {
 		if (item == null) { throw new NullPointerException("Must provide a non-null work item"); }
-		return shareLocked(() -> this.workQueue.offer(item));
+		final boolean added = shareLocked(() -> this.workQueue.offer(item));
+		if (added) {
+			this.submitted.increment();
+		}
+		return added;
+	}
+
+	/**
+	 * Adds {@code item} to this instance's work queue like {@link #addWorkItem(Object)} does
+	 * (blocking if the queue capacity is exhausted), and returns a future which completes once the
+	 * item is processed: with the result returned by the logic if it's a
+	 * {@link PooledWorkersFunction} (or {@code null} otherwise), or exceptionally with the
+	 * exception raised while processing it. When processing batches with logic which overrides
+	 * {@link PooledWorkersLogic#processBatch(Object, List)}, the future completes when the whole
+	 * batch does (exceptionally if the batch fails). The future is cancelled if the item is removed
+	 * from the queue without being processed (i.e. by {@link #clearWorkItems()} or when the work
+	 * is aborted), and fails with an {@link IllegalStateException} if this instance is no longer
+	 * accepting work.
+	 * <p>
+	 * The futures are completed by the worker threads, so any dependent stages which aren't
+	 * themselves asynchronous will run on them. Items are matched with their futures by identity,
+	 * so the same instance shouldn't be submitted through this method and added through any of
+	 * the others at the same time. The {@code RESULT} type must match the result type of the
+	 * {@link PooledWorkersFunction} (or be {@link Void} for any other logic).
+	 * </p>
+	 *
+	 * @param <RESULT>
+	 *            the type of the item's result
+	 * @param item
+	 * @return a future which completes once the item is processed
+	 * @throws InterruptedException
+	 * @throws NullPointerException
+	 *             if {@code item} is {@code null}
+	 */
+	@SuppressWarnings("unchecked")
+	public final <RESULT> CompletableFuture<RESULT> submit(ITEM item) throws InterruptedException {
+		if (item == null) { throw new NullPointerException("Must provide a non-null work item"); }
+		try (SharedAutoLock lock = sharedAutoLock()) {
+			if (this.terminated.get() || this.aborted.get()) {
+				return CompletableFuture.failedFuture(new IllegalStateException("No longer accepting work"));
+			}
+			// The future must be in place before the item is queued, since it may be processed
+			// right away
+			final Identity key = new Identity(item);
+			final CompletableFuture<Object> future = new CompletableFuture<>();
+			this.futuresByItem.compute(key, (k, q) -> {
+				final Deque<CompletableFuture<Object>> futures = (q != null ? q : new ArrayDeque<>());
+				futures.addLast(future);
+				return futures;
+			});
+			boolean added = false;
+			try {
+				addWorkItem(item);
+				added = true;
+			} finally {
+				if (!added) {
+					this.futuresByItem.computeIfPresent(key, (k, q) -> {
+						q.remove(future);
+						return (q.isEmpty() ? null : q);
+					});
+				}
+			}
+			return (CompletableFuture<RESULT>) (CompletableFuture<?>) future;
+		}
+	}
+
+	private CompletableFuture<Object> takeFuture(ITEM item) {
+		// Don't pay for the lookup unless something was submitted
+		if (this.futuresByItem.isEmpty()) { return null; }
+		@SuppressWarnings("unchecked")
+		final CompletableFuture<Object>[] future = new CompletableFuture[1];
+		this.futuresByItem.computeIfPresent(new Identity(item), (k, q) -> {
+			future[0] = q.pollFirst();
+			return (q.isEmpty() ? null : q);
+		});
+		return future[0];
+	}
+
+	private void completeFuture(ITEM item, Object result, Exception raised) {
+		final CompletableFuture<Object> future = takeFuture(item);
+		if (future == null) { return; }
+		if (raised != null) {
+			future.completeExceptionally(raised);
+		} else {
+			future.complete(result);
+		}
+	}
+
+	private void cancelFuture(ITEM item) {
+		final CompletableFuture<Object> future = takeFuture(item);
+		if (future != null) {
+			future.cancel(false);
+		}
 	}
 
 	/**
 	 * Removes all remaining work items from the queue and returns them, but without stopping the
-	 * workers.
+	 * workers. The futures for any {@link #submit(Object) submitted} items are cancelled.
 	 *
 	 * @return all remaining work items from the queue
 	 */
@@ -320,6 +1343,7 @@ public final class PooledWorkers<STATE, ITEM> extends BaseShareableLockable {
 		try (SharedAutoLock lock = sharedAutoLock()) {
 			List<ITEM> ret = new ArrayList<>();
 			this.workQueue.drainTo(ret);
+			ret.forEach(this::cancelFuture);
 			return ret;
 		}
 	}
@@ -342,6 +1366,117 @@ public final class PooledWorkers<STATE, ITEM> extends BaseShareableLockable {
 		return shareLocked(this.workQueue::remainingCapacity);
 	}
 
+	/**
+	 * Returns a snapshot of this instance's metrics. The item counts are always collected, but the
+	 * durations are only measured if this instance was {@link Builder#metrics(boolean) configured
+	 * to do so}.
+	 *
+	 * @return a snapshot of this instance's metrics
+	 */
+	public final PooledWorkersMetrics getMetrics() {
+		return new PooledWorkersMetrics(this.submitted.sum(), this.completed.sum(), this.failed.sum(),
+			this.threadCount, this.activeCounter.get(), getWorkerLimit(), this.workQueue.size(),
+			this.processingTime.snapshot(), this.workerWaitTime.snapshot(), this.producerWaitTime.snapshot());
+	}
+
+	/**
+	 * Returns the name this instance's JMX MBean was registered under, or {@code null} if it
+	 * wasn't {@link Builder#jmx(boolean) registered} (or has been unregistered after the work
+	 * completed).
+	 *
+	 * @return the name this instance's JMX MBean was registered under
+	 */
+	public final ObjectName getObjectName() {
+		return this.objectName.get();
+	}
+
+	/**
+	 * Returns the number of worker threads, which is also the maximum number of workers that may
+	 * process items concurrently.
+	 *
+	 * @return the number of worker threads
+	 */
+	public final int getThreadCount() {
+		return this.threadCount;
+	}
+
+	/**
+	 * Returns whether the number of workers actively processing items adapts to the measured
+	 * throughput (see {@link Builder#minThreads(int)}).
+	 *
+	 * @return {@code true} if the number of active workers is adaptive, {@code false} otherwise
+	 */
+	public final boolean isAdaptive() {
+		return (this.throttle != null);
+	}
+
+	/**
+	 * Returns the number of workers currently allowed to process items concurrently. This is
+	 * always the {@link #getThreadCount() thread count} unless the number of active workers is
+	 * {@link #isAdaptive() adaptive}, in which case it changes over time.
+	 *
+	 * @return the number of workers currently allowed to process items concurrently
+	 */
+	public final int getWorkerLimit() {
+		return (this.throttle != null ? this.throttle.limit : this.threadCount);
+	}
+
+	/**
+	 * Returns the maximum number of items processed per second, or {@code 0} if there's no limit
+	 * (see {@link Builder#rateLimit(double)}).
+	 *
+	 * @return the maximum number of items processed per second
+	 */
+	public final double getRateLimit() {
+		return this.limiter.rate.getRate();
+	}
+
+	/**
+	 * Changes the maximum number of items processed per second, which applies to the items
+	 * processed from then on (see {@link Builder#rateLimit(double)}). Lifting the limit also
+	 * releases the workers already waiting on it.
+	 *
+	 * @param rateLimit
+	 *            the maximum number of items processed per second, or {@code 0} (or less) for no
+	 *            limit
+	 * @throws IllegalArgumentException
+	 *             if {@code rateLimit} is {@link Double#NaN NaN} or infinite
+	 */
+	public final void setRateLimit(double rateLimit) {
+		this.limiter.setRate(rateLimit);
+	}
+
+	/**
+	 * Returns the maximum number of items (or batches) processed concurrently, or {@code 0} if
+	 * only the number of threads limits it (see {@link Builder#maxInFlight(int)}).
+	 *
+	 * @return the maximum number of items (or batches) processed concurrently
+	 */
+	public final int getMaxInFlight() {
+		return this.limiter.maxInFlight;
+	}
+
+	/**
+	 * Changes the maximum number of items (or batches) processed concurrently. Lowering it doesn't
+	 * interrupt the items already being processed, so it takes effect as they complete.
+	 *
+	 * @param maxInFlight
+	 *            the maximum number of items (or batches) processed concurrently, or {@code 0} (or
+	 *            less) to only be limited by the number of threads
+	 */
+	public final void setMaxInFlight(int maxInFlight) {
+		this.limiter.setMaxInFlight(maxInFlight);
+	}
+
+	/**
+	 * Returns the number of items (or batches) currently being processed.
+	 *
+	 * @return the number of items (or batches) currently being processed
+	 */
+	public final int getInFlight() {
+		return this.limiter.inFlight.get();
+	}
+
 	/**
 	 * Returns the default maximum wait unit count configured for this instance. The default
 	 * implementation simply returns {@link #DEFAULT_MAX_WAIT}. Subclasses should override this
@@ -353,6 +1488,14 @@ public final class PooledWorkers<STATE, ITEM> extends BaseShareableLockable {
 		return PooledWorkers.DEFAULT_MAX_WAIT;
 	}
 
+	private void wakeWaiters() {
+		for (Waiter w : this.waiters) {
+			if (w.wake()) {
+				this.log.debug("Interrupted thread [{}] ({})", w.thread.getName(), w.thread.getId());
+			}
+		}
+	}
+
 	private List<ITEM> shutdown(boolean abort, Duration maxWait) {
 		try (MutexAutoLock lock = mutexAutoLock()) {
 			if (this.executor == null) { return null; }
@@ -364,337 +1507,847 @@ public final class PooledWorkers<STATE, ITEM> extends BaseShareableLockable {
 				this.aborted.set(abort);
 				this.log.debug("Signaling work completion for the workers");
 				this.terminated.set(true);
+				if (this.throttle != null) {
+					// Release any parked workers so they can help finish the work
+					this.throttle.wakeAll();
+				}
+				if (abort) {
+					// Release any workers waiting on the limits, so they can return their items
+					this.limiter.wakeAll();
+				}
 
 				List<ITEM> remaining = new ArrayList<>();
 				try {
 					// We're done, we must wait until all workers are waiting
 					this.log.debug("Waiting for {} workers to finish processing", this.threadCount);
 
-					// First, wait for threads to finish starting up
-					try {
-						this.startupLatch.await();
-					} catch (InterruptedException e) {
-						this.log.debug("Interrupted while waiting for all threads to start up");
-					}
+					// First, wait for threads to finish starting up. If the executor can't run them
+					// all at once, some may be waiting for the others to exit, so keep waking up
+					// the blocked ones in the meantime to free up their threads.
+					try {
+						while (!this.startupLatch.await(PooledWorkers.STARTUP_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+							wakeWaiters();
+						}
+					} catch (InterruptedException e) {
+						this.log.debug("Interrupted while waiting for all threads to start up");
+					}
+
+					// Now, wake any blocked threads
+					wakeWaiters();
+
+					for (Future<?> future : this.futures) {
+						try {
+							future.get();
+						} catch (InterruptedException e) {
+							this.log.warn(
+								"Interrupted while waiting for an executor thread to exit, forcing the shutdown", e);
+							Thread.currentThread().interrupt();
+							stopWorkers();
+							break;
+						} catch (ExecutionException e) {
+							this.log.warn("An executor thread raised an exception", e);
+						} catch (CancellationException e) {
+							this.log.warn("An executor thread was canceled!", e);
+						}
+					}
+					this.log.debug("All the workers are done.");
+				} finally {
+					// The items the workers dequeued but gave back came out of the queue first
+					synchronized (this.returned) {
+						remaining.addAll(this.returned);
+						this.returned.clear();
+					}
+					this.workQueue.drainTo(remaining);
+					remaining.forEach(this::cancelFuture);
+				}
+
+				// If there are still pending workers, then wait for them to finish for up to 5
+				// minutes
+				int pending = this.activeCounter.get();
+				if (pending > 0) {
+					this.log.debug("Waiting for pending workers to terminate (maximum {}, {} pending workers)",
+						actualMaxWait, pending);
+					try {
+						awaitWorkers(actualMaxWait.toMillis(), TimeUnit.MILLISECONDS);
+					} catch (InterruptedException e) {
+						this.log.warn("Interrupted while waiting for normal executor termination", e);
+						Thread.currentThread().interrupt();
+					}
+				}
+				return remaining;
+			} finally {
+				stopWorkers();
+				int pending = this.activeCounter.get();
+				if (pending > 0) {
+					try {
+						this.log.debug(
+							"Waiting an additional 60 seconds for worker termination as a contingency ({} pending workers)",
+							pending);
+						awaitWorkers(1, TimeUnit.MINUTES);
+					} catch (InterruptedException e) {
+						this.log.warn("Interrupted while waiting for immediate executor termination", e);
+						Thread.currentThread().interrupt();
+					}
+				}
+				// Whatever's left will never be processed (i.e. its worker died)
+				this.futuresByItem.values().forEach((q) -> q.forEach((f) -> f.cancel(false)));
+				this.futuresByItem.clear();
+				unregisterMBean();
+			}
+		}
+	}
+
+	/**
+	 * <p>
+	 * Disables the submission of new work to this instance, while also waiting cleanly for all
+	 * currently executing work items to be processed. It returns a list containing all pending work
+	 * that was not attempted. The maximum amount of time to wait is determined by
+	 * {@link #getDefaultMaxWait()}.
+	 * </p>
+	 */
+	public final List<ITEM> abortExecution() {
+		return abortExecution(null);
+	}
+
+	/**
+	 * <p>
+	 * Disables the submission of new work to this instance, while also waiting cleanly for all
+	 * currently executing work items to be processed. It returns a list containing all pending work
+	 * that was not attempted. If the {@code maxWait} parameter is null, zero, or negative (per
+	 * {@link Duration#isZero()} and {@link Duration#isNegative()}), the value from
+	 * {@link #getDefaultMaxWait()} will be used.
+	 * </p>
+	 *
+	 * @param maxWait
+	 */
+	public final List<ITEM> abortExecution(Duration maxWait) {
+		return mutexLocked(() -> shutdown(true, maxWait));
+	}
+
+	/**
+	 * <p>
+	 * Disables the submission of new work to this instance, while also waiting cleanly for all
+	 * pending work to conclude. The maximum amount of time to wait is determined by
+	 * {@link #getDefaultMaxWait()}.
+	 * </p>
+	 *
+	 * @return a list of items pending processing. Will never be {@code null}, but may be empty
+	 */
+	public List<ITEM> waitForCompletion() {
+		return waitForCompletion(null);
+	}
+
+	/**
+	 * <p>
+	 * Disables the submission of new work to this instance, while also waiting cleanly for all
+	 * pending work to conclude. The maximum amount of time to wait is determined by the given
+	 * parameter. If the {@code maxWait} parameter is null, zero, or negative (per
+	 * {@link Duration#isZero()} and {@link Duration#isNegative()}), the value from
+	 * {@link #getDefaultMaxWait()} will be used.
+	 * </p>
+	 *
+	 * @param maxWait
+	 * @return a list of items pending processing. Will never be {@code null}, but may be empty
+	 */
+	public final List<ITEM> waitForCompletion(Duration maxWait) {
+		return mutexLocked(() -> shutdown(false, maxWait));
+	}
+
+	/**
+	 * <p>
+	 * This class is used in lieu of a large number of constructors because it allows for greater
+	 * flexibility when specifying the available parameters.
+	 * </p>
+	 *
+	 * @author diego
+	 *
+	 * @param <STATE>
+	 * @param <ITEM>
+	 * @param <EX>
+	 */
+	public static class Builder<STATE, ITEM, EX extends Exception> extends BaseShareableLockable {
+		private PooledWorkersLogic<STATE, ITEM, EX> logic = null;
+		private int threads = 1;
+		private String name = null;
+		private int backlogLimit = 0;
+		private Collection<? extends ITEM> items = null;
+		private boolean waitForWork = true;
+		private int batchSize = 1;
+		private Duration batchLinger = Duration.ZERO;
+		private QueueStrategy queueStrategy = QueueStrategy.SHARED;
+		private Comparator<? super ITEM> priority = null;
+		private Function<? super ITEM, ?> partitionKey = null;
+		private double rateLimit = 0;
+		private int rateBurst = 0;
+		private int maxInFlight = 0;
+		private ExecutorService executor = null;
+		private ThreadFactory threadFactory = null;
+		private boolean virtualThreads = false;
+		private int minThreads = 0;
+		private Duration adaptiveInterval = PooledWorkers.DEFAULT_ADAPTIVE_INTERVAL;
+		private boolean metrics = false;
+		private boolean jmx = false;
+
+		/**
+		 * <p>
+		 * Set the {@link PooledWorkersLogic} that will be used for processing the submitted work
+		 * </p>
+		 *
+		 * @param logic
+		 * @return this instance
+		 */
+		public Builder<STATE, ITEM, EX> logic(PooledWorkersLogic<STATE, ITEM, EX> logic) {
+			try (MutexAutoLock lock = mutexAutoLock()) {
+				this.logic = logic;
+			}
+			return this;
+		}
+
+		/**
+		 * <p>
+		 * Returns the {@link PooledWorkersLogic} instance that has been configured for this
+		 * instance
+		 * </p>
+		 *
+		 * @return the {@link PooledWorkersLogic} instance that has been configured for this
+		 *         instance
+		 */
+		public PooledWorkersLogic<STATE, ITEM, EX> logic() {
+			try (SharedAutoLock lock = sharedAutoLock()) {
+				return this.logic;
+			}
+		}
+
+		/**
+		 * <p>
+		 * Set the number of threads that will be used for processing the submitted work. Any values
+		 * less than or equal to 0 will be rounded up to 1. If the number of active workers is
+		 * {@link #minThreads(int) adaptive}, this is the maximum.
+		 * </p>
+		 *
+		 * @param threads
+		 * @return this instance
+		 */
+		public Builder<STATE, ITEM, EX> threads(int threads) {
+			try (MutexAutoLock lock = mutexAutoLock()) {
+				this.threads = Math.max(1, threads);
+			}
+			return this;
+		}
+
+		/**
+		 * <p>
+		 * Returns the number of threads that will be used for processing the submitted work.
+		 * </p>
+		 *
+		 * @return the number of threads that will be used for processing the submitted work.
+		 */
+		public int threads() {
+			try (SharedAutoLock lock = sharedAutoLock()) {
+				return this.threads;
+			}
+		}
+
+		/**
+		 * <p>
+		 * Sets the name that will be used when naming worker threads.
+		 * </p>
+		 *
+		 * @param name
+		 * @return this instance
+		 */
+		public Builder<STATE, ITEM, EX> name(String name) {
+			try (MutexAutoLock lock = mutexAutoLock()) {
+				this.name = name;
+			}
+			return this;
+		}
+
+		/**
+		 * <p>
+		 * Returns the name that will be used when naming worker threads.
+		 * </p>
+		 *
+		 * @return the name that will be used when naming worker threads.
+		 */
+		public String name() {
+			try (SharedAutoLock lock = sharedAutoLock()) {
+				return this.name;
+			}
+		}
+
+		/**
+		 * <p>
+		 * Sets the maximum number of items that can be submitted for processing without blocking.
+		 * </p>
+		 *
+		 * @param backlogLimit
+		 * @return this instance
+		 */
+		public Builder<STATE, ITEM, EX> backlogLimit(int backlogLimit) {
+			try (MutexAutoLock lock = mutexAutoLock()) {
+				this.backlogLimit = Math.max(0, backlogLimit);
+			}
+			return this;
+		}
+
+		/**
+		 * <p>
+		 * Returns the maximum number of items that can be submitted for processing without
+		 * blocking.
+		 * </p>
+		 *
+		 * @return the maximum number of items that can be submitted for processing without
+		 *         blocking.
+		 */
+		public int backlogLimit() {
+			try (SharedAutoLock lock = sharedAutoLock()) {
+				return this.backlogLimit;
+			}
+		}
+
+		/**
+		 * <p>
+		 * Sets the work items that should be processed immediately upon startup, regardless of
+		 * whether additional work should be accepted or not. If there's a
+		 * {@link #backlogLimit(int) backlog limit}, the items must fit within it, or
+		 * {@link #start()} will fail.
+		 * </p>
+		 *
+		 * @param items
+		 * @return this instance
+		 */
+		public Builder<STATE, ITEM, EX> items(Collection<? extends ITEM> items) {
+			try (MutexAutoLock lock = mutexAutoLock()) {
+				this.items = items;
+			}
+			return this;
+		}
+
+		/**
+		 * <p>
+		 * Returns the work items that should be processed immediately upon startup.
+		 * </p>
+		 *
+		 * @return the work items that should be processed immediately upon startup.
+		 */
+		public Collection<? extends ITEM> items() {
+			try (SharedAutoLock lock = sharedAutoLock()) {
+				return this.items;
+			}
+		}
+
+		/**
+		 * <p>
+		 * Set whether this instance should wait for additional work after processing pre-submitted
+		 * work items (if any), or not.
+		 * </p>
+		 *
+		 * @param waitForWork
+		 * @return this instance
+		 */
+		public Builder<STATE, ITEM, EX> waitForWork(boolean waitForWork) {
+			try (MutexAutoLock lock = mutexAutoLock()) {
+				this.waitForWork = waitForWork;
+			}
+			return this;
+		}
+
+		/**
+		 * <p>
+		 * Returns whether this instance should wait for additional work after processing
+		 * pre-submitted work items (if any), or not
+		 * </p>
+		 *
+		 * @return {@code true} if this instance should wait for additional work after processing
+		 *         pre-submitted work items (if any), {@code false} otherwise.
+		 */
+		public boolean waitForWork() {
+			try (SharedAutoLock lock = sharedAutoLock()) {
+				return this.waitForWork;
+			}
+		}
+
+		/**
+		 * <p>
+		 * Sets the maximum number of items each worker thread will dequeue at once and hand to
+		 * {@link PooledWorkersLogic#processBatch(Object, List)}. Batching amortizes the cost of the
+		 * queue handoff (and of any per-invocation work the logic does) over many items, which
+		 * matters when the items are small. Any values less than or equal to 1 will be rounded up
+		 * to 1, which disables batching and invokes
+		 * {@link PooledWorkersLogic#process(Object, Object)} for each item.
+		 * </p>
+		 *
+		 * @param batchSize
+		 * @return this instance
+		 */
+		public Builder<STATE, ITEM, EX> batchSize(int batchSize) {
+			try (MutexAutoLock lock = mutexAutoLock()) {
+				this.batchSize = Math.max(1, batchSize);
+			}
+			return this;
+		}
+
+		/**
+		 * <p>
+		 * Returns the maximum number of items each worker thread will process at once.
+		 * </p>
+		 *
+		 * @return the maximum number of items each worker thread will process at once.
+		 */
+		public int batchSize() {
+			try (SharedAutoLock lock = sharedAutoLock()) {
+				return this.batchSize;
+			}
+		}
+
+		/**
+		 * <p>
+		 * Sets the maximum amount of time a worker thread will wait for more items to arrive in
+		 * order to fill up a batch, once it has dequeued at least one item. If the value is
+		 * {@code null}, zero, or negative, then batches will only contain the items immediately
+		 * available in the queue. This has no effect unless {@link #batchSize(int) batching} is
+		 * enabled, or if the workers don't {@link #waitForWork(boolean) wait for work}.
+		 * </p>
+		 *
+		 * @param batchLinger
+		 * @return this instance
+		 */
+		public Builder<STATE, ITEM, EX> batchLinger(Duration batchLinger) {
+			try (MutexAutoLock lock = mutexAutoLock()) {
+				if ((batchLinger == null) || batchLinger.isNegative()) {
+					batchLinger = Duration.ZERO;
+				}
+				this.batchLinger = batchLinger;
+			}
+			return this;
+		}
+
+		/**
+		 * <p>
+		 * Returns the maximum amount of time a worker thread will wait to fill up a batch.
+		 * </p>
+		 *
+		 * @return the maximum amount of time a worker thread will wait to fill up a batch.
+		 */
+		public Duration batchLinger() {
+			try (SharedAutoLock lock = sharedAutoLock()) {
+				return this.batchLinger;
+			}
+		}
+
+		/**
+		 * <p>
+		 * Sets the {@link QueueStrategy strategy} used to queue the work items. If the value is
+		 * {@code null}, {@link QueueStrategy#SHARED} will be used.
+		 * </p>
+		 *
+		 * @param queueStrategy
+		 * @return this instance
+		 */
+		public Builder<STATE, ITEM, EX> queueStrategy(QueueStrategy queueStrategy) {
+			try (MutexAutoLock lock = mutexAutoLock()) {
+				this.queueStrategy = Tools.coalesce(queueStrategy, QueueStrategy.SHARED);
+			}
+			return this;
+		}
+
+		/**
+		 * <p>
+		 * Returns the {@link QueueStrategy strategy} used to queue the work items.
+		 * </p>
+		 *
+		 * @return the {@link QueueStrategy strategy} used to queue the work items.
+		 */
+		public QueueStrategy queueStrategy() {
+			try (SharedAutoLock lock = sharedAutoLock()) {
+				return this.queueStrategy;
+			}
+		}
+
+		/**
+		 * <p>
+		 * Sets the comparator used to order the work items when using the
+		 * {@link QueueStrategy#PRIORITY} strategy (lowest first). If the value is {@code null},
+		 * the items' natural ordering will be used, so they must be {@link Comparable}. This has no
+		 * effect with the other strategies.
+		 * </p>
+		 *
+		 * @param priority
+		 * @return this instance
+		 */
+		public Builder<STATE, ITEM, EX> priority(Comparator<? super ITEM> priority) {
+			try (MutexAutoLock lock = mutexAutoLock()) {
+				this.priority = priority;
+			}
+			return this;
+		}
+
+		/**
+		 * <p>
+		 * Returns the comparator used to order the work items when using the
+		 * {@link QueueStrategy#PRIORITY} strategy, or {@code null} if their natural ordering will
+		 * be used.
+		 * </p>
+		 *
+		 * @return the comparator used to order the work items
+		 */
+		public Comparator<? super ITEM> priority() {
+			try (SharedAutoLock lock = sharedAutoLock()) {
+				return this.priority;
+			}
+		}
+
+		/**
+		 * <p>
+		 * Sets the function which returns each work item's key when using the
+		 * {@link QueueStrategy#PARTITIONED} strategy, which requires it. Items with
+		 * {@link Object#equals(Object) equal} keys (which must also have equal hash codes) are
+		 * processed one at a time, in the order they were submitted. The function is invoked once
+		 * per item as it's submitted, so it should be cheap. This has no effect with the other
+		 * strategies.
+		 * </p>
+		 *
+		 * @param partitionKey
+		 * @return this instance
+		 */
+		public Builder<STATE, ITEM, EX> partitionKey(Function<? super ITEM, ?> partitionKey) {
+			try (MutexAutoLock lock = mutexAutoLock()) {
+				this.partitionKey = partitionKey;
+			}
+			return this;
+		}
+
+		/**
+		 * <p>
+		 * Returns the function which returns each work item's key when using the
+		 * {@link QueueStrategy#PARTITIONED} strategy.
+		 * </p>
+		 *
+		 * @return the function which returns each work item's key
+		 */
+		public Function<? super ITEM, ?> partitionKey() {
+			try (SharedAutoLock lock = sharedAutoLock()) {
+				return this.partitionKey;
+			}
+		}
 
-					// Now, wake any blocked threads
-					for (Thread t : this.threads) {
-						if (this.blocked.contains(t.getId())) {
-							switch (t.getState()) {
-								case TIMED_WAITING:
-								case WAITING:
-									t.interrupt();
-									this.log.debug("Interrupted thread [{}] ({})", t.getName(), t.getId());
-									break;
-								default:
-									// Do nothing - it will exit on its own
-							}
-						}
-					}
-					this.threads.clear();
+		/**
+		 * <p>
+		 * Sets the maximum number of items processed per second, enforced with a token bucket (see
+		 * {@link TokenBucket}) before each item is processed - or each batch, which takes as many
+		 * tokens as it has items. Any value less than or equal to 0 (the default) disables this.
+		 * The limit may be changed later through {@link PooledWorkers#setRateLimit(double)}.
+		 * </p>
+		 *
+		 * @param rateLimit
+		 * @return this instance
+		 * @throws IllegalArgumentException
+		 *             if {@code rateLimit} is {@link Double#NaN NaN} or infinite
+		 */
+		public Builder<STATE, ITEM, EX> rateLimit(double rateLimit) {
+			if (Double.isNaN(rateLimit) || Double.isInfinite(rateLimit)) {
+				throw new IllegalArgumentException(
+					String.format("The rate limit must be a finite number (%s was given)", rateLimit));
+			}
+			try (MutexAutoLock lock = mutexAutoLock()) {
+				this.rateLimit = Math.max(0, rateLimit);
+			}
+			return this;
+		}
 
-					for (Future<?> future : this.futures) {
-						try {
-							future.get();
-						} catch (InterruptedException e) {
-							this.log.warn(
-								"Interrupted while waiting for an executor thread to exit, forcing the shutdown", e);
-							Thread.currentThread().interrupt();
-							this.executor.shutdownNow();
-							break;
-						} catch (ExecutionException e) {
-							this.log.warn("An executor thread raised an exception", e);
-						} catch (CancellationException e) {
-							this.log.warn("An executor thread was canceled!", e);
-						}
-					}
-					this.log.debug("All the workers are done.");
-				} finally {
-					this.workQueue.drainTo(remaining);
-				}
+		public double rateLimit() {
+			try (SharedAutoLock lock = sharedAutoLock()) {
+				return this.rateLimit;
+			}
+		}
 
-				// If there are still pending workers, then wait for them to finish for up to 5
-				// minutes
-				int pending = this.activeCounter.get();
-				if (pending > 0) {
-					this.log.debug("Waiting for pending workers to terminate (maximum {}, {} pending workers)",
-						actualMaxWait, pending);
-					try {
-						this.executor.awaitTermination(actualMaxWait.toMillis(), TimeUnit.MILLISECONDS);
-					} catch (InterruptedException e) {
-						this.log.warn("Interrupted while waiting for normal executor termination", e);
-						Thread.currentThread().interrupt();
-					}
-				}
-				return remaining;
-			} finally {
-				this.executor.shutdownNow();
-				int pending = this.activeCounter.get();
-				if (pending > 0) {
-					try {
-						this.log.debug(
-							"Waiting an additional 60 seconds for worker termination as a contingency ({} pending workers)",
-							pending);
-						this.executor.awaitTermination(1, TimeUnit.MINUTES);
-					} catch (InterruptedException e) {
-						this.log.warn("Interrupted while waiting for immediate executor termination", e);
-						Thread.currentThread().interrupt();
-					}
-				}
+		/**
+		 * <p>
+		 * Sets how many items may be processed in a quick burst when the {@link #rateLimit(double)
+		 * rate limit} has gone unused for a while. Any value less than or equal to 0 (the default)
+		 * allows one second's worth of items.
+		 * </p>
+		 *
+		 * @param rateBurst
+		 * @return this instance
+		 */
+		public Builder<STATE, ITEM, EX> rateBurst(int rateBurst) {
+			try (MutexAutoLock lock = mutexAutoLock()) {
+				this.rateBurst = Math.max(0, rateBurst);
 			}
+			return this;
 		}
-	}
 
-	/**
-	 * <p>
-	 * Disables the submission of new work to this instance, while also waiting cleanly for all
-	 * currently executing work items to be processed. It returns a list containing all pending work
-	 * that was not attempted. The maximum amount of time to wait is determined by
-	 * {@link #getDefaultMaxWait()}.
-	 * </p>
-	 */
-	public final List<ITEM> abortExecution() {
-		return abortExecution(null);
-	}
+		public int rateBurst() {
+			try (SharedAutoLock lock = sharedAutoLock()) {
+				return this.rateBurst;
+			}
+		}
 
-	/**
-	 * <p>
-	 * Disables the submission of new work to this instance, while also waiting cleanly for all
-	 * currently executing work items to be processed. It returns a list containing all pending work
-	 * that was not attempted. If the {@code maxWait} parameter is null, zero, or negative (per
-	 * {@link Duration#isZero()} and {@link Duration#isNegative()}), the value from
-	 * {@link #getDefaultMaxWait()} will be used.
-	 * </p>
-	 *
-	 * @param maxWait
-	 */
-	public final List<ITEM> abortExecution(Duration maxWait) {
-		return mutexLocked(() -> shutdown(true, maxWait));
-	}
+		/**
+		 * <p>
+		 * Sets the maximum number of items (or batches) processed concurrently, which allows
+		 * keeping the pressure on whatever the items are processed against below the number of
+		 * {@link #threads(int) threads}, and changing it on the fly through
+		 * {@link PooledWorkers#setMaxInFlight(int)}. Any value less than or equal to 0 (the
+		 * default) leaves it limited only by the number of threads.
+		 * </p>
+		 *
+		 * @param maxInFlight
+		 * @return this instance
+		 */
+		public Builder<STATE, ITEM, EX> maxInFlight(int maxInFlight) {
+			try (MutexAutoLock lock = mutexAutoLock()) {
+				this.maxInFlight = Math.max(0, maxInFlight);
+			}
+			return this;
+		}
 
-	/**
-	 * <p>
-	 * Disables the submission of new work to this instance, while also waiting cleanly for all
-	 * pending work to conclude. The maximum amount of time to wait is determined by
-	 * {@link #getDefaultMaxWait()}.
-	 * </p>
-	 *
-	 * @return a list of items pending processing. Will never be {@code null}, but may be empty
-	 */
-	public List<ITEM> waitForCompletion() {
-		return waitForCompletion(null);
-	}
+		public int maxInFlight() {
+			try (SharedAutoLock lock = sharedAutoLock()) {
+				return this.maxInFlight;
+			}
+		}
 
-	/**
-	 * <p>
-	 * Disables the submission of new work to this instance, while also waiting cleanly for all
-	 * pending work to conclude. The maximum amount of time to wait is determined by the given
-	 * parameter. If the {@code maxWait} parameter is null, zero, or negative (per
-	 * {@link Duration#isZero()} and {@link Duration#isNegative()}), the value from
-	 * {@link #getDefaultMaxWait()} will be used.
-	 * </p>
-	 *
-	 * @param maxWait
-	 * @return a list of items pending processing. Will never be {@code null}, but may be empty
-	 */
-	public final List<ITEM> waitForCompletion(Duration maxWait) {
-		return mutexLocked(() -> shutdown(false, maxWait));
-	}
+		/**
+		 * <p>
+		 * Sets the {@link ExecutorService} the worker tasks will be submitted to, instead of
+		 * creating a new one. The executor should be able to run {@link #threads(int) all the
+		 * worker tasks} concurrently, since they only exit when the work is done: a
+		 * {@link ThreadPoolExecutor} whose maximum pool size is smaller than that is rejected by
+		 * {@link #start()}. Otherwise, the tasks which can't start right away only do so as the
+		 * others exit while the work is being shut down. The executor remains
+		 * owned by the caller: it will not be shut down by the {@link PooledWorkers} instance,
+		 * which will only cancel its own tasks if it must stop them forcibly. If set, this takes
+		 * precedence over {@link #threadFactory(ThreadFactory)} and {@link #virtualThreads(boolean)}.
+		 * </p>
+		 *
+		 * @param executor
+		 * @return this instance
+		 */
+		public Builder<STATE, ITEM, EX> executor(ExecutorService executor) {
+			try (MutexAutoLock lock = mutexAutoLock()) {
+				this.executor = executor;
+			}
+			return this;
+		}
 
-	/**
-	 * <p>
-	 * This class is used in lieu of a large number of constructors because it allows for greater
-	 * flexibility when specifying the available parameters.
-	 * </p>
-	 *
-	 * @author diego
-	 *
-	 * @param <STATE>
-	 * @param <ITEM>
-	 * @param <EX>
-	 */
-	public static class Builder<STATE, ITEM, EX extends Exception> extends BaseShareableLockable {
-		private PooledWorkersLogic<STATE, ITEM, EX> logic = null;
-		private int threads = 1;
-		private String name = null;
-		private int backlogLimit = 0;
-		private Collection<? extends ITEM> items = null;
-		private boolean waitForWork = true;
+		/**
+		 * <p>
+		 * Returns the {@link ExecutorService} the worker tasks will be submitted to, or {@code null}
+		 * if a new one will be created.
+		 * </p>
+		 *
+		 * @return the {@link ExecutorService} the worker tasks will be submitted to
+		 */
+		public ExecutorService executor() {
+			try (SharedAutoLock lock = sharedAutoLock()) {
+				return this.executor;
+			}
+		}
 
 		/**
 		 * <p>
-		 * Set the {@link PooledWorkersLogic} that will be used for processing the submitted work
+		 * Sets the {@link ThreadFactory} used to create the worker threads. If set, the
+		 * {@link #name(String) name} will not be applied to the threads, since that's now the
+		 * factory's responsibility. If set, this takes precedence over
+		 * {@link #virtualThreads(boolean)}.
 		 * </p>
 		 *
-		 * @param logic
+		 * @param threadFactory
 		 * @return this instance
 		 */
-		public Builder<STATE, ITEM, EX> logic(PooledWorkersLogic<STATE, ITEM, EX> logic) {
+		public Builder<STATE, ITEM, EX> threadFactory(ThreadFactory threadFactory) {
 			try (MutexAutoLock lock = mutexAutoLock()) {
-				this.logic = logic;
+				this.threadFactory = threadFactory;
 			}
 			return this;
 		}
 
 		/**
 		 * <p>
-		 * Returns the {@link PooledWorkersLogic} instance that has been configured for this
-		 * instance
+		 * Returns the {@link ThreadFactory} used to create the worker threads, or {@code null} if
+		 * the default one will be used.
 		 * </p>
 		 *
-		 * @return the {@link PooledWorkersLogic} instance that has been configured for this
-		 *         instance
+		 * @return the {@link ThreadFactory} used to create the worker threads
 		 */
-		public PooledWorkersLogic<STATE, ITEM, EX> logic() {
+		public ThreadFactory threadFactory() {
 			try (SharedAutoLock lock = sharedAutoLock()) {
-				return this.logic;
+				return this.threadFactory;
 			}
 		}
 
 		/**
 		 * <p>
-		 * Set the number of threads that will be used for processing the submitted work. Any values
-		 * less than or equal to 0 will be rounded up to 1.
+		 * Sets whether the worker threads should be virtual threads, if the JVM
+		 * {@link VirtualThreads#isSupported() supports them} (JDK 21+). Virtual threads make it
+		 * cheap to run thousands of workers whose work mostly blocks on I/O. If the JVM doesn't
+		 * support them, platform threads will be used instead.
+		 * </p>
+		 * <p>
+		 * Virtual threads are also unavailable if this library was built on a JDK older than 21
+		 * (which omits the classes that create them), regardless of the JVM it runs on.
 		 * </p>
 		 *
-		 * @param threads
+		 * @param virtualThreads
 		 * @return this instance
 		 */
-		public Builder<STATE, ITEM, EX> threads(int threads) {
+		public Builder<STATE, ITEM, EX> virtualThreads(boolean virtualThreads) {
 			try (MutexAutoLock lock = mutexAutoLock()) {
-				this.threads = Math.max(1, threads);
+				this.virtualThreads = virtualThreads;
 			}
 			return this;
 		}
 
 		/**
 		 * <p>
-		 * Returns the number of threads that will be used for processing the submitted work.
+		 * Returns whether the worker threads should be virtual threads.
 		 * </p>
 		 *
-		 * @return the number of threads that will be used for processing the submitted work.
+		 * @return {@code true} if the worker threads should be virtual threads, {@code false}
+		 *         otherwise
 		 */
-		public int threads() {
+		public boolean virtualThreads() {
 			try (SharedAutoLock lock = sharedAutoLock()) {
-				return this.threads;
+				return this.virtualThreads;
 			}
 		}
 
 		/**
 		 * <p>
-		 * Sets the name that will be used when naming worker threads.
+		 * Sets the minimum number of workers that will actively process items. If this is less
+		 * than the number of {@link #threads(int) threads}, the number of active workers will adapt
+		 * between both values based on the measured throughput, per-item latency and queue depth
+		 * (see {@link AdaptiveConcurrencyLimit}): it will start at the minimum, grow while that
+		 * improves throughput, and shrink when it doesn't, when the latency shows signs of
+		 * overload, or when the workers keep up with the work. All the threads are started up
+		 * front, and the ones which aren't needed remain parked. Any values less than or equal to
+		 * 0 (the default), or greater than or equal to the number of threads, disable this.
 		 * </p>
 		 *
-		 * @param name
+		 * @param minThreads
 		 * @return this instance
 		 */
-		public Builder<STATE, ITEM, EX> name(String name) {
+		public Builder<STATE, ITEM, EX> minThreads(int minThreads) {
 			try (MutexAutoLock lock = mutexAutoLock()) {
-				this.name = name;
+				this.minThreads = Math.max(0, minThreads);
 			}
 			return this;
 		}
 
 		/**
 		 * <p>
-		 * Returns the name that will be used when naming worker threads.
+		 * Returns the minimum number of workers that will actively process items, or 0 if the
+		 * number of active workers is fixed.
 		 * </p>
 		 *
-		 * @return the name that will be used when naming worker threads.
+		 * @return the minimum number of workers that will actively process items
 		 */
-		public String name() {
+		public int minThreads() {
 			try (SharedAutoLock lock = sharedAutoLock()) {
-				return this.name;
+				return this.minThreads;
 			}
 		}
 
 		/**
 		 * <p>
-		 * Sets the maximum number of items that can be submitted for processing without blocking.
+		 * Sets how often the number of active workers is re-evaluated, if it's
+		 * {@link #minThreads(int) adaptive}. Each interval should be long enough for several items
+		 * to be processed, or the measurements will be too noisy to be useful. If the value is
+		 * {@code null}, zero, or negative, the default of 1 second will be used.
 		 * </p>
 		 *
-		 * @param backlogLimit
+		 * @param adaptiveInterval
 		 * @return this instance
 		 */
-		public Builder<STATE, ITEM, EX> backlogLimit(int backlogLimit) {
+		public Builder<STATE, ITEM, EX> adaptiveInterval(Duration adaptiveInterval) {
 			try (MutexAutoLock lock = mutexAutoLock()) {
-				this.backlogLimit = Math.max(0, backlogLimit);
+				if ((adaptiveInterval == null) || adaptiveInterval.isNegative() || adaptiveInterval.isZero()) {
+					adaptiveInterval = PooledWorkers.DEFAULT_ADAPTIVE_INTERVAL;
+				}
+				this.adaptiveInterval = adaptiveInterval;
 			}
 			return this;
 		}
 
 		/**
 		 * <p>
-		 * Returns the maximum number of items that can be submitted for processing without
-		 * blocking.
+		 * Returns how often the number of active workers is re-evaluated, if it's adaptive.
 		 * </p>
 		 *
-		 * @return the maximum number of items that can be submitted for processing without
-		 *         blocking.
+		 * @return how often the number of active workers is re-evaluated
 		 */
-		public int backlogLimit() {
+		public Duration adaptiveInterval() {
 			try (SharedAutoLock lock = sharedAutoLock()) {
-				return this.backlogLimit;
+				return this.adaptiveInterval;
 			}
 		}
 
 		/**
 		 * <p>
-		 * Sets the work items that should be processed immediately upon startup, regardless of
-		 * whether additional work should be accepted or not.
+		 * Sets whether the durations reported by {@link PooledWorkers#getMetrics()} (the time
+		 * spent processing each item, and the time workers and producers spend waiting on the
+		 * queue) should be measured. This costs a couple of {@link System#nanoTime()} invocations
+		 * per item, so it's disabled by default. The item counts are always collected.
 		 * </p>
 		 *
-		 * @param items
+		 * @param metrics
 		 * @return this instance
 		 */
-		public Builder<STATE, ITEM, EX> items(Collection<? extends ITEM> items) {
+		public Builder<STATE, ITEM, EX> metrics(boolean metrics) {
 			try (MutexAutoLock lock = mutexAutoLock()) {
-				this.items = items;
+				this.metrics = metrics;
 			}
 			return this;
 		}
 
 		/**
 		 * <p>
-		 * Returns the work items that should be processed immediately upon startup.
+		 * Returns whether the durations reported by {@link PooledWorkers#getMetrics()} should be
+		 * measured.
 		 * </p>
 		 *
-		 * @return the work items that should be processed immediately upon startup.
+		 * @return {@code true} if the durations should be measured, {@code false} otherwise
 		 */
-		public Collection<? extends ITEM> items() {
+		public boolean metrics() {
 			try (SharedAutoLock lock = sharedAutoLock()) {
-				return this.items;
+				return this.metrics;
 			}
 		}
 
 		/**
 		 * <p>
-		 * Set whether this instance should wait for additional work after processing pre-submitted
-		 * work items (if any), or not.
+		 * Sets whether a {@link PooledWorkersMXBean} should be registered with the platform MBean
+		 * server while the work is in progress, so the metrics can be monitored with JMX tools.
+		 * It's registered under the {@code com.armedia.commons.utilities:type=PooledWorkers}
+		 * domain and type, with the {@link #name(String) name} (if any) and a unique {@code id},
+		 * and unregistered once the work is done. Failure to register the MBean is logged, but
+		 * otherwise ignored.
 		 * </p>
 		 *
-		 * @param waitForWork
+		 * @param jmx
 		 * @return this instance
 		 */
-		public Builder<STATE, ITEM, EX> waitForWork(boolean waitForWork) {
+		public Builder<STATE, ITEM, EX> jmx(boolean jmx) {
 			try (MutexAutoLock lock = mutexAutoLock()) {
-				this.waitForWork = waitForWork;
+				this.jmx = jmx;
 			}
 			return this;
 		}
 
 		/**
 		 * <p>
-		 * Returns whether this instance should wait for additional work after processing
-		 * pre-submitted work items (if any), or not
+		 * Returns whether a {@link PooledWorkersMXBean} should be registered with the platform
+		 * MBean server.
 		 * </p>
 		 *
-		 * @return {@code true} if this instance should wait for additional work after processing
-		 *         pre-submitted work items (if any), {@code false} otherwise.
+		 * @return {@code true} if the MBean should be registered, {@code false} otherwise
 		 */
-		public boolean waitForWork() {
+		public boolean jmx() {
 			try (SharedAutoLock lock = sharedAutoLock()) {
-				return this.waitForWork;
+				return this.jmx;
 			}
 		}
 
@@ -706,10 +2359,14 @@ public final class PooledWorkers<STATE, ITEM> extends BaseShareableLockable {
 		 *
 		 * @return a started {@link PooledWorkers} instance that's already running and processing
 		 *         any pending work, possibly waiting for more work if configured to do so.
+		 * @throws IllegalArgumentException
+		 *             if there are more {@link #items(Collection) initial items} than the
+		 *             {@link #backlogLimit(int) backlog limit} allows
 		 */
 		public PooledWorkers<STATE, ITEM> start() {
-			return new PooledWorkers<>(this.logic, this.threads, this.name, this.backlogLimit, this.items,
-				this.waitForWork);
+			try (SharedAutoLock lock = sharedAutoLock()) {
+				return new PooledWorkers<>(this);
+			}
 		}
 	}
 }
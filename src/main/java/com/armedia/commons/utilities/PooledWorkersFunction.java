@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * #%L
+ * Armedia Caliente
+ * %%
+ * Copyright (C) 2013 - 2025 Armedia, LLC
+ * %%
+ * This file is part of the Caliente software.
+ *
+ * If the software was purchased under a paid Caliente license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Caliente is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Caliente is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Caliente. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ *******************************************************************************/
+package com.armedia.commons.utilities;
+
+import java.util.List;
+
+import com.armedia.commons.utilities.function.CheckedBiFunction;
+
+/**
+ * <p>
+ * A {@link PooledWorkersLogic} which produces a result for each item, which is delivered through
+ * the future returned by {@link PooledWorkers#submit(Object)} (items added through the other
+ * methods are processed just the same, but their results are discarded).
+ * </p>
+ * <p>
+ * Since each item needs its own result, the items are always {@link #apply(Object, Object)
+ * applied} one at a time, even when the {@link PooledWorkers} instance is
+ * {@link PooledWorkers.Builder#batchSize(int) configured to process batches}: batching then only
+ * affects how the items are taken from the queue, and {@link #processBatch(Object, List)} is
+ * never invoked.
+ * </p>
+ *
+ * @param <STATE>
+ *            the type of the worker threads' state
+ * @param <ITEM>
+ *            the type of the items
+ * @param <RESULT>
+ *            the type of the results
+ * @param <EX>
+ *            the type of the exceptions raised while processing
+ */
+@FunctionalInterface
+public interface PooledWorkersFunction<STATE, ITEM, RESULT, EX extends Exception>
+	extends PooledWorkersLogic<STATE, ITEM, EX> {
+
+	/**
+	 * <p>
+	 * Processes the item, and returns its result. If this method raises an exception,
+	 * {@link #handleFailure(Object, Object, Exception)} will be invoked, and the item's future
+	 * will be completed with that exception.
+	 * </p>
+	 *
+	 * @param state
+	 *            the worker thread's state
+	 * @param item
+	 *            the item to process
+	 * @return the item's result (may be {@code null})
+	 * @throws EX
+	 *             if the item could not be processed
+	 */
+	public RESULT apply(STATE state, ITEM item) throws EX;
+
+	@Override
+	public default void process(STATE state, ITEM item) throws EX {
+		apply(state, item);
+	}
+
+	public static <STATE, ITEM, RESULT, EX extends Exception> PooledWorkersFunction<STATE, ITEM, RESULT, EX> of(
+		CheckedBiFunction<STATE, ITEM, RESULT, EX> function) {
+		return function::applyChecked;
+	}
+}
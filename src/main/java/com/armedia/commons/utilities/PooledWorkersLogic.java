@@ -26,6 +26,7 @@
  *******************************************************************************/
 package com.armedia.commons.utilities;
 
+import java.util.List;
 import java.util.function.BiConsumer;
 
 import com.armedia.commons.utilities.function.CheckedBiConsumer;
@@ -40,10 +41,66 @@ public interface PooledWorkersLogic<STATE, ITEM, EX extends Exception> {
 
 	public void process(STATE state, ITEM item) throws EX;
 
+	/**
+	 * <p>
+	 * Processes a batch of items at once. This is only invoked when the {@link PooledWorkers}
+	 * instance is {@link PooledWorkers.Builder#batchSize(int) configured to process batches}, and
+	 * allows implementations to amortize per-item costs (i.e. database round trips) over many
+	 * items. The default implementation simply invokes {@link #process(Object, Object)} for each
+	 * item, and reports each item's failure via {@link #handleFailure(Object, Object, Exception)}
+	 * as it happens. Logic which doesn't override this method has its batches processed one item
+	 * at a time by the {@link PooledWorkers} instance itself, so each item's failure is also
+	 * reflected in its {@link PooledWorkers#getMetrics() metrics} and its
+	 * {@link PooledWorkers#submit(Object) future}.
+	 * </p>
+	 * <p>
+	 * The list is unmodifiable, and is re-used for subsequent batches, so implementations must not
+	 * retain a reference to it beyond this invocation.
+	 * </p>
+	 *
+	 * @param state
+	 *            the worker thread's state
+	 * @param items
+	 *            the items to process (never empty)
+	 * @throws EX
+	 *             if the batch could not be processed, in which case
+	 *             {@link #handleBatchFailure(Object, List, Exception)} will be invoked
+	 */
+	@SuppressWarnings("unchecked")
+	public default void processBatch(STATE state, List<ITEM> items) throws EX {
+		for (ITEM item : items) {
+			try {
+				process(state, item);
+			} catch (Exception e) {
+				handleFailure(state, item, (EX) e);
+			}
+		}
+	}
+
 	public default void handleFailure(STATE state, ITEM item, EX raised) {
 		// Do nothing...
 	}
 
+	/**
+	 * <p>
+	 * Invoked when {@link #processBatch(Object, List)} raises an exception. The default
+	 * implementation invokes {@link #handleFailure(Object, Object, Exception)} for each item in
+	 * the batch. As with {@link #processBatch(Object, List)}, the list must not be retained.
+	 * </p>
+	 *
+	 * @param state
+	 *            the worker thread's state
+	 * @param items
+	 *            the items in the failed batch
+	 * @param raised
+	 *            the exception raised
+	 */
+	public default void handleBatchFailure(STATE state, List<ITEM> items, EX raised) {
+		for (ITEM item : items) {
+			handleFailure(state, item, raised);
+		}
+	}
+
 	public default void cleanup(STATE state) {
 	}
 
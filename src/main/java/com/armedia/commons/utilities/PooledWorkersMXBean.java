@@ -0,0 +1,58 @@
+/*******************************************************************************
+ * #%L
+ * Armedia Caliente
+ * %%
+ * Copyright (C) 2013 - 2025 Armedia, LLC
+ * %%
+ * This file is part of the Caliente software.
+ *
+ * If the software was purchased under a paid Caliente license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Caliente is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Caliente is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Caliente. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ *******************************************************************************/
+package com.armedia.commons.utilities;
+
+/**
+ * <p>
+ * The JMX management interface for a {@link PooledWorkers} instance, registered when it's
+ * {@link PooledWorkers.Builder#jmx(boolean) configured to do so}. Each attribute is read from a
+ * fresh {@link PooledWorkers#getMetrics() metrics snapshot} - see {@link PooledWorkersMetrics} for
+ * their meaning. The durations are in nanoseconds.
+ * </p>
+ */
+public interface PooledWorkersMXBean {
+
+	public long getSubmitted();
+
+	public long getCompleted();
+
+	public long getFailed();
+
+	public int getThreadCount();
+
+	public int getActiveWorkers();
+
+	public int getWorkerLimit();
+
+	public int getQueueSize();
+
+	public LatencyHistogram.Snapshot getProcessingTime();
+
+	public LatencyHistogram.Snapshot getWorkerWaitTime();
+
+	public LatencyHistogram.Snapshot getProducerWaitTime();
+}
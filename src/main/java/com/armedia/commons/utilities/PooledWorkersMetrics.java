@@ -0,0 +1,190 @@
+/*******************************************************************************
+ * #%L
+ * Armedia Caliente
+ * %%
+ * Copyright (C) 2013 - 2025 Armedia, LLC
+ * %%
+ * This file is part of the Caliente software.
+ *
+ * If the software was purchased under a paid Caliente license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Caliente is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Caliente is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Caliente. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ *******************************************************************************/
+package com.armedia.commons.utilities;
+
+import java.util.List;
+
+/**
+ * <p>
+ * An immutable snapshot of the metrics for a {@link PooledWorkers} instance, as returned by
+ * {@link PooledWorkers#getMetrics()}. The counters are always collected, but the durations (all
+ * in nanoseconds) are only measured if the instance was {@link PooledWorkers.Builder#metrics(boolean)
+ * configured to do so}, and are otherwise empty.
+ * </p>
+ * <p>
+ * Together, they help tell whether the producers or the consumers are the bottleneck: if the
+ * {@link #getProducerWaitTime() producers wait} a lot while the queue stays full, the workers
+ * can't keep up, but if the {@link #getWorkerWaitTime() workers wait} a lot while the queue stays
+ * empty, they're starved for work.
+ * </p>
+ * <p>
+ * The values are read independently of each other without stopping the workers, so the snapshot
+ * may be slightly inconsistent while work is in progress (i.e. an item may be counted as
+ * completed before it's counted as submitted).
+ * </p>
+ */
+public final class PooledWorkersMetrics {
+
+	private final long submitted;
+	private final long completed;
+	private final long failed;
+	private final int threadCount;
+	private final int activeWorkers;
+	private final int workerLimit;
+	private final int queueSize;
+	private final LatencyHistogram.Snapshot processingTime;
+	private final LatencyHistogram.Snapshot workerWaitTime;
+	private final LatencyHistogram.Snapshot producerWaitTime;
+
+	PooledWorkersMetrics(long submitted, long completed, long failed, int threadCount, int activeWorkers,
+		int workerLimit, int queueSize, LatencyHistogram.Snapshot processingTime,
+		LatencyHistogram.Snapshot workerWaitTime, LatencyHistogram.Snapshot producerWaitTime) {
+		this.submitted = submitted;
+		this.completed = completed;
+		this.failed = failed;
+		this.threadCount = threadCount;
+		this.activeWorkers = activeWorkers;
+		this.workerLimit = workerLimit;
+		this.queueSize = queueSize;
+		this.processingTime = processingTime;
+		this.workerWaitTime = workerWaitTime;
+		this.producerWaitTime = producerWaitTime;
+	}
+
+	/**
+	 * <p>
+	 * Returns the number of items accepted for processing, including the initial items.
+	 * </p>
+	 *
+	 * @return the number of items accepted for processing
+	 */
+	public long getSubmitted() {
+		return this.submitted;
+	}
+
+	/**
+	 * <p>
+	 * Returns the number of items processed without raising an exception. When processing
+	 * batches, an item counts as completed if {@link PooledWorkersLogic#processBatch(Object, List)}
+	 * returns normally, even if it handled the item's failure internally.
+	 * </p>
+	 *
+	 * @return the number of items processed without raising an exception
+	 */
+	public long getCompleted() {
+		return this.completed;
+	}
+
+	/**
+	 * <p>
+	 * Returns the number of items whose processing raised an exception (for batches, the number of
+	 * items in the batches which raised an exception).
+	 * </p>
+	 *
+	 * @return the number of items whose processing raised an exception
+	 */
+	public long getFailed() {
+		return this.failed;
+	}
+
+	public int getThreadCount() {
+		return this.threadCount;
+	}
+
+	/**
+	 * <p>
+	 * Returns the number of worker threads which are currently running, whether they're
+	 * processing items or waiting for them.
+	 * </p>
+	 *
+	 * @return the number of worker threads which are currently running
+	 */
+	public int getActiveWorkers() {
+		return this.activeWorkers;
+	}
+
+	/**
+	 * <p>
+	 * Returns the number of workers allowed to process items concurrently (see
+	 * {@link PooledWorkers#getWorkerLimit()}).
+	 * </p>
+	 *
+	 * @return the number of workers allowed to process items concurrently
+	 */
+	public int getWorkerLimit() {
+		return this.workerLimit;
+	}
+
+	public int getQueueSize() {
+		return this.queueSize;
+	}
+
+	/**
+	 * <p>
+	 * Returns the distribution of the time spent processing each item. When processing batches,
+	 * each item is attributed an equal share of its batch's processing time.
+	 * </p>
+	 *
+	 * @return the distribution of the time spent processing each item
+	 */
+	public LatencyHistogram.Snapshot getProcessingTime() {
+		return this.processingTime;
+	}
+
+	/**
+	 * <p>
+	 * Returns the distribution of the time the workers spent waiting for each item to arrive.
+	 * </p>
+	 *
+	 * @return the distribution of the time the workers spent waiting for each item to arrive
+	 */
+	public LatencyHistogram.Snapshot getWorkerWaitTime() {
+		return this.workerWaitTime;
+	}
+
+	/**
+	 * <p>
+	 * Returns the distribution of the time producers spent waiting for room in the queue in
+	 * {@link PooledWorkers#addWorkItem(Object)} and
+	 * {@link PooledWorkers#addWorkItem(Object, java.time.Duration)}.
+	 * </p>
+	 *
+	 * @return the distribution of the time producers spent waiting for room in the queue
+	 */
+	public LatencyHistogram.Snapshot getProducerWaitTime() {
+		return this.producerWaitTime;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("PooledWorkersMetrics [submitted=%d, completed=%d, failed=%d, threadCount=%d, "
+			+ "activeWorkers=%d, workerLimit=%d, queueSize=%d, processingTime={%s}, workerWaitTime={%s}, "
+			+ "producerWaitTime={%s}]", //
+			this.submitted, this.completed, this.failed, this.threadCount, this.activeWorkers, this.workerLimit,
+			this.queueSize, this.processingTime, this.workerWaitTime, this.producerWaitTime);
+	}
+}
@@ -0,0 +1,461 @@
+/*******************************************************************************
+ * #%L
+ * Armedia Caliente
+ * %%
+ * Copyright (C) 2013 - 2025 Armedia, LLC
+ * %%
+ * This file is part of the Caliente software.
+ *
+ * If the software was purchased under a paid Caliente license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Caliente is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Caliente is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Caliente. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ *******************************************************************************/
+package com.armedia.commons.utilities;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.armedia.commons.utilities.concurrent.BaseShareableLockable;
+import com.armedia.commons.utilities.concurrent.MutexAutoLock;
+
+/**
+ * <p>
+ * A chain of {@link PooledWorkers} <i>stages</i> (i.e. read &rarr; transform &rarr; write), each
+ * with its own threads and bounded queue, where the results of each stage are fed to the next.
+ * The stages are built with a {@link Builder}, in order, and started together.
+ * </p>
+ * <p>
+ * A stage's workers add their results to the next stage's queue, blocking while it's full, so a
+ * slow stage holds back the ones before it all the way up to the producers feeding the pipeline:
+ * this is how the backpressure works, and why no queue grows beyond its limit. When the work is
+ * done, {@link #waitForCompletion()} shuts the stages down from first to last, waiting for each
+ * one to process everything it was given (and hand it to the next) before shutting down the
+ * next, so the end of the stream flows through the whole pipeline without any items being lost,
+ * and without any stage waiting on one which has already stopped.
+ * </p>
+ *
+ * @param <IN>
+ *            the type of the items fed to the pipeline
+ */
+public final class PooledWorkersPipeline<IN> extends BaseShareableLockable {
+
+	private final List<PooledWorkers<?, ?>> stages;
+	private final List<List<Object>> undelivered;
+	private final PooledWorkers<?, IN> head;
+
+	private PooledWorkersPipeline(List<PooledWorkers<?, ?>> stages, List<List<Object>> undelivered) {
+		this.stages = Collections.unmodifiableList(stages);
+		this.undelivered = undelivered;
+		@SuppressWarnings("unchecked")
+		PooledWorkers<?, IN> head = (PooledWorkers<?, IN>) stages.get(0);
+		this.head = head;
+	}
+
+	/**
+	 * <p>
+	 * The logic for the stages which feed the next one: it applies the stage's function, and adds
+	 * its result (or results) to the next stage's queue, blocking while it's full. Results which
+	 * can't be handed over because the thread is interrupted are kept, to be reported among the
+	 * next stage's remaining items.
+	 * </p>
+	 */
+	private static final class Forwarder<STATE, ITEM, OUT, EX extends Exception>
+		implements PooledWorkersLogic<STATE, ITEM, EX> {
+		private final Logger log;
+		private final PooledWorkersFunction<STATE, ITEM, ?, EX> function;
+		private final boolean flatten;
+		private final PooledWorkers<?, OUT> next;
+		private final List<Object> undelivered;
+
+		private Forwarder(Logger log, PooledWorkersFunction<STATE, ITEM, ?, EX> function, boolean flatten,
+			PooledWorkers<?, OUT> next, List<Object> undelivered) {
+			this.log = log;
+			this.function = function;
+			this.flatten = flatten;
+			this.next = next;
+			this.undelivered = undelivered;
+		}
+
+		@Override
+		public STATE initialize(PooledWorkers<STATE, ITEM> workers) throws EX {
+			return this.function.initialize(workers);
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public void process(STATE state, ITEM item) throws EX {
+			final Object result = this.function.apply(state, item);
+			if (result == null) { return; }
+			if (!this.flatten) {
+				forward((OUT) result);
+				return;
+			}
+			for (Object o : (Iterable<?>) result) {
+				if (o != null) {
+					forward((OUT) o);
+				}
+			}
+		}
+
+		private void forward(OUT out) {
+			try {
+				this.next.addWorkItem(out);
+			} catch (InterruptedException e) {
+				// We're being forcibly shut down, so keep it to be reported as not processed
+				Thread.currentThread().interrupt();
+				this.log.warn("Interrupted while handing {} to the next stage, it will be returned as remaining", out);
+				this.undelivered.add(out);
+			}
+		}
+
+		@Override
+		public void handleFailure(STATE state, ITEM item, EX raised) {
+			this.function.handleFailure(state, item, raised);
+		}
+
+		@Override
+		public void cleanup(STATE state) {
+			this.function.cleanup(state);
+		}
+	}
+
+	private static final class Stage {
+		private final String name;
+		private final int threads;
+		private final int backlogLimit;
+		private final PooledWorkersLogic<?, ?, ?> logic;
+		private final boolean forward;
+		private final boolean flatten;
+
+		private Stage(String name, int threads, int backlogLimit, PooledWorkersLogic<?, ?, ?> logic, boolean forward,
+			boolean flatten) {
+			this.name = name;
+			this.threads = threads;
+			this.backlogLimit = backlogLimit;
+			this.logic = Objects.requireNonNull(logic, "Must provide the logic for each stage");
+			this.forward = forward;
+			this.flatten = flatten;
+		}
+
+		@SuppressWarnings({
+			"unchecked", "rawtypes"
+		})
+		private PooledWorkers<?, ?> start(Logger log, PooledWorkers<?, ?> next, List<Object> undelivered) {
+			PooledWorkersLogic logic = this.logic;
+			if (this.forward && (next != null)) {
+				logic = new Forwarder(log, (PooledWorkersFunction) this.logic, this.flatten, next, undelivered);
+			}
+			return new PooledWorkers.Builder() //
+				.logic(logic) //
+				.threads(this.threads) //
+				.name(this.name) //
+				.backlogLimit(this.backlogLimit) //
+				.waitForWork(true) //
+				.start();
+		}
+	}
+
+	/**
+	 * <p>
+	 * Builds a {@link PooledWorkersPipeline}, one stage at a time. Each stage's input type is the
+	 * previous stage's output type, which is tracked by the {@code OUT} type parameter.
+	 * </p>
+	 *
+	 * @param <IN>
+	 *            the type of the items fed to the pipeline
+	 * @param <OUT>
+	 *            the type of the items produced by the last stage so far
+	 */
+	public static final class Builder<IN, OUT> {
+		private final List<Stage> stages = new ArrayList<>();
+		private boolean sealed = false;
+
+		private void checkOpen() {
+			if (this.sealed) { throw new IllegalStateException("No stages may be added after the sink"); }
+		}
+
+		@SuppressWarnings("unchecked")
+		private <NEXT> Builder<IN, NEXT> add(Stage stage) {
+			checkOpen();
+			this.stages.add(stage);
+			return (Builder<IN, NEXT>) this;
+		}
+
+		/**
+		 * <p>
+		 * Adds a stage which applies the given function to each item, and feeds its result to the
+		 * next stage ({@code null} results are dropped). If there is no next stage, the results
+		 * are discarded.
+		 * </p>
+		 *
+		 * @param <STATE>
+		 *            the type of the stage's worker threads' state
+		 * @param <NEXT>
+		 *            the type of the items produced by this stage
+		 * @param name
+		 *            the name of the stage (used to name its threads)
+		 * @param threads
+		 *            the number of worker threads for this stage
+		 * @param backlogLimit
+		 *            the maximum number of items waiting in this stage's queue (see
+		 *            {@link PooledWorkers.Builder#backlogLimit(int)})
+		 * @param function
+		 *            the function to apply to each item
+		 * @return this builder, producing the new stage's items
+		 * @throws IllegalStateException
+		 *             if a {@link #sink(String, int, int, PooledWorkersLogic) sink} was already
+		 *             added
+		 */
+		public <STATE, NEXT, EX extends Exception> Builder<IN, NEXT> stage(String name, int threads,
+			int backlogLimit, PooledWorkersFunction<STATE, ? super OUT, NEXT, EX> function) {
+			return add(new Stage(name, threads, backlogLimit, function, true, false));
+		}
+
+		/**
+		 * <p>
+		 * Adds a stage which applies the given function to each item, and feeds each of the
+		 * elements of its result to the next stage ({@code null} results and elements are
+		 * dropped). This allows a stage to produce any number of items from each of its inputs.
+		 * </p>
+		 *
+		 * @param <STATE>
+		 *            the type of the stage's worker threads' state
+		 * @param <NEXT>
+		 *            the type of the items produced by this stage
+		 * @param name
+		 *            the name of the stage (used to name its threads)
+		 * @param threads
+		 *            the number of worker threads for this stage
+		 * @param backlogLimit
+		 *            the maximum number of items waiting in this stage's queue (see
+		 *            {@link PooledWorkers.Builder#backlogLimit(int)})
+		 * @param function
+		 *            the function to apply to each item
+		 * @return this builder, producing the new stage's items
+		 * @throws IllegalStateException
+		 *             if a {@link #sink(String, int, int, PooledWorkersLogic) sink} was already
+		 *             added
+		 */
+		public <STATE, NEXT, EX extends Exception> Builder<IN, NEXT> flatStage(String name, int threads,
+			int backlogLimit,
+			PooledWorkersFunction<STATE, ? super OUT, ? extends Iterable<? extends NEXT>, EX> function) {
+			return add(new Stage(name, threads, backlogLimit, function, true, true));
+		}
+
+		/**
+		 * <p>
+		 * Adds the final stage, which consumes the items without producing any. No stages may be
+		 * added after it.
+		 * </p>
+		 *
+		 * @param <STATE>
+		 *            the type of the stage's worker threads' state
+		 * @param name
+		 *            the name of the stage (used to name its threads)
+		 * @param threads
+		 *            the number of worker threads for this stage
+		 * @param backlogLimit
+		 *            the maximum number of items waiting in this stage's queue (see
+		 *            {@link PooledWorkers.Builder#backlogLimit(int)})
+		 * @param logic
+		 *            the logic which consumes each item
+		 * @return this builder
+		 * @throws IllegalStateException
+		 *             if a sink was already added
+		 */
+		public <STATE, EX extends Exception> Builder<IN, Void> sink(String name, int threads, int backlogLimit,
+			PooledWorkersLogic<STATE, ? super OUT, EX> logic) {
+			final Builder<IN, Void> b = add(new Stage(name, threads, backlogLimit, logic, false, false));
+			this.sealed = true;
+			return b;
+		}
+
+		/**
+		 * <p>
+		 * Starts all the stages, from last to first, and returns the pipeline. If any stage fails
+		 * to start, the stages already started are aborted before the failure is re-thrown.
+		 * </p>
+		 *
+		 * @return the started pipeline
+		 * @throws IllegalStateException
+		 *             if no stages were added
+		 */
+		public PooledWorkersPipeline<IN> start() {
+			if (this.stages.isEmpty()) { throw new IllegalStateException("Must add at least one stage"); }
+			final Logger log = LoggerFactory.getLogger(PooledWorkersPipeline.class);
+			final List<PooledWorkers<?, ?>> started = new ArrayList<>(this.stages.size());
+			// The items each stage's predecessor couldn't hand over to it
+			final List<List<Object>> undelivered = new ArrayList<>(this.stages.size());
+			for (int i = 0; i < this.stages.size(); i++) {
+				undelivered.add(Collections.synchronizedList(new ArrayList<>()));
+			}
+			PooledWorkers<?, ?> next = null;
+			boolean ok = false;
+			try {
+				// Each stage needs the next one to be up and running
+				for (int i = this.stages.size() - 1; i >= 0; i--) {
+					next = this.stages.get(i).start(log, next,
+						(i + 1) < undelivered.size() ? undelivered.get(i + 1) : null);
+					started.add(0, next);
+				}
+				ok = true;
+			} finally {
+				if (!ok) {
+					// Don't leave the stages we did start running with nothing to feed them
+					started.forEach(PooledWorkers::abortExecution);
+				}
+			}
+			return new PooledWorkersPipeline<>(started, undelivered);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Returns a new builder for a pipeline fed with items of the given type.
+	 * </p>
+	 *
+	 * @param <IN>
+	 *            the type of the items fed to the pipeline
+	 * @return a new builder
+	 */
+	public static <IN> Builder<IN, IN> builder() {
+		return new Builder<>();
+	}
+
+	/**
+	 * Returns the number of stages in this pipeline.
+	 *
+	 * @return the number of stages in this pipeline
+	 */
+	public int getStageCount() {
+		return this.stages.size();
+	}
+
+	/**
+	 * Returns the {@link PooledWorkers} instance which runs the given stage, i.e. to examine its
+	 * {@link PooledWorkers#getMetrics() metrics}.
+	 *
+	 * @param stage
+	 *            the stage's position in the pipeline, starting at 0
+	 * @return the {@link PooledWorkers} instance which runs the given stage
+	 * @throws IndexOutOfBoundsException
+	 *             if {@code stage} is out of range
+	 */
+	public PooledWorkers<?, ?> getStage(int stage) {
+		return this.stages.get(stage);
+	}
+
+	public boolean isProcessing() {
+		return shareLocked(this.head::isProcessing);
+	}
+
+	/**
+	 * Feeds {@code item} to the first stage, blocking if its queue is full (see
+	 * {@link PooledWorkers#addWorkItem(Object)}).
+	 *
+	 * @param item
+	 * @throws InterruptedException
+	 * @throws NullPointerException
+	 *             if {@code item} is {@code null}
+	 */
+	public void addWorkItem(IN item) throws InterruptedException {
+		this.head.addWorkItem(item);
+	}
+
+	/**
+	 * Feeds {@code item} to the first stage, blocking for at most the given time if its queue is
+	 * full (see {@link PooledWorkers#addWorkItem(Object, Duration)}).
+	 *
+	 * @param item
+	 * @return {@code true} if the item was added to the queue, or {@code false} otherwise.
+	 * @throws InterruptedException
+	 * @throws NullPointerException
+	 *             if {@code item} is {@code null}
+	 */
+	public boolean addWorkItem(IN item, Duration maxWait) throws InterruptedException {
+		return this.head.addWorkItem(item, maxWait);
+	}
+
+	/**
+	 * Feeds {@code item} to the first stage without ever blocking (see
+	 * {@link PooledWorkers#addWorkItemNonblock(Object)}).
+	 *
+	 * @param item
+	 * @return {@code true} if the item was added to the queue, or {@code false} otherwise.
+	 * @throws NullPointerException
+	 *             if {@code item} is {@code null}
+	 */
+	public boolean addWorkItemNonblock(IN item) {
+		return this.head.addWorkItemNonblock(item);
+	}
+
+	private List<List<?>> shutdown(boolean abort) {
+		try (MutexAutoLock lock = mutexAutoLock()) {
+			final List<List<?>> remaining = new ArrayList<>(this.stages.size());
+			// Upstream first, so each stage gets everything from the one before it while it's
+			// still running
+			for (int i = 0; i < this.stages.size(); i++) {
+				final PooledWorkers<?, ?> stage = this.stages.get(i);
+				final List<?> r = (abort ? stage.abortExecution() : stage.waitForCompletion());
+				// The previous stage is done by now, so it won't add any more undelivered items
+				final List<Object> u = this.undelivered.get(i);
+				if (u.isEmpty()) {
+					remaining.add(r != null ? r : Collections.emptyList());
+					continue;
+				}
+				final List<Object> all = new ArrayList<>(u);
+				if (r != null) {
+					all.addAll(r);
+				}
+				remaining.add(all);
+			}
+			return remaining;
+		}
+	}
+
+	/**
+	 * <p>
+	 * Waits for all the items fed to the pipeline to make their way through all the stages, and
+	 * shuts them down. Returns the items each stage left unprocessed (normally, none), in stage
+	 * order. A stage's unprocessed items include those the previous stage produced, but couldn't
+	 * hand over to it because its thread was interrupted.
+	 * </p>
+	 *
+	 * @return the items each stage left unprocessed, in stage order
+	 */
+	public List<List<?>> waitForCompletion() {
+		return shutdown(false);
+	}
+
+	/**
+	 * <p>
+	 * Stops all the stages as soon as the items they're currently processing are done (and handed
+	 * to the next stage), and returns the items each stage didn't get to, in stage order.
+	 * </p>
+	 *
+	 * @return the items each stage didn't get to, in stage order
+	 */
+	public List<List<?>> abortExecution() {
+		return shutdown(true);
+	}
+}
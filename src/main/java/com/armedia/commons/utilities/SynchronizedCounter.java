@@ -31,7 +31,10 @@ import java.util.Objects;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.Condition;
 import java.util.function.Function;
 import java.util.function.LongPredicate;
@@ -51,17 +54,66 @@ import com.armedia.commons.utilities.concurrent.MutexAutoLock;
  * {@link BaseShareableLockable} for maximum performance and concurrency. It also tracks the value
  * for the last time the value was changed, in nanoseconds.
  * </p>
+ * <p>
+ * Counters created in {@link #lockFree() lock-free mode} apply all modifications via
+ * compare-and-swap operations instead of the mutex lock, and only engage the lock (and the
+ * {@link Condition} it provides) to signal changes while there are threads waiting in
+ * {@link #waitUntilValue(long)} or {@link #waitUntilChanged()}. This makes them much better
+ * suited for values which are updated by many threads at once (i.e. progress counters). In this
+ * mode, the functions given to {@link #recompute(LongUnaryOperator)} and its siblings may be
+ * invoked more than once if there's contention, and should thus be free of side effects.
+ * </p>
  *
  *
  *
  */
 public final class SynchronizedCounter extends BaseShareableLockable {
+	private static final AtomicLongFieldUpdater<SynchronizedCounter> VALUE = AtomicLongFieldUpdater
+		.newUpdater(SynchronizedCounter.class, "value");
+	private static final AtomicLongFieldUpdater<SynchronizedCounter> LAST_CHANGE_NANOS = AtomicLongFieldUpdater
+		.newUpdater(SynchronizedCounter.class, "lastChangeNanos");
+	private static final AtomicIntegerFieldUpdater<SynchronizedCounter> WAITERS = AtomicIntegerFieldUpdater
+		.newUpdater(SynchronizedCounter.class, "waiters");
+
+	/**
+	 * <p>
+	 * Create a new lock-free value with the starting value of 0. Identical to invoking
+	 * {@link #SynchronizedCounter(long, boolean) new SynchronizedCounter(0, true)}.
+	 * </p>
+	 *
+	 * @return the new lock-free counter
+	 */
+	public static SynchronizedCounter lockFree() {
+		return SynchronizedCounter.lockFree(0);
+	}
+
+	/**
+	 * <p>
+	 * Create a new lock-free value with the given starting value. Identical to invoking
+	 * {@link #SynchronizedCounter(long, boolean) new SynchronizedCounter(start, true)}.
+	 * </p>
+	 *
+	 * @param start
+	 *            the starting value for the value.
+	 * @return the new lock-free counter
+	 */
+	public static SynchronizedCounter lockFree(long start) {
+		return new SynchronizedCounter(start, true);
+	}
+
 	private final Condition changed;
 	private final Instant created;
+	private final boolean lockFree;
 	private long changes = 0;
 	private Instant lastChange = null;
 	private volatile long value = 0;
 
+	// These are only used in lock-free mode
+	private final long createdNanos;
+	private final LongAdder changeCount;
+	private volatile long lastChangeNanos = 0;
+	private volatile int waiters = 0;
+
 	/**
 	 * <p>
 	 * Create a new value with the starting value of 0. Identical to invoking
@@ -81,12 +133,42 @@ public final class SynchronizedCounter extends BaseShareableLockable {
 	 *            the starting value for the value.
 	 */
 	public SynchronizedCounter(long start) {
+		this(start, false);
+	}
+
+	/**
+	 * <p>
+	 * Create a new value with the given starting value, which will operate in lock-free mode if
+	 * {@code lockFree} is {@code true}.
+	 * </p>
+	 *
+	 * @param start
+	 *            the starting value for the value.
+	 * @param lockFree
+	 *            whether to use lock-free updates
+	 */
+	public SynchronizedCounter(long start, boolean lockFree) {
 		this.value = start;
+		this.createdNanos = System.nanoTime();
 		this.created = Instant.now();
 		this.lastChange = this.created;
+		this.lastChangeNanos = this.createdNanos;
+		this.lockFree = lockFree;
+		this.changeCount = (lockFree ? new LongAdder() : null);
 		this.changed = getMutexLock().newCondition();
 	}
 
+	/**
+	 * <p>
+	 * Returns {@code true} if this counter operates in lock-free mode, {@code false} otherwise.
+	 * </p>
+	 *
+	 * @return {@code true} if this counter operates in lock-free mode, {@code false} otherwise
+	 */
+	public boolean isLockFree() {
+		return this.lockFree;
+	}
+
 	/**
 	 * <p>
 	 * Returns the time at which the object was created, in nanoseconds (as returned by
@@ -103,10 +185,15 @@ public final class SynchronizedCounter extends BaseShareableLockable {
 	 * Returns the time at which the object was last changed, in nanoseconds (as returned by
 	 * {@link System#nanoTime()}).
 	 * </p>
+	 * <p>
+	 * In lock-free mode, the time is calculated from the creation time plus the elapsed time as
+	 * measured by {@link System#nanoTime()}, to avoid reading the wall clock on every change.
+	 * </p>
 	 *
 	 * @return the time at which the object was last changed, in nanoseconds
 	 */
 	public Instant getLastChanged() {
+		if (this.lockFree) { return this.created.plusNanos(this.lastChangeNanos - this.createdNanos); }
 		return shareLocked(() -> this.lastChange);
 	}
 
@@ -122,6 +209,7 @@ public final class SynchronizedCounter extends BaseShareableLockable {
 	 *         otherwise
 	 */
 	public boolean isChangedSinceCreation() {
+		if (this.lockFree) { return (this.changeCount.sum() != 0); }
 		return shareLocked(() -> ((this.changes != 0) || !this.created.equals(this.lastChange)));
 	}
 
@@ -133,6 +221,7 @@ public final class SynchronizedCounter extends BaseShareableLockable {
 	 * @return the value's current value
 	 */
 	public long get() {
+		if (this.lockFree) { return this.value; }
 		return shareLocked(() -> this.value);
 	}
 
@@ -204,6 +293,17 @@ public final class SynchronizedCounter extends BaseShareableLockable {
 	protected Triple<Long, Boolean, Long> recompute(LongPredicate predicate, final LongUnaryOperator f) {
 		Objects.requireNonNull(f, "Must provide a function to compute the new value with");
 		Objects.requireNonNull(predicate, "Must provide a predicate to test the current value with");
+		if (this.lockFree) {
+			while (true) {
+				final long oldValue = this.value;
+				if (!predicate.test(oldValue)) { return Triple.of(null, false, oldValue); }
+				final long newValue = f.applyAsLong(oldValue);
+				if (SynchronizedCounter.VALUE.compareAndSet(this, oldValue, newValue)) {
+					changed();
+					return Triple.of(oldValue, true, newValue);
+				}
+			}
+		}
 		final AtomicReference<Long> old = new AtomicReference<>(null);
 		final AtomicBoolean recomputed = new AtomicBoolean(false);
 		final Predicate<Long> p = (v) -> predicate.test(v);
@@ -231,6 +331,12 @@ public final class SynchronizedCounter extends BaseShareableLockable {
 	 * @return the new value after applying the delta
 	 */
 	public long addAndGet(long delta) {
+		if (this.lockFree) {
+			if (delta == 0) { return this.value; }
+			final long ret = SynchronizedCounter.VALUE.addAndGet(this, delta);
+			changed();
+			return ret;
+		}
 		try (MutexAutoLock lock = mutexAutoLock()) {
 			long ret = (this.value += delta);
 			if (delta != 0) {
@@ -243,6 +349,23 @@ public final class SynchronizedCounter extends BaseShareableLockable {
 		}
 	}
 
+	/**
+	 * <p>
+	 * Records a lock-free change, and signals any waiters. The value must be updated before this
+	 * method is invoked, and the waiters must register before checking the value, to ensure that
+	 * either the waiters see the new value, or this method sees the waiters.
+	 * </p>
+	 */
+	private void changed() {
+		this.changeCount.increment();
+		SynchronizedCounter.LAST_CHANGE_NANOS.lazySet(this, System.nanoTime());
+		if (this.waiters > 0) {
+			try (MutexAutoLock lock = mutexAutoLock()) {
+				this.changed.signalAll();
+			}
+		}
+	}
+
 	/**
 	 * <p>
 	 * Subtract the given delta from the value. Identical to invoking {@link #addAndGet(long)
@@ -312,6 +435,7 @@ public final class SynchronizedCounter extends BaseShareableLockable {
 		if (timeout > 0) {
 			Objects.requireNonNull(timeUnit, "Must provide a TimeUnit for the waiting period");
 		}
+		if (this.lockFree) { return lockFreeWaitUntilValue(value, timeout, timeUnit); }
 		try (MutexAutoLock lock = mutexAutoLock()) {
 			boolean success = true;
 			while (value != this.value) {
@@ -365,6 +489,7 @@ public final class SynchronizedCounter extends BaseShareableLockable {
 		if (timeout > 0) {
 			Objects.requireNonNull(timeUnit, "Must provide a TimeUnit for the waiting period");
 		}
+		if (this.lockFree) { return lockFreeWaitUntilChanged(timeout, timeUnit); }
 		try (MutexAutoLock lock = mutexAutoLock()) {
 			if (timeout > 0) {
 				if (!this.changed.await(timeout, timeUnit)) {
@@ -381,9 +506,57 @@ public final class SynchronizedCounter extends BaseShareableLockable {
 		}
 	}
 
+	private boolean lockFreeWaitUntilValue(final long value, long timeout, TimeUnit timeUnit)
+		throws InterruptedException {
+		if (value == this.value) { return true; }
+		long remaining = (timeout > 0 ? timeUnit.toNanos(timeout) : 0);
+		try (MutexAutoLock lock = mutexAutoLock()) {
+			SynchronizedCounter.WAITERS.incrementAndGet(this);
+			try {
+				while (value != this.value) {
+					if (timeout > 0) {
+						if (remaining <= 0) { return false; }
+						remaining = this.changed.awaitNanos(remaining);
+					} else {
+						this.changed.await();
+					}
+				}
+				return true;
+			} finally {
+				SynchronizedCounter.WAITERS.decrementAndGet(this);
+			}
+		}
+	}
+
+	private long lockFreeWaitUntilChanged(long timeout, TimeUnit timeUnit)
+		throws InterruptedException, TimeoutException {
+		long remaining = (timeout > 0 ? timeUnit.toNanos(timeout) : 0);
+		try (MutexAutoLock lock = mutexAutoLock()) {
+			SynchronizedCounter.WAITERS.incrementAndGet(this);
+			try {
+				// The change count only ever goes up, so any difference means a change happened
+				final long changes = this.changeCount.sum();
+				while (changes == this.changeCount.sum()) {
+					if (timeout > 0) {
+						if (remaining <= 0) {
+							throw new TimeoutException(
+								String.format("Timed out waiting %d %s for the value to change", timeout, timeUnit));
+						}
+						remaining = this.changed.awaitNanos(remaining);
+					} else {
+						this.changed.await();
+					}
+				}
+				return this.value;
+			} finally {
+				SynchronizedCounter.WAITERS.decrementAndGet(this);
+			}
+		}
+	}
+
 	@Override
 	public String toString() {
-		return String.format("SynchronizedCounter [created=%s, lastChange=%s, value=%s]", this.created, this.lastChange,
-			this.value);
+		return String.format("SynchronizedCounter [created=%s, lastChange=%s, value=%s]", this.created,
+			(this.lockFree ? getLastChanged() : this.lastChange), this.value);
 	}
 }
@@ -0,0 +1,266 @@
+/*******************************************************************************
+ * #%L
+ * Armedia Caliente
+ * %%
+ * Copyright (C) 2013 - 2025 Armedia, LLC
+ * %%
+ * This file is part of the Caliente software.
+ *
+ * If the software was purchased under a paid Caliente license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Caliente is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Caliente is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Caliente. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ *******************************************************************************/
+package com.armedia.commons.utilities.concurrent;
+
+import java.util.concurrent.TimeUnit;
+
+import com.armedia.commons.utilities.Tools;
+
+/**
+ * <p>
+ * A controller which finds the number of concurrent workers (the <i>limit</i>) that maximizes
+ * throughput, between a minimum and a maximum, based on periodic {@link #update(long, long, long, int)
+ * samples} of how much work got done. It combines two strategies:
+ * </p>
+ * <ul>
+ * <li><b>Hill climbing</b>: while there's a backlog of pending work, the limit moves in one
+ * direction for as long as throughput improves, taking larger steps the longer it keeps
+ * improving, and reverses direction when throughput drops. If throughput stays flat while
+ * growing, the extra workers aren't helping, so the limit starts shrinking instead.</li>
+ * <li><b>Multiplicative decrease</b>: if the average time spent on each item grows well beyond
+ * the best observed so far (by the {@link #getLatencyLimit() latency limit} factor), whatever is
+ * doing the work is likely overloaded, so the limit is cut back sharply, as is done by AIMD
+ * congestion control.</li>
+ * </ul>
+ * <p>
+ * When there's no backlog at all, the workers are keeping up with the work, so the limit slowly
+ * shrinks to release the ones which aren't needed. This class only makes the decisions: it's up to
+ * the caller to gather the samples, and to apply the resulting limit.
+ * </p>
+ */
+public class AdaptiveConcurrencyLimit extends BaseShareableLockable {
+
+	/**
+	 * <p>
+	 * The default fraction by which throughput must change between samples to be considered an
+	 * actual change, and not noise.
+	 * </p>
+	 */
+	public static final double DEF_TOLERANCE = 0.05;
+
+	/**
+	 * <p>
+	 * The default factor by which the per-item latency must exceed the best observed latency to be
+	 * considered a sign of overload.
+	 * </p>
+	 */
+	public static final double DEF_LATENCY_LIMIT = 2.0;
+
+	// How much the latency baseline is allowed to drift upwards with each sample, so that it
+	// tracks slow changes in the cost of the work instead of remaining stuck at an outlier
+	private static final double BASELINE_DRIFT = 1.01;
+
+	// The fraction of the limit retained when backing off due to overload
+	private static final double BACKOFF_FACTOR = 0.75;
+
+	private final int min;
+	private final int max;
+	private final double tolerance;
+	private final double latencyLimit;
+	private final int maxStep;
+
+	private int limit;
+	private int direction = 1;
+	private int step = 1;
+	private double lastThroughput = -1;
+	private double baselineLatency = -1;
+
+	public AdaptiveConcurrencyLimit(int min, int max) {
+		this(min, max, min);
+	}
+
+	public AdaptiveConcurrencyLimit(int min, int max, int initial) {
+		this(min, max, initial, AdaptiveConcurrencyLimit.DEF_TOLERANCE, AdaptiveConcurrencyLimit.DEF_LATENCY_LIMIT);
+	}
+
+	/**
+	 * <p>
+	 * Creates a new controller.
+	 * </p>
+	 *
+	 * @param min
+	 *            the minimum limit (must be greater than {@code 0})
+	 * @param max
+	 *            the maximum limit (must be greater than or equal to {@code min})
+	 * @param initial
+	 *            the initial limit (clamped to the {@code [min, max]} range)
+	 * @param tolerance
+	 *            the fraction by which throughput must change between samples to be considered
+	 *            an actual change (must not be negative)
+	 * @param latencyLimit
+	 *            the factor by which the per-item latency must exceed the best observed latency to
+	 *            be considered a sign of overload (must be greater than {@code 1})
+	 * @throws IllegalArgumentException
+	 *             if any of the parameters are out of range
+	 */
+	public AdaptiveConcurrencyLimit(int min, int max, int initial, double tolerance, double latencyLimit) {
+		if (min < 1) {
+			throw new IllegalArgumentException(
+				String.format("The minimum limit must be greater than 0 (%d was given)", min));
+		}
+		if (max < min) {
+			throw new IllegalArgumentException(
+				String.format("The maximum limit %d is lower than the minimum limit %d", max, min));
+		}
+		if (!(tolerance >= 0)) {
+			throw new IllegalArgumentException(
+				String.format("The tolerance may not be negative (%f was given)", tolerance));
+		}
+		if (!(latencyLimit > 1)) {
+			throw new IllegalArgumentException(
+				String.format("The latency limit must be greater than 1 (%f was given)", latencyLimit));
+		}
+		this.min = min;
+		this.max = max;
+		this.tolerance = tolerance;
+		this.latencyLimit = latencyLimit;
+		// Don't let the steps grow so large that a single one could skip over most of the range
+		this.maxStep = Math.max(1, (max - min) / 4);
+		this.limit = Tools.ensureBetween(min, initial, max);
+	}
+
+	public final int getMin() {
+		return this.min;
+	}
+
+	public final int getMax() {
+		return this.max;
+	}
+
+	public final double getTolerance() {
+		return this.tolerance;
+	}
+
+	public final double getLatencyLimit() {
+		return this.latencyLimit;
+	}
+
+	/**
+	 * <p>
+	 * Returns the current limit, which will always be between {@link #getMin()} and
+	 * {@link #getMax()}, inclusive.
+	 * </p>
+	 *
+	 * @return the current limit
+	 */
+	public int getLimit() {
+		return shareLocked(() -> this.limit);
+	}
+
+	/**
+	 * <p>
+	 * Feeds a new sample to the controller, and returns the new limit. Each sample describes what
+	 * happened since the previous one.
+	 * </p>
+	 *
+	 * @param completed
+	 *            the number of items completed during the sample
+	 * @param elapsedNanos
+	 *            the duration of the sample, in nanoseconds
+	 * @param busyNanos
+	 *            the total time the workers spent processing the completed items, in nanoseconds
+	 * @param backlog
+	 *            the number of items waiting to be processed at the end of the sample
+	 * @return the new limit
+	 */
+	public int update(long completed, long elapsedNanos, long busyNanos, int backlog) {
+		try (MutexAutoLock lock = mutexAutoLock()) {
+			if ((completed <= 0) || (elapsedNanos <= 0)) {
+				// Nothing got done: if there's nothing to do, we don't need as many workers. If
+				// there is, the workers are stalled on something, and more of them won't help
+				if (backlog <= 0) {
+					move(-1, 1);
+				}
+				return this.limit;
+			}
+
+			final double throughput = (completed * (double) TimeUnit.SECONDS.toNanos(1)) / elapsedNanos;
+			final double latency = Math.max(0, busyNanos) / (double) completed;
+			if ((this.baselineLatency < 0) || (latency < this.baselineLatency)) {
+				this.baselineLatency = latency;
+			} else {
+				final double drifted = this.baselineLatency * AdaptiveConcurrencyLimit.BASELINE_DRIFT;
+				this.baselineLatency = Math.min(latency, drifted);
+			}
+
+			if (latency > (this.baselineLatency * this.latencyLimit)) {
+				// Overloaded: back off sharply (or just hold, if we can't go any lower), and start
+				// measuring afresh
+				final int target = (int) (this.limit * AdaptiveConcurrencyLimit.BACKOFF_FACTOR);
+				this.limit = Math.max(this.min, Math.min(target, this.limit - 1));
+				this.direction = 1;
+				this.step = 1;
+				this.lastThroughput = -1;
+				return this.limit;
+			}
+
+			if (backlog <= 0) {
+				// The workers are keeping up, so we probably have more of them than we need
+				this.lastThroughput = throughput;
+				move(-1, 1);
+				return this.limit;
+			}
+
+			if (this.lastThroughput > 0) {
+				final double change = (throughput - this.lastThroughput) / this.lastThroughput;
+				if (change < -this.tolerance) {
+					// Things got worse, so turn around
+					this.direction = -this.direction;
+					this.step = 1;
+				} else if (change > this.tolerance) {
+					// Things got better, so keep going and pick up the pace
+					this.step = Math.min(this.step * 2, this.maxStep);
+				} else {
+					// No real change: if we were growing, the extra workers aren't helping
+					if (this.direction > 0) {
+						this.direction = -1;
+					}
+					this.step = 1;
+				}
+			}
+			this.lastThroughput = throughput;
+			move(this.direction, this.step);
+			return this.limit;
+		}
+	}
+
+	private void move(int direction, int step) {
+		final int target = Tools.ensureBetween(this.min, this.limit + (direction * step), this.max);
+		if ((target == this.limit) && (direction == this.direction)) {
+			// We hit the edge of the range, so the only way to go from here is back
+			this.direction = -this.direction;
+			this.step = 1;
+		}
+		this.limit = target;
+	}
+
+	@Override
+	public String toString() {
+		return shareLocked(() -> String.format("AdaptiveConcurrencyLimit [min=%d, max=%d, limit=%d]", this.min,
+			this.max, this.limit));
+	}
+}
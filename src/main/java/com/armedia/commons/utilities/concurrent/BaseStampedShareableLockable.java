@@ -0,0 +1,452 @@
+/*******************************************************************************
+ * #%L
+ * Armedia Caliente
+ * %%
+ * Copyright (C) 2013 - 2025 Armedia, LLC
+ * %%
+ * This file is part of the Caliente software.
+ *
+ * If the software was purchased under a paid Caliente license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Caliente is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Caliente is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Caliente. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ *******************************************************************************/
+package com.armedia.commons.utilities.concurrent;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+import javax.xml.bind.annotation.XmlTransient;
+
+import com.armedia.commons.utilities.function.CheckedBiFunction;
+import com.armedia.commons.utilities.function.CheckedPredicate;
+import com.armedia.commons.utilities.function.CheckedSupplier;
+
+/**
+ * <p>
+ * A concrete implementation of {@link ShareableLockable} backed by a {@link StampedLock}, meant
+ * for read-mostly state under heavy contention. The {@link #shareLocked(CheckedSupplier)} family
+ * of methods first attempts an <i>optimistic read</i> (i.e. without acquiring any lock at all),
+ * and only falls back to acquiring the read lock if a write happened while the operation ran. The
+ * {@link #shareLockedUpgradable(CheckedSupplier, CheckedPredicate, CheckedBiFunction)} family of
+ * methods also starts optimistically, and upgrades directly to the write lock via
+ * {@link StampedLock#tryConvertToWriteLock(long)} whenever possible.
+ * </p>
+ * <p>
+ * Since optimistic operations run without holding any lock, they may observe inconsistent state.
+ * Thus, the operations given to {@code shareLocked(...)} (and the checkers and decisions given to
+ * {@code shareLockedUpgradable(...)}) <b>must not have any side effects</b>, and must tolerate
+ * reading partially-updated state: any exception they raise while a write is in progress is
+ * discarded, and the operation is re-run under the read lock. Operations which can't meet this
+ * requirement should use {@link #sharedAutoLock()} instead, which always acquires the read lock.
+ * </p>
+ * <p>
+ * As with {@link BaseShareableLockable}, both locks are reentrant, and the owner of the write lock
+ * may also acquire the read lock (which is how {@link SharedAutoLock#upgrade()} works). Likewise,
+ * attempting to acquire the write lock while holding only the read lock raises a
+ * {@link LockUpgradeDeadlockException} instead of deadlocking (or fails right away, for
+ * {@code tryLock()}). However, {@link Condition Conditions} are not supported (any attempt to
+ * create one will raise an {@link UnsupportedOperationException}).
+ * </p>
+ */
+@XmlTransient
+public class BaseStampedShareableLockable extends BaseShareableLockable {
+
+	private static final Supplier<Condition> NO_CONDITION = () -> {
+		throw new UnsupportedOperationException("StampedLock-based locks don't support Condition instances");
+	};
+
+	/**
+	 * <p>
+	 * Exposes a {@link StampedLock} as a {@link ReadWriteLock} which keeps track of the thread
+	 * which holds the write lock. This allows the write lock to be re-acquired by its owner, and
+	 * the owner to acquire the read lock (as {@link ReentrantReadWriteLock} allows), in which case
+	 * the write lock is atomically downgraded to a read lock when released. The owner-related
+	 * fields are only ever modified by the owner thread while it holds the write lock.
+	 * </p>
+	 * <p>
+	 * Each thread's read holds are also counted, so only the first acquisition (and the last
+	 * release) of the read lock reaches the {@link StampedLock}. Otherwise, re-acquiring the read
+	 * lock would deadlock while a writer is waiting, since {@link StampedLock} isn't reentrant.
+	 * </p>
+	 */
+	private static final class StampedReadWriteLock implements ReadWriteLock {
+		private final StampedLock lock;
+		private final Lock readLock = new ReadLock();
+		private final Lock writeLock = new WriteLock();
+		private final ThreadLocal<int[]> readHolds = ThreadLocal.withInitial(() -> new int[1]);
+		private ShareableLockable target = null;
+		private Thread owner = null;
+		private long writeStamp = 0;
+		private int writeHolds = 0;
+		private int ownerReadHolds = 0;
+
+		private StampedReadWriteLock(StampedLock lock) {
+			this.lock = lock;
+		}
+
+		private boolean isOwner() {
+			return (this.owner == Thread.currentThread());
+		}
+
+		/**
+		 * Returns the number of read holds the current thread has on the {@link StampedLock} (i.e.
+		 * not counting those taken while owning the write lock).
+		 */
+		private int getReadHoldCount() {
+			return this.readHolds.get()[0];
+		}
+
+		/**
+		 * Raises a {@link LockUpgradeDeadlockException} if the current thread holds the read lock
+		 * but not the write lock, since waiting for the write lock would never end.
+		 */
+		private void checkUpgrade() {
+			final int reads = getReadHoldCount();
+			if (reads > 0) { throw new LockUpgradeDeadlockException(this.target, reads); }
+		}
+
+		private boolean canUpgrade() {
+			return (getReadHoldCount() == 0);
+		}
+
+		/**
+		 * Acquires the read lock through the given operation, unless the current thread already
+		 * holds it, and counts the hold if it succeeds.
+		 */
+		private <EX extends Exception> boolean acquireRead(CheckedSupplier<Boolean, EX> acquirer) throws EX {
+			final int[] holds = this.readHolds.get();
+			if ((holds[0] == 0) && !acquirer.getChecked()) { return false; }
+			holds[0]++;
+			return true;
+		}
+
+		private void acquiredWrite(long stamp) {
+			this.owner = Thread.currentThread();
+			this.writeStamp = stamp;
+			this.writeHolds = 1;
+		}
+
+		@Override
+		public Lock readLock() {
+			return this.readLock;
+		}
+
+		@Override
+		public Lock writeLock() {
+			return this.writeLock;
+		}
+
+		private final class ReadLock implements Lock {
+			@Override
+			public void lock() {
+				if (isOwner()) {
+					StampedReadWriteLock.this.ownerReadHolds++;
+					return;
+				}
+				acquireRead(() -> StampedReadWriteLock.this.lock.readLock() != 0);
+			}
+
+			@Override
+			public void lockInterruptibly() throws InterruptedException {
+				if (isOwner()) {
+					StampedReadWriteLock.this.ownerReadHolds++;
+					return;
+				}
+				acquireRead(() -> StampedReadWriteLock.this.lock.readLockInterruptibly() != 0);
+			}
+
+			@Override
+			public boolean tryLock() {
+				if (isOwner()) {
+					StampedReadWriteLock.this.ownerReadHolds++;
+					return true;
+				}
+				return acquireRead(() -> StampedReadWriteLock.this.lock.tryReadLock() != 0);
+			}
+
+			@Override
+			public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+				if (isOwner()) {
+					StampedReadWriteLock.this.ownerReadHolds++;
+					return true;
+				}
+				return acquireRead(() -> StampedReadWriteLock.this.lock.tryReadLock(time, unit) != 0);
+			}
+
+			@Override
+			public void unlock() {
+				if (isOwner() && (StampedReadWriteLock.this.ownerReadHolds > 0)) {
+					StampedReadWriteLock.this.ownerReadHolds--;
+					return;
+				}
+				final int[] holds = StampedReadWriteLock.this.readHolds.get();
+				if (holds[0] <= 0) { throw new IllegalMonitorStateException("The read lock is not held"); }
+				if (--holds[0] > 0) { return; }
+				StampedReadWriteLock.this.lock.tryUnlockRead();
+			}
+
+			@Override
+			public Condition newCondition() {
+				return BaseStampedShareableLockable.NO_CONDITION.get();
+			}
+		}
+
+		private final class WriteLock implements Lock {
+			@Override
+			public void lock() {
+				if (isOwner()) {
+					StampedReadWriteLock.this.writeHolds++;
+					return;
+				}
+				checkUpgrade();
+				acquiredWrite(StampedReadWriteLock.this.lock.writeLock());
+			}
+
+			@Override
+			public void lockInterruptibly() throws InterruptedException {
+				if (isOwner()) {
+					StampedReadWriteLock.this.writeHolds++;
+					return;
+				}
+				checkUpgrade();
+				acquiredWrite(StampedReadWriteLock.this.lock.writeLockInterruptibly());
+			}
+
+			@Override
+			public boolean tryLock() {
+				if (isOwner()) {
+					StampedReadWriteLock.this.writeHolds++;
+					return true;
+				}
+				if (!canUpgrade()) { return false; }
+				final long stamp = StampedReadWriteLock.this.lock.tryWriteLock();
+				if (stamp == 0) { return false; }
+				acquiredWrite(stamp);
+				return true;
+			}
+
+			@Override
+			public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+				if (isOwner()) {
+					StampedReadWriteLock.this.writeHolds++;
+					return true;
+				}
+				if (!canUpgrade()) { return false; }
+				final long stamp = StampedReadWriteLock.this.lock.tryWriteLock(time, unit);
+				if (stamp == 0) { return false; }
+				acquiredWrite(stamp);
+				return true;
+			}
+
+			@Override
+			public void unlock() {
+				if (!isOwner()) { throw new IllegalMonitorStateException("The write lock is not held"); }
+				if (--StampedReadWriteLock.this.writeHolds > 0) { return; }
+
+				final StampedLock lock = StampedReadWriteLock.this.lock;
+				final long stamp = StampedReadWriteLock.this.writeStamp;
+				final int reads = StampedReadWriteLock.this.ownerReadHolds;
+				StampedReadWriteLock.this.owner = null;
+				StampedReadWriteLock.this.writeStamp = 0;
+				StampedReadWriteLock.this.ownerReadHolds = 0;
+				if (reads == 0) {
+					lock.unlockWrite(stamp);
+					return;
+				}
+
+				// Downgrade atomically, keeping as many read holds as were requested while writing
+				lock.tryConvertToReadLock(stamp);
+				StampedReadWriteLock.this.readHolds.get()[0] = reads;
+			}
+
+			@Override
+			public Condition newCondition() {
+				return BaseStampedShareableLockable.NO_CONDITION.get();
+			}
+		}
+	}
+
+	@XmlTransient
+	private final StampedLock stampedLock;
+
+	@XmlTransient
+	private final StampedReadWriteLock rwLock;
+
+	/**
+	 * <p>
+	 * Create a new instance using a new {@link StampedLock} at its core.
+	 * </p>
+	 */
+	public BaseStampedShareableLockable() {
+		this(new StampedLock());
+	}
+
+	/**
+	 * <p>
+	 * Create a new instance using the given {@link StampedLock} at its core. The lock should not
+	 * be acquired directly while it's being used through this instance.
+	 * </p>
+	 *
+	 * @param lock
+	 *            the lock to use
+	 */
+	public BaseStampedShareableLockable(StampedLock lock) {
+		this(new StampedReadWriteLock(Objects.requireNonNull(lock, "Must provide a non-null StampedLock")));
+	}
+
+	private BaseStampedShareableLockable(StampedReadWriteLock rwLock) {
+		super(rwLock);
+		this.rwLock = rwLock;
+		this.rwLock.target = this;
+		this.stampedLock = rwLock.lock;
+	}
+
+	public final StampedLock getStampedLock() {
+		return this.stampedLock;
+	}
+
+	@Override
+	public <E, EX extends Exception> E shareLocked(CheckedSupplier<E, EX> operation) throws EX {
+		Objects.requireNonNull(operation, "Must provide a non-null operation to invoke");
+
+		// If we already hold either lock, there's no need to go any further
+		if (this.rwLock.isOwner() || (this.rwLock.getReadHoldCount() > 0)) { return operation.getChecked(); }
+
+		final StampedLock lock = this.stampedLock;
+		final long stamp = lock.tryOptimisticRead();
+		if (stamp != 0) {
+			try {
+				final E e = operation.getChecked();
+				if (lock.validate(stamp)) { return e; }
+			} catch (Throwable t) {
+				// Only report the failure if it wasn't caused by a concurrent write
+				if (lock.validate(stamp)) { throw t; }
+			}
+		}
+
+		// A write got in the way, so do it the pessimistic way (counting the hold, so any attempt
+		// to upgrade from within the operation is detected instead of deadlocking)
+		final long readStamp = lock.readLock();
+		final int[] holds = this.rwLock.readHolds.get();
+		holds[0]++;
+		try {
+			return operation.getChecked();
+		} finally {
+			holds[0]--;
+			lock.unlockRead(readStamp);
+		}
+	}
+
+	@Override
+	public <E, EX extends Exception> E shareLockedUpgradable(CheckedSupplier<E, EX> checker,
+		CheckedPredicate<E, EX> decision, CheckedBiFunction<E, Supplier<Condition>, E, EX> writeBlock) throws EX {
+		Objects.requireNonNull(decision, "Must provide a non-null decision");
+		Objects.requireNonNull(writeBlock, "Must provide a non-null writeBlock");
+		if (checker == null) {
+			checker = () -> null;
+		}
+
+		// If we already hold the write lock, there's no need to go any further
+		if (this.rwLock.isOwner()) {
+			final E e = checker.getChecked();
+			if (!decision.testChecked(e)) { return e; }
+			return writeBlock.applyChecked(e, BaseStampedShareableLockable.NO_CONDITION);
+		}
+
+		// If we hold the read lock, we can decide but we can't upgrade
+		if (this.rwLock.getReadHoldCount() > 0) {
+			final E e = checker.getChecked();
+			if (!decision.testChecked(e)) { return e; }
+			this.rwLock.checkUpgrade();
+		}
+
+		final StampedLock lock = this.stampedLock;
+
+		// First, try to make the decision optimistically
+		final long optimistic = lock.tryOptimisticRead();
+		if (optimistic != 0) {
+			E e = null;
+			boolean write = false;
+			boolean valid = false;
+			try {
+				e = checker.getChecked();
+				write = decision.testChecked(e);
+				valid = lock.validate(optimistic);
+			} catch (Throwable t) {
+				if (lock.validate(optimistic)) { throw t; }
+			}
+			if (valid) {
+				if (!write) { return e; }
+				// If nobody's written since, we can go straight to the write lock, and
+				// the decision we made remains valid
+				final long writeStamp = lock.tryConvertToWriteLock(optimistic);
+				if (writeStamp != 0) { return writeLocked(writeStamp, e, writeBlock); }
+			}
+		}
+
+		// The optimistic attempt failed, so do it the pessimistic way (counting the hold, so the
+		// checker and decision also detect any attempt to upgrade)
+		final long readStamp = lock.readLock();
+		final int[] holds = this.rwLock.readHolds.get();
+		final E e;
+		holds[0]++;
+		try {
+			e = checker.getChecked();
+			if (!decision.testChecked(e)) {
+				lock.unlockRead(readStamp);
+				return e;
+			}
+		} catch (Throwable t) {
+			lock.unlockRead(readStamp);
+			throw t;
+		} finally {
+			holds[0]--;
+		}
+
+		// If we're the only reader, the decision remains valid
+		final long writeStamp = lock.tryConvertToWriteLock(readStamp);
+		if (writeStamp != 0) { return writeLocked(writeStamp, e, writeBlock); }
+
+		lock.unlockRead(readStamp);
+		this.rwLock.writeLock.lock();
+		try {
+			// Re-check, since someone else may have beaten us to it
+			final E e2 = checker.getChecked();
+			if (!decision.testChecked(e2)) { return e2; }
+			return writeBlock.applyChecked(e2, BaseStampedShareableLockable.NO_CONDITION);
+		} finally {
+			this.rwLock.writeLock.unlock();
+		}
+	}
+
+	private <E, EX extends Exception> E writeLocked(long writeStamp, E e,
+		CheckedBiFunction<E, Supplier<Condition>, E, EX> writeBlock) throws EX {
+		// Register as the owner, so the write block may use the locking methods reentrantly
+		this.rwLock.acquiredWrite(writeStamp);
+		try {
+			return writeBlock.applyChecked(e, BaseStampedShareableLockable.NO_CONDITION);
+		} finally {
+			this.rwLock.writeLock.unlock();
+		}
+	}
+}
@@ -0,0 +1,404 @@
+/*******************************************************************************
+ * #%L
+ * Armedia Caliente
+ * %%
+ * Copyright (C) 2013 - 2025 Armedia, LLC
+ * %%
+ * This file is part of the Caliente software.
+ *
+ * If the software was purchased under a paid Caliente license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Caliente is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Caliente is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Caliente. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ *******************************************************************************/
+package com.armedia.commons.utilities.concurrent;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>
+ * A {@link BlockingQueue} which hands out its elements in priority order, like
+ * {@link PriorityBlockingQueue}, but which may also have a capacity limit, in which case
+ * producers will block (or fail, as per the {@link BlockingQueue} contract) when it's reached.
+ * Elements which compare as equal are handed out in the order they were added, so elements of the
+ * same priority can't starve each other.
+ * </p>
+ * <p>
+ * All operations are guarded by a single lock. Adding and removing elements is
+ * {@code O(log(n))}, while {@link #remove(Object)} and {@link #contains(Object)} are
+ * {@code O(n)}. The iterator works on a snapshot of the elements taken when it's created, and
+ * doesn't return them in any particular order.
+ * </p>
+ *
+ * @param <E>
+ *            the type of the elements
+ */
+public class BoundedPriorityBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+	private static final class Entry<E> {
+		private final E element;
+		private final long seq;
+
+		private Entry(E element, long seq) {
+			this.element = element;
+			this.seq = seq;
+		}
+	}
+
+	private final Comparator<? super E> comparator;
+	private final PriorityQueue<Entry<E>> heap;
+	private final int capacity;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = this.lock.newCondition();
+	private final Condition notFull = this.lock.newCondition();
+	private long seq = 0;
+
+	/**
+	 * <p>
+	 * Creates a new queue which orders its elements by their {@link Comparable natural ordering},
+	 * and has no capacity limit.
+	 * </p>
+	 */
+	public BoundedPriorityBlockingQueue() {
+		this(null, 0);
+	}
+
+	/**
+	 * <p>
+	 * Creates a new queue which orders its elements with the given comparator, and has no capacity
+	 * limit.
+	 * </p>
+	 *
+	 * @param comparator
+	 *            the comparator to order the elements with, or {@code null} to use their
+	 *            {@link Comparable natural ordering}
+	 */
+	public BoundedPriorityBlockingQueue(Comparator<? super E> comparator) {
+		this(comparator, 0);
+	}
+
+	/**
+	 * <p>
+	 * Creates a new queue which orders its elements with the given comparator (lowest first), and
+	 * will hold at most {@code capacity} elements. If {@code capacity} is less than or equal to 0,
+	 * the queue will have no capacity limit.
+	 * </p>
+	 *
+	 * @param comparator
+	 *            the comparator to order the elements with, or {@code null} to use their
+	 *            {@link Comparable natural ordering}
+	 * @param capacity
+	 *            the maximum number of elements the queue will hold
+	 */
+	@SuppressWarnings("unchecked")
+	public BoundedPriorityBlockingQueue(Comparator<? super E> comparator, int capacity) {
+		this.comparator = comparator;
+		final Comparator<? super E> order = (comparator != null ? comparator
+			: (a, b) -> ((Comparable<? super E>) a).compareTo(b));
+		this.heap = new PriorityQueue<>((a, b) -> {
+			final int c = order.compare(a.element, b.element);
+			return (c != 0 ? c : Long.compare(a.seq, b.seq));
+		});
+		this.capacity = (capacity > 0 ? capacity : Integer.MAX_VALUE);
+	}
+
+	/**
+	 * <p>
+	 * Returns the comparator used to order the elements, or {@code null} if they're ordered by
+	 * their {@link Comparable natural ordering}.
+	 * </p>
+	 *
+	 * @return the comparator used to order the elements
+	 */
+	public final Comparator<? super E> comparator() {
+		return this.comparator;
+	}
+
+	private void enqueue(E e) {
+		// The heap won't compare the first element against anything, so check it eagerly
+		if ((this.comparator == null) && !Comparable.class.isInstance(e)) {
+			throw new ClassCastException(
+				String.format("Elements of type %s aren't Comparable, and no comparator was given",
+					e.getClass().getCanonicalName()));
+		}
+		this.heap.add(new Entry<>(e, this.seq++));
+		this.notEmpty.signal();
+	}
+
+	private E dequeue() {
+		final Entry<E> entry = this.heap.poll();
+		if (entry == null) { return null; }
+		this.notFull.signal();
+		return entry.element;
+	}
+
+	@Override
+	public boolean offer(E e) {
+		Objects.requireNonNull(e, "Must provide a non-null element");
+		this.lock.lock();
+		try {
+			if (this.heap.size() >= this.capacity) { return false; }
+			enqueue(e);
+			return true;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	@Override
+	public void put(E e) throws InterruptedException {
+		Objects.requireNonNull(e, "Must provide a non-null element");
+		this.lock.lockInterruptibly();
+		try {
+			while (this.heap.size() >= this.capacity) {
+				this.notFull.await();
+			}
+			enqueue(e);
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+		Objects.requireNonNull(e, "Must provide a non-null element");
+		long remaining = unit.toNanos(timeout);
+		this.lock.lockInterruptibly();
+		try {
+			while (this.heap.size() >= this.capacity) {
+				if (remaining <= 0) { return false; }
+				remaining = this.notFull.awaitNanos(remaining);
+			}
+			enqueue(e);
+			return true;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	@Override
+	public E poll() {
+		this.lock.lock();
+		try {
+			return dequeue();
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	@Override
+	public E take() throws InterruptedException {
+		this.lock.lockInterruptibly();
+		try {
+			E e = null;
+			while ((e = dequeue()) == null) {
+				this.notEmpty.await();
+			}
+			return e;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	@Override
+	public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+		long remaining = unit.toNanos(timeout);
+		this.lock.lockInterruptibly();
+		try {
+			E e = null;
+			while ((e = dequeue()) == null) {
+				if (remaining <= 0) { return null; }
+				remaining = this.notEmpty.awaitNanos(remaining);
+			}
+			return e;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	@Override
+	public E peek() {
+		this.lock.lock();
+		try {
+			final Entry<E> entry = this.heap.peek();
+			return (entry != null ? entry.element : null);
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	@Override
+	public int size() {
+		this.lock.lock();
+		try {
+			return this.heap.size();
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	@Override
+	public int remainingCapacity() {
+		if (this.capacity == Integer.MAX_VALUE) { return Integer.MAX_VALUE; }
+		this.lock.lock();
+		try {
+			return this.capacity - this.heap.size();
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	@Override
+	public int drainTo(Collection<? super E> c) {
+		return drainTo(c, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * <p>
+	 * Removes up to {@code maxElements} elements from the queue, in priority order, and adds them
+	 * to the given collection.
+	 * </p>
+	 */
+	@Override
+	public int drainTo(Collection<? super E> c, int maxElements) {
+		Objects.requireNonNull(c, "Must provide a non-null collection to drain to");
+		if (c == this) { throw new IllegalArgumentException("Can't drain a queue into itself"); }
+		if (maxElements <= 0) { return 0; }
+		this.lock.lock();
+		try {
+			int n = 0;
+			while (n < maxElements) {
+				final Entry<E> entry = this.heap.poll();
+				if (entry == null) {
+					break;
+				}
+				c.add(entry.element);
+				n++;
+			}
+			if (n > 0) {
+				this.notFull.signalAll();
+			}
+			return n;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	private boolean removeEntry(Entry<E> target) {
+		// Entries don't override equals(), so this removes that exact entry
+		if (!this.heap.remove(target)) { return false; }
+		this.notFull.signal();
+		return true;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		if (o == null) { return false; }
+		this.lock.lock();
+		try {
+			for (Entry<E> entry : this.heap) {
+				if (o.equals(entry.element)) { return removeEntry(entry); }
+			}
+			return false;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		if (o == null) { return false; }
+		this.lock.lock();
+		try {
+			for (Entry<E> entry : this.heap) {
+				if (o.equals(entry.element)) { return true; }
+			}
+			return false;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	@Override
+	public void clear() {
+		this.lock.lock();
+		try {
+			this.heap.clear();
+			this.notFull.signalAll();
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * <p>
+	 * Returns an iterator over a snapshot of the elements, in no particular order.
+	 * {@link Iterator#remove()} removes the last element returned from the queue, if it's still
+	 * there.
+	 * </p>
+	 */
+	@Override
+	public Iterator<E> iterator() {
+		final Object[] snapshot;
+		this.lock.lock();
+		try {
+			snapshot = this.heap.toArray();
+		} finally {
+			this.lock.unlock();
+		}
+		return new Iterator<E>() {
+			private int next = 0;
+			private Entry<E> last = null;
+
+			@Override
+			public boolean hasNext() {
+				return (this.next < snapshot.length);
+			}
+
+			@Override
+			@SuppressWarnings("unchecked")
+			public E next() {
+				if (!hasNext()) { throw new NoSuchElementException(); }
+				this.last = (Entry<E>) snapshot[this.next++];
+				return this.last.element;
+			}
+
+			@Override
+			public void remove() {
+				if (this.last == null) { throw new IllegalStateException(); }
+				final ReentrantLock lock = BoundedPriorityBlockingQueue.this.lock;
+				lock.lock();
+				try {
+					removeEntry(this.last);
+				} finally {
+					lock.unlock();
+				}
+				this.last = null;
+			}
+		};
+	}
+}
@@ -0,0 +1,212 @@
+/*******************************************************************************
+ * #%L
+ * Armedia Caliente
+ * %%
+ * Copyright (C) 2013 - 2025 Armedia, LLC
+ * %%
+ * This file is part of the Caliente software.
+ *
+ * If the software was purchased under a paid Caliente license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Caliente is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Caliente is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Caliente. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ *******************************************************************************/
+package com.armedia.commons.utilities.concurrent;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * <p>
+ * A {@link ShareableMap} backed by a {@link ConcurrentHashMap}, for maps which are written to by
+ * many threads at once (i.e. shared caches). Instead of serializing every write behind the mutex
+ * lock, single-key operations rely on the backing map's own per-bin locking, so writes to
+ * different keys proceed in parallel:
+ * </p>
+ * <ul>
+ * <li>reads ({@link #get(Object)}, {@link #containsKey(Object)}, etc.) take no lock at all</li>
+ * <li>single-key writes ({@link #put(Object, Object)}, {@link #computeIfAbsent(Object, Function)},
+ * {@link #merge(Object, Object, BiFunction)}, etc.) take the <b>shared</b> lock, and are atomic
+ * on their own</li>
+ * <li>whole-map writes ({@link #putAll(Map)}, {@link #clear()} and
+ * {@link #replaceAll(BiFunction)}) take the mutex lock, as before</li>
+ * </ul>
+ * <p>
+ * Since the single-key writes only share the lock, holding the mutex lock (i.e. through
+ * {@link #mutexLocked(Runnable)}, or the write block of any of the {@code shareLockedUpgradable()}
+ * methods) still keeps every other writer out, so compound operations and
+ * {@link #snapshot() snapshots} remain consistent. However, holding the shared lock no longer
+ * keeps the map from changing: code which needs a stable view of more than one key must hold the
+ * mutex lock instead.
+ * </p>
+ * <p>
+ * Like {@link ConcurrentHashMap}, this map doesn't allow {@code null} keys or values.
+ * </p>
+ *
+ * @param <KEY>
+ *            the type of the keys
+ * @param <VALUE>
+ *            the type of the values
+ */
+public class ConcurrentShareableMap<KEY, VALUE> extends ShareableMap<KEY, VALUE> {
+
+	private final ConcurrentMap<KEY, VALUE> concurrent;
+
+	public ConcurrentShareableMap() {
+		this(ShareableLockable.NULL_LOCK, new ConcurrentHashMap<>());
+	}
+
+	public ConcurrentShareableMap(int initialCapacity) {
+		this(ShareableLockable.NULL_LOCK, new ConcurrentHashMap<>(initialCapacity));
+	}
+
+	public ConcurrentShareableMap(Map<? extends KEY, ? extends VALUE> map) {
+		this(ShareableLockable.NULL_LOCK,
+			new ConcurrentHashMap<>(Objects.requireNonNull(map, "Must provide a non-null map to copy")));
+	}
+
+	public ConcurrentShareableMap(ShareableLockable lockable) {
+		this(ShareableLockable.extractShareableLock(lockable), new ConcurrentHashMap<>());
+	}
+
+	public ConcurrentShareableMap(ReadWriteLock rwLock) {
+		this(rwLock, new ConcurrentHashMap<>());
+	}
+
+	private ConcurrentShareableMap(ReadWriteLock rwLock, ConcurrentMap<KEY, VALUE> map) {
+		super(rwLock, map);
+		this.concurrent = map;
+	}
+
+	@Override
+	public int size() {
+		return this.concurrent.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return this.concurrent.isEmpty();
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return this.concurrent.containsKey(key);
+	}
+
+	@Override
+	public boolean containsValue(Object value) {
+		return this.concurrent.containsValue(value);
+	}
+
+	@Override
+	public VALUE get(Object key) {
+		return this.concurrent.get(key);
+	}
+
+	@Override
+	public VALUE getOrDefault(Object key, VALUE defaultValue) {
+		return this.concurrent.getOrDefault(key, defaultValue);
+	}
+
+	@Override
+	public void forEach(BiConsumer<? super KEY, ? super VALUE> action) {
+		Objects.requireNonNull(action);
+		this.concurrent.forEach(action);
+	}
+
+	@Override
+	public VALUE put(KEY key, VALUE value) {
+		return shareLocked(() -> this.concurrent.put(key, value));
+	}
+
+	@Override
+	public VALUE remove(Object key) {
+		return shareLocked(() -> this.concurrent.remove(key));
+	}
+
+	@Override
+	public VALUE putIfAbsent(KEY key, VALUE value) {
+		return shareLocked(() -> this.concurrent.putIfAbsent(key, value));
+	}
+
+	@Override
+	public boolean remove(Object key, Object value) {
+		return shareLocked(() -> this.concurrent.remove(key, value));
+	}
+
+	@Override
+	public boolean replace(KEY key, VALUE oldValue, VALUE newValue) {
+		return shareLocked(() -> this.concurrent.replace(key, oldValue, newValue));
+	}
+
+	@Override
+	public VALUE replace(KEY key, VALUE value) {
+		return shareLocked(() -> this.concurrent.replace(key, value));
+	}
+
+	/**
+	 * <p>
+	 * As per {@link ConcurrentHashMap#computeIfAbsent(Object, Function)}, the mapping function is
+	 * applied at most once, while other writers to the same key are kept waiting, so it should be
+	 * short and must not modify this map.
+	 * </p>
+	 */
+	@Override
+	public VALUE computeIfAbsent(KEY key, Function<? super KEY, ? extends VALUE> mappingFunction) {
+		Objects.requireNonNull(mappingFunction, "Must provide a non-null mapping function");
+		// Most lookups in a cache are hits, so try to avoid the lock altogether
+		final VALUE existing = this.concurrent.get(key);
+		if (existing != null) { return existing; }
+		return shareLocked(() -> this.concurrent.computeIfAbsent(key, mappingFunction));
+	}
+
+	@Override
+	public VALUE computeIfPresent(KEY key, BiFunction<? super KEY, ? super VALUE, ? extends VALUE> remappingFunction) {
+		Objects.requireNonNull(remappingFunction, "Must provide a non-null remapping function");
+		return shareLocked(() -> this.concurrent.computeIfPresent(key, remappingFunction));
+	}
+
+	@Override
+	public VALUE compute(KEY key, BiFunction<? super KEY, ? super VALUE, ? extends VALUE> remappingFunction) {
+		Objects.requireNonNull(remappingFunction, "Must provide a non-null remapping function");
+		return shareLocked(() -> this.concurrent.compute(key, remappingFunction));
+	}
+
+	@Override
+	public VALUE merge(KEY key, VALUE value,
+		BiFunction<? super VALUE, ? super VALUE, ? extends VALUE> remappingFunction) {
+		Objects.requireNonNull(remappingFunction, "Must provide a non-null remapping function");
+		Objects.requireNonNull(value, "Must provide a non-null value");
+		return shareLocked(() -> this.concurrent.merge(key, value, remappingFunction));
+	}
+
+	/**
+	 * <p>
+	 * Returns an immutable copy of this map's contents, taken while holding the mutex lock so no
+	 * writes can happen while it's copied.
+	 * </p>
+	 */
+	@Override
+	public Map<KEY, VALUE> snapshot() {
+		return mutexLocked(super::snapshot);
+	}
+}
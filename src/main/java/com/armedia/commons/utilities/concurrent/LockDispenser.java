@@ -27,6 +27,7 @@
 package com.armedia.commons.utilities.concurrent;
 
 import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
@@ -34,10 +35,32 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
+ * <p>
+ * Hands out lock objects (of any type) associated to keys, such that the same key will always
+ * yield the same lock object for as long as it's in use. Three modes are available:
+ * </p>
+ * <ul>
+ * <li><b>default</b> (via the constructors): one lock per distinct key, held via the
+ * {@link Reference} the {@code referenceBuilder} returns, and re-created if it's been collected.
+ * The per-key bookkeeping is never removed, so this mode is only suitable for bounded key
+ * sets.</li>
+ * <li><b>reclaiming</b> (via {@link #reclaiming(Function)}): one lock per distinct key, held via a
+ * {@link WeakReference}. The bookkeeping for locks that are no longer in use (and thus have been
+ * garbage-collected) is purged as new locks are requested, so the memory footprint tracks the
+ * number of locks actually in use.</li>
+ * <li><b>striped</b> (via {@link #striped(int, Supplier)}): a fixed set of locks, created up
+ * front, indexed by the key's {@link Object#hashCode() hash code}. Different keys may share the
+ * same lock, so this trades some (false) contention for a fixed memory footprint and no
+ * bookkeeping at all.</li>
+ * </ul>
  *
- *
+ * @param <K>
+ *            the type of the keys
+ * @param <C>
+ *            the type of the lock objects
  */
 public final class LockDispenser<K, C> {
 
@@ -77,6 +100,44 @@ public final class LockDispenser<K, C> {
 		return new LockDispenser<>((k) -> new BaseShareableLockable());
 	}
 
+	/**
+	 * <p>
+	 * Returns a new instance in <i>reclaiming</i> mode (see the
+	 * {@link LockDispenser class documentation}), which builds the locks using the given function.
+	 * </p>
+	 *
+	 * @param lockBuilder
+	 *            the function to build each key's lock with
+	 * @return a new instance in <i>reclaiming</i> mode
+	 */
+	public static <K, C> LockDispenser<K, C> reclaiming(Function<K, C> lockBuilder) {
+		return new LockDispenser<>(lockBuilder, true);
+	}
+
+	/**
+	 * <p>
+	 * Returns a new instance in <i>striped</i> mode (see the
+	 * {@link LockDispenser class documentation}), which will hold the given number of locks
+	 * (rounded up to the next power of two), built using the given supplier.
+	 * </p>
+	 *
+	 * @param stripes
+	 *            the number of locks to hold (must be between {@code 1} and {@code 2^30})
+	 * @param lockBuilder
+	 *            the supplier to build the locks with
+	 * @return a new instance in <i>striped</i> mode
+	 */
+	public static <K, C> LockDispenser<K, C> striped(int stripes, Supplier<C> lockBuilder) {
+		return new LockDispenser<>(stripes, lockBuilder);
+	}
+
+	private static <C> C validateLock(C lock) {
+		if (lock == null) {
+			throw new RuntimeException("The LockBuilder must always return a non-null lock object instance");
+		}
+		return lock;
+	}
+
 	private class LockBox {
 		private final K key;
 
@@ -87,24 +148,41 @@ public final class LockDispenser<K, C> {
 		}
 
 		private synchronized C get() {
-			if ((this.lock == null) || (this.lock.get() == null)) {
-				C lock = LockDispenser.this.lockBuilder.apply(this.key);
-				if (lock == null) {
-					throw new RuntimeException("The LockBuilder must always return a non-null lock object instance");
-				}
+			C lock = (this.lock != null ? this.lock.get() : null);
+			if (lock == null) {
+				lock = LockDispenser.validateLock(LockDispenser.this.lockBuilder.apply(this.key));
 				this.lock = LockDispenser.this.referenceBuilder.apply(lock);
 				if (this.lock == null) {
 					throw new RuntimeException(
 						"The ReferenceBuilder must always return a non-null Reference<> instance");
 				}
 			}
-			return this.lock.get();
+			return lock;
+		}
+	}
+
+	/**
+	 * <p>
+	 * A weak reference to a lock which remembers its key, so it can be removed from the map once
+	 * the lock is collected.
+	 * </p>
+	 */
+	private static final class KeyedReference<K, C> extends WeakReference<C> {
+		private final K key;
+
+		private KeyedReference(K key, C lock, ReferenceQueue<? super C> queue) {
+			super(lock, queue);
+			this.key = key;
 		}
 	}
 
 	private final Function<K, C> lockBuilder;
 	private final Function<C, Reference<C>> referenceBuilder;
-	private final ConcurrentMap<K, LockBox> locks = new ConcurrentHashMap<>();
+	private final ConcurrentMap<K, LockBox> locks;
+	private final ConcurrentMap<K, KeyedReference<K, C>> references;
+	private final ReferenceQueue<C> queue;
+	private final Object[] stripes;
+	private final Function<K, C> dispenser;
 
 	public LockDispenser(Function<K, C> lockBuilder) {
 		this(lockBuilder, WeakReference::new);
@@ -114,13 +192,125 @@ public final class LockDispenser<K, C> {
 		this.lockBuilder = Objects.requireNonNull(lockBuilder, "Must provide a non-null LockBuilder instance");
 		this.referenceBuilder = Objects.requireNonNull(referenceBuilder,
 			"Must provide a non-null ReferenceBuilder instance");
+		this.locks = new ConcurrentHashMap<>();
+		this.references = null;
+		this.queue = null;
+		this.stripes = null;
+		this.dispenser = this::getBoxedLock;
+	}
+
+	private LockDispenser(Function<K, C> lockBuilder, boolean reclaiming) {
+		this.lockBuilder = Objects.requireNonNull(lockBuilder, "Must provide a non-null LockBuilder instance");
+		this.referenceBuilder = null;
+		this.locks = null;
+		this.references = new ConcurrentHashMap<>();
+		this.queue = new ReferenceQueue<>();
+		this.stripes = null;
+		this.dispenser = this::getReclaimableLock;
+	}
+
+	private LockDispenser(int stripes, Supplier<C> lockBuilder) {
+		Objects.requireNonNull(lockBuilder, "Must provide a non-null LockBuilder instance");
+		if ((stripes < 1) || (stripes > (1 << 30))) {
+			throw new IllegalArgumentException(
+				String.format("The number of stripes must be between 1 and %d (%d was given)", 1 << 30, stripes));
+		}
+		// Round up to the next power of two, so we can use a mask instead of a modulo
+		final int size = (stripes == 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1);
+		this.stripes = new Object[size];
+		for (int i = 0; i < size; i++) {
+			this.stripes[i] = LockDispenser.validateLock(lockBuilder.get());
+		}
+		this.lockBuilder = null;
+		this.referenceBuilder = null;
+		this.locks = null;
+		this.references = null;
+		this.queue = null;
+		this.dispenser = this::getStripedLock;
 	}
 
 	private LockBox newBox(final K key) {
 		return new LockBox(key);
 	}
 
-	public C getLock(final K key) {
+	private C getBoxedLock(final K key) {
 		return ConcurrentTools.createIfAbsent(this.locks, key, this::newBox).get();
 	}
+
+	private C getReclaimableLock(final K key) {
+		purge();
+		while (true) {
+			final KeyedReference<K, C> ref = this.references.get(key);
+			if (ref != null) {
+				final C lock = ref.get();
+				if (lock != null) { return lock; }
+			}
+
+			// Either there's no lock, or it's been collected (but not yet purged)
+			final C lock = LockDispenser.validateLock(this.lockBuilder.apply(key));
+			final KeyedReference<K, C> newRef = new KeyedReference<>(key, lock, this.queue);
+			if (ref == null) {
+				if (this.references.putIfAbsent(key, newRef) == null) { return lock; }
+			} else if (this.references.replace(key, ref, newRef)) { return lock; }
+			// We lost the race to another thread, so try again to pick up its lock
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private C getStripedLock(final K key) {
+		int h = key.hashCode();
+		// Spread the higher bits downward, since the mask only uses the lower ones
+		h ^= (h >>> 16);
+		return (C) this.stripes[h & (this.stripes.length - 1)];
+	}
+
+	/**
+	 * <p>
+	 * Removes the entries for all the locks which have been garbage-collected. Only the entries
+	 * which still reference the collected lock are removed, so a concurrent re-creation of a
+	 * key's lock isn't affected.
+	 * </p>
+	 */
+	private void purge() {
+		for (Reference<? extends C> ref = this.queue.poll(); ref != null; ref = this.queue.poll()) {
+			@SuppressWarnings("unchecked")
+			KeyedReference<K, C> keyed = (KeyedReference<K, C>) ref;
+			this.references.remove(keyed.key, keyed);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Returns the number of keys for which lock bookkeeping is currently held. For instances in
+	 * <i>striped</i> mode, this is the (fixed) number of stripes.
+	 * </p>
+	 *
+	 * @return the number of keys for which lock bookkeeping is currently held
+	 */
+	public int size() {
+		if (this.stripes != null) { return this.stripes.length; }
+		if (this.references != null) {
+			purge();
+			return this.references.size();
+		}
+		return this.locks.size();
+	}
+
+	/**
+	 * <p>
+	 * Returns the lock associated to the given key. The same lock object is guaranteed to be
+	 * returned for the same key for as long as any thread holds a (strong) reference to it. In
+	 * <i>striped</i> mode, different keys may also yield the same lock.
+	 * </p>
+	 *
+	 * @param key
+	 *            the key to get the lock for
+	 * @return the lock associated to the given key
+	 * @throws NullPointerException
+	 *             if the key is {@code null}
+	 */
+	public C getLock(final K key) {
+		Objects.requireNonNull(key, "Must provide a non-null key");
+		return this.dispenser.apply(key);
+	}
 }
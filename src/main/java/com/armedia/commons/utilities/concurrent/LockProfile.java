@@ -0,0 +1,327 @@
+/*******************************************************************************
+ * #%L
+ * Armedia Caliente
+ * %%
+ * Copyright (C) 2013 - 2025 Armedia, LLC
+ * %%
+ * This file is part of the Caliente software.
+ *
+ * If the software was purchased under a paid Caliente license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Caliente is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Caliente is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Caliente. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ *******************************************************************************/
+package com.armedia.commons.utilities.concurrent;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import com.armedia.commons.utilities.LatencyHistogram;
+
+/**
+ * <p>
+ * The contention statistics for a single {@link Traceable} lock (or condition), collected while
+ * the {@link LockProfiler} is {@link LockProfiler#isEnabled() enabled}. Profiles are keyed by the
+ * traceable object's {@link Traceable#getName() name}, and obtained from the
+ * {@link LockProfiler}.
+ * </p>
+ * <p>
+ * Recording is lock-free. The more expensive measurements (the queue length, and the call site)
+ * are only taken for contended acquisitions, which are about to block anyway, so an uncontended
+ * acquisition costs little more than two {@link System#nanoTime()} calls.
+ * </p>
+ */
+public final class LockProfile {
+
+	/**
+	 * The maximum number of distinct call sites tracked for each profile. Any further call sites
+	 * are counted under {@link #OTHER_CALL_SITES}.
+	 */
+	public static final int MAX_CALL_SITES = 256;
+
+	/**
+	 * The call site under which contended acquisitions are counted once {@link #MAX_CALL_SITES}
+	 * distinct call sites have been seen.
+	 */
+	public static final String OTHER_CALL_SITES = "<other>";
+
+	static final long NOT_HELD = Long.MIN_VALUE;
+
+	private static final StackWalker WALKER = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+
+	/**
+	 * <p>
+	 * An immutable snapshot of a {@link LockProfile}. All durations are in nanoseconds.
+	 * </p>
+	 * <p>
+	 * For conditions, an acquisition is a completed wait, and every wait is considered contended.
+	 * The time spent waiting on a condition is reported separately (as the
+	 * {@link #getAwaitTime() await time}), since it's a measure of how long the condition took to
+	 * be signaled rather than of contention.
+	 * </p>
+	 */
+	public static final class Snapshot {
+		private final String name;
+		private final long acquisitions;
+		private final long contended;
+		private final long failed;
+		private final LatencyHistogram.Snapshot waitTime;
+		private final LatencyHistogram.Snapshot holdTime;
+		private final LatencyHistogram.Snapshot awaitTime;
+		private final LatencyHistogram.Snapshot queueLength;
+		private final Map<String, Long> callSites;
+
+		private Snapshot(LockProfile profile) {
+			this.name = profile.name;
+			this.acquisitions = profile.acquisitions.sum();
+			this.contended = profile.contended.sum();
+			this.failed = profile.failed.sum();
+			this.waitTime = profile.waitTime.snapshot();
+			this.holdTime = profile.holdTime.snapshot();
+			this.awaitTime = profile.awaitTime.snapshot();
+			this.queueLength = profile.queueLength.snapshot();
+			final Map<String, Long> callSites = new TreeMap<>();
+			profile.callSites.forEach((k, v) -> callSites.put(k, v.sum()));
+			this.callSites = Collections.unmodifiableMap(callSites);
+		}
+
+		public String getName() {
+			return this.name;
+		}
+
+		/**
+		 * <p>
+		 * Returns the number of successful acquisitions.
+		 * </p>
+		 *
+		 * @return the number of successful acquisitions
+		 */
+		public long getAcquisitions() {
+			return this.acquisitions;
+		}
+
+		/**
+		 * <p>
+		 * Returns the number of acquisition attempts which found the lock held by another thread,
+		 * or other threads already queued for it.
+		 * </p>
+		 *
+		 * @return the number of contended acquisition attempts
+		 */
+		public long getContended() {
+			return this.contended;
+		}
+
+		/**
+		 * <p>
+		 * Returns the number of acquisition attempts which failed, because they timed out (or the
+		 * lock wasn't available to {@link Lock#tryLock()}), or were interrupted.
+		 * </p>
+		 *
+		 * @return the number of failed acquisition attempts
+		 */
+		public long getFailed() {
+			return this.failed;
+		}
+
+		/**
+		 * <p>
+		 * Returns the time spent acquiring the lock, whether successfully or not. Always empty for
+		 * conditions.
+		 * </p>
+		 *
+		 * @return the time spent acquiring the lock
+		 */
+		public LatencyHistogram.Snapshot getWaitTime() {
+			return this.waitTime;
+		}
+
+		/**
+		 * <p>
+		 * Returns the time the lock was held for, from the outermost acquisition to the matching
+		 * release (including any time spent waiting on its conditions). Always empty for
+		 * conditions.
+		 * </p>
+		 *
+		 * @return the time the lock was held for
+		 */
+		public LatencyHistogram.Snapshot getHoldTime() {
+			return this.holdTime;
+		}
+
+		/**
+		 * <p>
+		 * Returns the time spent waiting on the condition, whether it was signaled or not. Always
+		 * empty for locks.
+		 * </p>
+		 *
+		 * @return the time spent waiting on the condition
+		 */
+		public LatencyHistogram.Snapshot getAwaitTime() {
+			return this.awaitTime;
+		}
+
+		/**
+		 * <p>
+		 * Returns the number of threads found queued for the lock, sampled on each contended
+		 * acquisition. Always empty for conditions.
+		 * </p>
+		 *
+		 * @return the queue length samples
+		 */
+		public LatencyHistogram.Snapshot getQueueLength() {
+			return this.queueLength;
+		}
+
+		/**
+		 * <p>
+		 * Returns the number of contended acquisitions made from each call site: the first stack
+		 * frame outside of the locking machinery (i.e. the code calling into a
+		 * {@link ShareableLockable}, rather than the {@link ShareableLockable} itself).
+		 * </p>
+		 *
+		 * @return the number of contended acquisitions made from each call site
+		 */
+		public Map<String, Long> getCallSites() {
+			return this.callSites;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(
+				"%s: acquisitions=%d, contended=%d, failed=%d, wait=[%s], hold=[%s], await=[%s], queue=[%s]",
+				this.name, this.acquisitions, this.contended, this.failed, this.waitTime, this.holdTime,
+				this.awaitTime, this.queueLength);
+		}
+	}
+
+	private final String name;
+	private final LongAdder acquisitions = new LongAdder();
+	private final LongAdder contended = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final LatencyHistogram waitTime = new LatencyHistogram();
+	private final LatencyHistogram holdTime = new LatencyHistogram();
+	private final LatencyHistogram awaitTime = new LatencyHistogram();
+	private final LatencyHistogram queueLength = new LatencyHistogram();
+	private final ConcurrentMap<String, LongAdder> callSites = new ConcurrentHashMap<>();
+
+	LockProfile(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	public Snapshot snapshot() {
+		return new Snapshot(this);
+	}
+
+	/**
+	 * <p>
+	 * Clears all the statistics collected so far. Statistics recorded concurrently with the reset
+	 * may or may not survive it.
+	 * </p>
+	 */
+	public void reset() {
+		this.acquisitions.reset();
+		this.contended.reset();
+		this.failed.reset();
+		this.waitTime.reset();
+		this.holdTime.reset();
+		this.awaitTime.reset();
+		this.queueLength.reset();
+		this.callSites.clear();
+	}
+
+	/**
+	 * Marks the start of an acquisition attempt, and returns its start time. For contended
+	 * attempts, the queue length (if non-negative) and the call site are also recorded.
+	 */
+	long start(boolean contended, int queueLength) {
+		if (contended) {
+			this.contended.increment();
+			if (queueLength >= 0) {
+				this.queueLength.record(queueLength);
+			}
+			final String callSite = LockProfile.findCallSite();
+			LongAdder counter = this.callSites.get(callSite);
+			if (counter == null) {
+				counter = this.callSites.computeIfAbsent(
+					(this.callSites.size() < LockProfile.MAX_CALL_SITES ? callSite : LockProfile.OTHER_CALL_SITES),
+					(k) -> new LongAdder());
+			}
+			counter.increment();
+		}
+		return System.nanoTime();
+	}
+
+	/**
+	 * Records a successful acquisition, and returns the time it completed (i.e. the start of the
+	 * hold).
+	 */
+	long acquired(long start) {
+		this.acquisitions.increment();
+		return this.waitTime.recordSince(start);
+	}
+
+	void failed(long start) {
+		this.failed.increment();
+		this.waitTime.recordSince(start);
+	}
+
+	/**
+	 * Records the end of a wait on a condition, which either completed (i.e. it was signaled) or
+	 * failed (i.e. it timed out, or was interrupted).
+	 */
+	void awaited(long start, boolean completed) {
+		(completed ? this.acquisitions : this.failed).increment();
+		this.awaitTime.recordSince(start);
+	}
+
+	void released(long holdStart) {
+		if (holdStart != LockProfile.NOT_HELD) {
+			this.holdTime.recordSince(holdStart);
+		}
+	}
+
+	private static boolean isLockingFrame(StackWalker.StackFrame frame) {
+		final Class<?> c = frame.getDeclaringClass();
+		return c.getName().startsWith("java.util.concurrent.locks.") //
+			|| Lock.class.isAssignableFrom(c) //
+			|| ReadWriteLock.class.isAssignableFrom(c) //
+			|| Condition.class.isAssignableFrom(c) //
+			|| Traceable.class.isAssignableFrom(c) //
+			|| MutexLockable.class.isAssignableFrom(c) //
+			|| (c == MutexAutoLock.class) //
+			|| (c == SharedAutoLock.class) //
+			|| (c == LockProfile.class);
+	}
+
+	private static String findCallSite() {
+		final Optional<StackWalker.StackFrame> frame = LockProfile.WALKER
+			.walk((s) -> s.dropWhile(LockProfile::isLockingFrame).findFirst());
+		return frame.map((f) -> f.toStackTraceElement().toString()).orElse(LockProfile.OTHER_CALL_SITES);
+	}
+}
@@ -0,0 +1,220 @@
+/*******************************************************************************
+ * #%L
+ * Armedia Caliente
+ * %%
+ * Copyright (C) 2013 - 2025 Armedia, LLC
+ * %%
+ * This file is part of the Caliente software.
+ *
+ * If the software was purchased under a paid Caliente license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Caliente is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Caliente is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Caliente. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ *******************************************************************************/
+package com.armedia.commons.utilities.concurrent;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Collects contention statistics for the {@link Traceable} lock family
+ * ({@link TraceableReentrantLock}, {@link TraceableReentrantReadWriteLock} and
+ * {@link TraceableCondition}): acquisition wait times, hold times, queue lengths, and the call
+ * sites of contended acquisitions. Using traceable locks in a {@link ShareableLockable} (i.e.
+ * through its {@link java.util.concurrent.locks.ReadWriteLock} constructor) makes it possible to
+ * tell which of them is the hot one.
+ * </p>
+ * <p>
+ * Profiling is global, and off by default (it may be turned on at startup with the
+ * {@value #ENABLED_PROPERTY} system property). While it's off, each lock operation costs a single
+ * volatile read on top of the operation itself. While it's on, each traceable object gets its own
+ * {@link LockProfile} (keyed by its {@link Traceable#getName() name}, so objects with the same
+ * name share it) the first time it's used. Profiles are kept until the JVM exits, so profiling
+ * should not be left on in applications which create traceable locks with ever-changing names.
+ * </p>
+ * <p>
+ * The statistics can be queried with {@link #getSnapshots()}, or through JMX once
+ * {@link #registerMBean() registered}.
+ * </p>
+ */
+public final class LockProfiler {
+
+	/**
+	 * The system property which, when set to {@code true}, enables profiling at startup.
+	 */
+	public static final String ENABLED_PROPERTY = "com.armedia.commons.utilities.concurrent.profile";
+
+	private static final Logger LOG = LoggerFactory.getLogger(LockProfiler.class);
+
+	private static final ConcurrentMap<String, LockProfile> PROFILES = new ConcurrentHashMap<>();
+
+	private static volatile boolean ENABLED = Boolean.getBoolean(LockProfiler.ENABLED_PROPERTY);
+
+	private static ObjectName OBJECT_NAME = null;
+
+	private LockProfiler() {
+	}
+
+	public static boolean isEnabled() {
+		return LockProfiler.ENABLED;
+	}
+
+	/**
+	 * <p>
+	 * Turns profiling on or off. Statistics collected so far are kept either way.
+	 * </p>
+	 *
+	 * @param enabled
+	 *            whether profiling should be enabled
+	 */
+	public static void setEnabled(boolean enabled) {
+		LockProfiler.ENABLED = enabled;
+	}
+
+	/**
+	 * Returns the profile for the given object, or {@code null} if profiling is disabled.
+	 */
+	static LockProfile getProfile(Traceable traceable) {
+		if (!LockProfiler.ENABLED) { return null; }
+		final String name = traceable.getName();
+		final LockProfile profile = LockProfiler.PROFILES.get(name);
+		if (profile != null) { return profile; }
+		return LockProfiler.PROFILES.computeIfAbsent(name, LockProfile::new);
+	}
+
+	/**
+	 * <p>
+	 * Returns the profile for the traceable object with the given name, or {@code null} if none
+	 * has been profiled.
+	 * </p>
+	 *
+	 * @param name
+	 *            the name of the traceable object
+	 * @return the profile for the traceable object with the given name
+	 */
+	public static LockProfile getProfile(String name) {
+		return LockProfiler.PROFILES.get(name);
+	}
+
+	/**
+	 * <p>
+	 * Returns a snapshot of every profile, hottest first: that is, sorted by the total time spent
+	 * waiting to acquire each lock, in descending order. The time spent waiting on conditions is
+	 * reported separately, and doesn't count towards this ranking (it reflects how long they took
+	 * to be signaled, not contention), so idle conditions don't crowd out the contended locks.
+	 * </p>
+	 *
+	 * @return a snapshot of every profile, hottest first
+	 */
+	public static List<LockProfile.Snapshot> getSnapshots() {
+		final List<LockProfile.Snapshot> ret = new ArrayList<>(LockProfiler.PROFILES.size());
+		LockProfiler.PROFILES.values().forEach((p) -> ret.add(p.snapshot()));
+		ret.sort(Comparator.comparingLong((LockProfile.Snapshot s) -> s.getWaitTime().getSum()).reversed()
+			.thenComparing(LockProfile.Snapshot::getName));
+		return Collections.unmodifiableList(ret);
+	}
+
+	/**
+	 * <p>
+	 * Clears the statistics collected so far for every profile.
+	 * </p>
+	 */
+	public static void reset() {
+		LockProfiler.PROFILES.values().forEach(LockProfile::reset);
+	}
+
+	/**
+	 * <p>
+	 * Registers a {@link LockProfilerMXBean} with the platform MBean server, under the
+	 * {@code com.armedia.commons.utilities.concurrent:type=LockProfiler} name, unless it's already
+	 * registered. Failure to register it is logged, but otherwise ignored.
+	 * </p>
+	 *
+	 * @return the name the MBean is registered under, or {@code null} if it couldn't be
+	 *         registered
+	 */
+	public static synchronized ObjectName registerMBean() {
+		if (LockProfiler.OBJECT_NAME != null) { return LockProfiler.OBJECT_NAME; }
+		try {
+			final ObjectName objectName = new ObjectName(
+				LockProfilerMXBean.class.getPackage().getName() + ":type=LockProfiler");
+			ManagementFactory.getPlatformMBeanServer().registerMBean(new MXBean(), objectName);
+			LockProfiler.OBJECT_NAME = objectName;
+		} catch (JMException e) {
+			LockProfiler.LOG.warn("Failed to register the JMX MBean for the lock profiler, continuing without it", e);
+		}
+		return LockProfiler.OBJECT_NAME;
+	}
+
+	/**
+	 * <p>
+	 * Unregisters the {@link LockProfilerMXBean}, if it's registered.
+	 * </p>
+	 */
+	public static synchronized void unregisterMBean() {
+		final ObjectName objectName = LockProfiler.OBJECT_NAME;
+		if (objectName == null) { return; }
+		LockProfiler.OBJECT_NAME = null;
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			server.unregisterMBean(objectName);
+		} catch (JMException e) {
+			LockProfiler.LOG.warn("Failed to unregister the JMX MBean [{}]", objectName, e);
+		}
+	}
+
+	private static final class MXBean implements LockProfilerMXBean {
+		@Override
+		public boolean isEnabled() {
+			return LockProfiler.isEnabled();
+		}
+
+		@Override
+		public void setEnabled(boolean enabled) {
+			LockProfiler.setEnabled(enabled);
+		}
+
+		@Override
+		public List<String> getLockNames() {
+			final List<String> names = new ArrayList<>(LockProfiler.PROFILES.keySet());
+			Collections.sort(names);
+			return names;
+		}
+
+		@Override
+		public List<LockProfile.Snapshot> getProfiles() {
+			return LockProfiler.getSnapshots();
+		}
+
+		@Override
+		public void reset() {
+			LockProfiler.reset();
+		}
+	}
+}
@@ -0,0 +1,510 @@
+/*******************************************************************************
+ * #%L
+ * Armedia Caliente
+ * %%
+ * Copyright (C) 2013 - 2025 Armedia, LLC
+ * %%
+ * This file is part of the Caliente software.
+ *
+ * If the software was purchased under a paid Caliente license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Caliente is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Caliente is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Caliente. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ *******************************************************************************/
+package com.armedia.commons.utilities.concurrent;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntFunction;
+
+/**
+ * <p>
+ * A {@link BlockingQueue} which splits its elements over several FIFO <i>lanes</i>, as chosen by
+ * a <i>partitioner</i> function, so that each lane can be {@link #lane(int) consumed} separately.
+ * If each lane has a single consumer, the elements the partitioner sends to the same lane (i.e.
+ * all the elements with the same key) are handled one at a time and in the order they were
+ * added, while elements in different lanes are handled in parallel.
+ * </p>
+ * <p>
+ * The capacity limit, if any, is shared by all the lanes. Each lane has its own lock, so
+ * producers and consumers working on different lanes don't contend with each other. The
+ * operations on the queue itself (as opposed to a lane) go over all the lanes in turn: removing
+ * elements takes them from the lowest-numbered lanes first, and {@link #size()} and iteration are
+ * only weakly consistent. Consumers waiting on the queue itself (i.e. with {@link #take()}) are
+ * woken up by elements added to any lane, through a lock which producers only take while such
+ * consumers are waiting.
+ * </p>
+ *
+ * @param <E>
+ *            the type of the elements
+ */
+public class PartitionedBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+	private final ToIntFunction<? super E> partitioner;
+	private final LinkedBlockingQueue<E>[] lanes;
+	private final BlockingQueue<E>[] views;
+	private final Semaphore capacity;
+	private final ReentrantLock waitLock = new ReentrantLock();
+	private final Condition notEmpty = this.waitLock.newCondition();
+	// Only modified while holding the wait lock
+	private volatile int waiting = 0;
+
+	/**
+	 * <p>
+	 * Creates a new queue with the given number of lanes, and no capacity limit.
+	 * </p>
+	 *
+	 * @param lanes
+	 *            the number of lanes (usually, the number of consumer threads)
+	 * @param partitioner
+	 *            the function which returns the lane for each element (modulo the number of lanes)
+	 * @throws IllegalArgumentException
+	 *             if {@code lanes} is less than 1
+	 */
+	public PartitionedBlockingQueue(int lanes, ToIntFunction<? super E> partitioner) {
+		this(lanes, 0, partitioner);
+	}
+
+	/**
+	 * <p>
+	 * Creates a new queue with the given number of lanes, which will hold at most
+	 * {@code capacity} elements across all of them. If {@code capacity} is less than or equal to
+	 * 0, the queue will have no capacity limit. The partitioner may return any value (including
+	 * negative ones), which will be reduced modulo the number of lanes.
+	 * </p>
+	 *
+	 * @param lanes
+	 *            the number of lanes (usually, the number of consumer threads)
+	 * @param capacity
+	 *            the maximum number of elements the queue will hold
+	 * @param partitioner
+	 *            the function which returns the lane for each element (modulo the number of lanes)
+	 * @throws IllegalArgumentException
+	 *             if {@code lanes} is less than 1
+	 */
+	public PartitionedBlockingQueue(int lanes, int capacity, ToIntFunction<? super E> partitioner) {
+		if (lanes < 1) {
+			throw new IllegalArgumentException(
+				String.format("The number of lanes must be greater than 0 (%d was given)", lanes));
+		}
+		this.partitioner = Objects.requireNonNull(partitioner, "Must provide a non-null partitioner");
+		@SuppressWarnings("unchecked")
+		LinkedBlockingQueue<E>[] l = new LinkedBlockingQueue[lanes];
+		@SuppressWarnings("unchecked")
+		BlockingQueue<E>[] v = new BlockingQueue[lanes];
+		for (int i = 0; i < l.length; i++) {
+			l[i] = new LinkedBlockingQueue<>();
+			v[i] = new Lane(l[i]);
+		}
+		this.lanes = l;
+		this.views = v;
+		this.capacity = (capacity > 0 ? new Semaphore(capacity) : null);
+	}
+
+	public final int getLanes() {
+		return this.lanes.length;
+	}
+
+	/**
+	 * <p>
+	 * Returns the number of the lane the given element goes into.
+	 * </p>
+	 *
+	 * @param e
+	 *            the element
+	 * @return the number of the lane the given element goes into
+	 */
+	public final int laneOf(E e) {
+		return Math.floorMod(this.partitioner.applyAsInt(e), this.lanes.length);
+	}
+
+	/**
+	 * <p>
+	 * Returns the consumer's view of the given lane: removing elements from it only removes
+	 * elements from that lane, in the order they were added, and it only reports that lane's
+	 * size. Adding elements to it is the same as adding them to this queue, so they go to
+	 * whichever lane the partitioner picks.
+	 * </p>
+	 *
+	 * @param lane
+	 *            the number of the lane, between {@code 0} and {@link #getLanes()} (exclusive)
+	 * @return the consumer's view of the given lane
+	 * @throws IllegalArgumentException
+	 *             if {@code lane} is out of range
+	 */
+	public final BlockingQueue<E> lane(int lane) {
+		if ((lane < 0) || (lane >= this.views.length)) {
+			throw new IllegalArgumentException(String.format("The lane number must be between 0 and %d (%d was given)",
+				this.views.length - 1, lane));
+		}
+		return this.views[lane];
+	}
+
+	private LinkedBlockingQueue<E> laneFor(E e) {
+		// Pick the lane before taking up any capacity, in case the partitioner fails
+		return this.lanes[laneOf(Objects.requireNonNull(e, "Must provide a non-null element"))];
+	}
+
+	private void release(int count) {
+		if ((this.capacity != null) && (count > 0)) {
+			this.capacity.release(count);
+		}
+	}
+
+	/**
+	 * Wakes up the consumers waiting on the queue itself (if any) after an element is added.
+	 */
+	private void enqueued() {
+		if (this.waiting == 0) { return; }
+		this.waitLock.lock();
+		try {
+			this.notEmpty.signalAll();
+		} finally {
+			this.waitLock.unlock();
+		}
+	}
+
+	private E dequeued(E e) {
+		if (e != null) {
+			release(1);
+		}
+		return e;
+	}
+
+	@Override
+	public boolean offer(E e) {
+		final LinkedBlockingQueue<E> lane = laneFor(e);
+		if ((this.capacity != null) && !this.capacity.tryAcquire()) { return false; }
+		// The lanes are unbounded, since the capacity is enforced by the semaphore
+		lane.offer(e);
+		enqueued();
+		return true;
+	}
+
+	@Override
+	public void put(E e) throws InterruptedException {
+		final LinkedBlockingQueue<E> lane = laneFor(e);
+		if (this.capacity != null) {
+			this.capacity.acquire();
+		}
+		lane.offer(e);
+		enqueued();
+	}
+
+	@Override
+	public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+		final LinkedBlockingQueue<E> lane = laneFor(e);
+		if ((this.capacity != null) && !this.capacity.tryAcquire(timeout, unit)) { return false; }
+		lane.offer(e);
+		enqueued();
+		return true;
+	}
+
+	@Override
+	public E poll() {
+		for (LinkedBlockingQueue<E> lane : this.lanes) {
+			final E e = lane.poll();
+			if (e != null) { return dequeued(e); }
+		}
+		return null;
+	}
+
+	/**
+	 * <p>
+	 * Waits for an element to be added to any of the lanes, and removes it. Consumers which
+	 * serve a single lane should {@link #lane(int) wait on it} instead, which is cheaper.
+	 * </p>
+	 */
+	@Override
+	public E take() throws InterruptedException {
+		E e = poll();
+		if (e != null) { return e; }
+		this.waitLock.lockInterruptibly();
+		try {
+			this.waiting++;
+			try {
+				// Check again now that producers know we're waiting
+				while ((e = poll()) == null) {
+					this.notEmpty.await();
+				}
+				return e;
+			} finally {
+				this.waiting--;
+			}
+		} finally {
+			this.waitLock.unlock();
+		}
+	}
+
+	/**
+	 * <p>
+	 * Waits for up to the given time for an element to be added to any of the lanes, and
+	 * removes it. Consumers which serve a single lane should {@link #lane(int) wait on it}
+	 * instead, which is cheaper.
+	 * </p>
+	 */
+	@Override
+	public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+		E e = poll();
+		if (e != null) { return e; }
+		long nanos = unit.toNanos(timeout);
+		this.waitLock.lockInterruptibly();
+		try {
+			this.waiting++;
+			try {
+				// Check again now that producers know we're waiting
+				while ((e = poll()) == null) {
+					if (nanos <= 0) { return null; }
+					nanos = this.notEmpty.awaitNanos(nanos);
+				}
+				return e;
+			} finally {
+				this.waiting--;
+			}
+		} finally {
+			this.waitLock.unlock();
+		}
+	}
+
+	@Override
+	public E peek() {
+		for (LinkedBlockingQueue<E> lane : this.lanes) {
+			final E e = lane.peek();
+			if (e != null) { return e; }
+		}
+		return null;
+	}
+
+	@Override
+	public int size() {
+		long size = 0;
+		for (LinkedBlockingQueue<E> lane : this.lanes) {
+			size += lane.size();
+		}
+		return (int) Math.min(size, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		for (LinkedBlockingQueue<E> lane : this.lanes) {
+			if (!lane.isEmpty()) { return false; }
+		}
+		return true;
+	}
+
+	@Override
+	public int remainingCapacity() {
+		return (this.capacity != null ? this.capacity.availablePermits() : Integer.MAX_VALUE);
+	}
+
+	@Override
+	public int drainTo(Collection<? super E> c) {
+		return drainTo(c, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public int drainTo(Collection<? super E> c, int maxElements) {
+		Objects.requireNonNull(c, "Must provide a non-null collection to drain to");
+		if (c == this) { throw new IllegalArgumentException("Can't drain a queue into itself"); }
+		int n = 0;
+		for (LinkedBlockingQueue<E> lane : this.lanes) {
+			if (n >= maxElements) {
+				break;
+			}
+			n += lane.drainTo(c, maxElements - n);
+		}
+		release(n);
+		return n;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		if (o == null) { return false; }
+		for (LinkedBlockingQueue<E> lane : this.lanes) {
+			if (lane.remove(o)) {
+				release(1);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		if (o == null) { return false; }
+		for (LinkedBlockingQueue<E> lane : this.lanes) {
+			if (lane.contains(o)) { return true; }
+		}
+		return false;
+	}
+
+	/**
+	 * <p>
+	 * Returns a weakly-consistent iterator over the elements, lane by lane. {@link Iterator#remove()}
+	 * removes the last element returned from the queue, if it's still there.
+	 * </p>
+	 */
+	@Override
+	public Iterator<E> iterator() {
+		return new Iterator<E>() {
+			private int lane = 0;
+			private Iterator<E> current = PartitionedBlockingQueue.this.views[0].iterator();
+
+			@Override
+			public boolean hasNext() {
+				final BlockingQueue<E>[] views = PartitionedBlockingQueue.this.views;
+				while (!this.current.hasNext() && ((this.lane + 1) < views.length)) {
+					this.current = views[++this.lane].iterator();
+				}
+				return this.current.hasNext();
+			}
+
+			@Override
+			public E next() {
+				if (!hasNext()) { throw new NoSuchElementException(); }
+				return this.current.next();
+			}
+
+			@Override
+			public void remove() {
+				this.current.remove();
+			}
+		};
+	}
+
+	private final class Lane extends AbstractQueue<E> implements BlockingQueue<E> {
+		private final LinkedBlockingQueue<E> queue;
+
+		private Lane(LinkedBlockingQueue<E> queue) {
+			this.queue = queue;
+		}
+
+		@Override
+		public boolean offer(E e) {
+			return PartitionedBlockingQueue.this.offer(e);
+		}
+
+		@Override
+		public void put(E e) throws InterruptedException {
+			PartitionedBlockingQueue.this.put(e);
+		}
+
+		@Override
+		public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+			return PartitionedBlockingQueue.this.offer(e, timeout, unit);
+		}
+
+		@Override
+		public E poll() {
+			return dequeued(this.queue.poll());
+		}
+
+		@Override
+		public E take() throws InterruptedException {
+			return dequeued(this.queue.take());
+		}
+
+		@Override
+		public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+			return dequeued(this.queue.poll(timeout, unit));
+		}
+
+		@Override
+		public E peek() {
+			return this.queue.peek();
+		}
+
+		@Override
+		public int size() {
+			return this.queue.size();
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return this.queue.isEmpty();
+		}
+
+		@Override
+		public int remainingCapacity() {
+			return PartitionedBlockingQueue.this.remainingCapacity();
+		}
+
+		@Override
+		public int drainTo(Collection<? super E> c) {
+			return drainTo(c, Integer.MAX_VALUE);
+		}
+
+		@Override
+		public int drainTo(Collection<? super E> c, int maxElements) {
+			Objects.requireNonNull(c, "Must provide a non-null collection to drain to");
+			if ((c == this) || (c == PartitionedBlockingQueue.this)) {
+				throw new IllegalArgumentException("Can't drain a queue into itself");
+			}
+			final int n = this.queue.drainTo(c, maxElements);
+			release(n);
+			return n;
+		}
+
+		@Override
+		public boolean remove(Object o) {
+			if ((o == null) || !this.queue.remove(o)) { return false; }
+			release(1);
+			return true;
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return this.queue.contains(o);
+		}
+
+		@Override
+		public Iterator<E> iterator() {
+			final Iterator<E> it = this.queue.iterator();
+			return new Iterator<E>() {
+				private E last = null;
+
+				@Override
+				public boolean hasNext() {
+					return it.hasNext();
+				}
+
+				@Override
+				public E next() {
+					this.last = it.next();
+					return this.last;
+				}
+
+				@Override
+				public void remove() {
+					if (this.last == null) { throw new IllegalStateException(); }
+					// The element may have been consumed in the meantime, so only release its
+					// capacity if we're the ones removing it
+					Lane.this.remove(this.last);
+					this.last = null;
+				}
+			};
+		}
+	}
+}
@@ -26,19 +26,44 @@
  *******************************************************************************/
 package com.armedia.commons.utilities.concurrent;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Objects;
 import java.util.Spliterator;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 import com.armedia.commons.utilities.Tools;
 
+/**
+ * <p>
+ * A {@link Collection} which guards all access to a backing collection with a
+ * {@link ShareableLockable} lock: reads take the shared lock, and writes take the mutex lock.
+ * </p>
+ * <p>
+ * If the backing collection is a {@link CopyOnWriteArrayList} or a {@link CopyOnWriteArraySet}
+ * (see {@link ShareableList#copyOnWrite()} and {@link ShareableSet#copyOnWrite()}), this
+ * collection works in <i>copy-on-write</i> mode instead: since the backing collection never
+ * changes while it's being read, reads (including iterators, spliterators and streams) take no
+ * lock at all, and iterate over the contents as they were when they started, without ever
+ * blocking writers. Writes still take the mutex lock, so holding it still keeps other writers
+ * out. This suits collections which are read much more often than they're written to.
+ * </p>
+ *
+ * @param <ELEMENT>
+ *            the type of the elements
+ */
 public class ShareableCollection<ELEMENT> extends BaseShareableLockable implements Collection<ELEMENT> {
 
 	private static final Object[] NO_ELEMENTS = {};
@@ -49,6 +74,7 @@ public class ShareableCollection<ELEMENT> extends BaseShareableLockable implemen
 	}
 
 	private final Collection<ELEMENT> c;
+	private final boolean copyOnWrite;
 
 	public ShareableCollection(Collection<ELEMENT> c) {
 		this(ShareableLockable.extractShareableLock(c), c);
@@ -61,42 +87,88 @@ public class ShareableCollection<ELEMENT> extends BaseShareableLockable implemen
 	public ShareableCollection(ReadWriteLock rwLock, Collection<ELEMENT> c) {
 		super(rwLock);
 		this.c = Objects.requireNonNull(c, "Must provide a non-null backing Collection");
+		this.copyOnWrite = (CopyOnWriteArrayList.class.isInstance(c) || CopyOnWriteArraySet.class.isInstance(c));
+	}
+
+	/**
+	 * <p>
+	 * Returns {@code true} if this collection works in copy-on-write mode, i.e. if reads take no
+	 * lock.
+	 * </p>
+	 *
+	 * @return {@code true} if this collection works in copy-on-write mode
+	 */
+	public final boolean isCopyOnWrite() {
+		return this.copyOnWrite;
+	}
+
+	@SuppressWarnings("unchecked")
+	protected final List<ELEMENT> snapshotList() {
+		return Collections.unmodifiableList(Arrays.asList((ELEMENT[]) toArray()));
+	}
+
+	/**
+	 * <p>
+	 * Returns an immutable copy of this collection's contents, in iteration order, which can be
+	 * read (and iterated, and split for parallel processing) without taking any locks.
+	 * </p>
+	 *
+	 * @return an immutable copy of this collection's contents
+	 */
+	public Collection<ELEMENT> snapshot() {
+		return snapshotList();
 	}
 
 	@Override
 	public void forEach(Consumer<? super ELEMENT> action) {
 		Objects.requireNonNull(action, "Must provide a non-null action to apply");
+		if (this.copyOnWrite) {
+			this.c.forEach(action);
+			return;
+		}
 		shareLocked(() -> this.c.forEach(action));
 	}
 
 	@Override
 	public int size() {
+		if (this.copyOnWrite) { return this.c.size(); }
 		return shareLocked(this.c::size);
 	}
 
 	@Override
 	public boolean isEmpty() {
+		if (this.copyOnWrite) { return this.c.isEmpty(); }
 		return shareLocked(this.c::isEmpty);
 	}
 
 	@Override
 	public boolean contains(Object o) {
+		if (this.copyOnWrite) { return this.c.contains(o); }
 		return shareLocked(() -> this.c.contains(o));
 	}
 
+	/**
+	 * <p>
+	 * In copy-on-write mode, the iterator takes no lock, and doesn't support
+	 * {@link Iterator#remove()}.
+	 * </p>
+	 */
 	@Override
 	public Iterator<ELEMENT> iterator() {
+		if (this.copyOnWrite) { return this.c.iterator(); }
 		return shareLocked(() -> new ShareableIterator<>(this, this.c.iterator()));
 	}
 
 	@Override
 	public Object[] toArray() {
+		if (this.copyOnWrite) { return this.c.toArray(); }
 		return shareLocked(() -> this.c.toArray());
 	}
 
 	@Override
 	public <T> T[] toArray(T[] a) {
 		Objects.requireNonNull(a, "Must provide a non-null Array instance");
+		if (this.copyOnWrite) { return this.c.toArray(a); }
 		return shareLocked(() -> this.c.toArray(a));
 	}
 
@@ -114,6 +186,7 @@ public class ShareableCollection<ELEMENT> extends BaseShareableLockable implemen
 	public boolean containsAll(Collection<?> c) {
 		Objects.requireNonNull(c, "Must provide a non-null collection to check against");
 		if (c.isEmpty()) { return true; }
+		if (this.copyOnWrite) { return this.c.containsAll(c); }
 		return shareLocked(() -> this.c.containsAll(c));
 	}
 
@@ -143,6 +216,90 @@ public class ShareableCollection<ELEMENT> extends BaseShareableLockable implemen
 		mutexLocked(this.c::clear);
 	}
 
+	/**
+	 * <p>
+	 * Applies the given mutator to the backing collection while holding the mutex lock, so the
+	 * whole sequence of changes it makes is done with a single lock acquisition, and is seen by
+	 * other threads all at once. The mutator must not let the collection escape.
+	 * </p>
+	 * <p>
+	 * In {@link #isCopyOnWrite() copy-on-write mode}, each individual change still copies the
+	 * backing array, so prefer {@link #addAll(Collection)} (or
+	 * {@link #addAll(Collection, Function)}) for adding many elements.
+	 * </p>
+	 *
+	 * @param mutator
+	 *            the mutator to apply
+	 * @return the net change in the collection's size (i.e. negative if elements were removed)
+	 */
+	public int mutateAll(Consumer<? super Collection<ELEMENT>> mutator) {
+		Objects.requireNonNull(mutator, "Must provide a non-null mutator");
+		try (MutexAutoLock lock = mutexAutoLock()) {
+			final int before = this.c.size();
+			mutator.accept(this.c);
+			return this.c.size() - before;
+		}
+	}
+
+	/**
+	 * <p>
+	 * Transforms each of the given source elements, and adds the results to this collection with a
+	 * single lock acquisition. The transformation is done before the lock is acquired, so it can be
+	 * arbitrarily expensive without holding back other threads.
+	 * </p>
+	 *
+	 * @param source
+	 *            the elements to transform and add
+	 * @param transform
+	 *            the transformation to apply to each element
+	 * @return the number of elements which changed this collection (i.e. as per
+	 *         {@link #add(Object)})
+	 */
+	public <T> int addAll(Collection<? extends T> source, Function<? super T, ? extends ELEMENT> transform) {
+		Objects.requireNonNull(source, "Must provide a non-null collection to add from");
+		Objects.requireNonNull(transform, "Must provide a non-null transformation");
+		if (source.isEmpty()) { return 0; }
+		final List<ELEMENT> transformed = new ArrayList<>(source.size());
+		for (T t : source) {
+			transformed.add(transform.apply(t));
+		}
+		return mutexLocked(() -> {
+			final int before = this.c.size();
+			if (this.copyOnWrite) {
+				// Copy the array once, instead of once per element
+				this.c.addAll(transformed);
+				return this.c.size() - before;
+			}
+			int added = 0;
+			for (ELEMENT e : transformed) {
+				if (this.c.add(e)) {
+					added++;
+				}
+			}
+			return added;
+		});
+	}
+
+	/**
+	 * <p>
+	 * Removes all the elements which match the given filter, while holding the mutex lock
+	 * throughout (unlike {@link #removeIf(Predicate)}, which only acquires it once it finds the
+	 * first match), and returns how many were removed.
+	 * </p>
+	 *
+	 * @param filter
+	 *            the filter which selects the elements to remove
+	 * @return the number of elements removed
+	 */
+	public int removeMatching(Predicate<? super ELEMENT> filter) {
+		Objects.requireNonNull(filter, "Must provide a non-null filter to search with");
+		return mutexLocked(() -> {
+			final int before = this.c.size();
+			this.c.removeIf(filter);
+			return before - this.c.size();
+		});
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (o == null) { return false; }
@@ -163,6 +320,8 @@ public class ShareableCollection<ELEMENT> extends BaseShareableLockable implemen
 	@Override
 	public boolean removeIf(Predicate<? super ELEMENT> filter) {
 		Objects.requireNonNull(filter, "Must provide a non-null filter to search with");
+		// Copy-on-write iterators don't support removal, but the collection does it atomically
+		if (this.copyOnWrite) { return mutexLocked(() -> this.c.removeIf(filter)); }
 		final Lock readLock = acquireSharedLock();
 		Lock writeLock = null;
 		try {
@@ -193,11 +352,13 @@ public class ShareableCollection<ELEMENT> extends BaseShareableLockable implemen
 
 	@Override
 	public Spliterator<ELEMENT> spliterator() {
+		if (this.copyOnWrite) { return this.c.spliterator(); }
 		return shareLocked(() -> new ShareableSpliterator<>(this, this.c.spliterator()));
 	}
 
 	@Override
 	public Stream<ELEMENT> stream() {
+		if (this.copyOnWrite) { return this.c.stream(); }
 		final Lock readLock = acquireSharedLock();
 		Stream<ELEMENT> stream = StreamSupport.stream(Collection.super.spliterator(), false);
 		return stream.onClose(readLock::unlock);
@@ -205,6 +366,7 @@ public class ShareableCollection<ELEMENT> extends BaseShareableLockable implemen
 
 	@Override
 	public Stream<ELEMENT> parallelStream() {
+		if (this.copyOnWrite) { return this.c.parallelStream(); }
 		final Lock readLock = acquireSharedLock();
 		Stream<ELEMENT> stream = StreamSupport.stream(Collection.super.spliterator(), true);
 		return stream.onClose(readLock::unlock);
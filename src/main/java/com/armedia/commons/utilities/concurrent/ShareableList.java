@@ -32,7 +32,9 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.locks.ReadWriteLock;
+import java.util.function.Consumer;
 import java.util.function.UnaryOperator;
 
 public class ShareableList<ELEMENT> extends ShareableCollection<ELEMENT> implements List<ELEMENT> {
@@ -52,6 +54,57 @@ public class ShareableList<ELEMENT> extends ShareableCollection<ELEMENT> impleme
 		this.list = list;
 	}
 
+	/**
+	 * <p>
+	 * Returns a new, empty list which works in
+	 * {@link ShareableCollection#isCopyOnWrite() copy-on-write mode}.
+	 * </p>
+	 *
+	 * @return a new, empty copy-on-write list
+	 */
+	public static <ELEMENT> ShareableList<ELEMENT> copyOnWrite() {
+		return new ShareableList<>(new CopyOnWriteArrayList<>());
+	}
+
+	/**
+	 * <p>
+	 * Returns a new list which works in {@link ShareableCollection#isCopyOnWrite() copy-on-write
+	 * mode}, with the given initial contents.
+	 * </p>
+	 *
+	 * @param c
+	 *            the initial contents
+	 * @return a new copy-on-write list
+	 */
+	public static <ELEMENT> ShareableList<ELEMENT> copyOnWrite(Collection<? extends ELEMENT> c) {
+		Objects.requireNonNull(c, "Must provide a non-null Collection to copy from");
+		return new ShareableList<>(new CopyOnWriteArrayList<>(c));
+	}
+
+	@Override
+	public List<ELEMENT> snapshot() {
+		return snapshotList();
+	}
+
+	/**
+	 * <p>
+	 * The same as {@link #mutateAll(Consumer)}, but the mutator gets the backing {@link List}, so
+	 * it can make positional changes.
+	 * </p>
+	 *
+	 * @param mutator
+	 *            the mutator to apply
+	 * @return the net change in the list's size (i.e. negative if elements were removed)
+	 */
+	public int mutateList(Consumer<? super List<ELEMENT>> mutator) {
+		Objects.requireNonNull(mutator, "Must provide a non-null mutator");
+		try (MutexAutoLock lock = mutexAutoLock()) {
+			final int before = this.list.size();
+			mutator.accept(this.list);
+			return this.list.size() - before;
+		}
+	}
+
 	@Override
 	public boolean addAll(int index, Collection<? extends ELEMENT> c) {
 		Objects.requireNonNull(c, "Must provide a non-null Collection to add from");
@@ -61,6 +114,7 @@ public class ShareableList<ELEMENT> extends ShareableCollection<ELEMENT> impleme
 
 	@Override
 	public ELEMENT get(int index) {
+		if (isCopyOnWrite()) { return this.list.get(index); }
 		return shareLocked(() -> this.list.get(index));
 	}
 
@@ -81,21 +135,25 @@ public class ShareableList<ELEMENT> extends ShareableCollection<ELEMENT> impleme
 
 	@Override
 	public int indexOf(Object o) {
+		if (isCopyOnWrite()) { return this.list.indexOf(o); }
 		return shareLocked(() -> this.list.indexOf(o));
 	}
 
 	@Override
 	public int lastIndexOf(Object o) {
+		if (isCopyOnWrite()) { return this.list.lastIndexOf(o); }
 		return shareLocked(() -> this.list.lastIndexOf(o));
 	}
 
 	@Override
 	public ListIterator<ELEMENT> listIterator() {
+		if (isCopyOnWrite()) { return this.list.listIterator(); }
 		return shareLocked(() -> new ShareableListIterator<>(this, this.list.listIterator()));
 	}
 
 	@Override
 	public ListIterator<ELEMENT> listIterator(int index) {
+		if (isCopyOnWrite()) { return this.list.listIterator(index); }
 		return shareLocked(() -> new ShareableListIterator<>(this, this.list.listIterator(index)));
 	}
 
@@ -107,6 +165,11 @@ public class ShareableList<ELEMENT> extends ShareableCollection<ELEMENT> impleme
 	@Override
 	public void replaceAll(UnaryOperator<ELEMENT> operator) {
 		Objects.requireNonNull(operator, "Must provide a non-null operator");
+		// Copy-on-write iterators can't modify the list, but the list does it atomically
+		if (isCopyOnWrite()) {
+			mutexLocked(() -> this.list.replaceAll(operator));
+			return;
+		}
 		try (MutexAutoLock lock = mutexAutoLock()) {
 			final ListIterator<ELEMENT> li = listIterator();
 			while (li.hasNext()) {
@@ -118,6 +181,10 @@ public class ShareableList<ELEMENT> extends ShareableCollection<ELEMENT> impleme
 	@Override
 	public void sort(Comparator<? super ELEMENT> c) {
 		Objects.requireNonNull(c, "Must provide a non-null comparator");
+		if (isCopyOnWrite()) {
+			mutexLocked(() -> this.list.sort(c));
+			return;
+		}
 		try (MutexAutoLock lock = mutexAutoLock()) {
 			ELEMENT[] a = toArray(ShareableCollection.noElements());
 			Arrays.sort(a, c);
@@ -27,6 +27,8 @@
 package com.armedia.commons.utilities.concurrent;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
@@ -122,6 +124,18 @@ public class ShareableMap<KEY, VALUE> extends BaseShareableLockable implements M
 		return this.entries.get();
 	}
 
+	/**
+	 * <p>
+	 * Returns an immutable copy of this map's contents, in the backing map's iteration order,
+	 * taken while holding the shared lock.
+	 * </p>
+	 *
+	 * @return an immutable copy of this map's contents
+	 */
+	public Map<KEY, VALUE> snapshot() {
+		return shareLocked(() -> Collections.unmodifiableMap(new LinkedHashMap<>(this.map)));
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (o == null) { return false; }
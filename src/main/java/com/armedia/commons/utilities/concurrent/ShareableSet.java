@@ -26,11 +26,89 @@
  *******************************************************************************/
 package com.armedia.commons.utilities.concurrent;
 
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Objects;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.locks.ReadWriteLock;
 
 public class ShareableSet<ELEMENT> extends ShareableCollection<ELEMENT> implements Set<ELEMENT> {
 
+	/**
+	 * An immutable set over an array, which keeps the iteration order of the set it was copied
+	 * from, and splits evenly for parallel processing.
+	 */
+	private static final class Snapshot<ELEMENT> extends AbstractSet<ELEMENT> {
+		private final Object[] elements;
+		private final Set<Object> index;
+
+		private Snapshot(Object[] elements) {
+			this.elements = elements;
+			this.index = new HashSet<>(Arrays.asList(elements));
+		}
+
+		@Override
+		public int size() {
+			return this.elements.length;
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return this.index.contains(o);
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public Iterator<ELEMENT> iterator() {
+			return Collections.unmodifiableList(Arrays.asList((ELEMENT[]) this.elements)).iterator();
+		}
+
+		@Override
+		public Object[] toArray() {
+			return this.elements.clone();
+		}
+
+		@Override
+		public Spliterator<ELEMENT> spliterator() {
+			return Spliterators.spliterator(this.elements,
+				Spliterator.DISTINCT | Spliterator.ORDERED | Spliterator.IMMUTABLE);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Returns a new, empty set which works in
+	 * {@link ShareableCollection#isCopyOnWrite() copy-on-write mode}.
+	 * </p>
+	 *
+	 * @return a new, empty copy-on-write set
+	 */
+	public static <ELEMENT> ShareableSet<ELEMENT> copyOnWrite() {
+		return new ShareableSet<>(new CopyOnWriteArraySet<>());
+	}
+
+	/**
+	 * <p>
+	 * Returns a new set which works in {@link ShareableCollection#isCopyOnWrite() copy-on-write
+	 * mode}, with the given initial contents.
+	 * </p>
+	 *
+	 * @param c
+	 *            the initial contents
+	 * @return a new copy-on-write set
+	 */
+	public static <ELEMENT> ShareableSet<ELEMENT> copyOnWrite(Collection<? extends ELEMENT> c) {
+		Objects.requireNonNull(c, "Must provide a non-null Collection to copy from");
+		return new ShareableSet<>(new CopyOnWriteArraySet<>(c));
+	}
+
 	public ShareableSet(Set<ELEMENT> set) {
 		super(set);
 	}
@@ -42,4 +120,9 @@ public class ShareableSet<ELEMENT> extends ShareableCollection<ELEMENT> implemen
 	public ShareableSet(ShareableLockable lockable, Set<ELEMENT> set) {
 		super(lockable, set);
 	}
+
+	@Override
+	public Set<ELEMENT> snapshot() {
+		return new Snapshot<>(toArray());
+	}
 }
@@ -26,6 +26,7 @@
  *******************************************************************************/
 package com.armedia.commons.utilities.concurrent;
 
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.Objects;
 import java.util.Spliterator;
@@ -62,6 +63,33 @@ public class ShareableSpliterator<E> extends BaseShareableLockable implements Sp
 		shareLocked(() -> this.spliterator.forEachRemaining(action));
 	}
 
+	/**
+	 * <p>
+	 * Removes up to {@code maxElements} elements from this spliterator, and adds them to the given
+	 * collection, with a single lock acquisition. This allows handing off chunks of elements to
+	 * other threads, or processing them in batches, without paying for a lock round-trip per
+	 * element.
+	 * </p>
+	 *
+	 * @param target
+	 *            the collection to add the elements to
+	 * @param maxElements
+	 *            the maximum number of elements to add
+	 * @return the number of elements added, which is {@code 0} only if there are no more elements
+	 *         (or {@code maxElements} is less than 1)
+	 */
+	public int drainTo(Collection<? super E> target, int maxElements) {
+		Objects.requireNonNull(target, "Must provide a non-null collection to drain to");
+		if (maxElements <= 0) { return 0; }
+		try (SharedAutoLock lock = sharedAutoLock()) {
+			int n = 0;
+			while ((n < maxElements) && this.spliterator.tryAdvance(target::add)) {
+				n++;
+			}
+			return n;
+		}
+	}
+
 	@Override
 	public Spliterator<E> trySplit() {
 		try (SharedAutoLock lock = sharedAutoLock()) {
@@ -0,0 +1,281 @@
+/*******************************************************************************
+ * #%L
+ * Armedia Caliente
+ * %%
+ * Copyright (C) 2013 - 2025 Armedia, LLC
+ * %%
+ * This file is part of the Caliente software.
+ *
+ * If the software was purchased under a paid Caliente license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Caliente is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Caliente is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Caliente. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ *******************************************************************************/
+package com.armedia.commons.utilities.concurrent;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * A token-bucket rate limiter: permits are added to the bucket at a steady {@link #getRate()
+ * rate}, up to a maximum {@link #getBurst() burst} size, and each operation takes as many permits
+ * as it needs before it proceeds. This allows short bursts of up to the burst size, while keeping
+ * the long-term rate within the limit. A rate of {@code 0} (or less) disables the limit, which
+ * makes acquiring permits as cheap as a volatile read.
+ * </p>
+ * <p>
+ * Permits are handed out on a first-come, first-served basis: when there aren't enough permits
+ * available, they're taken anyway (so the bucket goes into debt) and the caller is told how long
+ * to wait for them, so each caller waits behind those who came before it. Both the rate and the
+ * burst size may be changed at any time, which applies to the permits acquired from then on.
+ * </p>
+ */
+public class TokenBucket extends BaseShareableLockable {
+
+	private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	private volatile double rate;
+	private int burst;
+	private double stored;
+	private long last;
+
+	/**
+	 * <p>
+	 * Creates a new bucket with the given rate, which can burst up to one second's worth of
+	 * permits.
+	 * </p>
+	 *
+	 * @param rate
+	 *            the number of permits added per second, or {@code 0} (or less) for no limit
+	 * @throws IllegalArgumentException
+	 *             if {@code rate} is {@link Double#NaN NaN} or infinite
+	 */
+	public TokenBucket(double rate) {
+		this(rate, 0);
+	}
+
+	/**
+	 * <p>
+	 * Creates a new bucket with the given rate and burst size. The bucket starts out full.
+	 * </p>
+	 *
+	 * @param rate
+	 *            the number of permits added per second, or {@code 0} (or less) for no limit
+	 * @param burst
+	 *            the maximum number of permits the bucket holds, or {@code 0} (or less) for one
+	 *            second's worth of permits (but at least 1)
+	 * @throws IllegalArgumentException
+	 *             if {@code rate} is {@link Double#NaN NaN} or infinite
+	 */
+	public TokenBucket(double rate, int burst) {
+		this.rate = TokenBucket.validate(rate);
+		this.burst = Math.max(0, burst);
+		this.stored = getMaxStored();
+		this.last = System.nanoTime();
+	}
+
+	private static double validate(double rate) {
+		if (Double.isNaN(rate) || Double.isInfinite(rate)) {
+			throw new IllegalArgumentException(String.format("The rate must be a finite number (%s was given)", rate));
+		}
+		return Math.max(0, rate);
+	}
+
+	private double getMaxStored() {
+		return (this.burst > 0 ? this.burst : Math.max(1, Math.ceil(this.rate)));
+	}
+
+	private void refill(long now) {
+		if (this.rate > 0) {
+			final double added = (((now - this.last) * this.rate) / TokenBucket.NANOS_PER_SECOND);
+			this.stored = Math.min(getMaxStored(), this.stored + added);
+		}
+		this.last = now;
+	}
+
+	/**
+	 * <p>
+	 * Returns the number of permits added per second, or {@code 0} if there's no limit.
+	 * </p>
+	 *
+	 * @return the number of permits added per second
+	 */
+	public double getRate() {
+		return this.rate;
+	}
+
+	/**
+	 * <p>
+	 * Changes the number of permits added per second. If the limit was disabled, the bucket starts
+	 * out full.
+	 * </p>
+	 *
+	 * @param rate
+	 *            the number of permits added per second, or {@code 0} (or less) for no limit
+	 * @throws IllegalArgumentException
+	 *             if {@code rate} is {@link Double#NaN NaN} or infinite
+	 */
+	public void setRate(double rate) {
+		final double newRate = TokenBucket.validate(rate);
+		try (MutexAutoLock lock = mutexAutoLock()) {
+			final long now = System.nanoTime();
+			final boolean wasUnlimited = (this.rate <= 0);
+			refill(now);
+			this.rate = newRate;
+			this.stored = (wasUnlimited ? getMaxStored() : Math.min(getMaxStored(), this.stored));
+		}
+	}
+
+	/**
+	 * <p>
+	 * Returns the configured burst size, or {@code 0} if it's one second's worth of permits.
+	 * </p>
+	 *
+	 * @return the configured burst size
+	 */
+	public int getBurst() {
+		return shareLocked(() -> this.burst);
+	}
+
+	/**
+	 * <p>
+	 * Changes the maximum number of permits the bucket holds.
+	 * </p>
+	 *
+	 * @param burst
+	 *            the maximum number of permits the bucket holds, or {@code 0} (or less) for one
+	 *            second's worth of permits (but at least 1)
+	 */
+	public void setBurst(int burst) {
+		try (MutexAutoLock lock = mutexAutoLock()) {
+			refill(System.nanoTime());
+			this.burst = Math.max(0, burst);
+			this.stored = Math.min(getMaxStored(), this.stored);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Returns the number of permits currently in the bucket, which is negative if it's in debt
+	 * (i.e. callers are waiting for permits they've already taken), or
+	 * {@link Double#POSITIVE_INFINITY} if there's no limit.
+	 * </p>
+	 *
+	 * @return the number of permits currently in the bucket
+	 */
+	public double getAvailable() {
+		if (this.rate <= 0) { return Double.POSITIVE_INFINITY; }
+		try (MutexAutoLock lock = mutexAutoLock()) {
+			refill(System.nanoTime());
+			return this.stored;
+		}
+	}
+
+	private static void checkPermits(int permits) {
+		if (permits < 1) {
+			throw new IllegalArgumentException(
+				String.format("The number of permits must be greater than 0 (%d was given)", permits));
+		}
+	}
+
+	/**
+	 * <p>
+	 * Takes the given number of permits, and returns how long the caller must wait (in
+	 * nanoseconds) before it may proceed, without actually waiting. The permits are taken even if
+	 * the caller then decides not to wait for them.
+	 * </p>
+	 *
+	 * @param permits
+	 *            the number of permits to take
+	 * @return how long the caller must wait before it may proceed, in nanoseconds
+	 * @throws IllegalArgumentException
+	 *             if {@code permits} is less than 1
+	 */
+	public long reserve(int permits) {
+		TokenBucket.checkPermits(permits);
+		if (this.rate <= 0) { return 0; }
+		try (MutexAutoLock lock = mutexAutoLock()) {
+			// The rate may have been disabled while we waited for the lock
+			if (this.rate <= 0) { return 0; }
+			refill(System.nanoTime());
+			this.stored -= permits;
+			if (this.stored >= 0) { return 0; }
+			return (long) Math.ceil((-this.stored * TokenBucket.NANOS_PER_SECOND) / this.rate);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Takes one permit, waiting for it if necessary.
+	 * </p>
+	 *
+	 * @return how long the caller waited, in nanoseconds
+	 * @throws InterruptedException
+	 *             if the thread is interrupted while waiting (the permit is still taken)
+	 */
+	public long acquire() throws InterruptedException {
+		return acquire(1);
+	}
+
+	/**
+	 * <p>
+	 * Takes the given number of permits, waiting for them if necessary.
+	 * </p>
+	 *
+	 * @param permits
+	 *            the number of permits to take
+	 * @return how long the caller waited, in nanoseconds
+	 * @throws IllegalArgumentException
+	 *             if {@code permits} is less than 1
+	 * @throws InterruptedException
+	 *             if the thread is interrupted while waiting (the permits are still taken)
+	 */
+	public long acquire(int permits) throws InterruptedException {
+		final long wait = reserve(permits);
+		if (wait > 0) {
+			TimeUnit.NANOSECONDS.sleep(wait);
+		}
+		return wait;
+	}
+
+	/**
+	 * <p>
+	 * Takes the given number of permits only if they're available right away.
+	 * </p>
+	 *
+	 * @param permits
+	 *            the number of permits to take
+	 * @return {@code true} if the permits were taken, {@code false} otherwise
+	 * @throws IllegalArgumentException
+	 *             if {@code permits} is less than 1
+	 */
+	public boolean tryAcquire(int permits) {
+		TokenBucket.checkPermits(permits);
+		if (this.rate <= 0) { return true; }
+		try (MutexAutoLock lock = mutexAutoLock()) {
+			if (this.rate <= 0) { return true; }
+			refill(System.nanoTime());
+			if (this.stored < permits) { return false; }
+			this.stored -= permits;
+			return true;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("TokenBucket [rate=%s, burst=%d]", this.rate, getBurst());
+	}
+}
@@ -0,0 +1,322 @@
+/*******************************************************************************
+ * #%L
+ * Armedia Caliente
+ * %%
+ * Copyright (C) 2013 - 2025 Armedia, LLC
+ * %%
+ * This file is part of the Caliente software.
+ *
+ * If the software was purchased under a paid Caliente license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Caliente is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Caliente is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Caliente. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ *******************************************************************************/
+package com.armedia.commons.utilities.concurrent;
+
+import java.io.Serializable;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>
+ * Controls how (and whether) {@link Traceable} objects trace their operations. The settings are
+ * global, and may be changed at any time:
+ * </p>
+ * <ul>
+ * <li>the {@link #getMode() mode}, which selects whether the operations are written to the
+ * {@link Traceable#getLog() log} (the default), recorded in an in-memory ring buffer, or not
+ * traced at all</li>
+ * <li>the {@link #getSampleRate() sample rate}, which allows tracing only one in every {@code N}
+ * operations</li>
+ * </ul>
+ * <p>
+ * With tracing {@link Mode#DISABLED disabled}, each traced operation costs a single volatile read
+ * on top of the operation itself, with no allocations, so traceable objects can be left in place
+ * in production, and have their tracing turned on only while diagnosing a problem. The
+ * {@link Mode#RING ring buffer} mode is meant for that case: it keeps the most recent operations
+ * (regardless of the logging configuration) so they can be {@link #getRecent() examined} after
+ * the fact, without flooding the logs.
+ * </p>
+ * <p>
+ * The initial mode may be set with the {@value #MODE_PROPERTY} system property.
+ * </p>
+ */
+public final class TraceRecorder {
+
+	/**
+	 * The system property which sets the initial {@link Mode} (by name).
+	 */
+	public static final String MODE_PROPERTY = "com.armedia.commons.utilities.concurrent.trace";
+
+	/**
+	 * The default size of the ring buffer.
+	 */
+	public static final int DEFAULT_RING_SIZE = 1024;
+
+	public static enum Mode {
+		//
+		/**
+		 * Nothing is traced.
+		 */
+		DISABLED,
+
+		/**
+		 * Each operation is written to the traceable object's log, at {@code TRACE} level (i.e.
+		 * only when that level is enabled).
+		 */
+		LOG,
+
+		/**
+		 * Each operation is recorded in the ring buffer, regardless of the logging configuration.
+		 */
+		RING,
+		//
+		;
+	}
+
+	/**
+	 * An operation recorded in the ring buffer.
+	 */
+	public static final class Event {
+		private final long sequence;
+		private final Instant timestamp;
+		private final String threadName;
+		private final Serializable id;
+		private final String name;
+		private final String method;
+		private final Object[] args;
+		private final boolean completed;
+		private final Object result;
+		private final Duration duration;
+
+		private Event(long sequence, Traceable traceable, String method, Object[] args, boolean completed,
+			Object result, long nanos) {
+			this.sequence = sequence;
+			this.timestamp = Instant.now();
+			this.threadName = Thread.currentThread().getName();
+			this.id = traceable.getId();
+			this.name = traceable.getName();
+			this.method = method;
+			this.args = args;
+			this.completed = completed;
+			this.result = result;
+			this.duration = Duration.ofNanos(nanos);
+		}
+
+		public long getSequence() {
+			return this.sequence;
+		}
+
+		/**
+		 * Returns the moment the operation ended.
+		 *
+		 * @return the moment the operation ended
+		 */
+		public Instant getTimestamp() {
+			return this.timestamp;
+		}
+
+		public String getThreadName() {
+			return this.threadName;
+		}
+
+		public Serializable getId() {
+			return this.id;
+		}
+
+		public String getName() {
+			return this.name;
+		}
+
+		public String getMethod() {
+			return this.method;
+		}
+
+		public String getArgs() {
+			return Traceable.formatArgs(this.args);
+		}
+
+		/**
+		 * Returns {@code true} if the operation completed, or {@code false} if it raised an
+		 * exception.
+		 *
+		 * @return {@code true} if the operation completed
+		 */
+		public boolean isCompleted() {
+			return this.completed;
+		}
+
+		public Object getResult() {
+			return this.result;
+		}
+
+		public Duration getDuration() {
+			return this.duration;
+		}
+
+		@Override
+		public String toString() {
+			return Traceable.format("#{} {} [{}] {}.{}({}) {} (returning {}, duration {})", this.sequence,
+				this.timestamp, this.threadName, this.name, this.method, getArgs(),
+				this.completed ? "completed" : "FAILED", this.result, this.duration);
+		}
+	}
+
+	private static final class Ring {
+		private final AtomicReferenceArray<Event> events;
+		private final AtomicLong next = new AtomicLong(0);
+
+		private Ring(int size) {
+			this.events = new AtomicReferenceArray<>(size);
+		}
+
+		private void add(Traceable traceable, String method, Object[] args, boolean completed, Object result,
+			long nanos) {
+			final long seq = this.next.getAndIncrement();
+			this.events.set((int) (seq % this.events.length()),
+				new Event(seq, traceable, method, args, completed, result, nanos));
+		}
+
+		private List<Event> get() {
+			final int size = this.events.length();
+			final long end = this.next.get();
+			final List<Event> ret = new ArrayList<>(size);
+			for (long seq = Math.max(0, end - size); seq < end; seq++) {
+				final Event e = this.events.get((int) (seq % size));
+				// Skip the slots which were overwritten, or not yet written, while we read
+				if ((e != null) && (e.sequence == seq)) {
+					ret.add(e);
+				}
+			}
+			return ret;
+		}
+	}
+
+	private static volatile Mode MODE = TraceRecorder.initialMode();
+	private static volatile int SAMPLE_RATE = 1;
+	private static volatile Ring RING = new Ring(TraceRecorder.DEFAULT_RING_SIZE);
+
+	private TraceRecorder() {
+	}
+
+	private static Mode initialMode() {
+		final String mode = System.getProperty(TraceRecorder.MODE_PROPERTY);
+		if (mode == null) { return Mode.LOG; }
+		try {
+			return Mode.valueOf(mode.trim().toUpperCase());
+		} catch (IllegalArgumentException e) {
+			return Mode.LOG;
+		}
+	}
+
+	public static Mode getMode() {
+		return TraceRecorder.MODE;
+	}
+
+	public static void setMode(Mode mode) {
+		TraceRecorder.MODE = Objects.requireNonNull(mode, "Must provide a non-null mode");
+	}
+
+	/**
+	 * <p>
+	 * Returns the sample rate: only one in every {@code N} traced operations is logged or recorded
+	 * (chosen at random).
+	 * </p>
+	 *
+	 * @return the sample rate
+	 */
+	public static int getSampleRate() {
+		return TraceRecorder.SAMPLE_RATE;
+	}
+
+	/**
+	 * <p>
+	 * Sets the sample rate, such that only one in every {@code sampleRate} traced operations is
+	 * logged or recorded. A rate of {@code 1} traces every operation.
+	 * </p>
+	 *
+	 * @param sampleRate
+	 *            the sample rate
+	 * @throws IllegalArgumentException
+	 *             if {@code sampleRate} is less than 1
+	 */
+	public static void setSampleRate(int sampleRate) {
+		if (sampleRate < 1) {
+			throw new IllegalArgumentException(
+				String.format("The sample rate must be greater than 0 (%d was given)", sampleRate));
+		}
+		TraceRecorder.SAMPLE_RATE = sampleRate;
+	}
+
+	public static int getRingSize() {
+		return TraceRecorder.RING.events.length();
+	}
+
+	/**
+	 * <p>
+	 * Replaces the ring buffer with a new, empty one of the given size.
+	 * </p>
+	 *
+	 * @param size
+	 *            the number of events the ring buffer holds
+	 * @throws IllegalArgumentException
+	 *             if {@code size} is less than 1
+	 */
+	public static void setRingSize(int size) {
+		if (size < 1) {
+			throw new IllegalArgumentException(
+				String.format("The ring size must be greater than 0 (%d was given)", size));
+		}
+		TraceRecorder.RING = new Ring(size);
+	}
+
+	/**
+	 * <p>
+	 * Returns the events currently in the ring buffer, oldest first.
+	 * </p>
+	 *
+	 * @return the events currently in the ring buffer
+	 */
+	public static List<Event> getRecent() {
+		return Collections.unmodifiableList(TraceRecorder.RING.get());
+	}
+
+	/**
+	 * <p>
+	 * Discards all the events in the ring buffer.
+	 * </p>
+	 */
+	public static void clear() {
+		TraceRecorder.RING = new Ring(getRingSize());
+	}
+
+	static boolean sample() {
+		final int rate = TraceRecorder.SAMPLE_RATE;
+		return (rate <= 1) || (ThreadLocalRandom.current().nextInt(rate) == 0);
+	}
+
+	static void record(Traceable traceable, String method, Object[] args, boolean completed, Object result,
+		long nanos) {
+		TraceRecorder.RING.add(traceable, method, args, completed, result, nanos);
+	}
+}
@@ -28,7 +28,6 @@ package com.armedia.commons.utilities.concurrent;
 
 import java.io.Serializable;
 import java.time.Duration;
-import java.time.Instant;
 import java.util.Objects;
 
 import org.slf4j.Logger;
@@ -37,6 +36,17 @@ import org.slf4j.helpers.MessageFormatter;
 import com.armedia.commons.utilities.function.CheckedRunnable;
 import com.armedia.commons.utilities.function.CheckedSupplier;
 
+/**
+ * <p>
+ * An object which can trace its operations, as configured through the {@link TraceRecorder}.
+ * </p>
+ * <p>
+ * Tracing an operation requires wrapping it in a lambda, and its arguments in an array, so
+ * implementations should check {@link #isTracing()} before calling any of the {@code trace()}
+ * methods, and invoke the operation directly when it returns {@code false}. That way, an object
+ * whose tracing is disabled costs no more than its untraced counterpart.
+ * </p>
+ */
 public interface Traceable {
 
 	public Logger getLog();
@@ -62,6 +72,26 @@ public interface Traceable {
 		return MessageFormatter.arrayFormat(format, args).getMessage();
 	}
 
+	/**
+	 * <p>
+	 * Returns {@code true} if operations should be traced, or {@code false} if they should be
+	 * invoked directly. This check doesn't allocate, and when the {@link TraceRecorder#getMode()
+	 * mode} is {@link TraceRecorder.Mode#DISABLED}, amounts to a single volatile read.
+	 * </p>
+	 *
+	 * @return {@code true} if operations should be traced
+	 */
+	public default boolean isTracing() {
+		switch (TraceRecorder.getMode()) {
+			case LOG:
+				return getLog().isTraceEnabled();
+			case RING:
+				return true;
+			default:
+				return false;
+		}
+	}
+
 	public default <E extends Exception> void trace(CheckedRunnable<E> r, String method, Object... args) throws E {
 		trace(() -> {
 			r.runChecked();
@@ -70,20 +100,30 @@ public interface Traceable {
 	}
 
 	public default <V, E extends Exception> V trace(CheckedSupplier<V, E> s, String method, Object... args) throws E {
-		final String argStr = Traceable.formatArgs(args);
+		final TraceRecorder.Mode mode = TraceRecorder.getMode();
 		final Logger log = getLog();
-		final Instant start = Instant.now();
+		final boolean logged = (mode == TraceRecorder.Mode.LOG) && log.isTraceEnabled();
+		if ((!logged && (mode != TraceRecorder.Mode.RING)) || !TraceRecorder.sample()) { return s.getChecked(); }
+
+		final String argStr = (logged ? Traceable.formatArgs(args) : null);
+		if (logged) {
+			log.trace("{}.{}({})", getName(), method, argStr);
+		}
+		final long start = System.nanoTime();
 		boolean ok = false;
 		V ret = null;
-		log.trace("{}.{}({})", getName(), method, argStr);
 		try {
 			ret = s.getChecked();
 			ok = true;
 			return ret;
 		} finally {
-			final Duration d = Duration.between(start, Instant.now());
-			log.trace("{}.{}({}) {} (returning {}, duration {})", getName(), method, argStr,
-				ok ? "completed" : "FAILED", ret, d);
+			final long nanos = System.nanoTime() - start;
+			if (logged) {
+				log.trace("{}.{}({}) {} (returning {}, duration {})", getName(), method, argStr,
+					ok ? "completed" : "FAILED", ret, Duration.ofNanos(nanos));
+			} else {
+				TraceRecorder.record(this, method, args, ok, ret, nanos);
+			}
 		}
 	}
 }
@@ -75,38 +75,103 @@ public class TraceableCondition implements Condition, Serializable, Traceable {
 		return this.name;
 	}
 
+	private long profileStart(LockProfile profile) {
+		// Every wait is contended, by definition
+		return (profile != null ? profile.start(true, -1) : 0);
+	}
+
+	private void profileEnd(LockProfile profile, long start, boolean completed) {
+		if (profile != null) {
+			profile.awaited(start, completed);
+		}
+	}
+
 	@Override
 	public void await() throws InterruptedException {
-		trace(() -> this.condition.await(), "await");
+		final LockProfile profile = LockProfiler.getProfile(this);
+		final long start = profileStart(profile);
+		boolean ok = false;
+		try {
+			if (isTracing()) {
+				trace(() -> this.condition.await(), "await");
+			} else {
+				this.condition.await();
+			}
+			ok = true;
+		} finally {
+			profileEnd(profile, start, ok);
+		}
 	}
 
 	@Override
 	public void awaitUninterruptibly() {
-		trace(this.condition::awaitUninterruptibly, "awaitUninterruptibly");
+		final LockProfile profile = LockProfiler.getProfile(this);
+		final long start = profileStart(profile);
+		if (isTracing()) {
+			trace(this.condition::awaitUninterruptibly, "awaitUninterruptibly");
+		} else {
+			this.condition.awaitUninterruptibly();
+		}
+		profileEnd(profile, start, true);
 	}
 
 	@Override
 	public long awaitNanos(long nanosTimeout) throws InterruptedException {
-		return trace(() -> this.condition.awaitNanos(nanosTimeout), "awaitNanos", nanosTimeout);
+		final LockProfile profile = LockProfiler.getProfile(this);
+		final long start = profileStart(profile);
+		long ret = 0;
+		try {
+			ret = (isTracing() ? trace(() -> this.condition.awaitNanos(nanosTimeout), "awaitNanos", nanosTimeout)
+				: this.condition.awaitNanos(nanosTimeout));
+			return ret;
+		} finally {
+			profileEnd(profile, start, ret > 0);
+		}
 	}
 
 	@Override
 	public boolean await(long time, TimeUnit unit) throws InterruptedException {
-		return trace(() -> this.condition.await(time, unit), "await", time, unit);
+		final LockProfile profile = LockProfiler.getProfile(this);
+		final long start = profileStart(profile);
+		boolean ret = false;
+		try {
+			ret = (isTracing() ? trace(() -> this.condition.await(time, unit), "await", time, unit)
+				: this.condition.await(time, unit));
+			return ret;
+		} finally {
+			profileEnd(profile, start, ret);
+		}
 	}
 
 	@Override
 	public boolean awaitUntil(Date deadline) throws InterruptedException {
-		return trace(() -> this.condition.awaitUntil(deadline), "awaitUntil", deadline);
+		final LockProfile profile = LockProfiler.getProfile(this);
+		final long start = profileStart(profile);
+		boolean ret = false;
+		try {
+			ret = (isTracing() ? trace(() -> this.condition.awaitUntil(deadline), "awaitUntil", deadline)
+				: this.condition.awaitUntil(deadline));
+			return ret;
+		} finally {
+			profileEnd(profile, start, ret);
+		}
 	}
 
 	@Override
 	public void signal() {
-		trace(this.condition::signal, "signal");
+		if (isTracing()) {
+			trace(this.condition::signal, "signal");
+		} else {
+			this.condition.signal();
+		}
 	}
 
 	@Override
 	public void signalAll() {
-		trace(this.condition::signalAll, "signalAll");
+		if (isTracing()) {
+			trace(this.condition::signalAll, "signalAll");
+		} else {
+			this.condition.signalAll();
+		}
 	}
 }
@@ -26,6 +26,8 @@
  *******************************************************************************/
 package com.armedia.commons.utilities.concurrent;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.Objects;
 import java.util.concurrent.TimeUnit;
@@ -45,6 +47,7 @@ public class TraceableReentrantLock extends ReentrantLock implements Traceable {
 	private final AtomicLong conditionCounter = new AtomicLong(0);
 	private final Serializable id;
 	private final String name;
+	private transient long holdStart = LockProfile.NOT_HELD;
 
 	public TraceableReentrantLock() {
 		this(false);
@@ -65,6 +68,12 @@ public class TraceableReentrantLock extends ReentrantLock implements Traceable {
 		this.log.trace("{}.constructed()", this.name);
 	}
 
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		// Deserialized locks are never held
+		this.holdStart = LockProfile.NOT_HELD;
+	}
+
 	@Override
 	public Logger getLog() {
 		return this.log;
@@ -84,29 +93,95 @@ public class TraceableReentrantLock extends ReentrantLock implements Traceable {
 		return this.id;
 	}
 
+	private long profileStart(LockProfile profile) {
+		if (profile == null) { return 0; }
+		final boolean contended = !isHeldByCurrentThread() && (isLocked() || hasQueuedThreads());
+		return profile.start(contended, (contended ? getQueueLength() : -1));
+	}
+
+	private void profileAcquired(LockProfile profile, long start, boolean acquired) {
+		if (profile == null) { return; }
+		if (!acquired) {
+			profile.failed(start);
+			return;
+		}
+		final long now = profile.acquired(start);
+		// Only the outermost acquisition starts the hold
+		if (getHoldCount() == 1) {
+			this.holdStart = now;
+		}
+	}
+
+	private void profileReleased(LockProfile profile) {
+		// Only the outermost release ends the hold, and it must be cleared even if profiling was
+		// turned off in the meantime, lest it be taken for the start of a later (unprofiled) hold
+		if ((this.holdStart == LockProfile.NOT_HELD) || (getHoldCount() != 1)) { return; }
+		if (profile != null) {
+			profile.released(this.holdStart);
+		}
+		this.holdStart = LockProfile.NOT_HELD;
+	}
+
 	@Override
 	public void lock() {
-		trace(super::lock, "lock");
+		final LockProfile profile = LockProfiler.getProfile(this);
+		final long start = profileStart(profile);
+		if (isTracing()) {
+			trace(super::lock, "lock");
+		} else {
+			super.lock();
+		}
+		profileAcquired(profile, start, true);
 	}
 
 	@Override
 	public void lockInterruptibly() throws InterruptedException {
-		trace(super::lockInterruptibly, "lockInterruptibly");
+		final LockProfile profile = LockProfiler.getProfile(this);
+		final long start = profileStart(profile);
+		boolean ok = false;
+		try {
+			if (isTracing()) {
+				trace(super::lockInterruptibly, "lockInterruptibly");
+			} else {
+				super.lockInterruptibly();
+			}
+			ok = true;
+		} finally {
+			profileAcquired(profile, start, ok);
+		}
 	}
 
 	@Override
 	public boolean tryLock() {
-		return trace(() -> super.tryLock(), "tryLock");
+		final LockProfile profile = LockProfiler.getProfile(this);
+		final long start = profileStart(profile);
+		final boolean ret = (isTracing() ? trace(() -> super.tryLock(), "tryLock") : super.tryLock());
+		profileAcquired(profile, start, ret);
+		return ret;
 	}
 
 	@Override
 	public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
-		return trace(() -> super.tryLock(time, unit), "tryLock", time, unit);
+		final LockProfile profile = LockProfiler.getProfile(this);
+		final long start = profileStart(profile);
+		boolean ret = false;
+		try {
+			ret = (isTracing() ? trace(() -> super.tryLock(time, unit), "tryLock", time, unit)
+				: super.tryLock(time, unit));
+			return ret;
+		} finally {
+			profileAcquired(profile, start, ret);
+		}
 	}
 
 	@Override
 	public void unlock() {
-		trace(super::unlock, "unlock");
+		profileReleased(LockProfiler.getProfile(this));
+		if (isTracing()) {
+			trace(super::unlock, "unlock");
+		} else {
+			super.unlock();
+		}
 	}
 
 	@Override
@@ -26,8 +26,11 @@
  *******************************************************************************/
 package com.armedia.commons.utilities.concurrent;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -40,10 +43,20 @@ public class TraceableReentrantReadWriteLock extends ReentrantReadWriteLock impl
 
 	private static final AtomicLong LOCK_COUNTER = new AtomicLong(0);
 
+	private static ThreadLocal<long[]> newHoldStart() {
+		return ThreadLocal.withInitial(() -> new long[] {
+			LockProfile.NOT_HELD
+		});
+	}
+
 	private class TraceableReadLock extends ReadLock implements Traceable {
 		private static final long serialVersionUID = 1L;
 
 		private final String name;
+		// Shared locks are held by many threads at once, so each tracks its own hold
+		private transient ThreadLocal<long[]> holdStart = TraceableReentrantReadWriteLock.newHoldStart();
+		// The number of threads with a hold start set, so releases needn't look otherwise
+		private transient AtomicInteger profiledHolds = new AtomicInteger(0);
 
 		private TraceableReadLock(ReentrantReadWriteLock lock) {
 			super(lock);
@@ -51,6 +64,13 @@ public class TraceableReentrantReadWriteLock extends ReentrantReadWriteLock impl
 			TraceableReentrantReadWriteLock.this.log.trace("{}.constructed()", this.name);
 		}
 
+		private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+			in.defaultReadObject();
+			// Transient fields aren't initialized on deserialization
+			this.holdStart = TraceableReentrantReadWriteLock.newHoldStart();
+			this.profiledHolds = new AtomicInteger(0);
+		}
+
 		@Override
 		public Logger getLog() {
 			return TraceableReentrantReadWriteLock.this.log;
@@ -66,29 +86,103 @@ public class TraceableReentrantReadWriteLock extends ReentrantReadWriteLock impl
 			return this.name;
 		}
 
+		private long profileStart(LockProfile profile) {
+			if (profile == null) { return 0; }
+			final TraceableReentrantReadWriteLock rw = TraceableReentrantReadWriteLock.this;
+			final boolean contended = (rw.getReadHoldCount() == 0)
+				&& ((rw.isWriteLocked() && !rw.isWriteLockedByCurrentThread()) || rw.hasQueuedThreads());
+			return profile.start(contended, (contended ? rw.getQueueLength() : -1));
+		}
+
+		private void profileAcquired(LockProfile profile, long start, boolean acquired) {
+			if (profile == null) { return; }
+			if (!acquired) {
+				profile.failed(start);
+				return;
+			}
+			final long now = profile.acquired(start);
+			// Only the outermost acquisition starts the hold
+			if (TraceableReentrantReadWriteLock.this.getReadHoldCount() == 1) {
+				this.holdStart.get()[0] = now;
+				this.profiledHolds.incrementAndGet();
+			}
+		}
+
+		private void profileReleased(LockProfile profile) {
+			// Only the outermost release ends the hold, and it must be cleared even if profiling was
+			// turned off in the meantime, lest it be taken for the start of a later (unprofiled) hold
+			if ((this.profiledHolds.get() == 0) || (TraceableReentrantReadWriteLock.this.getReadHoldCount() != 1)) {
+				return;
+			}
+			final long[] holdStart = this.holdStart.get();
+			if (holdStart[0] == LockProfile.NOT_HELD) { return; }
+			if (profile != null) {
+				profile.released(holdStart[0]);
+			}
+			holdStart[0] = LockProfile.NOT_HELD;
+			this.profiledHolds.decrementAndGet();
+		}
+
 		@Override
 		public void lock() {
-			trace(super::lock, "lock");
+			final LockProfile profile = LockProfiler.getProfile(this);
+			final long start = profileStart(profile);
+			if (isTracing()) {
+				trace(super::lock, "lock");
+			} else {
+				super.lock();
+			}
+			profileAcquired(profile, start, true);
 		}
 
 		@Override
 		public void lockInterruptibly() throws InterruptedException {
-			trace(super::lockInterruptibly, "lockInterruptibly");
+			final LockProfile profile = LockProfiler.getProfile(this);
+			final long start = profileStart(profile);
+			boolean ok = false;
+			try {
+				if (isTracing()) {
+					trace(super::lockInterruptibly, "lockInterruptibly");
+				} else {
+					super.lockInterruptibly();
+				}
+				ok = true;
+			} finally {
+				profileAcquired(profile, start, ok);
+			}
 		}
 
 		@Override
 		public boolean tryLock() {
-			return trace(() -> super.tryLock(), "tryLock");
+			final LockProfile profile = LockProfiler.getProfile(this);
+			final long start = profileStart(profile);
+			final boolean ret = (isTracing() ? trace(() -> super.tryLock(), "tryLock") : super.tryLock());
+			profileAcquired(profile, start, ret);
+			return ret;
 		}
 
 		@Override
 		public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
-			return trace(() -> super.tryLock(time, unit), "tryLock", time, unit);
+			final LockProfile profile = LockProfiler.getProfile(this);
+			final long start = profileStart(profile);
+			boolean ret = false;
+			try {
+				ret = (isTracing() ? trace(() -> super.tryLock(time, unit), "tryLock", time, unit)
+					: super.tryLock(time, unit));
+				return ret;
+			} finally {
+				profileAcquired(profile, start, ret);
+			}
 		}
 
 		@Override
 		public void unlock() {
-			trace(super::unlock, "unlock");
+			profileReleased(LockProfiler.getProfile(this));
+			if (isTracing()) {
+				trace(super::unlock, "unlock");
+			} else {
+				super.unlock();
+			}
 		}
 
 		@Override
@@ -105,6 +199,7 @@ public class TraceableReentrantReadWriteLock extends ReentrantReadWriteLock impl
 		private static final long serialVersionUID = 1L;
 
 		private final String name;
+		private transient long holdStart = LockProfile.NOT_HELD;
 
 		private TraceableWriteLock(ReentrantReadWriteLock lock) {
 			super(lock);
@@ -112,6 +207,12 @@ public class TraceableReentrantReadWriteLock extends ReentrantReadWriteLock impl
 			TraceableReentrantReadWriteLock.this.log.trace("{}.constructed()", this.name);
 		}
 
+		private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+			in.defaultReadObject();
+			// Deserialized locks are never held
+			this.holdStart = LockProfile.NOT_HELD;
+		}
+
 		@Override
 		public Logger getLog() {
 			return TraceableReentrantReadWriteLock.this.log;
@@ -127,29 +228,100 @@ public class TraceableReentrantReadWriteLock extends ReentrantReadWriteLock impl
 			return this.name;
 		}
 
+		private long profileStart(LockProfile profile) {
+			if (profile == null) { return 0; }
+			final TraceableReentrantReadWriteLock rw = TraceableReentrantReadWriteLock.this;
+			final boolean contended = !rw.isWriteLockedByCurrentThread()
+				&& (rw.isWriteLocked() || (rw.getReadLockCount() > 0) || rw.hasQueuedThreads());
+			return profile.start(contended, (contended ? rw.getQueueLength() : -1));
+		}
+
+		private void profileAcquired(LockProfile profile, long start, boolean acquired) {
+			if (profile == null) { return; }
+			if (!acquired) {
+				profile.failed(start);
+				return;
+			}
+			final long now = profile.acquired(start);
+			// Only the outermost acquisition starts the hold
+			if (TraceableReentrantReadWriteLock.this.getWriteHoldCount() == 1) {
+				this.holdStart = now;
+			}
+		}
+
+		private void profileReleased(LockProfile profile) {
+			// Only the outermost release ends the hold, and it must be cleared even if profiling was
+			// turned off in the meantime, lest it be taken for the start of a later (unprofiled) hold
+			if ((this.holdStart == LockProfile.NOT_HELD)
+				|| (TraceableReentrantReadWriteLock.this.getWriteHoldCount() != 1)) {
+				return;
+			}
+			if (profile != null) {
+				profile.released(this.holdStart);
+			}
+			this.holdStart = LockProfile.NOT_HELD;
+		}
+
 		@Override
 		public void lock() {
-			trace(super::lock, "lock");
+			final LockProfile profile = LockProfiler.getProfile(this);
+			final long start = profileStart(profile);
+			if (isTracing()) {
+				trace(super::lock, "lock");
+			} else {
+				super.lock();
+			}
+			profileAcquired(profile, start, true);
 		}
 
 		@Override
 		public void lockInterruptibly() throws InterruptedException {
-			trace(super::lockInterruptibly, "lockInterruptibly");
+			final LockProfile profile = LockProfiler.getProfile(this);
+			final long start = profileStart(profile);
+			boolean ok = false;
+			try {
+				if (isTracing()) {
+					trace(super::lockInterruptibly, "lockInterruptibly");
+				} else {
+					super.lockInterruptibly();
+				}
+				ok = true;
+			} finally {
+				profileAcquired(profile, start, ok);
+			}
 		}
 
 		@Override
 		public boolean tryLock() {
-			return trace(() -> super.tryLock(), "tryLock");
+			final LockProfile profile = LockProfiler.getProfile(this);
+			final long start = profileStart(profile);
+			final boolean ret = (isTracing() ? trace(() -> super.tryLock(), "tryLock") : super.tryLock());
+			profileAcquired(profile, start, ret);
+			return ret;
 		}
 
 		@Override
 		public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
-			return trace(() -> super.tryLock(time, unit), "tryLock", time, unit);
+			final LockProfile profile = LockProfiler.getProfile(this);
+			final long start = profileStart(profile);
+			boolean ret = false;
+			try {
+				ret = (isTracing() ? trace(() -> super.tryLock(time, unit), "tryLock", time, unit)
+					: super.tryLock(time, unit));
+				return ret;
+			} finally {
+				profileAcquired(profile, start, ret);
+			}
 		}
 
 		@Override
 		public void unlock() {
-			trace(super::unlock, "unlock");
+			profileReleased(LockProfiler.getProfile(this));
+			if (isTracing()) {
+				trace(super::unlock, "unlock");
+			} else {
+				super.unlock();
+			}
 		}
 
 		@Override
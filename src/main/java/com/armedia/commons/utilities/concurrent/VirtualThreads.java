@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * #%L
+ * Armedia Caliente
+ * %%
+ * Copyright (C) 2013 - 2025 Armedia, LLC
+ * %%
+ * This file is part of the Caliente software.
+ *
+ * If the software was purchased under a paid Caliente license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Caliente is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Caliente is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Caliente. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ *******************************************************************************/
+package com.armedia.commons.utilities.concurrent;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * <p>
+ * Provides access to virtual threads when running on a JVM which supports them (JDK 21+). This
+ * library is built as a multi-release JAR: this version of the class is the one used on older
+ * JVMs, and simply reports that virtual threads aren't {@link #isSupported() supported}, while
+ * the version used on JDK 21+ creates them.
+ * </p>
+ * <p>
+ * The JDK 21+ version is only included in the JAR if the library was built on JDK 21 or later,
+ * so artifacts meant for distribution must be built on JDK 21+.
+ * </p>
+ */
+public final class VirtualThreads {
+
+	private VirtualThreads() {
+		// Avoid instantiation
+	}
+
+	/**
+	 * <p>
+	 * Returns {@code true} if virtual threads are available in this JVM, {@code false} otherwise.
+	 * </p>
+	 *
+	 * @return {@code true} if virtual threads are available in this JVM, {@code false} otherwise
+	 */
+	public static boolean isSupported() {
+		return false;
+	}
+
+	/**
+	 * <p>
+	 * Returns a {@link ThreadFactory} which creates virtual threads.
+	 * </p>
+	 *
+	 * @return a {@link ThreadFactory} which creates virtual threads
+	 * @throws UnsupportedOperationException
+	 *             if virtual threads aren't {@link #isSupported() supported} in this JVM
+	 */
+	public static ThreadFactory newThreadFactory() {
+		throw new UnsupportedOperationException("Virtual threads require Java 21 or later");
+	}
+}
@@ -0,0 +1,342 @@
+/*******************************************************************************
+ * #%L
+ * Armedia Caliente
+ * %%
+ * Copyright (C) 2013 - 2025 Armedia, LLC
+ * %%
+ * This file is part of the Caliente software.
+ *
+ * If the software was purchased under a paid Caliente license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Caliente is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Caliente is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Caliente. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ *******************************************************************************/
+package com.armedia.commons.utilities.concurrent;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>
+ * A {@link BlockingQueue} which spreads its elements over several lock-free <i>lanes</i> (one per
+ * consumer, ideally) instead of funneling every producer and consumer through a single lock, as
+ * {@link java.util.concurrent.LinkedBlockingQueue} and {@link java.util.concurrent.ArrayBlockingQueue}
+ * do. Producers add elements to a randomly-chosen lane, and each consumer thread removes elements
+ * from the head of its own <i>home</i> lane, stealing from the tail of the other lanes when its
+ * own is empty. The only lock is used to park idle consumers, and producers only acquire it to
+ * wake them up when there are consumers actually waiting.
+ * </p>
+ * <p>
+ * Since the elements are spread over several lanes, this queue is <b>not</b> FIFO: elements are
+ * only ordered relative to others in the same lane, and even that ordering is lost when elements
+ * are stolen. The {@link #size()} is exact when the queue is quiescent, but only an estimate
+ * while elements are being added or removed concurrently. If the queue has a capacity limit,
+ * producers will block (or fail, as per the {@link BlockingQueue} contract) when it's reached.
+ * </p>
+ *
+ * @param <E>
+ *            the type of the elements
+ */
+public class WorkStealingBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+	private final ConcurrentLinkedDeque<E>[] lanes;
+	private final Semaphore capacity;
+	private final LongAdder count = new LongAdder();
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = this.lock.newCondition();
+	private final AtomicInteger waiters = new AtomicInteger(0);
+
+	/**
+	 * <p>
+	 * Creates a new queue with the given number of lanes, and no capacity limit.
+	 * </p>
+	 *
+	 * @param lanes
+	 *            the number of lanes (usually, the number of consumer threads)
+	 * @throws IllegalArgumentException
+	 *             if {@code lanes} is less than 1
+	 */
+	public WorkStealingBlockingQueue(int lanes) {
+		this(lanes, 0);
+	}
+
+	/**
+	 * <p>
+	 * Creates a new queue with the given number of lanes, which will hold at most
+	 * {@code capacity} elements. If {@code capacity} is less than or equal to 0, the queue will
+	 * have no capacity limit.
+	 * </p>
+	 *
+	 * @param lanes
+	 *            the number of lanes (usually, the number of consumer threads)
+	 * @param capacity
+	 *            the maximum number of elements the queue will hold
+	 * @throws IllegalArgumentException
+	 *             if {@code lanes} is less than 1
+	 */
+	public WorkStealingBlockingQueue(int lanes, int capacity) {
+		if (lanes < 1) {
+			throw new IllegalArgumentException(
+				String.format("The number of lanes must be greater than 0 (%d was given)", lanes));
+		}
+		@SuppressWarnings("unchecked")
+		ConcurrentLinkedDeque<E>[] l = new ConcurrentLinkedDeque[lanes];
+		for (int i = 0; i < l.length; i++) {
+			l[i] = new ConcurrentLinkedDeque<>();
+		}
+		this.lanes = l;
+		this.capacity = (capacity > 0 ? new Semaphore(capacity) : null);
+	}
+
+	public final int getLanes() {
+		return this.lanes.length;
+	}
+
+	private int homeLane() {
+		// Thread IDs are (usually) handed out sequentially, so the threads of a pool created
+		// together should end up with distinct home lanes
+		return (int) (Thread.currentThread().getId() % this.lanes.length);
+	}
+
+	private void enqueue(E e) {
+		final int lane = (this.lanes.length > 1 ? ThreadLocalRandom.current().nextInt(this.lanes.length) : 0);
+		this.lanes[lane].offerLast(e);
+		this.count.increment();
+		// The element must be visible before checking for waiters, and waiters must register
+		// before re-checking for elements, so either they find the element or we find them
+		if (this.waiters.get() > 0) {
+			this.lock.lock();
+			try {
+				this.notEmpty.signal();
+			} finally {
+				this.lock.unlock();
+			}
+		}
+	}
+
+	private E dequeue() {
+		final int home = homeLane();
+		E e = this.lanes[home].pollFirst();
+		for (int i = 1; (e == null) && (i < this.lanes.length); i++) {
+			// Steal from the tail, to stay away from the owner's end of the lane
+			e = this.lanes[(home + i) % this.lanes.length].pollLast();
+		}
+		if (e != null) {
+			this.count.decrement();
+			if (this.capacity != null) {
+				this.capacity.release();
+			}
+		}
+		return e;
+	}
+
+	@Override
+	public boolean offer(E e) {
+		Objects.requireNonNull(e, "Must provide a non-null element");
+		if ((this.capacity != null) && !this.capacity.tryAcquire()) { return false; }
+		enqueue(e);
+		return true;
+	}
+
+	@Override
+	public void put(E e) throws InterruptedException {
+		Objects.requireNonNull(e, "Must provide a non-null element");
+		if (this.capacity != null) {
+			this.capacity.acquire();
+		}
+		enqueue(e);
+	}
+
+	@Override
+	public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+		Objects.requireNonNull(e, "Must provide a non-null element");
+		if ((this.capacity != null) && !this.capacity.tryAcquire(timeout, unit)) { return false; }
+		enqueue(e);
+		return true;
+	}
+
+	@Override
+	public E poll() {
+		return dequeue();
+	}
+
+	@Override
+	public E take() throws InterruptedException {
+		E e = dequeue();
+		if (e != null) { return e; }
+		this.lock.lockInterruptibly();
+		try {
+			this.waiters.incrementAndGet();
+			try {
+				while ((e = dequeue()) == null) {
+					this.notEmpty.await();
+				}
+				return e;
+			} finally {
+				wakeNext();
+				this.waiters.decrementAndGet();
+			}
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	@Override
+	public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+		E e = dequeue();
+		if (e != null) { return e; }
+		long remaining = unit.toNanos(timeout);
+		this.lock.lockInterruptibly();
+		try {
+			this.waiters.incrementAndGet();
+			try {
+				while ((e = dequeue()) == null) {
+					if (remaining <= 0) { return null; }
+					remaining = this.notEmpty.awaitNanos(remaining);
+				}
+				return e;
+			} finally {
+				wakeNext();
+				this.waiters.decrementAndGet();
+			}
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	private void wakeNext() {
+		// If there's more work and other consumers waiting, pass the signal along in case ours
+		// was consumed by a thread which left without taking an element (i.e. was interrupted)
+		if ((this.waiters.get() > 1) && !isEmpty()) {
+			this.notEmpty.signal();
+		}
+	}
+
+	@Override
+	public E peek() {
+		final int home = homeLane();
+		for (int i = 0; i < this.lanes.length; i++) {
+			final E e = this.lanes[(home + i) % this.lanes.length].peekFirst();
+			if (e != null) { return e; }
+		}
+		return null;
+	}
+
+	@Override
+	public int size() {
+		final long size = this.count.sum();
+		return (int) Math.max(0, Math.min(size, Integer.MAX_VALUE));
+	}
+
+	@Override
+	public boolean isEmpty() {
+		for (ConcurrentLinkedDeque<E> lane : this.lanes) {
+			if (!lane.isEmpty()) { return false; }
+		}
+		return true;
+	}
+
+	@Override
+	public int remainingCapacity() {
+		return (this.capacity != null ? this.capacity.availablePermits() : Integer.MAX_VALUE);
+	}
+
+	@Override
+	public int drainTo(Collection<? super E> c) {
+		return drainTo(c, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public int drainTo(Collection<? super E> c, int maxElements) {
+		Objects.requireNonNull(c, "Must provide a non-null collection to drain to");
+		if (c == this) { throw new IllegalArgumentException("Can't drain a queue into itself"); }
+		int n = 0;
+		while (n < maxElements) {
+			final E e = dequeue();
+			if (e == null) {
+				break;
+			}
+			c.add(e);
+			n++;
+		}
+		return n;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		if (o == null) { return false; }
+		for (ConcurrentLinkedDeque<E> lane : this.lanes) {
+			if (lane.removeFirstOccurrence(o)) {
+				this.count.decrement();
+				if (this.capacity != null) {
+					this.capacity.release();
+				}
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * <p>
+	 * Returns a weakly-consistent iterator over the elements, lane by lane. {@link Iterator#remove()}
+	 * behaves like {@link #remove(Object)}, and thus removes the first occurrence of the element.
+	 * </p>
+	 */
+	@Override
+	public Iterator<E> iterator() {
+		return new Iterator<E>() {
+			private int lane = 0;
+			private Iterator<E> current = WorkStealingBlockingQueue.this.lanes[0].iterator();
+			private E last = null;
+
+			@Override
+			public boolean hasNext() {
+				final ConcurrentLinkedDeque<E>[] lanes = WorkStealingBlockingQueue.this.lanes;
+				while (!this.current.hasNext() && (this.lane < (lanes.length - 1))) {
+					this.current = lanes[++this.lane].iterator();
+				}
+				return this.current.hasNext();
+			}
+
+			@Override
+			public E next() {
+				if (!hasNext()) { throw new NoSuchElementException(); }
+				this.last = this.current.next();
+				return this.last;
+			}
+
+			@Override
+			public void remove() {
+				if (this.last == null) { throw new IllegalStateException(); }
+				WorkStealingBlockingQueue.this.remove(this.last);
+				this.last = null;
+			}
+		};
+	}
+}
@@ -27,11 +27,29 @@
 package com.armedia.commons.utilities;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Serializable;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.IllegalBlockingModeException;
+import java.nio.channels.Pipe;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.apache.commons.lang3.tuple.Triple;
 import org.junit.jupiter.api.Assertions;
@@ -39,6 +57,30 @@ import org.junit.jupiter.api.Test;
 
 public class BucketHasherTest {
 
+	private static final long[] VALUES = {
+		Long.MIN_VALUE, -1L, 0L, 1L, 12345678901L, Long.MAX_VALUE
+	};
+
+	// The known SHA1 buckets (1000 buckets, seed 7) for each of the VALUES, cast to each primitive type
+	private static final long[] BYTE_BUCKETS = {
+		46L, 201L, 46L, 894L, 560L, 201L
+	};
+	private static final long[] SHORT_BUCKETS = {
+		447L, 185L, 447L, 142L, 528L, 185L
+	};
+	private static final long[] INT_BUCKETS = {
+		646L, 57L, 646L, 235L, 603L, 57L
+	};
+	private static final long[] LONG_BUCKETS = {
+		534L, 611L, 104L, 980L, 571L, 794L
+	};
+	private static final long[] FLOAT_BUCKETS = {
+		964L, 227L, 646L, 343L, 535L, 58L
+	};
+	private static final long[] DOUBLE_BUCKETS = {
+		567L, 16L, 104L, 311L, 435L, 920L
+	};
+
 	@Test
 	public void testHash() throws IOException {
 		final byte[] nullB = null;
@@ -109,4 +151,347 @@ public class BucketHasherTest {
 		Assertions.assertEquals(2562861693L, BucketHasher.hash(b));
 	}
 
+	@Test
+	public void testHasher() throws IOException {
+		Assertions.assertSame(BucketHasher.DEF_ALGORITHM, BucketHasher.newHasher(null).getAlgorithm());
+		for (BucketHasher.Algorithm a : BucketHasher.Algorithm.values()) {
+			final BucketHasher.Hasher h = BucketHasher.newHasher(a);
+			Assertions.assertSame(a, h.getAlgorithm());
+
+			final byte[] nullB = null;
+			final CharSequence nullStr = null;
+			final ByteBuffer nullBuffer = null;
+			Assertions.assertEquals(-1L, h.hash(nullB));
+			Assertions.assertEquals(-1L, h.hash(nullB, 0, 0));
+			Assertions.assertEquals(-1L, h.hash(nullStr));
+			Assertions.assertEquals(-1L, h.hash(nullStr, 0, 0));
+			Assertions.assertEquals(-1L, h.hash(nullBuffer));
+			Assertions.assertEquals(-1L, h.hash(nullBuffer, 0, 0));
+			Assertions.assertEquals(0L, h.hash(new byte[4], 0));
+			Assertions.assertEquals(0L, h.hash("", 0, 0));
+			Assertions.assertEquals(0L, h.hash(1, 0));
+
+			Assertions.assertThrows(IllegalArgumentException.class, () -> h.hash(1, -1L));
+			Assertions.assertThrows(IllegalArgumentException.class, () -> h.hash(1, 4294967296L));
+			Assertions.assertThrows(IllegalArgumentException.class, () -> h.hash(1, BucketHasher.DEF_BUCKET, -1L));
+			Assertions.assertThrows(IllegalArgumentException.class,
+				() -> h.hash(1, BucketHasher.DEF_BUCKET, 4294967296L));
+
+			// All the input forms must render the same bytes, and thus the same buckets
+			final CharSequence str = "Some \u00e1\u00e9\u00ed\u00f3\u00fa text, some \u20ac, and some \ud83d\ude00 - "
+				+ "long enough to span more than one 32-byte stripe";
+			final byte[] data = str.toString().getBytes(StandardCharsets.UTF_8);
+			for (long seed : new long[] {
+				BucketHasher.MIN_SEED, 10L, BucketHasher.MAX_SEED
+			}) {
+				for (long max : new long[] {
+					1L, 1000L, BucketHasher.MAX_BUCKET
+				}) {
+					final long expected = h.hash(data, max, seed);
+					Assertions.assertTrue((expected >= 0) && (expected <= max));
+					Assertions.assertEquals(expected, h.hash(str, max, seed));
+					Assertions.assertEquals(expected, h.hash(ByteBuffer.wrap(data), max, seed));
+					ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+					direct.put(data).flip();
+					Assertions.assertEquals(expected, h.hash(direct, max, seed));
+					Assertions.assertFalse(direct.hasRemaining());
+
+					Assertions.assertEquals(h.hash(new byte[] {
+						0, 0, 0, 1
+					}, max, seed), h.hash(1, max, seed));
+					Assertions.assertEquals(h.hash(ByteBuffer.allocate(8).putDouble(1.5).flip(), max, seed),
+						h.hash(1.5d, max, seed));
+				}
+			}
+		}
+
+		// The SHA1 hasher must yield the exact same results as the static methods
+		final BucketHasher.Hasher sha1 = BucketHasher.Algorithm.SHA1.newHasher();
+		Assertions.assertEquals(3509391659L, sha1.hash(1, BucketHasher.DEF_BUCKET, BucketHasher.DEF_SEED));
+		Assertions.assertEquals(2441322222L, sha1.hash(1, BucketHasher.DEF_BUCKET, 10L));
+		Assertions.assertEquals(3501171530L, sha1.hash(1, BucketHasher.DEF_BUCKET, BucketHasher.MAX_SEED));
+		Assertions.assertEquals(2665938722L, sha1.hash("010203"));
+		Assertions.assertEquals(1191608682L, sha1.hash("abc"));
+		Assertions.assertEquals(2562861693L, sha1.hash(new byte[] {
+			1, 2, 3
+		}));
+		for (int i = 0; i < BucketHasherTest.VALUES.length; i++) {
+			final long v = BucketHasherTest.VALUES[i];
+			Assertions.assertEquals(BucketHasherTest.BYTE_BUCKETS[i], sha1.hash((byte) v, 1000L, 7L));
+			Assertions.assertEquals(BucketHasherTest.SHORT_BUCKETS[i], sha1.hash((short) v, 1000L, 7L));
+			Assertions.assertEquals(BucketHasherTest.INT_BUCKETS[i], sha1.hash((int) v, 1000L, 7L));
+			Assertions.assertEquals(BucketHasherTest.LONG_BUCKETS[i], sha1.hash(v, 1000L, 7L));
+			Assertions.assertEquals(BucketHasherTest.FLOAT_BUCKETS[i], sha1.hash((float) v, 1000L, 7L));
+			Assertions.assertEquals(BucketHasherTest.DOUBLE_BUCKETS[i], sha1.hash((double) v, 1000L, 7L));
+		}
+
+		// Known xxHash64 values (seed 0) - the full bucket range yields the lower 32 bits
+		final BucketHasher.Hasher xx = BucketHasher.Algorithm.XXHASH64.newHasher();
+		Assertions.assertEquals(0x51D8E999L, xx.hash(""));
+		Assertions.assertEquals(0xAD770999L, xx.hash("abc"));
+		Assertions.assertEquals(0x8A378BF1L, xx.hash("Nobody inspects the spammish repetition"));
+	}
+
+	@Test
+	public void testPrimitives() {
+		final Byte nullByte = null;
+		final Short nullShort = null;
+		final Integer nullInt = null;
+		final Long nullLong = null;
+		final Float nullFloat = null;
+		final Double nullDouble = null;
+		Assertions.assertEquals(-1L, BucketHasher.hash(nullByte, 0, 0));
+		Assertions.assertEquals(-1L, BucketHasher.hash(nullShort, 0, 0));
+		Assertions.assertEquals(-1L, BucketHasher.hash(nullInt, 0, 0));
+		Assertions.assertEquals(-1L, BucketHasher.hash(nullLong, 0, 0));
+		Assertions.assertEquals(-1L, BucketHasher.hash(nullFloat, 0, 0));
+		Assertions.assertEquals(-1L, BucketHasher.hash(nullDouble, 0, 0));
+
+		Assertions.assertEquals(0L, BucketHasher.hash(1L, 0));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> BucketHasher.hash(1L, -1L));
+		Assertions.assertThrows(IllegalArgumentException.class,
+			() -> BucketHasher.hash(1.0d, BucketHasher.DEF_BUCKET, BucketHasher.MAX_SEED + 1));
+
+		// The primitives must yield the same bytes (and buckets) as their boxed counterparts
+		final ByteBuffer buf = ByteBuffer.allocate(8);
+		for (long v : new long[] {
+			Long.MIN_VALUE, -1L, 0L, 1L, 12345678901L, Long.MAX_VALUE
+		}) {
+			for (long seed : new long[] {
+				BucketHasher.MIN_SEED, 10L, BucketHasher.MAX_SEED
+			}) {
+				Assertions.assertEquals(BucketHasher.hash(buf.clear().put((byte) v).flip(), 1000L, seed),
+					BucketHasher.hash((byte) v, 1000L, seed));
+				Assertions.assertEquals(BucketHasher.hash(buf.clear().putShort((short) v).flip(), 1000L, seed),
+					BucketHasher.hash((short) v, 1000L, seed));
+				Assertions.assertEquals(BucketHasher.hash(buf.clear().putInt((int) v).flip(), 1000L, seed),
+					BucketHasher.hash((int) v, 1000L, seed));
+				Assertions.assertEquals(BucketHasher.hash(buf.clear().putLong(v).flip(), 1000L, seed),
+					BucketHasher.hash(v, 1000L, seed));
+				Assertions.assertEquals(BucketHasher.hash(buf.clear().putFloat(v).flip(), 1000L, seed),
+					BucketHasher.hash((float) v, 1000L, seed));
+				Assertions.assertEquals(BucketHasher.hash(buf.clear().putDouble(v).flip(), 1000L, seed),
+					BucketHasher.hash((double) v, 1000L, seed));
+			}
+		}
+
+		// The boxed counterparts must yield the same (known) buckets as the primitives
+		for (int i = 0; i < BucketHasherTest.VALUES.length; i++) {
+			final long v = BucketHasherTest.VALUES[i];
+			Assertions.assertEquals(BucketHasherTest.BYTE_BUCKETS[i],
+				BucketHasher.hash(Byte.valueOf((byte) v), 1000L, 7L));
+			Assertions.assertEquals(BucketHasherTest.SHORT_BUCKETS[i],
+				BucketHasher.hash(Short.valueOf((short) v), 1000L, 7L));
+			Assertions.assertEquals(BucketHasherTest.INT_BUCKETS[i],
+				BucketHasher.hash(Integer.valueOf((int) v), 1000L, 7L));
+			Assertions.assertEquals(BucketHasherTest.LONG_BUCKETS[i], BucketHasher.hash(Long.valueOf(v), 1000L, 7L));
+			Assertions.assertEquals(BucketHasherTest.FLOAT_BUCKETS[i], BucketHasher.hash(Float.valueOf(v), 1000L, 7L));
+			Assertions.assertEquals(BucketHasherTest.DOUBLE_BUCKETS[i],
+				BucketHasher.hash(Double.valueOf(v), 1000L, 7L));
+		}
+
+		// Characters must be hashed as serialized Characters, not widened to integers
+		Assertions.assertEquals(1051540620L, BucketHasher.hash('x'));
+		Assertions.assertEquals(1051540620L, BucketHasher.hash((Serializable) Character.valueOf('x')));
+		Assertions.assertNotEquals(BucketHasher.hash((int) 'x'), BucketHasher.hash('x'));
+		Assertions.assertEquals(213L, BucketHasher.hash('x', 1000L, 10L));
+		Assertions.assertEquals(213L, BucketHasher.hash((Serializable) Character.valueOf('x'), 1000L, 10L));
+	}
+
+	@Test
+	public void testHashAll() {
+		Assertions.assertThrows(NullPointerException.class,
+			() -> BucketHasher.hashAll((long[]) null, BucketHasher.DEF_BUCKET, BucketHasher.DEF_SEED));
+		Assertions.assertThrows(NullPointerException.class, () -> BucketHasher.hashAll((List<String>) null,
+			BucketHasher.DEF_BUCKET, BucketHasher.DEF_SEED, null, true));
+		Assertions.assertThrows(IllegalArgumentException.class,
+			() -> BucketHasher.hashAll(new long[0], -1L, BucketHasher.DEF_SEED));
+		Assertions.assertThrows(IllegalArgumentException.class,
+			() -> BucketHasher.hashAll(new ArrayList<String>().stream(), (s) -> s, BucketHasher.DEF_BUCKET, -1L,
+				BucketHasher.Algorithm.XXHASH64));
+
+		final Random r = new Random(0x5eed);
+		final long[] longs = new long[10000];
+		final List<String> strings = new ArrayList<>(longs.length);
+		for (int i = 0; i < longs.length; i++) {
+			longs[i] = r.nextLong();
+			strings.add(((i % 100) == 0) ? null : Long.toHexString(longs[i]));
+		}
+
+		for (BucketHasher.Algorithm a : BucketHasher.Algorithm.values()) {
+			final BucketHasher.Hasher h = a.newHasher();
+			for (long seed : new long[] {
+				BucketHasher.MIN_SEED, 10L, BucketHasher.MAX_SEED
+			}) {
+				for (long max : new long[] {
+					0L, 1L, 1000L, BucketHasher.MAX_BUCKET
+				}) {
+					final long[] expectedLongs = new long[longs.length];
+					final long[] expectedStrings = new long[longs.length];
+					for (int i = 0; i < longs.length; i++) {
+						expectedLongs[i] = h.hash(longs[i], max, seed);
+						expectedStrings[i] = h.hash(strings.get(i), max, seed);
+					}
+
+					Assertions.assertArrayEquals(expectedLongs, h.hashAll(longs, max, seed));
+					Assertions.assertArrayEquals(expectedStrings, h.hashAll(strings, max, seed));
+					for (boolean parallel : new boolean[] {
+						false, true
+					}) {
+						Assertions.assertArrayEquals(expectedLongs,
+							BucketHasher.hashAll(longs, max, seed, a, parallel));
+						Assertions.assertArrayEquals(expectedStrings,
+							BucketHasher.hashAll(strings, max, seed, a, parallel));
+						Assertions.assertArrayEquals(expectedStrings, BucketHasher
+							.hashAll(strings.spliterator(), (s) -> s, max, seed, a, parallel).toArray());
+						Stream<String> stream = (parallel ? strings.parallelStream() : strings.stream());
+						Assertions.assertArrayEquals(expectedStrings,
+							BucketHasher.hashAll(stream, (s) -> s, max, seed, a).toArray());
+					}
+				}
+			}
+		}
+
+		// The defaults must match the static methods
+		final long[] expected = Arrays.stream(longs).map((l) -> BucketHasher.hash(l, 1000L, 10L)).toArray();
+		Assertions.assertArrayEquals(expected, BucketHasher.hashAll(longs, 1000L, 10L));
+		final List<CharSequence> hex = Arrays.stream(longs).mapToObj(Long::toHexString)
+			.collect(Collectors.toList());
+		Assertions.assertArrayEquals(hex.stream().mapToLong((s) -> BucketHasher.hash(s, 1000L, 10L)).toArray(),
+			BucketHasher.hashAll(hex, 1000L, 10L));
+	}
+
+	@Test
+	public void testJump() {
+		final CharSequence nullStr = null;
+		final byte[] nullB = null;
+		Assertions.assertEquals(-1L, BucketHasher.jump(nullStr, 0));
+		Assertions.assertEquals(-1L, BucketHasher.jump(nullB, 10, 0));
+		Assertions.assertEquals(0L, BucketHasher.jump("abc", 0));
+		Assertions.assertEquals(0L, BucketHasher.jump(1L, 0, 10L));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> BucketHasher.jump(1L, -1L));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> BucketHasher.jump(1L, 4294967296L));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> BucketHasher.jump("abc", 10L, -1L));
+		Assertions.assertThrows(IllegalArgumentException.class,
+			() -> BucketHasher.jump("abc", 10L, BucketHasher.MAX_SEED + 1));
+
+		final int keys = 10000;
+		for (BucketHasher.Algorithm a : BucketHasher.Algorithm.values()) {
+			final BucketHasher.Hasher h = a.newHasher();
+			for (long seed : new long[] {
+				BucketHasher.MIN_SEED, 10L, BucketHasher.MAX_SEED
+			}) {
+				long[] previous = null;
+				for (long max = 0; max < 20; max++) {
+					final long[] current = new long[keys];
+					final int[] counts = new int[(int) max + 1];
+					for (int k = 0; k < keys; k++) {
+						final CharSequence key = "key-" + k;
+						current[k] = h.jump(key, max, seed);
+						Assertions.assertTrue((current[k] >= 0) && (current[k] <= max));
+						final byte[] bytes = key.toString().getBytes(StandardCharsets.UTF_8);
+						Assertions.assertEquals(current[k], h.jump(bytes, max, seed));
+						counts[(int) current[k]]++;
+						if (a == BucketHasher.DEF_ALGORITHM) {
+							Assertions.assertEquals(current[k], BucketHasher.jump(key, max, seed));
+						}
+					}
+					final int fair = keys / counts.length;
+					for (int c : counts) {
+						Assertions.assertTrue((c > (fair / 2)) && (c < (fair * 2)), Arrays.toString(counts));
+					}
+					if (previous != null) {
+						// Only the keys that move to the new bucket may move
+						int moved = 0;
+						for (int k = 0; k < keys; k++) {
+							if (previous[k] != current[k]) {
+								Assertions.assertEquals(max, current[k]);
+								moved++;
+							}
+						}
+						Assertions.assertTrue((moved > (fair / 2)) && (moved < (fair * 2)),
+							String.format("Moved %d keys, expected about %d", moved, fair));
+					}
+					previous = current;
+				}
+			}
+
+			// Large bucket counts must work too
+			for (long v = 0; v < 1000; v++) {
+				final long b = h.jump(v, BucketHasher.MAX_BUCKET, 10L);
+				Assertions.assertTrue((b >= 0) && (b <= BucketHasher.MAX_BUCKET));
+			}
+		}
+	}
+
+	@Test
+	public void testChannels() throws Exception {
+		final ReadableByteChannel nullChannel = null;
+		Assertions.assertEquals(-1L, BucketHasher.hash(nullChannel, 0, 0));
+		Assertions.assertEquals(-1L, BucketHasher.newHasher(null).hash(nullChannel, 0, 0));
+
+		final Pipe pipe = Pipe.open();
+		try {
+			pipe.source().configureBlocking(false);
+			Assertions.assertThrows(IllegalBlockingModeException.class,
+				() -> BucketHasher.newHasher(null).hash(pipe.source()));
+		} finally {
+			pipe.source().close();
+			pipe.sink().close();
+		}
+
+		final Random r = new Random(0x5eed);
+		final File tempFile = File.createTempFile(UUID.randomUUID().toString(), ".tmp");
+		tempFile.deleteOnExit();
+		for (int size : new int[] {
+			0, 1, 31, 33, 100000, (int) BucketHasher.MAP_THRESHOLD - 1, (int) BucketHasher.MAP_THRESHOLD + 13
+		}) {
+			final byte[] data = new byte[size];
+			r.nextBytes(data);
+			Files.write(tempFile.toPath(), data);
+			for (BucketHasher.Algorithm a : BucketHasher.Algorithm.values()) {
+				final BucketHasher.Hasher h = a.newHasher();
+				for (long seed : new long[] {
+					BucketHasher.MIN_SEED, BucketHasher.MAX_SEED
+				}) {
+					final long expected = h.hash(data, BucketHasher.DEF_BUCKET, seed);
+					try (FileChannel c = FileChannel.open(tempFile.toPath(), StandardOpenOption.READ)) {
+						Assertions.assertEquals(expected, h.hash(c, BucketHasher.DEF_BUCKET, seed));
+						Assertions.assertEquals(size, c.position());
+					}
+					try (ReadableByteChannel c = Channels.newChannel(new ByteArrayInputStream(data))) {
+						Assertions.assertEquals(expected, h.hash(c, BucketHasher.DEF_BUCKET, seed));
+					}
+					if (size > 0) {
+						// Start mid-way through the file
+						final long tail = h.hash(Arrays.copyOfRange(data, 1, size), BucketHasher.DEF_BUCKET, seed);
+						try (FileChannel c = FileChannel.open(tempFile.toPath(), StandardOpenOption.READ)) {
+							c.position(1);
+							Assertions.assertEquals(tail, h.hash(c, BucketHasher.DEF_BUCKET, seed));
+						}
+					}
+					if (a == BucketHasher.DEF_ALGORITHM) {
+						try (FileChannel c = FileChannel.open(tempFile.toPath(), StandardOpenOption.READ)) {
+							Assertions.assertEquals(expected, BucketHasher.hash(c, BucketHasher.DEF_BUCKET, seed));
+						}
+					}
+
+					// Direct buffers in either byte order, and with unaligned starting positions
+					if (size < 1000000) {
+						for (ByteOrder order : new ByteOrder[] {
+							ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN
+						}) {
+							final ByteBuffer direct = ByteBuffer.allocateDirect(size + 3).order(order);
+							direct.position(3);
+							direct.put(data).position(3);
+							Assertions.assertEquals(expected, h.hash(direct, BucketHasher.DEF_BUCKET, seed));
+							Assertions.assertEquals(order, direct.order());
+							Assertions.assertFalse(direct.hasRemaining());
+						}
+					}
+				}
+			}
+		}
+	}
+
 }
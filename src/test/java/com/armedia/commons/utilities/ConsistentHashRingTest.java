@@ -0,0 +1,182 @@
+/*******************************************************************************
+ * #%L
+ * Armedia Caliente
+ * %%
+ * Copyright (C) 2013 - 2025 Armedia, LLC
+ * %%
+ * This file is part of the Caliente software.
+ *
+ * If the software was purchased under a paid Caliente license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Caliente is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Caliente is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Caliente. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ *******************************************************************************/
+package com.armedia.commons.utilities;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ConsistentHashRingTest {
+
+	private static final int KEYS = 20000;
+
+	@Test
+	public void testConstructor() {
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new ConsistentHashRing<String>(0));
+		Assertions.assertThrows(IllegalArgumentException.class,
+			() -> new ConsistentHashRing<String>(1, Object::toString, null, -1L));
+		Assertions.assertThrows(IllegalArgumentException.class,
+			() -> new ConsistentHashRing<String>(1, Object::toString, null, BucketHasher.MAX_SEED + 1));
+		Assertions.assertThrows(NullPointerException.class,
+			() -> new ConsistentHashRing<String>(1, null, null, BucketHasher.DEF_SEED));
+
+		ConsistentHashRing<String> ring = new ConsistentHashRing<>();
+		Assertions.assertEquals(ConsistentHashRing.DEF_VIRTUAL_NODES, ring.getVirtualNodes());
+		Assertions.assertSame(BucketHasher.DEF_ALGORITHM, ring.getAlgorithm());
+		Assertions.assertEquals(BucketHasher.DEF_SEED, ring.getSeed());
+		Assertions.assertTrue(ring.isEmpty());
+		Assertions.assertEquals(0, ring.size());
+		Assertions.assertNull(ring.get("abc"));
+		Assertions.assertNull(ring.get(1L));
+		Assertions.assertNull(ring.get(new byte[0]));
+	}
+
+	@Test
+	public void testAddRemove() {
+		ConsistentHashRing<String> ring = new ConsistentHashRing<>(10);
+		Assertions.assertThrows(NullPointerException.class, () -> ring.add(null));
+		Assertions.assertTrue(ring.add("a"));
+		Assertions.assertFalse(ring.add("a"));
+		Assertions.assertTrue(ring.add("b"));
+		Assertions.assertEquals(2, ring.size());
+		Assertions.assertFalse(ring.isEmpty());
+		Assertions.assertEquals(new HashSet<>(Arrays.asList("a", "b")), ring.getNodes());
+		Assertions.assertThrows(UnsupportedOperationException.class, () -> ring.getNodes().add("c"));
+
+		final CharSequence nullKey = null;
+		final byte[] nullBytes = null;
+		Assertions.assertNull(ring.get(nullKey));
+		Assertions.assertNull(ring.get(nullBytes));
+
+		Assertions.assertFalse(ring.remove(null));
+		Assertions.assertFalse(ring.remove("c"));
+		Assertions.assertTrue(ring.remove("a"));
+		Assertions.assertFalse(ring.remove("a"));
+		for (int i = 0; i < 100; i++) {
+			Assertions.assertEquals("b", ring.get(String.valueOf(i)));
+			Assertions.assertEquals("b", ring.get(i));
+		}
+		Assertions.assertTrue(ring.remove("b"));
+		Assertions.assertTrue(ring.isEmpty());
+		Assertions.assertNull(ring.get("abc"));
+	}
+
+	private Map<CharSequence, String> map(ConsistentHashRing<String> ring) {
+		Map<CharSequence, String> ret = new HashMap<>();
+		for (int i = 0; i < ConsistentHashRingTest.KEYS; i++) {
+			String key = String.format("key-%08x", i);
+			String node = ring.get(key);
+			Assertions.assertNotNull(node);
+			ret.put(key, node);
+		}
+		return ret;
+	}
+
+	@Test
+	public void testConsistency() {
+		for (BucketHasher.Algorithm algorithm : BucketHasher.Algorithm.values()) {
+			for (long seed : new long[] {
+				BucketHasher.MIN_SEED, 10L, BucketHasher.MAX_SEED
+			}) {
+				final int nodes = 10;
+				ConsistentHashRing<String> ring = new ConsistentHashRing<>(ConsistentHashRing.DEF_VIRTUAL_NODES,
+					Object::toString, algorithm, seed);
+				ConsistentHashRing<String> reversed = new ConsistentHashRing<>(ConsistentHashRing.DEF_VIRTUAL_NODES,
+					Object::toString, algorithm, seed);
+				for (int i = 0; i < nodes; i++) {
+					ring.add("node-" + i);
+					reversed.add("node-" + (nodes - i - 1));
+				}
+
+				// The insertion order mustn't matter
+				final Map<CharSequence, String> before = map(ring);
+				Assertions.assertEquals(before, map(reversed));
+
+				// Every node must get a reasonable share of the keys
+				Map<String, Integer> counts = new HashMap<>();
+				before.values().forEach((n) -> counts.merge(n, 1, Integer::sum));
+				Assertions.assertEquals(nodes, counts.size());
+				final int fair = ConsistentHashRingTest.KEYS / nodes;
+				counts.values().forEach((c) -> Assertions.assertTrue((c > (fair / 2)) && (c < (fair * 2)),
+					String.format("Unbalanced distribution: %s", counts)));
+
+				// Adding a node must only move keys to the new node, and about 1/N of them
+				ring.add("node-new");
+				final Map<CharSequence, String> added = map(ring);
+				int moved = 0;
+				for (CharSequence key : before.keySet()) {
+					if (!before.get(key).equals(added.get(key))) {
+						Assertions.assertEquals("node-new", added.get(key));
+						moved++;
+					}
+				}
+				final int expected = ConsistentHashRingTest.KEYS / (nodes + 1);
+				Assertions.assertTrue((moved > (expected / 2)) && (moved < (expected * 2)),
+					String.format("Moved %d keys, expected about %d", moved, expected));
+
+				// Removing it must restore the original mapping
+				ring.remove("node-new");
+				Assertions.assertEquals(before, map(ring));
+
+				// Removing a node must only move that node's keys
+				ring.remove("node-0");
+				final Map<CharSequence, String> removed = map(ring);
+				for (CharSequence key : before.keySet()) {
+					if (!"node-0".equals(before.get(key))) {
+						Assertions.assertEquals(before.get(key), removed.get(key));
+					} else {
+						Assertions.assertNotEquals("node-0", removed.get(key));
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testKeyTypes() {
+		ConsistentHashRing<Integer> ring = new ConsistentHashRing<>(50, (i) -> "server" + i,
+			BucketHasher.Algorithm.XXHASH64, 10L);
+		for (int i = 0; i < 5; i++) {
+			ring.add(i);
+		}
+		Set<Integer> seen = new HashSet<>();
+		for (long i = 0; i < 1000; i++) {
+			Integer n = ring.get(i);
+			Assertions.assertNotNull(n);
+			Assertions.assertEquals(n, ring.get(i));
+			seen.add(n);
+			byte[] b = String.valueOf(i).getBytes();
+			Assertions.assertEquals(ring.get(String.valueOf(i)), ring.get(b));
+		}
+		Assertions.assertEquals(ring.getNodes(), seen);
+	}
+}
@@ -0,0 +1,194 @@
+/*******************************************************************************
+ * #%L
+ * Armedia Caliente
+ * %%
+ * Copyright (C) 2013 - 2025 Armedia, LLC
+ * %%
+ * This file is part of the Caliente software.
+ *
+ * If the software was purchased under a paid Caliente license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Caliente is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Caliente is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Caliente. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ *******************************************************************************/
+package com.armedia.commons.utilities;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class EnumeratedCounterTest {
+
+	private static enum Type {
+		//
+		DOCUMENT, //
+		FOLDER, //
+		USER, //
+		;
+	}
+
+	private static enum Result {
+		//
+		CREATED, //
+		UPDATED, //
+		SKIPPED, //
+		FAILED, //
+		;
+	}
+
+	@Test
+	public void testConstructor() {
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new EnumeratedCounter<>(null, Result.class));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new EnumeratedCounter<>(Type.class, null));
+		EnumeratedCounter<Type, Result> counter = new EnumeratedCounter<>(Type.class, Result.class);
+		Map<Type, Map<Result, Long>> counters = counter.getCounters();
+		Assertions.assertEquals(Type.values().length, counters.size());
+		for (Type t : Type.values()) {
+			Map<Result, Long> m = counters.get(t);
+			Assertions.assertEquals(Result.values().length, m.size());
+			m.values().forEach((v) -> Assertions.assertEquals(0L, v.longValue()));
+		}
+	}
+
+	@Test
+	public void testIncrement() {
+		EnumeratedCounter<Type, Result> counter = new EnumeratedCounter<>(Type.class, Result.class);
+		Assertions.assertThrows(IllegalArgumentException.class, () -> counter.increment(null, Result.CREATED));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> counter.increment(Type.FOLDER, null));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> counter.count(null, Result.CREATED));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> counter.count(Type.FOLDER, null));
+
+		for (Type t : Type.values()) {
+			for (Result r : Result.values()) {
+				final int n = (t.ordinal() + 1) * (r.ordinal() + 1);
+				for (int i = 1; i <= n; i++) {
+					if ((i % 2) == 0) {
+						counter.count(t, r);
+					} else {
+						Assertions.assertEquals(i, counter.increment(t, r));
+					}
+				}
+			}
+		}
+
+		final Map<Result, Long> cummulative = counter.getCummulative();
+		for (Result r : Result.values()) {
+			long total = 0;
+			for (Type t : Type.values()) {
+				final long expected = (t.ordinal() + 1) * (r.ordinal() + 1);
+				Assertions.assertEquals(expected, counter.getCounters(t).get(r).longValue());
+				Assertions.assertEquals(expected, counter.getCounters().get(t).get(r).longValue());
+				total += expected;
+			}
+			Assertions.assertEquals(total, cummulative.get(r).longValue());
+		}
+	}
+
+	@Test
+	public void testReset() {
+		EnumeratedCounter<Type, Result> counter = new EnumeratedCounter<>(Type.class, Result.class);
+		counter.count(Type.DOCUMENT, Result.CREATED);
+		counter.count(Type.DOCUMENT, Result.FAILED);
+		counter.count(Type.FOLDER, Result.CREATED);
+		counter.count(Type.USER, Result.SKIPPED);
+
+		Map<Result, Long> old = counter.reset(Type.DOCUMENT);
+		Assertions.assertEquals(1L, old.get(Result.CREATED).longValue());
+		Assertions.assertEquals(1L, old.get(Result.FAILED).longValue());
+		Assertions.assertEquals(0L, old.get(Result.SKIPPED).longValue());
+		counter.getCounters(Type.DOCUMENT).values().forEach((v) -> Assertions.assertEquals(0L, v.longValue()));
+		Assertions.assertEquals(1L, counter.getCummulative().get(Result.CREATED).longValue());
+		Assertions.assertEquals(0L, counter.getCummulative().get(Result.FAILED).longValue());
+
+		Map<Type, Map<Result, Long>> all = counter.reset();
+		Assertions.assertEquals(1L, all.get(Type.FOLDER).get(Result.CREATED).longValue());
+		Assertions.assertEquals(1L, all.get(Type.USER).get(Result.SKIPPED).longValue());
+		Assertions.assertEquals(0L, all.get(Type.DOCUMENT).get(Result.CREATED).longValue());
+		counter.getCummulative().values().forEach((v) -> Assertions.assertEquals(0L, v.longValue()));
+
+		counter.count(Type.USER, Result.UPDATED);
+		counter.count(Type.FOLDER, Result.UPDATED);
+		old = counter.reset(null);
+		Assertions.assertEquals(2L, old.get(Result.UPDATED).longValue());
+		counter.getCummulative().values().forEach((v) -> Assertions.assertEquals(0L, v.longValue()));
+	}
+
+	@Test
+	public void testReports() {
+		EnumeratedCounter<Type, Result> counter = new EnumeratedCounter<>(Type.class, Result.class);
+		counter.count(Type.DOCUMENT, Result.CREATED);
+		counter.count(Type.FOLDER, Result.FAILED);
+
+		String report = counter.generateReport(Type.DOCUMENT);
+		Assertions.assertTrue(report.contains("Number of DOCUMENT"));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> counter.generateReport(null));
+
+		report = counter.generateFullReport(1);
+		for (Type t : Type.values()) {
+			Assertions.assertTrue(report.contains("Number of " + t.name()));
+		}
+
+		report = counter.generateCummulativeReport();
+		Assertions.assertTrue(report.contains("Total"));
+		Assertions.assertTrue(report.contains("processed"));
+	}
+
+	@Test
+	public void testConcurrency() throws Exception {
+		final EnumeratedCounter<Type, Result> counter = new EnumeratedCounter<>(Type.class, Result.class);
+		final int threads = 8;
+		final int rounds = 10000;
+		final CyclicBarrier barrier = new CyclicBarrier(threads);
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			final List<CompletableFuture<Void>> futures = new ArrayList<>(threads);
+			for (int t = 0; t < threads; t++) {
+				futures.add(CompletableFuture.runAsync(() -> {
+					try {
+						barrier.await();
+					} catch (Exception e) {
+						throw new RuntimeException(e);
+					}
+					for (int i = 0; i < rounds; i++) {
+						for (Type type : Type.values()) {
+							counter.count(type, Result.values()[i % Result.values().length]);
+						}
+					}
+				}, executor));
+			}
+			CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+		} finally {
+			executor.shutdownNow();
+		}
+
+		final long expected = (threads * rounds) / Result.values().length;
+		for (Type t : Type.values()) {
+			for (Result r : Result.values()) {
+				Assertions.assertEquals(expected, counter.getCounters(t).get(r).longValue());
+			}
+		}
+		for (Result r : Result.values()) {
+			Assertions.assertEquals(expected * Type.values().length, counter.getCummulative().get(r).longValue());
+		}
+	}
+}
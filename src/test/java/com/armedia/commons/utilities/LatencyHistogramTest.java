@@ -0,0 +1,146 @@
+/*******************************************************************************
+ * #%L
+ * Armedia Caliente
+ * %%
+ * Copyright (C) 2013 - 2025 Armedia, LLC
+ * %%
+ * This file is part of the Caliente software.
+ *
+ * If the software was purchased under a paid Caliente license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Caliente is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Caliente is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Caliente. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ *******************************************************************************/
+package com.armedia.commons.utilities;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class LatencyHistogramTest {
+
+	@Test
+	public void testEmpty() {
+		final LatencyHistogram h = new LatencyHistogram();
+		final LatencyHistogram.Snapshot s = h.snapshot();
+		Assertions.assertSame(LatencyHistogram.Snapshot.empty(), s);
+		Assertions.assertEquals(0, s.getCount());
+		Assertions.assertEquals(0, s.getSum());
+		Assertions.assertEquals(0, s.getMin());
+		Assertions.assertEquals(0, s.getMax());
+		Assertions.assertEquals(0, s.getMean());
+		Assertions.assertEquals(0, s.getPercentile(50));
+		Assertions.assertEquals(0, s.getP99());
+		Assertions.assertThrows(IllegalArgumentException.class, () -> s.getPercentile(-1));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> s.getPercentile(100.1));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> s.getPercentile(Double.NaN));
+		Assertions.assertNotNull(h.toString());
+	}
+
+	@Test
+	public void testRecord() {
+		final LatencyHistogram h = new LatencyHistogram();
+		for (long v = 1; v <= 1000; v++) {
+			h.record(v);
+		}
+		LatencyHistogram.Snapshot s = h.snapshot();
+		Assertions.assertEquals(1000, s.getCount());
+		Assertions.assertEquals(500500, s.getSum());
+		Assertions.assertEquals(1, s.getMin());
+		Assertions.assertEquals(1000, s.getMax());
+		Assertions.assertEquals(500.5, s.getMean(), 0.001);
+		Assertions.assertEquals(1, s.getPercentile(0));
+		Assertions.assertEquals(1000, s.getPercentile(100));
+		// Percentiles are never underestimated, and are within 25% of the actual value
+		for (double p : new double[] {
+			10, 25, 50, 75, 90, 99, 99.9
+		}) {
+			final long actual = (long) Math.ceil(p * 10);
+			final long estimate = s.getPercentile(p);
+			final String msg = String.format("p%s: actual = %d, estimate = %d", p, actual, estimate);
+			Assertions.assertTrue(estimate >= actual, msg);
+			Assertions.assertTrue(estimate <= (actual * 1.25), msg);
+		}
+
+		// Negative values count as 0, and repeated values count several times
+		h.record(-5);
+		h.record(Long.MAX_VALUE, 0);
+		h.record(2000, 10);
+		s = h.snapshot();
+		Assertions.assertEquals(1011, s.getCount());
+		Assertions.assertEquals(500500 + 20000, s.getSum());
+		Assertions.assertEquals(0, s.getMin());
+		Assertions.assertEquals(2000, s.getMax());
+		Assertions.assertEquals(2000, s.getPercentile(100));
+
+		// Huge values are supported too
+		h.record(Long.MAX_VALUE);
+		Assertions.assertEquals(Long.MAX_VALUE, h.snapshot().getMax());
+		Assertions.assertEquals(Long.MAX_VALUE, h.snapshot().getPercentile(100));
+
+		h.reset();
+		Assertions.assertEquals(0, h.snapshot().getCount());
+		h.record(42);
+		s = h.snapshot();
+		Assertions.assertEquals(42, s.getMin());
+		Assertions.assertEquals(42, s.getMax());
+		Assertions.assertEquals(42, s.getP50());
+	}
+
+	@Test
+	public void testRecordSince() {
+		final LatencyHistogram h = new LatencyHistogram();
+		final long start = System.nanoTime();
+		final long end = h.recordSince(start);
+		Assertions.assertTrue(end >= start);
+		final LatencyHistogram.Snapshot s = h.snapshot();
+		Assertions.assertEquals(1, s.getCount());
+		Assertions.assertEquals(end - start, s.getSum());
+	}
+
+	@Test
+	public void testConcurrency() throws Exception {
+		final LatencyHistogram h = new LatencyHistogram();
+		final int threads = 8;
+		final int count = 10000;
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			final List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				futures.add(executor.submit(() -> {
+					for (int i = 1; i <= count; i++) {
+						h.record(i);
+					}
+				}));
+			}
+			for (Future<?> f : futures) {
+				f.get();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		final LatencyHistogram.Snapshot s = h.snapshot();
+		Assertions.assertEquals(threads * count, s.getCount());
+		Assertions.assertEquals(threads * ((count * (count + 1L)) / 2), s.getSum());
+		Assertions.assertEquals(1, s.getMin());
+		Assertions.assertEquals(count, s.getMax());
+	}
+}
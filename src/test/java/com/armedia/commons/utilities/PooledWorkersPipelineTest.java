@@ -0,0 +1,186 @@
+/*******************************************************************************
+ * #%L
+ * Armedia Caliente
+ * %%
+ * Copyright (C) 2013 - 2025 Armedia, LLC
+ * %%
+ * This file is part of the Caliente software.
+ *
+ * If the software was purchased under a paid Caliente license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Caliente is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Caliente is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Caliente. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ *******************************************************************************/
+package com.armedia.commons.utilities;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class PooledWorkersPipelineTest {
+
+	@Test
+	public void testPipeline() throws Exception {
+		final Map<String, Integer> written = new ConcurrentHashMap<>();
+		final AtomicInteger failures = new AtomicInteger(0);
+		final PooledWorkersLogic<Object, String, Exception> sink = new PooledWorkersLogic<Object, String, Exception>() {
+			@Override
+			public void process(Object state, String item) throws Exception {
+				if (item.startsWith("fail")) { throw new Exception(item); }
+				// A slow sink, with tiny queues, so the upstream stages are held back
+				Thread.sleep(1);
+				Assertions.assertNull(written.put(item, item.length()));
+			}
+
+			@Override
+			public void handleFailure(Object state, String item, Exception raised) {
+				failures.incrementAndGet();
+			}
+		};
+
+		final PooledWorkersPipeline<Integer> pipeline = PooledWorkersPipeline.<Integer> builder() //
+			.stage("square", 2, 2, PooledWorkersFunction.<Object, Integer, Integer, Exception> of((s, i) -> {
+				// Odd items are dropped
+				return ((i % 2) == 0 ? i * i : null);
+			})) //
+			.flatStage("split", 1, 2, PooledWorkersFunction.<Object, Integer, List<String>, Exception> of(
+				(s, i) -> Arrays.asList("a" + i, "b" + i, ((i % 10) == 0 ? "fail" + i : null)))) //
+			.sink("write", 3, 1, sink) //
+			.start();
+		try {
+			Assertions.assertEquals(3, pipeline.getStageCount());
+			Assertions.assertTrue(pipeline.isProcessing());
+			final int count = 200;
+			for (int i = 0; i < count; i++) {
+				pipeline.addWorkItem(i);
+			}
+			final List<List<?>> remaining = pipeline.waitForCompletion();
+			Assertions.assertEquals(3, remaining.size());
+			remaining.forEach((r) -> Assertions.assertTrue(r.isEmpty(), String.valueOf(r)));
+			Assertions.assertFalse(pipeline.isProcessing());
+
+			Assertions.assertEquals(count, written.size());
+			Assertions.assertEquals(count / 10, failures.get());
+			for (int i = 0; i < count; i += 2) {
+				Assertions.assertTrue(written.containsKey("a" + (i * i)), "a" + (i * i));
+				Assertions.assertTrue(written.containsKey("b" + (i * i)), "b" + (i * i));
+			}
+			for (int i = 0; i < pipeline.getStageCount(); i++) {
+				Assertions.assertFalse(pipeline.getStage(i).isProcessing());
+			}
+		} finally {
+			pipeline.abortExecution();
+		}
+	}
+
+	@Test
+	public void testInterruptedHandoff() throws Exception {
+		final List<Integer> written = Collections.synchronizedList(new ArrayList<>());
+		final PooledWorkersPipeline<Integer> pipeline = PooledWorkersPipeline.<Integer> builder() //
+			.stage("interrupt", 1, 10, PooledWorkersFunction.<Object, Integer, Integer, Exception> of((s, i) -> {
+				// The worker is interrupted before it can hand this one over (and exits afterwards)
+				if (i == 3) {
+					Thread.currentThread().interrupt();
+				}
+				return i;
+			})) //
+			.sink("write", 1, 10, PooledWorkersLogic.<Object, Integer, Exception> of((s, i) -> written.add(i))) //
+			.start();
+		try {
+			for (int i = 1; i <= 5; i++) {
+				pipeline.addWorkItem(i);
+			}
+			final List<List<?>> remaining = pipeline.waitForCompletion();
+			// The item which couldn't be handed over isn't lost, but returned with the next stage's
+			Assertions.assertEquals(Arrays.asList(4, 5), remaining.get(0));
+			Assertions.assertEquals(Arrays.asList(3), remaining.get(1));
+			Assertions.assertEquals(Arrays.asList(1, 2), written);
+		} finally {
+			pipeline.abortExecution();
+		}
+	}
+
+	@Test
+	public void testAbort() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		final List<String> seen = new ArrayList<>();
+		final PooledWorkersLogic<Object, String, Exception> sink = (s, item) -> {
+			release.await();
+			synchronized (seen) {
+				seen.add(item);
+			}
+		};
+		final PooledWorkersPipeline<Integer> pipeline = PooledWorkersPipeline.<Integer> builder() //
+			.stage("format", 1, 0, PooledWorkersFunction.<Object, Integer, String, Exception> of((s, i) -> "#" + i)) //
+			.sink("write", 1, 2, sink) //
+			.start();
+		try {
+			for (int i = 0; i < 10; i++) {
+				pipeline.addWorkItem(i);
+			}
+			// The sink is stuck, so the first stage fills its queue and blocks
+			final PooledWorkers<?, ?> first = pipeline.getStage(0);
+			final long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+			while ((pipeline.getStage(1).getQueueSize() < 2) && (System.nanoTime() < end)) {
+				Thread.sleep(10);
+			}
+			Assertions.assertEquals(2, pipeline.getStage(1).getQueueSize());
+			Assertions.assertTrue(first.getQueueSize() > 0);
+
+			new Thread(() -> {
+				try {
+					Thread.sleep(100);
+				} catch (InterruptedException e) {
+					// Ignore it
+				}
+				release.countDown();
+			}).start();
+			final List<List<?>> remaining = pipeline.abortExecution();
+			Assertions.assertEquals(2, remaining.size());
+			int total = seen.size();
+			for (List<?> r : remaining) {
+				total += r.size();
+			}
+			Assertions.assertTrue(total <= 10, String.valueOf(total));
+			Assertions.assertFalse(remaining.get(0).isEmpty());
+			Assertions.assertFalse(pipeline.isProcessing());
+		} finally {
+			release.countDown();
+			pipeline.abortExecution();
+		}
+	}
+
+	@Test
+	public void testBuilder() {
+		Assertions.assertThrows(IllegalStateException.class, () -> PooledWorkersPipeline.builder().start());
+		final PooledWorkersPipeline.Builder<String, Void> b = PooledWorkersPipeline.<String> builder() //
+			.sink("sink", 1, 0, (Object s, String item) -> {
+			});
+		Assertions.assertThrows(IllegalStateException.class,
+			() -> b.stage("after", 1, 0, PooledWorkersFunction.<Object, Void, Void, Exception> of((s, i) -> i)));
+		Assertions.assertThrows(NullPointerException.class,
+			() -> PooledWorkersPipeline.<String> builder().sink("sink", 1, 0, null));
+	}
+}
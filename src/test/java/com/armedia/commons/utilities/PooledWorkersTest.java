@@ -26,9 +26,34 @@
  *******************************************************************************/
 package com.armedia.commons.utilities;
 
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -123,4 +148,865 @@ public class PooledWorkersTest {
 		pw.waitForCompletion();
 		Assertions.assertEquals(testCount, data.get());
 	}
+
+	@Test
+	public void testBatch() throws Exception {
+		final int batchSize = 16;
+		final AtomicLong data = new AtomicLong(0);
+		final AtomicLong batches = new AtomicLong(0);
+		final AtomicLong maxBatch = new AtomicLong(0);
+		final AtomicLong failed = new AtomicLong(0);
+		PooledWorkersLogic<Object, Integer, Exception> logic = new PooledWorkersLogic<Object, Integer, Exception>() {
+			@Override
+			public void process(Object state, Integer item) throws Exception {
+				Assertions.fail("Should not be invoked in batch mode");
+			}
+
+			@Override
+			public void processBatch(Object state, List<Integer> items) throws Exception {
+				Assertions.assertFalse(items.isEmpty());
+				Assertions.assertThrows(UnsupportedOperationException.class, () -> items.add(0));
+				batches.incrementAndGet();
+				maxBatch.accumulateAndGet(items.size(), Math::max);
+				if (items.contains(-1)) { throw new Exception("Failed batch"); }
+				data.addAndGet(items.size());
+			}
+
+			@Override
+			public void handleFailure(Object state, Integer item, Exception raised) {
+				failed.incrementAndGet();
+			}
+		};
+
+		PooledWorkers.Builder<Object, Integer, Exception> pwb = new PooledWorkers.Builder<Object, Integer, Exception>() //
+			.logic(logic) //
+			.threads(4) //
+			.name("Batch") //
+			.batchSize(batchSize) //
+			.batchLinger(Duration.ofMillis(10)) //
+		;
+		Assertions.assertEquals(batchSize, pwb.batchSize());
+		Assertions.assertEquals(Duration.ofMillis(10), pwb.batchLinger());
+		final int testCount = 1000;
+		PooledWorkers<Object, Integer> pw = pwb.start();
+		for (int i = 1; i <= testCount; i++) {
+			pw.addWorkItem(i);
+		}
+		pw.waitForCompletion();
+		Assertions.assertEquals(testCount, data.get());
+		Assertions.assertEquals(0, failed.get());
+		Assertions.assertTrue(maxBatch.get() <= batchSize);
+		Assertions.assertTrue(batches.get() < testCount);
+
+		// A failed batch reports the failure for each of its items
+		data.set(0);
+		pw = pwb.threads(1).batchLinger(null).start();
+		pw.addWorkItem(-1);
+		pw.waitForCompletion();
+		Assertions.assertEquals(0, data.get());
+		Assertions.assertEquals(1, failed.get());
+		Assertions.assertEquals(Duration.ZERO, pwb.batchLinger());
+
+		Assertions.assertEquals(1, pwb.batchSize(0).batchSize());
+	}
+
+	@Test
+	public void testDefaultBatch() throws Exception {
+		final AtomicLong data = new AtomicLong(0);
+		final Set<Integer> failed = Collections.synchronizedSet(new HashSet<>());
+		PooledWorkersLogic<Object, Integer, Exception> logic = new PooledWorkersLogic<Object, Integer, Exception>() {
+			@Override
+			public void process(Object state, Integer item) throws Exception {
+				if ((item % 10) == 0) { throw new Exception(String.valueOf(item)); }
+				data.incrementAndGet();
+			}
+
+			@Override
+			public void handleFailure(Object state, Integer item, Exception raised) {
+				Assertions.assertEquals(String.valueOf(item), raised.getMessage());
+				failed.add(item);
+			}
+		};
+
+		final int testCount = 1000;
+		Collection<Integer> items = new LinkedList<>();
+		for (int i = 1; i <= testCount; i++) {
+			items.add(i);
+		}
+		PooledWorkers<Object, Integer> pw = new PooledWorkers.Builder<Object, Integer, Exception>() //
+			.logic(logic) //
+			.threads(4) //
+			.name("DefaultBatch") //
+			.batchSize(32) //
+			.waitForWork(false) //
+			.items(items) //
+			.start();
+		pw.waitForCompletion();
+
+		// Each failure is reported individually, and doesn't stop the rest of the batch
+		Assertions.assertEquals(testCount / 10, failed.size());
+		Assertions.assertEquals(testCount - failed.size(), data.get());
+
+		// ... and counted individually, too
+		Assertions.assertEquals(testCount / 10, pw.getMetrics().getFailed());
+		Assertions.assertEquals(testCount - failed.size(), pw.getMetrics().getCompleted());
+	}
+
+	@Test
+	public void testInitialItemsExceedBacklog() throws Exception {
+		final AtomicInteger processed = new AtomicInteger(0);
+		final List<Integer> items = Arrays.asList(1, 2, 3);
+		for (PooledWorkers.QueueStrategy strategy : PooledWorkers.QueueStrategy.values()) {
+			PooledWorkers.Builder<Object, Integer, Exception> pwb = new PooledWorkers.Builder<Object, Integer, Exception>() //
+				.logic((s, i) -> processed.incrementAndGet()) //
+				.threads(2) //
+				.name("Backlog " + strategy) //
+				.queueStrategy(strategy) //
+				.partitionKey(Function.identity()) //
+				.waitForWork(false) //
+				.items(items) //
+				.backlogLimit(items.size() - 1) //
+			;
+			Assertions.assertThrows(IllegalArgumentException.class, pwb::start, strategy.name());
+
+			// Exactly as many as fit is fine
+			processed.set(0);
+			Assertions.assertTrue(pwb.backlogLimit(items.size()).start().waitForCompletion().isEmpty());
+			Assertions.assertEquals(items.size(), processed.get(), strategy.name());
+		}
+	}
+
+	@Test
+	public void testWorkStealing() throws Exception {
+		final Set<Integer> processed = Collections.synchronizedSet(new HashSet<>());
+		PooledWorkersLogic<Object, Integer, Exception> logic = (o, i) -> Assertions.assertTrue(processed.add(i));
+
+		PooledWorkers.Builder<Object, Integer, Exception> pwb = new PooledWorkers.Builder<Object, Integer, Exception>() //
+			.logic(logic) //
+			.threads(8) //
+			.name("WorkStealing") //
+			.backlogLimit(100) //
+			.queueStrategy(PooledWorkers.QueueStrategy.WORK_STEALING) //
+		;
+		Assertions.assertSame(PooledWorkers.QueueStrategy.WORK_STEALING, pwb.queueStrategy());
+		final int testCount = 10000;
+		PooledWorkers<Object, Integer> pw = pwb.start();
+		for (int i = 1; i <= testCount; i++) {
+			pw.addWorkItem(i);
+		}
+		Assertions.assertTrue(pw.waitForCompletion().isEmpty());
+		Assertions.assertEquals(testCount, processed.size());
+
+		// Batches work too
+		processed.clear();
+		pw = pwb.batchSize(16).start();
+		for (int i = 1; i <= testCount; i++) {
+			pw.addWorkItem(i);
+		}
+		Assertions.assertTrue(pw.waitForCompletion().isEmpty());
+		Assertions.assertEquals(testCount, processed.size());
+
+		// Pending items can still be cleared
+		final CountDownLatch latch = new CountDownLatch(1);
+		pw = pwb.batchSize(1).threads(1).logic((o, i) -> latch.await()).start();
+		for (int i = 1; i <= 10; i++) {
+			pw.addWorkItem(i);
+		}
+		while (pw.getQueueSize() > 9) {
+			Thread.sleep(10);
+		}
+		Assertions.assertEquals(9, pw.clearWorkItems().size());
+		Assertions.assertEquals(0, pw.getQueueSize());
+		Assertions.assertEquals(100, pw.getQueueCapacity());
+		latch.countDown();
+		Assertions.assertTrue(pw.waitForCompletion().isEmpty());
+
+		Assertions.assertSame(PooledWorkers.QueueStrategy.SHARED, pwb.queueStrategy(null).queueStrategy());
+	}
+
+	@Test
+	public void testPriority() throws Exception {
+		final List<Integer> processed = Collections.synchronizedList(new LinkedList<>());
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch gate = new CountDownLatch(1);
+		PooledWorkersLogic<Object, Integer, Exception> logic = (o, i) -> {
+			if (i < 0) {
+				started.countDown();
+				gate.await();
+				return;
+			}
+			processed.add(i);
+		};
+
+		PooledWorkers.Builder<Object, Integer, Exception> pwb = new PooledWorkers.Builder<Object, Integer, Exception>() //
+			.logic(logic) //
+			.threads(1) //
+			.name("Priority") //
+			.backlogLimit(10) //
+			.queueStrategy(PooledWorkers.QueueStrategy.PRIORITY) //
+		;
+		Assertions.assertSame(PooledWorkers.QueueStrategy.PRIORITY, pwb.queueStrategy());
+		Assertions.assertNull(pwb.priority());
+
+		// Hold the only worker while the backlog fills up, so the whole backlog gets reordered
+		PooledWorkers<Object, Integer> pw = pwb.start();
+		pw.addWorkItem(-1);
+		Assertions.assertTrue(started.await(10, TimeUnit.SECONDS));
+		for (int i : new int[] {
+			5, 3, 9, 1, 7, 2, 8, 4, 6, 0
+		}) {
+			pw.addWorkItem(i);
+		}
+		Assertions.assertEquals(0, pw.getQueueCapacity());
+		Assertions.assertFalse(pw.addWorkItem(10, Duration.ofMillis(10)));
+		gate.countDown();
+		Assertions.assertTrue(pw.waitForCompletion().isEmpty());
+		Assertions.assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), processed);
+
+		// Earliest deadline first, with the items without a deadline going last, in FIFO order
+		final Comparator<Integer> edf = PooledWorkers
+			.earliestDeadlineFirst((i) -> ((i % 10) == 0 ? null : Instant.EPOCH.plusSeconds(i % 10)));
+		Assertions.assertThrows(NullPointerException.class, () -> PooledWorkers.earliestDeadlineFirst(null));
+		processed.clear();
+		final CountDownLatch restarted = new CountDownLatch(1);
+		final CountDownLatch regate = new CountDownLatch(1);
+		pw = pwb.priority(edf).logic((o, i) -> {
+			if (i < 0) {
+				restarted.countDown();
+				regate.await();
+				return;
+			}
+			processed.add(i);
+		}).start();
+		Assertions.assertSame(edf, pwb.priority());
+		pw.addWorkItem(-1);
+		Assertions.assertTrue(restarted.await(10, TimeUnit.SECONDS));
+		for (int i : new int[] {
+			10, 23, 31, 20, 12, 30
+		}) {
+			pw.addWorkItem(i);
+		}
+		regate.countDown();
+		Assertions.assertTrue(pw.waitForCompletion().isEmpty());
+		Assertions.assertEquals(List.of(31, 12, 23, 10, 20, 30), processed);
+	}
+
+	@Test
+	public void testPartitioned() throws Exception {
+		final int keys = 10;
+		final Map<Integer, List<Integer>> processed = new ConcurrentHashMap<>();
+		final Map<Integer, Set<String>> threads = new ConcurrentHashMap<>();
+		final AtomicInteger[] busy = new AtomicInteger[keys];
+		for (int k = 0; k < keys; k++) {
+			busy[k] = new AtomicInteger(0);
+		}
+		final AtomicInteger overlaps = new AtomicInteger(0);
+		PooledWorkersLogic<Object, Integer, Exception> logic = (o, i) -> {
+			final int key = (i % keys);
+			if (busy[key].incrementAndGet() > 1) {
+				overlaps.incrementAndGet();
+			}
+			// No synchronization needed, since each key's items are processed one at a time
+			processed.computeIfAbsent(key, (k) -> new ArrayList<>()).add(i);
+			threads.computeIfAbsent(key, (k) -> ConcurrentHashMap.newKeySet()).add(Thread.currentThread().getName());
+			busy[key].decrementAndGet();
+		};
+
+		PooledWorkers.Builder<Object, Integer, Exception> pwb = new PooledWorkers.Builder<Object, Integer, Exception>() //
+			.logic(logic) //
+			.threads(4) //
+			.name("Partitioned") //
+			.backlogLimit(100) //
+			.queueStrategy(PooledWorkers.QueueStrategy.PARTITIONED) //
+		;
+		Assertions.assertThrows(NullPointerException.class, pwb::start);
+		final Function<Integer, Integer> key = (i) -> (i % keys);
+		pwb.partitionKey(key);
+		Assertions.assertSame(key, pwb.partitionKey());
+
+		final int testCount = 10000;
+		for (int batchSize : new int[] {
+			1, 16
+		}) {
+			processed.clear();
+			threads.clear();
+			// The partitioned queue needs every worker, so this is ignored
+			PooledWorkers<Object, Integer> pw = pwb.batchSize(batchSize).minThreads(2).start();
+			Assertions.assertFalse(pw.isAdaptive());
+			for (int i = 0; i < testCount; i++) {
+				pw.addWorkItem(i);
+			}
+			Assertions.assertTrue(pw.waitForCompletion().isEmpty());
+			Assertions.assertEquals(0, overlaps.get());
+			Assertions.assertEquals(keys, processed.size());
+			processed.forEach((k, l) -> {
+				Assertions.assertEquals(testCount / keys, l.size());
+				for (int i = 0; i < l.size(); i++) {
+					Assertions.assertEquals(k + (i * keys), l.get(i));
+				}
+			});
+			// Each key sticks to a single worker
+			threads.values().forEach((t) -> Assertions.assertEquals(1, t.size()));
+		}
+	}
+
+	@Test
+	public void testPartitionedOrphans() throws Exception {
+		final int keys = 10;
+		final Map<Integer, List<Integer>> processed = new ConcurrentHashMap<>();
+		final AtomicInteger initialized = new AtomicInteger(0);
+		PooledWorkersLogic<Object, Integer, Exception> logic = new PooledWorkersLogic<Object, Integer, Exception>() {
+			@Override
+			public Object initialize(PooledWorkers<Object, Integer> worker) throws Exception {
+				// The first worker never starts, so its lane must be taken over by another
+				if (initialized.getAndIncrement() == 0) { throw new Exception("Failed to initialize"); }
+				return null;
+			}
+
+			@Override
+			public void process(Object state, Integer item) throws Exception {
+				processed.computeIfAbsent(item % keys, (k) -> Collections.synchronizedList(new ArrayList<>()))
+					.add(item);
+			}
+		};
+
+		final int testCount = 1000;
+		for (int batchSize : new int[] {
+			1, 16
+		}) {
+			processed.clear();
+			initialized.set(0);
+			final PooledWorkers<Object, Integer> pw = new PooledWorkers.Builder<Object, Integer, Exception>() //
+				.logic(logic) //
+				.threads(4) //
+				.name("PartitionedOrphans") //
+				.backlogLimit(10) //
+				.batchSize(batchSize) //
+				.queueStrategy(PooledWorkers.QueueStrategy.PARTITIONED) //
+				.partitionKey((i) -> (i % keys)) //
+				.start();
+			// With the small backlog, the orphaned lane would otherwise block the producer forever
+			Assertions.assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+				for (int i = 0; i < testCount; i++) {
+					pw.addWorkItem(i);
+				}
+				Assertions.assertTrue(pw.waitForCompletion().isEmpty());
+			});
+			Assertions.assertEquals(keys, processed.size());
+			processed.forEach((k, l) -> {
+				Assertions.assertEquals(testCount / keys, l.size());
+				for (int i = 0; i < l.size(); i++) {
+					Assertions.assertEquals(k + (i * keys), l.get(i));
+				}
+			});
+		}
+	}
+
+	@Test
+	public void testLimits() throws Exception {
+		final AtomicInteger current = new AtomicInteger(0);
+		final AtomicInteger peak = new AtomicInteger(0);
+		PooledWorkersLogic<Object, Integer, Exception> logic = (o, i) -> {
+			final int c = current.incrementAndGet();
+			peak.accumulateAndGet(c, Math::max);
+			Thread.sleep(1);
+			current.decrementAndGet();
+		};
+
+		PooledWorkers.Builder<Object, Integer, Exception> pwb = new PooledWorkers.Builder<Object, Integer, Exception>() //
+			.logic(logic) //
+			.threads(8) //
+			.name("Limits") //
+			.maxInFlight(2) //
+		;
+		Assertions.assertEquals(2, pwb.maxInFlight());
+		Assertions.assertEquals(0, pwb.rateLimit());
+		Assertions.assertEquals(0, pwb.rateBurst());
+		Assertions.assertThrows(IllegalArgumentException.class, () -> pwb.rateLimit(Double.NaN));
+
+		// The in-flight limit holds, even as it changes
+		final int testCount = 200;
+		PooledWorkers<Object, Integer> pw = pwb.start();
+		Assertions.assertEquals(2, pw.getMaxInFlight());
+		Assertions.assertEquals(0, pw.getRateLimit());
+		for (int i = 0; i < testCount; i++) {
+			pw.addWorkItem(i);
+		}
+		pw.setMaxInFlight(3);
+		Assertions.assertEquals(3, pw.getMaxInFlight());
+		Assertions.assertTrue(pw.waitForCompletion().isEmpty());
+		Assertions.assertTrue(peak.get() <= 3, String.valueOf(peak.get()));
+		Assertions.assertEquals(0, pw.getInFlight());
+		Assertions.assertEquals(testCount, pw.getMetrics().getCompleted());
+
+		// The rate limit holds for single items and batches alike
+		for (int batchSize : new int[] {
+			1, 4
+		}) {
+			pw = pwb.maxInFlight(0).rateLimit(50).rateBurst(1).batchSize(batchSize).start();
+			Assertions.assertEquals(50, pw.getRateLimit());
+			final long start = System.nanoTime();
+			for (int i = 0; i < 21; i++) {
+				pw.addWorkItem(i);
+			}
+			Assertions.assertTrue(pw.waitForCompletion().isEmpty());
+			// The first item is free, and the other 20 come in at 20ms apiece
+			final long elapsed = System.nanoTime() - start;
+			Assertions.assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(300), String.valueOf(elapsed));
+			Assertions.assertEquals(21, pw.getMetrics().getCompleted());
+		}
+
+		// ... and lifting it takes effect right away
+		pw = pwb.rateLimit(1).batchSize(1).start();
+		for (int i = 0; i < 100; i++) {
+			pw.addWorkItem(i);
+		}
+		final long lifted = System.nanoTime();
+		pw.setRateLimit(0);
+		Assertions.assertEquals(0, pw.getRateLimit());
+		Assertions.assertTrue(pw.waitForCompletion().isEmpty());
+		// Otherwise, this would take over a minute and a half
+		Assertions.assertTrue((System.nanoTime() - lifted) < TimeUnit.SECONDS.toNanos(10));
+		Assertions.assertEquals(100, pw.getMetrics().getCompleted());
+
+		// Items held back by the limits aren't lost (or reordered) when aborting
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch gate = new CountDownLatch(1);
+		pw = pwb.rateLimit(0).maxInFlight(1).threads(2).logic((o, i) -> {
+			started.countDown();
+			gate.await();
+		}).start();
+		for (int i = 0; i < 5; i++) {
+			pw.addWorkItem(i);
+		}
+		Assertions.assertTrue(started.await(10, TimeUnit.SECONDS));
+		final PooledWorkers<Object, Integer> aborting = pw;
+		final CompletableFuture<List<Integer>> remaining = CompletableFuture.supplyAsync(aborting::abortExecution);
+		Thread.sleep(100);
+		gate.countDown();
+		Assertions.assertEquals(List.of(1, 2, 3, 4), remaining.get(30, TimeUnit.SECONDS));
+		Assertions.assertEquals(1, pw.getMetrics().getCompleted());
+	}
+
+	@Test
+	public void testSubmit() throws Exception {
+		final Set<Integer> failures = Collections.synchronizedSet(new HashSet<>());
+		PooledWorkersLogic<Object, Integer, Exception> logic = new PooledWorkersLogic<Object, Integer, Exception>() {
+			@Override
+			public void process(Object state, Integer item) throws Exception {
+				if ((item % 10) == 0) { throw new Exception(String.valueOf(item)); }
+			}
+
+			@Override
+			public void handleFailure(Object state, Integer item, Exception raised) {
+				failures.add(item);
+			}
+		};
+		PooledWorkers.Builder<Object, Integer, Exception> pwb = new PooledWorkers.Builder<Object, Integer, Exception>() //
+			.logic(logic) //
+			.threads(4) //
+			.name("Submit") //
+			.backlogLimit(10) //
+		;
+
+		// Each future completes as its item is processed, or fails with its exception (even when
+		// batching, with logic that doesn't process batches itself)
+		final int testCount = 100;
+		PooledWorkers<Object, Integer> pw = null;
+		List<CompletableFuture<Void>> futures = null;
+		for (int batchSize : new int[] {
+			1, 8
+		}) {
+			failures.clear();
+			pw = pwb.batchSize(batchSize).start();
+			futures = new ArrayList<>();
+			for (int i = 1; i <= testCount; i++) {
+				futures.add(pw.submit(i));
+			}
+			Assertions.assertTrue(pw.waitForCompletion().isEmpty());
+			for (int i = 1; i <= testCount; i++) {
+				final CompletableFuture<Void> f = futures.get(i - 1);
+				Assertions.assertTrue(f.isDone());
+				if ((i % 10) == 0) {
+					final ExecutionException e = Assertions.assertThrows(ExecutionException.class, f::get);
+					Assertions.assertEquals(String.valueOf(i), e.getCause().getMessage());
+				} else {
+					Assertions.assertNull(f.get());
+				}
+			}
+			Assertions.assertEquals(testCount / 10, failures.size());
+		}
+
+		// Once done, no more work is accepted
+		final CompletableFuture<Void> late = pw.submit(1);
+		Assertions.assertTrue(late.isCompletedExceptionally());
+		final PooledWorkers<Object, Integer> unused = pwb.start();
+		Assertions.assertThrows(NullPointerException.class, () -> unused.submit(null));
+		Assertions.assertTrue(unused.waitForCompletion().isEmpty());
+
+		// Result-producing logic delivers each item's result, even when batching, and the same
+		// instance may be submitted several times over
+		final PooledWorkersFunction<Object, Integer, String, Exception> function = PooledWorkersFunction
+			.of((o, i) -> String.valueOf(i * 2));
+		pw = pwb.logic(function).batchSize(8).start();
+		final List<CompletableFuture<Integer>> results = new ArrayList<>();
+		for (int i = 1; i <= testCount; i++) {
+			final CompletableFuture<String> f = pw.submit(i);
+			results.add(f.thenApply(Integer::valueOf));
+		}
+		final Integer same = 1000;
+		final List<CompletableFuture<String>> repeats = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			repeats.add(pw.submit(same));
+		}
+		Assertions.assertTrue(pw.waitForCompletion().isEmpty());
+		for (int i = 1; i <= testCount; i++) {
+			Assertions.assertEquals(i * 2, results.get(i - 1).get(10, TimeUnit.SECONDS));
+		}
+		for (CompletableFuture<String> f : repeats) {
+			Assertions.assertEquals("2000", f.get(10, TimeUnit.SECONDS));
+		}
+
+		// Items which are never processed have their futures cancelled
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch gate = new CountDownLatch(1);
+		pw = pwb.logic((o, i) -> {
+			started.countDown();
+			gate.await();
+		}).threads(1).batchSize(1).start();
+		final CompletableFuture<Void> first = pw.submit(1);
+		Assertions.assertTrue(started.await(10, TimeUnit.SECONDS));
+		final CompletableFuture<Void> cleared = pw.submit(2);
+		Assertions.assertEquals(List.of(2), pw.clearWorkItems());
+		Assertions.assertTrue(cleared.isCancelled());
+		futures = new ArrayList<>();
+		for (int i = 3; i <= 5; i++) {
+			futures.add(pw.submit(i));
+		}
+		final PooledWorkers<Object, Integer> aborting = pw;
+		final CompletableFuture<List<Integer>> remaining = CompletableFuture.supplyAsync(aborting::abortExecution);
+		Thread.sleep(100);
+		gate.countDown();
+		Assertions.assertEquals(3, remaining.get(30, TimeUnit.SECONDS).size());
+		Assertions.assertNull(first.get(10, TimeUnit.SECONDS));
+		futures.forEach((f) -> Assertions.assertTrue(f.isCancelled()));
+	}
+
+	@Test
+	public void testExecutor() throws Exception {
+		final AtomicLong data = new AtomicLong(0);
+		final Set<String> threadNames = Collections.synchronizedSet(new HashSet<>());
+		PooledWorkersLogic<Object, Integer, Exception> logic = (o, i) -> {
+			threadNames.add(Thread.currentThread().getName());
+			data.incrementAndGet();
+		};
+
+		final ExecutorService executor = Executors.newFixedThreadPool(4, (r) -> new Thread(r, "provided-executor"));
+		try {
+			PooledWorkers.Builder<Object, Integer, Exception> pwb = new PooledWorkers.Builder<Object, Integer, Exception>() //
+				.logic(logic) //
+				.threads(4) //
+				.executor(executor) //
+			;
+			Assertions.assertSame(executor, pwb.executor());
+			final int testCount = 1000;
+			PooledWorkers<Object, Integer> pw = pwb.start();
+			for (int i = 1; i <= testCount; i++) {
+				pw.addWorkItem(i);
+			}
+			Assertions.assertTrue(pw.waitForCompletion().isEmpty());
+			Assertions.assertEquals(testCount, data.get());
+			Assertions.assertEquals(Collections.singleton("provided-executor"), threadNames);
+
+			// The executor is still ours to use
+			Assertions.assertFalse(executor.isShutdown());
+			Assertions.assertEquals("ok", executor.submit(() -> "ok").get(10, TimeUnit.SECONDS));
+
+			// Aborting only cancels the workers' own tasks
+			pw = pwb.start();
+			for (int i = 1; i <= testCount; i++) {
+				pw.addWorkItem(i);
+			}
+			pw.abortExecution();
+			Assertions.assertFalse(executor.isShutdown());
+			Assertions.assertEquals("ok", executor.submit(() -> "ok").get(10, TimeUnit.SECONDS));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testSmallExecutor() throws Exception {
+		final AtomicLong data = new AtomicLong(0);
+		final PooledWorkersLogic<Object, Integer, Exception> logic = (o, i) -> data.incrementAndGet();
+
+		// A pool which can't ever run all the workers is rejected outright
+		final ExecutorService small = Executors.newFixedThreadPool(2);
+		try {
+			Assertions.assertThrows(IllegalArgumentException.class,
+				() -> new PooledWorkers.Builder<Object, Integer, Exception>() //
+					.logic(logic) //
+					.threads(4) //
+					.executor(small) //
+					.start());
+		} finally {
+			small.shutdownNow();
+		}
+
+		// Other executors may run fewer, in which case the rest start as the others exit
+		final ExecutorService single = Executors.newSingleThreadExecutor();
+		try {
+			final PooledWorkers<Object, Integer> pw = new PooledWorkers.Builder<Object, Integer, Exception>() //
+				.logic(logic) //
+				.threads(3) //
+				.executor(single) //
+				.start();
+			final int testCount = 100;
+			for (int i = 1; i <= testCount; i++) {
+				pw.addWorkItem(i);
+			}
+			final List<Integer> remaining = Assertions.assertTimeoutPreemptively(Duration.ofSeconds(30),
+				() -> pw.waitForCompletion());
+			Assertions.assertTrue(remaining.isEmpty());
+			Assertions.assertEquals(testCount, data.get());
+		} finally {
+			single.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testThreadFactory() throws Exception {
+		final AtomicLong data = new AtomicLong(0);
+		final Set<String> threadNames = Collections.synchronizedSet(new HashSet<>());
+		PooledWorkersLogic<Object, Integer, Exception> logic = (o, i) -> {
+			threadNames.add(Thread.currentThread().getName());
+			data.incrementAndGet();
+		};
+
+		final AtomicLong created = new AtomicLong(0);
+		final ThreadFactory factory = (r) -> new Thread(r, "custom-" + created.incrementAndGet());
+		PooledWorkers.Builder<Object, Integer, Exception> pwb = new PooledWorkers.Builder<Object, Integer, Exception>() //
+			.logic(logic) //
+			.threads(3) //
+			.name("ignored") //
+			.threadFactory(factory) //
+		;
+		Assertions.assertSame(factory, pwb.threadFactory());
+		final int testCount = 1000;
+		PooledWorkers<Object, Integer> pw = pwb.start();
+		for (int i = 1; i <= testCount; i++) {
+			pw.addWorkItem(i);
+		}
+		Assertions.assertTrue(pw.waitForCompletion().isEmpty());
+		Assertions.assertEquals(testCount, data.get());
+		Assertions.assertEquals(3, created.get());
+		threadNames.forEach((n) -> Assertions.assertTrue(n.startsWith("custom-"), n));
+	}
+
+	@Test
+	public void testAdaptiveThreads() throws Exception {
+		final Set<Integer> processed = Collections.synchronizedSet(new HashSet<>());
+		final AtomicInteger active = new AtomicInteger(0);
+		final AtomicInteger maxActive = new AtomicInteger(0);
+		PooledWorkersLogic<Object, Integer, Exception> logic = (o, i) -> {
+			maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+			try {
+				// Sleeping work scales with the number of threads, so the limit should grow
+				Thread.sleep(2);
+				Assertions.assertTrue(processed.add(i));
+			} finally {
+				active.decrementAndGet();
+			}
+		};
+
+		PooledWorkers.Builder<Object, Integer, Exception> pwb = new PooledWorkers.Builder<Object, Integer, Exception>() //
+			.logic(logic) //
+			.threads(8) //
+			.minThreads(2) //
+			.adaptiveInterval(Duration.ofMillis(20)) //
+			.backlogLimit(100) //
+		;
+		Assertions.assertEquals(2, pwb.minThreads());
+		Assertions.assertEquals(Duration.ofMillis(20), pwb.adaptiveInterval());
+		final int testCount = 2000;
+		PooledWorkers<Object, Integer> pw = pwb.start();
+		Assertions.assertTrue(pw.isAdaptive());
+		Assertions.assertEquals(8, pw.getThreadCount());
+		Assertions.assertEquals(2, pw.getWorkerLimit());
+		int highest = 0;
+		for (int i = 1; i <= testCount; i++) {
+			pw.addWorkItem(i);
+			final int limit = pw.getWorkerLimit();
+			Assertions.assertTrue((limit >= 2) && (limit <= 8), String.valueOf(limit));
+			highest = Math.max(highest, limit);
+		}
+		Assertions.assertTrue(pw.waitForCompletion().isEmpty());
+		Assertions.assertEquals(testCount, processed.size());
+		Assertions.assertTrue(highest > 2, String.valueOf(highest));
+		Assertions.assertTrue(maxActive.get() <= 8, String.valueOf(maxActive.get()));
+
+		// Parked workers must not hold up an abort
+		pw = pwb.start();
+		for (int i = 1; i <= 10; i++) {
+			pw.addWorkItem(i);
+		}
+		pw.abortExecution();
+
+		// A minimum at or above the thread count means a fixed thread count
+		pw = pwb.minThreads(8).start();
+		Assertions.assertFalse(pw.isAdaptive());
+		Assertions.assertEquals(8, pw.getWorkerLimit());
+		pw.waitForCompletion();
+		Assertions.assertEquals(0, pwb.minThreads(-1).minThreads());
+		Assertions.assertEquals(Duration.ofSeconds(1), pwb.adaptiveInterval(null).adaptiveInterval());
+		Assertions.assertEquals(Duration.ofSeconds(1), pwb.adaptiveInterval(Duration.ZERO).adaptiveInterval());
+	}
+
+	@Test
+	public void testMetrics() throws Exception {
+		final CountDownLatch gate = new CountDownLatch(1);
+		PooledWorkersLogic<Object, Integer, Exception> logic = (o, i) -> {
+			gate.await();
+			if ((i % 10) == 0) { throw new Exception("Failed " + i); }
+			Thread.sleep(1);
+		};
+
+		PooledWorkers.Builder<Object, Integer, Exception> pwb = new PooledWorkers.Builder<Object, Integer, Exception>() //
+			.logic(logic) //
+			.threads(4) //
+			.name("Metrics Test") //
+			.backlogLimit(10) //
+			.items(Collections.singleton(100)) //
+			.metrics(true) //
+			.jmx(true) //
+		;
+		Assertions.assertTrue(pwb.metrics());
+		Assertions.assertTrue(pwb.jmx());
+		final PooledWorkers<Object, Integer> pw = pwb.start();
+		final ObjectName objectName = pw.getObjectName();
+		Assertions.assertNotNull(objectName);
+		Assertions.assertEquals("PooledWorkers", objectName.getKeyProperty("type"));
+		Assertions.assertEquals(ObjectName.quote("Metrics Test"), objectName.getKeyProperty("name"));
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		Assertions.assertTrue(server.isRegistered(objectName));
+		Assertions.assertEquals(4, server.getAttribute(objectName, "ThreadCount"));
+
+		// Fill up the queue while the workers are held up, so the producer must wait
+		final int testCount = 100;
+		final Thread producer = new Thread(() -> {
+			try {
+				for (int i = 1; i < testCount; i++) {
+					pw.addWorkItem(i);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		producer.start();
+		while (pw.getQueueCapacity() > 0) {
+			Thread.sleep(10);
+		}
+		PooledWorkersMetrics metrics = pw.getMetrics();
+		Assertions.assertEquals(4, metrics.getThreadCount());
+		Assertions.assertEquals(4, metrics.getActiveWorkers());
+		Assertions.assertEquals(4, metrics.getWorkerLimit());
+		Assertions.assertEquals(10, metrics.getQueueSize());
+		Assertions.assertEquals(0, metrics.getCompleted());
+		Assertions.assertEquals(0, metrics.getFailed());
+		Thread.sleep(50);
+		gate.countDown();
+		producer.join();
+		Assertions.assertTrue(pw.waitForCompletion().isEmpty());
+		Assertions.assertFalse(server.isRegistered(objectName));
+		Assertions.assertNull(pw.getObjectName());
+
+		metrics = pw.getMetrics();
+		Assertions.assertEquals(testCount, metrics.getSubmitted());
+		Assertions.assertEquals(90, metrics.getCompleted());
+		Assertions.assertEquals(10, metrics.getFailed());
+		Assertions.assertEquals(0, metrics.getActiveWorkers());
+		Assertions.assertEquals(0, metrics.getQueueSize());
+		Assertions.assertEquals(testCount, metrics.getProcessingTime().getCount());
+		Assertions.assertTrue(metrics.getProcessingTime().getMax() >= TimeUnit.MILLISECONDS.toNanos(40));
+		// Items drained after the shutdown was requested are polled without waiting
+		Assertions.assertTrue(metrics.getWorkerWaitTime().getCount() > 0);
+		Assertions.assertTrue(metrics.getWorkerWaitTime().getCount() <= testCount);
+		// The producer had to wait for the held-up workers at least once
+		Assertions.assertEquals(testCount - 1, metrics.getProducerWaitTime().getCount());
+		Assertions.assertTrue(metrics.getProducerWaitTime().getMax() >= TimeUnit.MILLISECONDS.toNanos(40));
+		Assertions.assertNotNull(metrics.toString());
+
+		// Without metrics, only the counts are kept
+		final PooledWorkers<Object, Integer> plain = pwb.metrics(false).jmx(false).items(null)
+			.logic((o, i) -> {
+			}).start();
+		Assertions.assertNull(plain.getObjectName());
+		for (int i = 1; i <= testCount; i++) {
+			Assertions.assertTrue(plain.addWorkItem(i, Duration.ofSeconds(10)));
+		}
+		Assertions.assertTrue(plain.waitForCompletion().isEmpty());
+		metrics = plain.getMetrics();
+		Assertions.assertEquals(testCount, metrics.getSubmitted());
+		Assertions.assertEquals(testCount, metrics.getCompleted());
+		Assertions.assertEquals(0, metrics.getProcessingTime().getCount());
+		Assertions.assertEquals(0, metrics.getWorkerWaitTime().getCount());
+		Assertions.assertEquals(0, metrics.getProducerWaitTime().getCount());
+	}
+
+	@Test
+	public void testMetricsJmx() throws Exception {
+		final CountDownLatch gate = new CountDownLatch(1);
+		PooledWorkers<Object, Integer> pw = new PooledWorkers.Builder<Object, Integer, Exception>() //
+			.logic((o, i) -> gate.await()) //
+			.threads(2) //
+			.metrics(true) //
+			.jmx(true) //
+			.start();
+		try {
+			for (int i = 1; i <= 10; i++) {
+				pw.addWorkItem(i);
+			}
+			final ObjectName objectName = pw.getObjectName();
+			Assertions.assertNull(objectName.getKeyProperty("name"));
+			final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			Assertions.assertEquals(10L, server.getAttribute(objectName, "Submitted"));
+			Assertions.assertEquals(0L, server.getAttribute(objectName, "Completed"));
+			Assertions.assertEquals(2, server.getAttribute(objectName, "WorkerLimit"));
+			final Object processingTime = server.getAttribute(objectName, "ProcessingTime");
+			Assertions.assertTrue(processingTime instanceof CompositeData);
+			Assertions.assertEquals(0L, CompositeData.class.cast(processingTime).get("count"));
+			Assertions.assertTrue(server.getAttribute(objectName, "ProducerWaitTime") instanceof CompositeData);
+		} finally {
+			gate.countDown();
+			pw.waitForCompletion();
+		}
+	}
+
+	@Test
+	public void testVirtualThreads() throws Exception {
+		final AtomicLong data = new AtomicLong(0);
+		final Set<String> threadNames = Collections.synchronizedSet(new HashSet<>());
+		PooledWorkersLogic<Object, Integer, Exception> logic = (o, i) -> {
+			threadNames.add(Thread.currentThread().getName());
+			Thread.sleep(1);
+			data.incrementAndGet();
+		};
+
+		// Virtual threads may or may not be supported, but the work gets done either way
+		PooledWorkers.Builder<Object, Integer, Exception> pwb = new PooledWorkers.Builder<Object, Integer, Exception>() //
+			.logic(logic) //
+			.threads(100) //
+			.name("Virtual") //
+			.virtualThreads(true) //
+		;
+		Assertions.assertTrue(pwb.virtualThreads());
+		final int testCount = 1000;
+		PooledWorkers<Object, Integer> pw = pwb.start();
+		for (int i = 1; i <= testCount; i++) {
+			pw.addWorkItem(i);
+		}
+		Assertions.assertTrue(pw.waitForCompletion().isEmpty());
+		Assertions.assertEquals(testCount, data.get());
+		threadNames.forEach((n) -> Assertions.assertTrue(n.startsWith("Virtual-"), n));
+	}
 }
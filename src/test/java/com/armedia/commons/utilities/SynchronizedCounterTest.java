@@ -30,6 +30,8 @@ import java.time.Instant;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -341,4 +343,126 @@ public class SynchronizedCounterTest {
 	public void testToString() {
 		new SynchronizedCounter(0).toString();
 	}
+
+	@Test
+	public void testLockFree() {
+		Assertions.assertFalse(new SynchronizedCounter().isLockFree());
+		Assertions.assertFalse(new SynchronizedCounter(0, false).isLockFree());
+
+		SynchronizedCounter c = SynchronizedCounter.lockFree(10);
+		Assertions.assertTrue(c.isLockFree());
+		Assertions.assertEquals(10, c.get());
+		Assertions.assertFalse(c.isChangedSinceCreation());
+		Assertions.assertEquals(c.getCreated(), c.getLastChanged());
+
+		Assertions.assertEquals(10, c.addAndGet(0));
+		Assertions.assertFalse(c.isChangedSinceCreation());
+		Assertions.assertEquals(11, c.incrementAndGet());
+		Assertions.assertTrue(c.isChangedSinceCreation());
+		Assertions.assertFalse(c.getLastChanged().isBefore(c.getCreated()));
+		Assertions.assertEquals(10, c.decrementAndGet());
+		Assertions.assertEquals(15, c.addAndGet(5));
+		Assertions.assertEquals(12, c.subtractAndGet(3));
+		Assertions.assertEquals(12, c.setAndGet(20));
+		Assertions.assertEquals(20, c.get());
+		Assertions.assertFalse(c.setIfMatches((v) -> v < 0, 30));
+		Assertions.assertTrue(c.setIfMatches((v) -> v == 20, 30));
+		Assertions.assertEquals(60, c.recompute((v) -> v * 2));
+		Assertions.assertEquals(60, c.recomputeIfMatches((v) -> v < 0, (v) -> 0));
+		Assertions.assertNotNull(c.toString());
+
+		c = SynchronizedCounter.lockFree();
+		Assertions.assertEquals(0, c.get());
+		Assertions.assertThrows(NullPointerException.class, () -> SynchronizedCounter.lockFree().recompute(null));
+	}
+
+	@Test
+	public void testLockFreeConcurrency() throws Exception {
+		final SynchronizedCounter c = SynchronizedCounter.lockFree();
+		final int threads = 8;
+		final int rounds = 10000;
+		final CyclicBarrier barrier = new CyclicBarrier(threads + 1);
+		final CompletableFuture<?>[] futures = new CompletableFuture<?>[threads];
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		for (int t = 0; t < threads; t++) {
+			futures[t] = CompletableFuture.runAsync(() -> {
+				try {
+					barrier.await();
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+				for (int i = 0; i < rounds; i++) {
+					c.incrementAndGet();
+					c.recompute((v) -> v + 1);
+				}
+			}, executor);
+		}
+
+		// Wait for the count to be reached while the updates are in flight
+		final CompletableFuture<Boolean> waiter = CompletableFuture.supplyAsync(() -> {
+			try {
+				return c.waitUntilValue(threads * rounds * 2L, 30, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		});
+		try {
+			barrier.await();
+			CompletableFuture.allOf(futures).join();
+			Assertions.assertTrue(waiter.get(30, TimeUnit.SECONDS));
+			Assertions.assertEquals(threads * rounds * 2L, c.get());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testLockFreeWaitUntilValue() throws Exception {
+		final SynchronizedCounter c = SynchronizedCounter.lockFree();
+		final CyclicBarrier barrier = new CyclicBarrier(2);
+
+		// Already there
+		Assertions.assertTrue(c.waitUntilValue(0, 10, TimeUnit.MILLISECONDS));
+
+		final long now = System.nanoTime();
+		CompletableFuture<Boolean> f = CompletableFuture.supplyAsync(() -> {
+			try {
+				barrier.await();
+				return c.waitUntilValue(now, 10, TimeUnit.SECONDS);
+			} catch (Exception t) {
+				throw new RuntimeException(t);
+			}
+		});
+		barrier.await();
+		Thread.sleep(100);
+		c.setAndGet(now);
+		Assertions.assertTrue(f.get(10, TimeUnit.SECONDS));
+
+		// The timeout is honored
+		final long start = System.nanoTime();
+		Assertions.assertFalse(c.waitUntilValue(now + 1, 50, TimeUnit.MILLISECONDS));
+		Assertions.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+	}
+
+	@Test
+	public void testLockFreeWaitUntilChanged() throws Exception {
+		final SynchronizedCounter c = SynchronizedCounter.lockFree();
+		final CyclicBarrier barrier = new CyclicBarrier(2);
+
+		CompletableFuture<Long> f = CompletableFuture.supplyAsync(() -> {
+			try {
+				barrier.await();
+				return c.waitUntilChanged();
+			} catch (Exception t) {
+				throw new RuntimeException(t);
+			}
+		});
+		barrier.await();
+		Thread.sleep(100);
+		final long now = System.nanoTime();
+		c.setAndGet(now);
+		Assertions.assertEquals(now, f.get(10, TimeUnit.SECONDS).longValue());
+
+		Assertions.assertThrows(TimeoutException.class, () -> c.waitUntilChanged(50, TimeUnit.MILLISECONDS));
+	}
 }
@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * #%L
+ * Armedia Caliente
+ * %%
+ * Copyright (C) 2013 - 2025 Armedia, LLC
+ * %%
+ * This file is part of the Caliente software.
+ *
+ * If the software was purchased under a paid Caliente license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Caliente is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Caliente is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Caliente. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ *******************************************************************************/
+package com.armedia.commons.utilities.concurrent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntToLongFunction;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class AdaptiveConcurrencyLimitTest {
+
+	private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+	private static final long LATENCY = TimeUnit.MILLISECONDS.toNanos(10);
+
+	@Test
+	public void testConstructor() {
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyLimit(0, 10));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyLimit(5, 4));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyLimit(1, 4, 1, -1, 2));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyLimit(1, 4, 1, 0, 1));
+		Assertions.assertThrows(IllegalArgumentException.class,
+			() -> new AdaptiveConcurrencyLimit(1, 4, 1, Double.NaN, 2));
+
+		AdaptiveConcurrencyLimit acl = new AdaptiveConcurrencyLimit(2, 10);
+		Assertions.assertEquals(2, acl.getMin());
+		Assertions.assertEquals(10, acl.getMax());
+		Assertions.assertEquals(2, acl.getLimit());
+		Assertions.assertEquals(AdaptiveConcurrencyLimit.DEF_TOLERANCE, acl.getTolerance());
+		Assertions.assertEquals(AdaptiveConcurrencyLimit.DEF_LATENCY_LIMIT, acl.getLatencyLimit());
+
+		Assertions.assertEquals(10, new AdaptiveConcurrencyLimit(2, 10, 100).getLimit());
+		Assertions.assertEquals(2, new AdaptiveConcurrencyLimit(2, 10, -1).getLimit());
+		Assertions.assertEquals(5, new AdaptiveConcurrencyLimit(5, 5).getLimit());
+	}
+
+	private int sample(AdaptiveConcurrencyLimit acl, IntToLongFunction throughput, long latency, int backlog) {
+		final long completed = throughput.applyAsLong(acl.getLimit());
+		return acl.update(completed, AdaptiveConcurrencyLimitTest.SECOND, completed * latency, backlog);
+	}
+
+	@Test
+	public void testConvergence() {
+		// Throughput grows linearly up to 8 workers, and stays flat after that
+		final IntToLongFunction throughput = (l) -> 100L * Math.min(l, 8);
+		final AdaptiveConcurrencyLimit acl = new AdaptiveConcurrencyLimit(1, 32);
+		int highest = 0;
+		for (int i = 0; i < 20; i++) {
+			highest = Math.max(highest, sample(acl, throughput, AdaptiveConcurrencyLimitTest.LATENCY, 1000));
+		}
+		Assertions.assertTrue(highest >= 8, String.valueOf(highest));
+		for (int i = 0; i < 20; i++) {
+			final int limit = sample(acl, throughput, AdaptiveConcurrencyLimitTest.LATENCY, 1000);
+			Assertions.assertTrue((limit >= 7) && (limit <= 10), String.valueOf(limit));
+		}
+	}
+
+	@Test
+	public void testBounds() {
+		// Throughput always improves, so we should end up (and stay) at the maximum
+		final IntToLongFunction throughput = (l) -> 100L * l;
+		final AdaptiveConcurrencyLimit acl = new AdaptiveConcurrencyLimit(1, 16);
+		for (int i = 0; i < 100; i++) {
+			final int limit = sample(acl, throughput, AdaptiveConcurrencyLimitTest.LATENCY, 1000);
+			Assertions.assertTrue((limit >= 1) && (limit <= 16), String.valueOf(limit));
+		}
+		int highest = 0;
+		for (int i = 0; i < 10; i++) {
+			highest = Math.max(highest, sample(acl, throughput, AdaptiveConcurrencyLimitTest.LATENCY, 1000));
+		}
+		Assertions.assertEquals(16, highest);
+	}
+
+	@Test
+	public void testOverload() {
+		final IntToLongFunction throughput = (l) -> 100L * l;
+		final AdaptiveConcurrencyLimit acl = new AdaptiveConcurrencyLimit(1, 64, 40);
+		Assertions.assertEquals(41, sample(acl, throughput, AdaptiveConcurrencyLimitTest.LATENCY, 1000));
+
+		// The latency triples, so we back off sharply
+		final int limit = sample(acl, throughput, AdaptiveConcurrencyLimitTest.LATENCY * 3, 1000);
+		Assertions.assertEquals((int) (41 * 0.75), limit);
+
+		// But never below the minimum
+		final AdaptiveConcurrencyLimit low = new AdaptiveConcurrencyLimit(4, 64, 5);
+		sample(low, throughput, AdaptiveConcurrencyLimitTest.LATENCY, 1000);
+		Assertions.assertEquals(4, sample(low, throughput, AdaptiveConcurrencyLimitTest.LATENCY * 10, 1000));
+		Assertions.assertEquals(4, sample(low, throughput, AdaptiveConcurrencyLimitTest.LATENCY * 10, 1000));
+	}
+
+	@Test
+	public void testIdle() {
+		final IntToLongFunction throughput = (l) -> 100L * l;
+		final AdaptiveConcurrencyLimit acl = new AdaptiveConcurrencyLimit(2, 16, 10);
+
+		// Without a backlog, we shrink one step at a time, down to the minimum
+		for (int i = 9; i >= 2; i--) {
+			Assertions.assertEquals(i, sample(acl, throughput, AdaptiveConcurrencyLimitTest.LATENCY, 0));
+		}
+		Assertions.assertEquals(2, sample(acl, throughput, AdaptiveConcurrencyLimitTest.LATENCY, 0));
+
+		// Nothing done, and nothing to do
+		Assertions.assertEquals(2, acl.update(0, AdaptiveConcurrencyLimitTest.SECOND, 0, 0));
+
+		// Nothing done, but there's work pending, so the workers are stalled: hold
+		final AdaptiveConcurrencyLimit stalled = new AdaptiveConcurrencyLimit(2, 16, 10);
+		for (int i = 0; i < 5; i++) {
+			Assertions.assertEquals(10, stalled.update(0, AdaptiveConcurrencyLimitTest.SECOND, 0, 1000));
+		}
+	}
+}
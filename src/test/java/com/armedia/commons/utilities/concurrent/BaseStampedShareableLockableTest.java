@@ -0,0 +1,311 @@
+/*******************************************************************************
+ * #%L
+ * Armedia Caliente
+ * %%
+ * Copyright (C) 2013 - 2025 Armedia, LLC
+ * %%
+ * This file is part of the Caliente software.
+ *
+ * If the software was purchased under a paid Caliente license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Caliente is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Caliente is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Caliente. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ *******************************************************************************/
+package com.armedia.commons.utilities.concurrent;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.armedia.commons.utilities.function.CheckedBiFunction;
+
+public class BaseStampedShareableLockableTest {
+
+	private static final class Pair extends BaseStampedShareableLockable {
+		// Deliberately not volatile, to exercise the optimistic validation
+		private long a = 0;
+		private long b = 0;
+		private Object lazy = null;
+
+		private void increment() {
+			mutexLocked(() -> {
+				this.a++;
+				this.b++;
+			});
+		}
+
+		private long read() {
+			return shareLocked(() -> {
+				final long a = this.a;
+				final long b = this.b;
+				if (a != b) { throw new IllegalStateException(String.format("Inconsistent read: %d != %d", a, b)); }
+				return a;
+			});
+		}
+	}
+
+	@Test
+	public void testConstructor() {
+		Assertions.assertThrows(NullPointerException.class, () -> new BaseStampedShareableLockable(null));
+		final StampedLock lock = new StampedLock();
+		BaseStampedShareableLockable l = new BaseStampedShareableLockable(lock);
+		Assertions.assertSame(lock, l.getStampedLock());
+		Assertions.assertNotNull(l.getShareableLock());
+		Assertions.assertNotNull(l.getMutexLock());
+		Assertions.assertNotNull(l.getSharedLock());
+		Assertions.assertNotSame(new BaseStampedShareableLockable().getStampedLock(), lock);
+	}
+
+	@Test
+	public void testLocking() throws Exception {
+		final BaseStampedShareableLockable l = new BaseStampedShareableLockable();
+		final StampedLock lock = l.getStampedLock();
+
+		Assertions.assertEquals("abc", l.shareLocked(() -> "abc"));
+		Assertions.assertFalse(lock.isReadLocked());
+		Assertions.assertFalse(lock.isWriteLocked());
+
+		try (SharedAutoLock s = l.sharedAutoLock()) {
+			Assertions.assertTrue(lock.isReadLocked());
+			try (MutexAutoLock m = s.upgrade()) {
+				Assertions.assertTrue(lock.isWriteLocked());
+				Assertions.assertThrows(UnsupportedOperationException.class, m::newCondition);
+			}
+			Assertions.assertTrue(lock.isReadLocked());
+		}
+		Assertions.assertFalse(lock.isReadLocked());
+		Assertions.assertFalse(lock.isWriteLocked());
+
+		Assertions.assertEquals("def", l.mutexLocked(() -> {
+			Assertions.assertTrue(lock.isWriteLocked());
+			return "def";
+		}));
+		Assertions.assertFalse(lock.isWriteLocked());
+
+		// Exceptions must be propagated, and all locks released
+		Assertions.assertThrows(IOException.class, () -> l.shareLocked(() -> {
+			throw new IOException();
+		}));
+		Assertions.assertThrows(IllegalStateException.class, () -> l.shareLocked(() -> {
+			throw new IllegalStateException();
+		}));
+		Assertions.assertThrows(IOException.class, () -> l.shareLockedUpgradable(() -> {
+			throw new IOException();
+		}, (e) -> true, (e, c) -> e));
+		final CheckedBiFunction<Object, Supplier<Condition>, Object, IOException> failer = (e, c) -> {
+			throw new IOException();
+		};
+		Assertions.assertThrows(IOException.class, () -> l.shareLockedUpgradable(() -> null, (e) -> true, failer));
+		Assertions.assertFalse(lock.isReadLocked());
+		Assertions.assertFalse(lock.isWriteLocked());
+
+		// If a write is in progress, the optimistic read fails and we must block for the read lock
+		final CyclicBarrier barrier = new CyclicBarrier(2);
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			final long stamp = lock.writeLock();
+			final AtomicBoolean written = new AtomicBoolean(false);
+			Future<Boolean> f = executor.submit(() -> {
+				barrier.await();
+				return l.shareLocked(written::get);
+			});
+			barrier.await();
+			Thread.sleep(100);
+			Assertions.assertFalse(f.isDone());
+			written.set(true);
+			lock.unlockWrite(stamp);
+			Assertions.assertTrue(f.get(10, TimeUnit.SECONDS));
+		} finally {
+			executor.shutdownNow();
+			executor.awaitTermination(1, TimeUnit.MINUTES);
+		}
+	}
+
+	@Test
+	public void testReadReentrancy() throws Exception {
+		final BaseStampedShareableLockable l = new BaseStampedShareableLockable();
+		final StampedLock lock = l.getStampedLock();
+		final ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			final CyclicBarrier barrier = new CyclicBarrier(2);
+			final AtomicBoolean written = new AtomicBoolean(false);
+			final Future<?> reader = executor.submit(() -> {
+				try (SharedAutoLock s = l.sharedAutoLock()) {
+					barrier.await();
+					// Give the writer time to queue up behind us
+					Thread.sleep(100);
+					Assertions.assertFalse(written.get());
+
+					// Re-entering the read lock mustn't wait for the queued writer
+					try (SharedAutoLock s2 = l.sharedAutoLock()) {
+						Assertions.assertEquals("abc", l.shareLocked(() -> "abc"));
+						final CheckedBiFunction<String, Supplier<Condition>, String, RuntimeException> writer;
+						writer = (e, c) -> {
+							throw new AssertionError("Should not have attempted to write");
+						};
+						Assertions.assertEquals("def", l.shareLockedUpgradable(() -> "def", (e) -> false, writer));
+					}
+					Assertions.assertTrue(lock.isReadLocked());
+
+					// Upgrading while holding the read lock must fail, rather than hang
+					final LockUpgradeDeadlockException e = Assertions.assertThrows(LockUpgradeDeadlockException.class,
+						() -> l.mutexLocked(() -> null));
+					Assertions.assertSame(l, e.getTarget());
+					Assertions.assertEquals(1, e.getReadHoldCount());
+					Assertions.assertThrows(LockUpgradeDeadlockException.class,
+						() -> l.shareLockedUpgradable(() -> null, (v) -> true, (v, c) -> v));
+					Assertions.assertFalse(l.getMutexLock().tryLock());
+					Assertions.assertFalse(l.getMutexLock().tryLock(10, TimeUnit.MILLISECONDS));
+					Assertions.assertFalse(written.get());
+				}
+				return null;
+			});
+			barrier.await();
+			final Future<?> writer = executor.submit(() -> l.mutexLocked(() -> written.set(true)));
+			reader.get(10, TimeUnit.SECONDS);
+			writer.get(10, TimeUnit.SECONDS);
+			Assertions.assertTrue(written.get());
+			Assertions.assertFalse(lock.isReadLocked());
+			Assertions.assertFalse(lock.isWriteLocked());
+			Assertions.assertThrows(IllegalMonitorStateException.class, () -> l.getSharedLock().unlock());
+		} finally {
+			executor.shutdownNow();
+			executor.awaitTermination(1, TimeUnit.MINUTES);
+		}
+	}
+
+	@Test
+	public void testPessimisticUpgrade() throws Exception {
+		final BaseStampedShareableLockable l = new BaseStampedShareableLockable();
+		final StampedLock lock = l.getStampedLock();
+		// The nested write invalidates the optimistic read, which forces the pessimistic one, and
+		// upgrading from within that must fail rather than hang
+		Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+			Assertions.assertThrows(LockUpgradeDeadlockException.class,
+				() -> l.shareLocked(() -> l.mutexLocked(() -> "abc")));
+			Assertions.assertThrows(LockUpgradeDeadlockException.class,
+				() -> l.shareLockedUpgradable(() -> l.mutexLocked(() -> "abc"), (e) -> false, (e, c) -> e));
+		});
+		Assertions.assertFalse(lock.isReadLocked());
+		Assertions.assertFalse(lock.isWriteLocked());
+		Assertions.assertEquals("def", l.mutexLocked(() -> "def"));
+	}
+
+	@Test
+	public void testUpgradable() throws Exception {
+		final BaseStampedShareableLockable l = new BaseStampedShareableLockable();
+		final StampedLock lock = l.getStampedLock();
+		final AtomicInteger value = new AtomicInteger(0);
+
+		// No write
+		Assertions.assertEquals(Integer.valueOf(0), l.shareLockedUpgradable(value::get, (v) -> v > 0, (v, c) -> {
+			Assertions.fail("The write block should not have been invoked");
+			return v;
+		}));
+
+		// Write, with the write lock held
+		Assertions.assertEquals(Integer.valueOf(1), l.shareLockedUpgradable(value::get, (v) -> v == 0, (v, c) -> {
+			Assertions.assertTrue(lock.isWriteLocked());
+			Assertions.assertThrows(UnsupportedOperationException.class, c::get);
+			return value.incrementAndGet();
+		}));
+		Assertions.assertFalse(lock.isWriteLocked());
+		Assertions.assertFalse(lock.isReadLocked());
+
+		// Concurrent readers force the pessimistic path
+		final CyclicBarrier barrier = new CyclicBarrier(2);
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<?> f = executor.submit(() -> {
+				final long readStamp = lock.readLock();
+				try {
+					barrier.await();
+					Thread.sleep(100);
+				} finally {
+					lock.unlockRead(readStamp);
+				}
+				return null;
+			});
+			barrier.await();
+			Assertions.assertEquals(Integer.valueOf(2), l.shareLockedUpgradable(value::get, (v) -> v == 1, (v, c) -> {
+				Assertions.assertTrue(lock.isWriteLocked());
+				return value.incrementAndGet();
+			}));
+			f.get();
+		} finally {
+			executor.shutdownNow();
+			executor.awaitTermination(1, TimeUnit.MINUTES);
+		}
+		Assertions.assertFalse(lock.isWriteLocked());
+		Assertions.assertFalse(lock.isReadLocked());
+	}
+
+	@Test
+	public void testConcurrency() throws Exception {
+		final Pair p = new Pair();
+		final int threads = 8;
+		final int rounds = 20000;
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			final List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				final boolean writer = ((t % 4) == 0);
+				futures.add(executor.submit(() -> {
+					long last = 0;
+					for (int i = 0; i < rounds; i++) {
+						if (writer) {
+							p.increment();
+						} else {
+							final long v = p.read();
+							Assertions.assertTrue(v >= last);
+							last = v;
+						}
+						// Everyone races to initialize the lazy value, but only one must win
+						final Object o = new Object();
+						p.shareLockedUpgradable(() -> p.lazy, (v) -> v == null, (v, c) -> {
+							p.lazy = o;
+							return o;
+						});
+					}
+					return null;
+				}));
+			}
+			for (Future<?> f : futures) {
+				f.get();
+			}
+			final long writers = (threads + 3) / 4;
+			Assertions.assertEquals(writers * rounds, p.read());
+			Assertions.assertNotNull(p.lazy);
+		} finally {
+			executor.shutdownNow();
+			executor.awaitTermination(1, TimeUnit.MINUTES);
+		}
+	}
+}
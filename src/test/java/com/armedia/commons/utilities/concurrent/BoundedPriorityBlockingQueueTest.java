@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * #%L
+ * Armedia Caliente
+ * %%
+ * Copyright (C) 2013 - 2025 Armedia, LLC
+ * %%
+ * This file is part of the Caliente software.
+ *
+ * If the software was purchased under a paid Caliente license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Caliente is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Caliente is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Caliente. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ *******************************************************************************/
+package com.armedia.commons.utilities.concurrent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class BoundedPriorityBlockingQueueTest {
+
+	@Test
+	public void testConstructor() {
+		BoundedPriorityBlockingQueue<Integer> q = new BoundedPriorityBlockingQueue<>();
+		Assertions.assertNull(q.comparator());
+		Assertions.assertEquals(Integer.MAX_VALUE, q.remainingCapacity());
+		Assertions.assertTrue(q.isEmpty());
+		Assertions.assertEquals(0, q.size());
+		Assertions.assertNull(q.peek());
+		Assertions.assertNull(q.poll());
+
+		final Comparator<Integer> c = Comparator.reverseOrder();
+		q = new BoundedPriorityBlockingQueue<>(c);
+		Assertions.assertSame(c, q.comparator());
+		Assertions.assertEquals(Integer.MAX_VALUE, q.remainingCapacity());
+
+		q = new BoundedPriorityBlockingQueue<>(c, 10);
+		Assertions.assertEquals(10, q.remainingCapacity());
+		q = new BoundedPriorityBlockingQueue<>(c, -1);
+		Assertions.assertEquals(Integer.MAX_VALUE, q.remainingCapacity());
+	}
+
+	@Test
+	public void testOrdering() throws Exception {
+		final BoundedPriorityBlockingQueue<Integer> q = new BoundedPriorityBlockingQueue<>();
+		Assertions.assertThrows(NullPointerException.class, () -> q.offer(null));
+		Assertions.assertThrows(NullPointerException.class, () -> q.put(null));
+		Assertions.assertThrows(NullPointerException.class, () -> q.offer(null, 1, TimeUnit.SECONDS));
+
+		final List<Integer> values = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			values.add(i);
+		}
+		Collections.shuffle(values);
+		for (Integer i : values) {
+			q.put(i);
+		}
+		Assertions.assertEquals(100, q.size());
+		Assertions.assertEquals(0, q.peek());
+		for (int i = 0; i < 100; i++) {
+			Assertions.assertEquals(i, q.take());
+		}
+		Assertions.assertNull(q.poll(10, TimeUnit.MILLISECONDS));
+
+		// Equal elements come out in the order they went in
+		final BoundedPriorityBlockingQueue<String> s = new BoundedPriorityBlockingQueue<>(
+			Comparator.comparingInt(String::length));
+		for (String str : Arrays.asList("ccc", "a1", "b", "a2", "dddd", "a3", "c")) {
+			Assertions.assertTrue(s.offer(str));
+		}
+		final List<String> out = new ArrayList<>();
+		Assertions.assertEquals(2, s.drainTo(out, 2));
+		Assertions.assertEquals(Arrays.asList("b", "c"), out);
+		out.clear();
+		Assertions.assertEquals(5, s.drainTo(out));
+		Assertions.assertEquals(Arrays.asList("a1", "a2", "a3", "ccc", "dddd"), out);
+		Assertions.assertEquals(0, s.drainTo(out));
+		Assertions.assertEquals(0, s.drainTo(out, 0));
+		Assertions.assertThrows(NullPointerException.class, () -> s.drainTo(null));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> s.drainTo(s));
+
+		// Elements which can't be ordered are rejected up front
+		final BoundedPriorityBlockingQueue<Object> o = new BoundedPriorityBlockingQueue<>();
+		Assertions.assertThrows(ClassCastException.class, () -> o.offer(new Object()));
+		Assertions.assertTrue(o.isEmpty());
+	}
+
+	@Test
+	public void testCapacity() throws Exception {
+		final BoundedPriorityBlockingQueue<Integer> q = new BoundedPriorityBlockingQueue<>(null, 3);
+		Assertions.assertTrue(q.offer(3));
+		Assertions.assertTrue(q.offer(2));
+		q.put(1);
+		Assertions.assertEquals(0, q.remainingCapacity());
+		Assertions.assertFalse(q.offer(0));
+		Assertions.assertFalse(q.offer(0, 10, TimeUnit.MILLISECONDS));
+		Assertions.assertThrows(IllegalStateException.class, () -> q.add(0));
+
+		// A blocked producer gets through once there's room
+		final CompletableFuture<Void> producer = CompletableFuture.runAsync(() -> {
+			try {
+				q.put(0);
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		});
+		Thread.sleep(50);
+		Assertions.assertFalse(producer.isDone());
+		Assertions.assertEquals(1, q.take());
+		producer.get(10, TimeUnit.SECONDS);
+		Assertions.assertEquals(Arrays.asList(0, 2, 3), Arrays.asList(q.take(), q.take(), q.take()));
+		Assertions.assertEquals(3, q.remainingCapacity());
+
+		// Clearing makes room too
+		q.put(1);
+		q.put(2);
+		q.put(3);
+		q.clear();
+		Assertions.assertTrue(q.isEmpty());
+		Assertions.assertTrue(q.offer(1, 10, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void testRemove() throws Exception {
+		final BoundedPriorityBlockingQueue<Integer> q = new BoundedPriorityBlockingQueue<>(null, 10);
+		for (int i = 1; i <= 5; i++) {
+			q.put(i);
+		}
+		Assertions.assertTrue(q.contains(3));
+		Assertions.assertFalse(q.contains(6));
+		Assertions.assertFalse(q.contains(null));
+		Assertions.assertTrue(q.remove(3));
+		Assertions.assertFalse(q.remove(3));
+		Assertions.assertFalse(q.remove(null));
+		Assertions.assertFalse(q.contains(3));
+		Assertions.assertEquals(4, q.size());
+
+		final List<Integer> seen = new ArrayList<>();
+		final Iterator<Integer> it = q.iterator();
+		Assertions.assertThrows(IllegalStateException.class, it::remove);
+		while (it.hasNext()) {
+			final Integer i = it.next();
+			seen.add(i);
+			if ((i % 2) == 0) {
+				it.remove();
+			}
+		}
+		Collections.sort(seen);
+		Assertions.assertEquals(Arrays.asList(1, 2, 4, 5), seen);
+		Assertions.assertEquals(Arrays.asList(1, 5), Arrays.asList(q.poll(), q.poll()));
+		Assertions.assertTrue(q.isEmpty());
+	}
+}
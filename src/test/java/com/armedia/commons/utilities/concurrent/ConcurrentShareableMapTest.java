@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * #%L
+ * Armedia Caliente
+ * %%
+ * Copyright (C) 2013 - 2025 Armedia, LLC
+ * %%
+ * This file is part of the Caliente software.
+ *
+ * If the software was purchased under a paid Caliente license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Caliente is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Caliente is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Caliente. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ *******************************************************************************/
+package com.armedia.commons.utilities.concurrent;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ConcurrentShareableMapTest {
+
+	@Test
+	public void testConstructors() {
+		final ReadWriteLock l = new ReentrantReadWriteLock();
+		final ShareableLockable s = new BaseShareableLockable();
+		Assertions.assertSame(l, new ConcurrentShareableMap<>(l).getShareableLock());
+		Assertions.assertSame(s.getShareableLock(), new ConcurrentShareableMap<>(s).getShareableLock());
+		Assertions.assertNotNull(new ConcurrentShareableMap<>().getShareableLock());
+		Assertions.assertTrue(new ConcurrentShareableMap<>(16).isEmpty());
+
+		final Map<String, Integer> m = new HashMap<>();
+		m.put("a", 1);
+		m.put("b", 2);
+		Assertions.assertEquals(m, new ConcurrentShareableMap<>(m));
+		final Map<String, Integer> nullMap = null;
+		Assertions.assertThrows(NullPointerException.class, () -> new ConcurrentShareableMap<>(nullMap));
+	}
+
+	@Test
+	public void testOperations() {
+		final ConcurrentShareableMap<String, Integer> map = new ConcurrentShareableMap<>();
+		Assertions.assertNull(map.put("a", 1));
+		Assertions.assertEquals(1, map.put("a", 2));
+		Assertions.assertEquals(2, map.get("a"));
+		Assertions.assertEquals(9, map.getOrDefault("z", 9));
+		Assertions.assertTrue(map.containsKey("a"));
+		Assertions.assertTrue(map.containsValue(2));
+		Assertions.assertEquals(2, map.putIfAbsent("a", 3));
+		Assertions.assertNull(map.putIfAbsent("b", 3));
+		Assertions.assertTrue(map.replace("b", 3, 4));
+		Assertions.assertFalse(map.replace("b", 3, 5));
+		Assertions.assertEquals(4, map.replace("b", 6));
+		Assertions.assertEquals(10, map.computeIfAbsent("c", (k) -> 10));
+		Assertions.assertEquals(10, map.computeIfAbsent("c", (k) -> {
+			throw new AssertionError("Should not be invoked for an existing key");
+		}));
+		Assertions.assertEquals(11, map.computeIfPresent("c", (k, v) -> v + 1));
+		Assertions.assertNull(map.computeIfPresent("d", (k, v) -> 1));
+		Assertions.assertEquals(1, map.compute("d", (k, v) -> (v == null ? 1 : v + 1)));
+		Assertions.assertNull(map.compute("d", (k, v) -> null));
+		Assertions.assertEquals(5, map.merge("e", 5, Integer::sum));
+		Assertions.assertEquals(10, map.merge("e", 5, Integer::sum));
+		Assertions.assertFalse(map.remove("e", 5));
+		Assertions.assertTrue(map.remove("e", 10));
+		Assertions.assertEquals(6, map.remove("b"));
+		Assertions.assertEquals(2, map.size());
+		Assertions.assertEquals(2, map.keySet().size());
+		Assertions.assertEquals(2, map.values().size());
+		Assertions.assertEquals(2, map.entrySet().size());
+
+		final Map<String, Integer> snapshot = map.snapshot();
+		Assertions.assertEquals(map, snapshot);
+		Assertions.assertThrows(UnsupportedOperationException.class, () -> snapshot.put("x", 1));
+		map.put("x", 1);
+		Assertions.assertFalse(snapshot.containsKey("x"));
+
+		map.replaceAll((k, v) -> v * 100);
+		Assertions.assertEquals(200, map.get("a"));
+		map.clear();
+		Assertions.assertTrue(map.isEmpty());
+
+		Assertions.assertThrows(NullPointerException.class, () -> map.put(null, 1));
+		Assertions.assertThrows(NullPointerException.class, () -> map.put("a", null));
+		Assertions.assertThrows(NullPointerException.class, () -> map.computeIfAbsent("a", null));
+		Assertions.assertThrows(NullPointerException.class, () -> map.merge("a", null, Integer::sum));
+	}
+
+	@Test
+	public void testConcurrentWriters() throws Exception {
+		final ConcurrentShareableMap<Integer, Integer> map = new ConcurrentShareableMap<>();
+		final int threads = 8;
+		final int keys = 100;
+		final int rounds = 1000;
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			final CountDownLatch start = new CountDownLatch(1);
+			final List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				futures.add(executor.submit(() -> {
+					start.await();
+					for (int i = 0; i < rounds; i++) {
+						map.merge(i % keys, 1, Integer::sum);
+					}
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> f : futures) {
+				f.get(30, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		Assertions.assertEquals(keys, map.size());
+		final int expected = (threads * rounds) / keys;
+		map.forEach((k, v) -> Assertions.assertEquals(expected, v, String.valueOf(k)));
+	}
+
+	@Test
+	public void testMutexExcludesWriters() throws Exception {
+		final ConcurrentShareableMap<String, Integer> map = new ConcurrentShareableMap<>();
+		final AtomicInteger written = new AtomicInteger(0);
+		final CountDownLatch started = new CountDownLatch(1);
+		final Thread writer = new Thread(() -> {
+			started.countDown();
+			map.put("a", 1);
+			written.incrementAndGet();
+		});
+		try (MutexAutoLock lock = map.mutexAutoLock()) {
+			writer.start();
+			started.await();
+			writer.join(200);
+			// The writer can't get in while we hold the mutex...
+			Assertions.assertTrue(writer.isAlive());
+			Assertions.assertEquals(0, written.get());
+			Assertions.assertFalse(map.containsKey("a"));
+		}
+		// ... but goes right ahead once we let go of it
+		writer.join(10000);
+		Assertions.assertFalse(writer.isAlive());
+		Assertions.assertEquals(1, written.get());
+		Assertions.assertEquals(1, map.get("a"));
+
+		// Compound operations through the upgradable locks are still atomic
+		final Integer result = map.shareLockedUpgradable(() -> map.get("b"), (v) -> v == null, (v) -> {
+			map.put("b", 2);
+			return 2;
+		});
+		Assertions.assertEquals(2, result);
+		Assertions.assertEquals(2, map.get("b"));
+	}
+}
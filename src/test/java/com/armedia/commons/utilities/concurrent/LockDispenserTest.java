@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * #%L
+ * Armedia Caliente
+ * %%
+ * Copyright (C) 2013 - 2025 Armedia, LLC
+ * %%
+ * This file is part of the Caliente software.
+ *
+ * If the software was purchased under a paid Caliente license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Caliente is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Caliente is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Caliente. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ *******************************************************************************/
+package com.armedia.commons.utilities.concurrent;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class LockDispenserTest {
+
+	@Test
+	public void testConstructors() {
+		Assertions.assertThrows(NullPointerException.class, () -> new LockDispenser<String, Object>(null));
+		Assertions.assertThrows(NullPointerException.class,
+			() -> new LockDispenser<String, Object>((k) -> new Object(), null));
+		Assertions.assertThrows(NullPointerException.class, () -> LockDispenser.reclaiming(null));
+		Assertions.assertThrows(NullPointerException.class, () -> LockDispenser.striped(1, null));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> LockDispenser.striped(0, Object::new));
+		Assertions.assertThrows(IllegalArgumentException.class,
+			() -> LockDispenser.striped((1 << 30) + 1, Object::new));
+		Assertions.assertThrows(RuntimeException.class, () -> LockDispenser.striped(4, () -> null));
+
+		Assertions.assertThrows(RuntimeException.class,
+			() -> new LockDispenser<String, Object>((k) -> null).getLock("a"));
+		Assertions.assertThrows(RuntimeException.class,
+			() -> LockDispenser.<String, Object> reclaiming((k) -> null).getLock("a"));
+		Assertions.assertThrows(NullPointerException.class, () -> LockDispenser.reentrantLock().getLock(null));
+		Assertions.assertThrows(NullPointerException.class,
+			() -> LockDispenser.reclaiming((k) -> new Object()).getLock(null));
+		Assertions.assertThrows(NullPointerException.class,
+			() -> LockDispenser.striped(4, Object::new).getLock(null));
+	}
+
+	@Test
+	public void testDefault() {
+		LockDispenser<String, Object> d = new LockDispenser<>((k) -> new Object(), SoftReference::new);
+		Object a = d.getLock("a");
+		Assertions.assertNotNull(a);
+		Assertions.assertSame(a, d.getLock("a"));
+		Assertions.assertNotSame(a, d.getLock("b"));
+		Assertions.assertEquals(2, d.size());
+	}
+
+	@Test
+	public void testReclaiming() throws Exception {
+		final AtomicInteger created = new AtomicInteger(0);
+		final LockDispenser<Integer, ReentrantLock> d = LockDispenser.reclaiming((k) -> {
+			created.incrementAndGet();
+			return new ReentrantLock();
+		});
+
+		// Keep strong references to the locks, so they stay put
+		final List<ReentrantLock> held = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			held.add(d.getLock(i));
+		}
+		Assertions.assertEquals(100, created.get());
+		for (int i = 0; i < 100; i++) {
+			Assertions.assertSame(held.get(i), d.getLock(i));
+		}
+		Assertions.assertEquals(100, created.get());
+		Assertions.assertEquals(100, d.size());
+
+		// Release the locks, and wait for them to be collected and purged
+		held.clear();
+		for (int i = 0; (i < 100) && (d.size() > 0); i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		Assertions.assertEquals(0, d.size());
+
+		// New requests must yield new locks
+		ReentrantLock l = d.getLock(0);
+		Assertions.assertNotNull(l);
+		Assertions.assertSame(l, d.getLock(0));
+		Assertions.assertEquals(1, d.size());
+	}
+
+	@Test
+	public void testReclaimingConcurrency() throws Exception {
+		final LockDispenser<Integer, Object> d = LockDispenser.reclaiming((k) -> new Object());
+		final int threads = 8;
+		final int keys = 100;
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			final List<Future<Object[]>> futures = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				futures.add(executor.submit(() -> {
+					Object[] ret = new Object[keys];
+					for (int i = 0; i < keys; i++) {
+						ret[i] = d.getLock(i);
+					}
+					return ret;
+				}));
+			}
+			final List<Object[]> results = new ArrayList<>();
+			for (Future<Object[]> f : futures) {
+				results.add(f.get());
+			}
+			// Every thread must have gotten the exact same locks
+			for (Object[] r : results) {
+				for (int i = 0; i < keys; i++) {
+					Assertions.assertSame(results.get(0)[i], r[i]);
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+			executor.awaitTermination(1, TimeUnit.MINUTES);
+		}
+	}
+
+	@Test
+	public void testStriped() {
+		final AtomicInteger created = new AtomicInteger(0);
+		final LockDispenser<String, Object> d = LockDispenser.striped(10, () -> {
+			created.incrementAndGet();
+			return new Object();
+		});
+		// Rounded up to the next power of two, and created eagerly
+		Assertions.assertEquals(16, d.size());
+		Assertions.assertEquals(16, created.get());
+
+		final Map<Object, Integer> counts = new IdentityHashMap<>();
+		for (int i = 0; i < 10000; i++) {
+			final String key = String.valueOf(i);
+			final Object lock = d.getLock(key);
+			Assertions.assertSame(lock, d.getLock(key));
+			counts.merge(lock, 1, Integer::sum);
+		}
+		Assertions.assertEquals(16, created.get());
+		Assertions.assertEquals(16, counts.size());
+		counts.values().forEach((c) -> Assertions.assertTrue(c > 100, counts.toString()));
+
+		Assertions.assertEquals(1, LockDispenser.striped(1, Object::new).size());
+		Assertions.assertEquals(2, LockDispenser.striped(2, Object::new).size());
+		Assertions.assertEquals(4, LockDispenser.striped(3, Object::new).size());
+		Assertions.assertEquals(64, LockDispenser.striped(64, Object::new).size());
+	}
+}
@@ -0,0 +1,352 @@
+/*******************************************************************************
+ * #%L
+ * Armedia Caliente
+ * %%
+ * Copyright (C) 2013 - 2025 Armedia, LLC
+ * %%
+ * This file is part of the Caliente software.
+ *
+ * If the software was purchased under a paid Caliente license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Caliente is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Caliente is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Caliente. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ *******************************************************************************/
+package com.armedia.commons.utilities.concurrent;
+
+import java.lang.management.ManagementFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class LockProfilerTest {
+
+	private boolean enabled = false;
+
+	@BeforeEach
+	public void beforeEach() {
+		this.enabled = LockProfiler.isEnabled();
+		LockProfiler.setEnabled(true);
+	}
+
+	@AfterEach
+	public void afterEach() {
+		LockProfiler.setEnabled(this.enabled);
+	}
+
+	private static void awaitQueueLength(TraceableReentrantLock lock, int length) throws InterruptedException {
+		final long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while ((lock.getQueueLength() < length) && (System.nanoTime() < end)) {
+			Thread.sleep(1);
+		}
+		Assertions.assertEquals(length, lock.getQueueLength());
+	}
+
+	private static boolean hasCallSite(LockProfile.Snapshot snapshot) {
+		for (String callSite : snapshot.getCallSites().keySet()) {
+			if (callSite.startsWith(LockProfilerTest.class.getName())) { return true; }
+		}
+		return false;
+	}
+
+	@Test
+	public void testDisabled() {
+		LockProfiler.setEnabled(false);
+		final TraceableReentrantLock lock = new TraceableReentrantLock("profiler-disabled");
+		lock.lock();
+		lock.unlock();
+		Assertions.assertNull(LockProfiler.getProfile(lock.getName()));
+	}
+
+	@Test
+	public void testReentrantLock() throws Exception {
+		final TraceableReentrantLock lock = new TraceableReentrantLock("profiler-reentrant");
+		lock.lock();
+		lock.lock();
+		Thread.sleep(5);
+		lock.unlock();
+		lock.unlock();
+		final LockProfile profile = LockProfiler.getProfile(lock.getName());
+		Assertions.assertNotNull(profile);
+		LockProfile.Snapshot s = profile.snapshot();
+		Assertions.assertEquals(lock.getName(), s.getName());
+		Assertions.assertEquals(2, s.getAcquisitions());
+		Assertions.assertEquals(0, s.getContended());
+		Assertions.assertEquals(0, s.getFailed());
+		Assertions.assertEquals(2, s.getWaitTime().getCount());
+		// Only the outermost hold counts
+		Assertions.assertEquals(1, s.getHoldTime().getCount());
+		Assertions.assertTrue(s.getHoldTime().getMax() >= TimeUnit.MILLISECONDS.toNanos(5));
+		Assertions.assertTrue(s.getCallSites().isEmpty());
+
+		// Contend for it from other threads
+		final int waiters = 2;
+		final CountDownLatch done = new CountDownLatch(waiters);
+		lock.lock();
+		try {
+			final Thread t = new Thread(() -> Assertions.assertFalse(lock.tryLock()));
+			t.start();
+			t.join();
+			for (int i = 0; i < waiters; i++) {
+				new Thread(() -> {
+					lock.lock();
+					lock.unlock();
+					done.countDown();
+				}).start();
+				LockProfilerTest.awaitQueueLength(lock, i + 1);
+			}
+		} finally {
+			lock.unlock();
+		}
+		Assertions.assertTrue(done.await(10, TimeUnit.SECONDS));
+
+		s = profile.snapshot();
+		Assertions.assertEquals(2 + 1 + waiters, s.getAcquisitions());
+		Assertions.assertEquals(1, s.getFailed());
+		Assertions.assertEquals(1 + waiters, s.getContended());
+		Assertions.assertEquals(1 + waiters, s.getQueueLength().getCount());
+		Assertions.assertEquals(1, s.getQueueLength().getMax());
+		Assertions.assertTrue(LockProfilerTest.hasCallSite(s), String.valueOf(s.getCallSites()));
+		Assertions.assertEquals(1 + waiters,
+			s.getCallSites().values().stream().mapToLong(Long::longValue).sum());
+
+		profile.reset();
+		Assertions.assertEquals(0, profile.snapshot().getAcquisitions());
+		Assertions.assertTrue(profile.snapshot().getCallSites().isEmpty());
+	}
+
+	@Test
+	public void testReadWriteLock() throws Exception {
+		final TraceableReentrantReadWriteLock rw = new TraceableReentrantReadWriteLock("profiler-rw");
+		final Lock read = rw.readLock();
+		final Lock write = rw.writeLock();
+		read.lock();
+		try {
+			final Thread t = new Thread(() -> {
+				read.lock();
+				read.unlock();
+				// Can't get it while we hold the read lock
+				try {
+					Assertions.assertFalse(write.tryLock(10, TimeUnit.MILLISECONDS));
+				} catch (InterruptedException e) {
+					Assertions.fail(e);
+				}
+			});
+			t.start();
+			t.join();
+		} finally {
+			read.unlock();
+		}
+		write.lock();
+		write.unlock();
+
+		final LockProfile.Snapshot r = LockProfiler.getProfile(rw.getName() + ".ReadLock").snapshot();
+		Assertions.assertEquals(2, r.getAcquisitions());
+		Assertions.assertEquals(0, r.getContended());
+		Assertions.assertEquals(2, r.getHoldTime().getCount());
+
+		final LockProfile.Snapshot w = LockProfiler.getProfile(rw.getName() + ".WriteLock").snapshot();
+		Assertions.assertEquals(1, w.getAcquisitions());
+		Assertions.assertEquals(1, w.getContended());
+		Assertions.assertEquals(1, w.getFailed());
+		Assertions.assertEquals(1, w.getHoldTime().getCount());
+		Assertions.assertTrue(w.getWaitTime().getMax() >= TimeUnit.MILLISECONDS.toNanos(10));
+		Assertions.assertTrue(LockProfilerTest.hasCallSite(w), String.valueOf(w.getCallSites()));
+	}
+
+	@Test
+	public void testReadWriteLockSerialization() throws Exception {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (ObjectOutputStream oos = new ObjectOutputStream(out)) {
+			oos.writeObject(new TraceableReentrantReadWriteLock("profiler-serialized"));
+		}
+		final TraceableReentrantReadWriteLock rw;
+		try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+			rw = TraceableReentrantReadWriteLock.class.cast(ois.readObject());
+		}
+		// The read lock's per-thread hold tracking must survive the trip
+		final Lock read = rw.readLock();
+		read.lock();
+		read.unlock();
+		final LockProfile.Snapshot r = LockProfiler.getProfile(rw.getName() + ".ReadLock").snapshot();
+		Assertions.assertEquals(1, r.getAcquisitions());
+		Assertions.assertEquals(1, r.getHoldTime().getCount());
+	}
+
+	@Test
+	public void testToggledMidHold() throws Exception {
+		final TraceableReentrantLock lock = new TraceableReentrantLock("profiler-toggled");
+		final TraceableReentrantReadWriteLock rw = new TraceableReentrantReadWriteLock("profiler-toggled-rw");
+		final Map<String, Lock> locks = Map.of( //
+			lock.getName(), lock, //
+			rw.getName() + ".ReadLock", rw.readLock(), //
+			rw.getName() + ".WriteLock", rw.writeLock() //
+		);
+		for (Map.Entry<String, Lock> e : locks.entrySet()) {
+			final Lock l = e.getValue();
+			// A hold which started while profiling was on, but ended while it was off
+			l.lock();
+			LockProfiler.setEnabled(false);
+			l.unlock();
+			Thread.sleep(20);
+			// ... mustn't be taken for the start of a hold which began while profiling was off
+			l.lock();
+			LockProfiler.setEnabled(true);
+			l.unlock();
+			final LockProfile.Snapshot s = LockProfiler.getProfile(e.getKey()).snapshot();
+			Assertions.assertEquals(1, s.getAcquisitions(), e.getKey());
+			Assertions.assertEquals(0, s.getHoldTime().getCount(), e.getKey());
+
+			// Fully profiled holds are still recorded
+			l.lock();
+			l.unlock();
+			Assertions.assertEquals(1, LockProfiler.getProfile(e.getKey()).snapshot().getHoldTime().getCount(),
+				e.getKey());
+		}
+	}
+
+	@Test
+	public void testCondition() throws Exception {
+		final TraceableReentrantLock lock = new TraceableReentrantLock("profiler-condition");
+		final Condition c = lock.newCondition();
+		lock.lock();
+		try {
+			Assertions.assertFalse(c.await(1, TimeUnit.MILLISECONDS));
+			Assertions.assertTrue(c.awaitNanos(1) <= 0);
+		} finally {
+			lock.unlock();
+		}
+		final LockProfile.Snapshot s = LockProfiler.getProfile(((Traceable) c).getName()).snapshot();
+		Assertions.assertEquals(0, s.getAcquisitions());
+		Assertions.assertEquals(2, s.getContended());
+		Assertions.assertEquals(2, s.getFailed());
+		Assertions.assertEquals(0, s.getWaitTime().getCount());
+		Assertions.assertEquals(2, s.getAwaitTime().getCount());
+		Assertions.assertEquals(0, s.getQueueLength().getCount());
+		Assertions.assertTrue(LockProfilerTest.hasCallSite(s), String.valueOf(s.getCallSites()));
+
+		// The time spent waiting on the condition doesn't rank it above its (idle) lock
+		final List<String> names = new ArrayList<>();
+		LockProfiler.getSnapshots().forEach((p) -> names.add(p.getName()));
+		Assertions.assertTrue(names.indexOf(lock.getName()) >= 0, names.toString());
+		Assertions.assertTrue(names.indexOf(s.getName()) > names.indexOf(lock.getName()), names.toString());
+	}
+
+	@Test
+	public void testShareableLockable() throws Exception {
+		final TraceableReentrantReadWriteLock hot = new TraceableReentrantReadWriteLock("profiler-hot");
+		final TraceableReentrantReadWriteLock cold = new TraceableReentrantReadWriteLock("profiler-cold");
+		final ShareableLockable hotLockable = new BaseShareableLockable(hot);
+		final ShareableLockable coldLockable = new BaseShareableLockable(cold);
+		coldLockable.mutexLocked(() -> {
+		});
+		final CountDownLatch locked = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final Thread holder = new Thread(() -> hotLockable.mutexLocked(() -> {
+			locked.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Assertions.fail(e);
+			}
+		}));
+		holder.start();
+		Assertions.assertTrue(locked.await(10, TimeUnit.SECONDS));
+		final Thread waiter = new Thread(() -> hotLockable.shareLocked(() -> {
+		}));
+		waiter.start();
+		Thread.sleep(20);
+		release.countDown();
+		holder.join();
+		waiter.join();
+
+		final List<LockProfile.Snapshot> snapshots = LockProfiler.getSnapshots();
+		int hotPos = -1;
+		int coldPos = -1;
+		for (int i = 0; i < snapshots.size(); i++) {
+			final String name = snapshots.get(i).getName();
+			if (name.equals(hot.getName() + ".ReadLock")) {
+				hotPos = i;
+			} else if (name.equals(cold.getName() + ".WriteLock")) {
+				coldPos = i;
+			}
+		}
+		Assertions.assertTrue((hotPos >= 0) && (coldPos > hotPos), snapshots.toString());
+		final LockProfile.Snapshot s = snapshots.get(hotPos);
+		Assertions.assertEquals(1, s.getContended());
+		// The call site is the caller, not the ShareableLockable machinery
+		Assertions.assertTrue(LockProfilerTest.hasCallSite(s), String.valueOf(s.getCallSites()));
+	}
+
+	@Test
+	public void testMBean() throws Exception {
+		final TraceableReentrantLock lock = new TraceableReentrantLock("profiler-jmx");
+		lock.lock();
+		lock.unlock();
+		final ObjectName objectName = LockProfiler.registerMBean();
+		try {
+			Assertions.assertNotNull(objectName);
+			Assertions.assertSame(objectName, LockProfiler.registerMBean());
+			final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			Assertions.assertEquals(Boolean.TRUE, server.getAttribute(objectName, "Enabled"));
+			final Object names = server.getAttribute(objectName, "LockNames");
+			Assertions.assertTrue(List.of((String[]) names).contains(lock.getName()));
+			final Object profiles = server.getAttribute(objectName, "Profiles");
+			Assertions.assertTrue(profiles instanceof CompositeData[]);
+			boolean found = false;
+			for (CompositeData d : (CompositeData[]) profiles) {
+				if (lock.getName().equals(d.get("name"))) {
+					Assertions.assertEquals(1L, d.get("acquisitions"));
+					Assertions.assertTrue(d.get("waitTime") instanceof CompositeData);
+					found = true;
+				}
+			}
+			Assertions.assertTrue(found);
+		} finally {
+			LockProfiler.unregisterMBean();
+		}
+		Assertions.assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(objectName));
+	}
+
+	@Test
+	public void testCallSitesAreBounded() {
+		final TraceableReentrantLock lock = new TraceableReentrantLock("profiler-bounded");
+		final LockProfile profile = LockProfiler.getProfile(lock);
+		for (int i = 0; i < LockProfile.MAX_CALL_SITES + 10; i++) {
+			profile.start(true, 0);
+		}
+		final Map<String, Long> callSites = profile.snapshot().getCallSites();
+		Assertions.assertTrue(callSites.size() <= LockProfile.MAX_CALL_SITES + 1, String.valueOf(callSites.size()));
+		Assertions.assertEquals(LockProfile.MAX_CALL_SITES + 10,
+			callSites.values().stream().mapToLong(Long::longValue).sum());
+	}
+}
@@ -0,0 +1,251 @@
+/*******************************************************************************
+ * #%L
+ * Armedia Caliente
+ * %%
+ * Copyright (C) 2013 - 2025 Armedia, LLC
+ * %%
+ * This file is part of the Caliente software.
+ *
+ * If the software was purchased under a paid Caliente license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Caliente is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Caliente is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Caliente. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ *******************************************************************************/
+package com.armedia.commons.utilities.concurrent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class PartitionedBlockingQueueTest {
+
+	@Test
+	public void testConstructor() throws Exception {
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new PartitionedBlockingQueue<>(0, (e) -> 0));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new PartitionedBlockingQueue<>(-1, 10, (e) -> 0));
+		Assertions.assertThrows(NullPointerException.class, () -> new PartitionedBlockingQueue<>(4, null));
+		PartitionedBlockingQueue<Object> q = new PartitionedBlockingQueue<>(4, (e) -> 0);
+		Assertions.assertEquals(4, q.getLanes());
+		Assertions.assertEquals(Integer.MAX_VALUE, q.remainingCapacity());
+		Assertions.assertTrue(q.isEmpty());
+		Assertions.assertEquals(0, q.size());
+		Assertions.assertNull(q.peek());
+		Assertions.assertNull(q.poll());
+		Assertions.assertNull(q.poll(10, TimeUnit.MILLISECONDS));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> q.lane(-1));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> q.lane(4));
+
+		Assertions.assertEquals(10, new PartitionedBlockingQueue<>(4, 10, (e) -> 0).remainingCapacity());
+	}
+
+	@Test
+	public void testLanes() throws Exception {
+		final PartitionedBlockingQueue<Integer> q = new PartitionedBlockingQueue<>(3, (i) -> i);
+		Assertions.assertThrows(NullPointerException.class, () -> q.offer(null));
+		Assertions.assertThrows(NullPointerException.class, () -> q.put(null));
+		Assertions.assertThrows(NullPointerException.class, () -> q.offer(null, 1, TimeUnit.SECONDS));
+		Assertions.assertEquals(0, q.laneOf(3));
+		Assertions.assertEquals(1, q.laneOf(4));
+		Assertions.assertEquals(2, q.laneOf(-1));
+
+		for (int i = -6; i < 12; i++) {
+			q.put(i);
+		}
+		Assertions.assertEquals(18, q.size());
+		for (int l = 0; l < q.getLanes(); l++) {
+			final BlockingQueue<Integer> lane = q.lane(l);
+			Assertions.assertSame(lane, q.lane(l));
+			Assertions.assertEquals(6, lane.size());
+			Assertions.assertEquals(Integer.MAX_VALUE, lane.remainingCapacity());
+			// Each lane only hands out its own elements, in the order they were added
+			Integer last = null;
+			for (int i = 0; i < 3; i++) {
+				final Integer e = lane.take();
+				Assertions.assertEquals(l, q.laneOf(e));
+				if (last != null) {
+					Assertions.assertTrue(e > last);
+				}
+				last = e;
+			}
+			final List<Integer> rest = new ArrayList<>();
+			Assertions.assertEquals(2, lane.drainTo(rest, 2));
+			Assertions.assertEquals(1, lane.drainTo(rest));
+			Assertions.assertEquals(3, rest.size());
+			for (Integer e : rest) {
+				Assertions.assertEquals(l, q.laneOf(e));
+				Assertions.assertTrue(e > last);
+				last = e;
+			}
+			Assertions.assertTrue(lane.isEmpty());
+			Assertions.assertNull(lane.poll());
+			Assertions.assertNull(lane.poll(10, TimeUnit.MILLISECONDS));
+			Assertions.assertThrows(IllegalArgumentException.class, () -> lane.drainTo(lane));
+			Assertions.assertThrows(IllegalArgumentException.class, () -> lane.drainTo(q));
+		}
+		Assertions.assertTrue(q.isEmpty());
+
+		// Adding through a lane still goes where the partitioner says
+		q.lane(0).add(5);
+		Assertions.assertTrue(q.lane(0).isEmpty());
+		Assertions.assertEquals(5, q.lane(2).peek());
+
+		// A waiting consumer gets the next element in its lane
+		final CompletableFuture<Integer> consumer = CompletableFuture.supplyAsync(() -> {
+			try {
+				return q.lane(1).take();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		});
+		Thread.sleep(50);
+		Assertions.assertFalse(consumer.isDone());
+		q.put(7);
+		Assertions.assertEquals(7, consumer.get(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testBlockingRemoval() throws Exception {
+		final PartitionedBlockingQueue<Integer> q = new PartitionedBlockingQueue<>(3, (i) -> i);
+		q.put(4);
+		Assertions.assertEquals(4, q.take());
+		Assertions.assertNull(q.poll(10, TimeUnit.MILLISECONDS));
+
+		// A consumer waiting on the queue itself is woken up by an element added to any lane
+		for (int l = 0; l < q.getLanes(); l++) {
+			final CompletableFuture<Integer> taker = CompletableFuture.supplyAsync(() -> {
+				try {
+					return q.take();
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			});
+			final CompletableFuture<Integer> poller = CompletableFuture.supplyAsync(() -> {
+				try {
+					return q.poll(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			});
+			Thread.sleep(50);
+			Assertions.assertFalse(taker.isDone());
+			Assertions.assertFalse(poller.isDone());
+			q.put(l);
+			q.offer(l + q.getLanes());
+			final List<Integer> got = Arrays.asList(taker.get(10, TimeUnit.SECONDS), poller.get(10, TimeUnit.SECONDS));
+			Assertions.assertTrue(got.contains(l), got.toString());
+			Assertions.assertTrue(got.contains(l + q.getLanes()), got.toString());
+			Assertions.assertTrue(q.isEmpty());
+		}
+	}
+
+	@Test
+	public void testCapacity() throws Exception {
+		final PartitionedBlockingQueue<Integer> q = new PartitionedBlockingQueue<>(2, 4, (i) -> i);
+		for (int i = 0; i < 4; i++) {
+			Assertions.assertTrue(q.offer(i));
+		}
+		Assertions.assertEquals(0, q.remainingCapacity());
+		Assertions.assertEquals(0, q.lane(1).remainingCapacity());
+		Assertions.assertFalse(q.offer(4));
+		Assertions.assertFalse(q.offer(4, 10, TimeUnit.MILLISECONDS));
+		Assertions.assertThrows(IllegalStateException.class, () -> q.add(4));
+
+		// The capacity is shared, so consuming from any lane makes room in all of them
+		final CompletableFuture<Void> producer = CompletableFuture.runAsync(() -> {
+			try {
+				q.put(4);
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		});
+		Thread.sleep(50);
+		Assertions.assertFalse(producer.isDone());
+		Assertions.assertEquals(1, q.lane(1).poll());
+		producer.get(10, TimeUnit.SECONDS);
+		Assertions.assertEquals(Arrays.asList(0, 2, 4), new ArrayList<>(q.lane(0)));
+
+		// Every way of removing elements gives back their capacity
+		Assertions.assertTrue(q.remove(2));
+		Assertions.assertFalse(q.remove(2));
+		Assertions.assertFalse(q.remove(null));
+		Assertions.assertEquals(1, q.remainingCapacity());
+		Assertions.assertTrue(q.lane(0).remove(4));
+		Assertions.assertFalse(q.lane(1).remove(0));
+		Assertions.assertEquals(2, q.remainingCapacity());
+		Assertions.assertEquals(0, q.poll());
+		Assertions.assertEquals(3, q.lane(1).take());
+		Assertions.assertEquals(4, q.remainingCapacity());
+
+		for (int i = 0; i < 4; i++) {
+			q.put(i);
+		}
+		final List<Integer> out = new ArrayList<>();
+		Assertions.assertEquals(3, q.drainTo(out, 3));
+		Assertions.assertEquals(Arrays.asList(0, 2, 1), out);
+		Assertions.assertEquals(3, q.remainingCapacity());
+		Assertions.assertThrows(IllegalArgumentException.class, () -> q.drainTo(q));
+		q.put(0);
+		q.clear();
+		Assertions.assertTrue(q.isEmpty());
+		Assertions.assertEquals(4, q.remainingCapacity());
+
+		// A failing partitioner doesn't use up any capacity
+		final PartitionedBlockingQueue<Integer> f = new PartitionedBlockingQueue<>(2, 1, (i) -> 1 / i);
+		Assertions.assertThrows(ArithmeticException.class, () -> f.offer(0));
+		Assertions.assertEquals(1, f.remainingCapacity());
+	}
+
+	@Test
+	public void testIterator() throws Exception {
+		final PartitionedBlockingQueue<Integer> q = new PartitionedBlockingQueue<>(3, 10, (i) -> i);
+		for (int i = 0; i < 9; i++) {
+			q.put(i);
+		}
+		Assertions.assertTrue(q.contains(4));
+		Assertions.assertFalse(q.contains(9));
+		Assertions.assertFalse(q.contains(null));
+		Assertions.assertTrue(q.lane(1).contains(4));
+		Assertions.assertFalse(q.lane(0).contains(4));
+
+		final List<Integer> seen = new ArrayList<>();
+		for (Iterator<Integer> it = q.iterator(); it.hasNext();) {
+			final Integer i = it.next();
+			seen.add(i);
+			if ((i % 2) == 0) {
+				it.remove();
+			}
+		}
+		Assertions.assertEquals(Arrays.asList(0, 3, 6, 1, 4, 7, 2, 5, 8), seen);
+		final List<Integer> left = new ArrayList<>(q);
+		Assertions.assertEquals(Arrays.asList(3, 1, 7, 5), left);
+		Assertions.assertEquals(6, q.remainingCapacity());
+
+		final Iterator<Integer> it = q.lane(0).iterator();
+		Assertions.assertThrows(IllegalStateException.class, it::remove);
+		Assertions.assertEquals(3, it.next());
+		// Removed behind the iterator's back, so its capacity mustn't be released twice
+		Assertions.assertEquals(3, q.lane(0).poll());
+		it.remove();
+		Assertions.assertEquals(7, q.remainingCapacity());
+	}
+}
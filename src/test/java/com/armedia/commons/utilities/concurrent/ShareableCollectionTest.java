@@ -26,9 +26,12 @@
  *******************************************************************************/
 package com.armedia.commons.utilities.concurrent;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
 import java.util.Spliterator;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -809,4 +812,80 @@ public class ShareableCollectionTest {
 		EasyMock.verify(rl, wl, l, o);
 
 	}
+
+	@Test
+	public void testMutateAll() {
+		final Collection<Object> c = new ArrayList<>();
+		final Lock rl = EasyMock.createStrictMock(Lock.class);
+		final Lock wl = EasyMock.createStrictMock(Lock.class);
+		final ReadWriteLock rwl = new ReadWriteLock() {
+			@Override
+			public Lock readLock() {
+				return rl;
+			}
+
+			@Override
+			public Lock writeLock() {
+				return wl;
+			}
+		};
+		final ShareableCollection<Object> sc = new ShareableCollection<>(rwl, c);
+		Assertions.assertThrows(NullPointerException.class, () -> sc.mutateAll(null));
+
+		// The whole sequence of changes must be done with a single lock acquisition
+		EasyMock.reset(rl, wl);
+		wl.lock();
+		EasyMock.expectLastCall().once();
+		wl.unlock();
+		EasyMock.expectLastCall().once();
+		EasyMock.replay(rl, wl);
+		Assertions.assertEquals(3, sc.mutateAll((x) -> {
+			for (int i = 0; i < 5; i++) {
+				x.add(i);
+			}
+			x.remove(0);
+			x.remove(1);
+		}));
+		EasyMock.verify(rl, wl);
+		Assertions.assertEquals(List.of(2, 3, 4), c);
+
+		EasyMock.reset(rl, wl);
+		wl.lock();
+		EasyMock.expectLastCall().once();
+		wl.unlock();
+		EasyMock.expectLastCall().once();
+		EasyMock.replay(rl, wl);
+		Assertions.assertEquals(-3, sc.mutateAll(Collection::clear));
+		EasyMock.verify(rl, wl);
+	}
+
+	@Test
+	public void testAddAllTransformed() {
+		final ShareableCollection<String> sc = new ShareableCollection<>(new HashSet<>());
+		Assertions.assertThrows(NullPointerException.class, () -> sc.addAll(null, String::valueOf));
+		Assertions.assertThrows(NullPointerException.class, () -> sc.addAll(List.of(1), null));
+		Assertions.assertEquals(0, sc.addAll(List.<Integer> of(), String::valueOf));
+		Assertions.assertEquals(3, sc.addAll(List.of(1, 2, 3), String::valueOf));
+		// Duplicates don't change a set
+		Assertions.assertEquals(1, sc.addAll(List.of(3, 4, 4), String::valueOf));
+		Assertions.assertEquals(Set.of("1", "2", "3", "4"), new HashSet<>(sc));
+
+		final ShareableList<String> cow = ShareableList.copyOnWrite();
+		Assertions.assertEquals(3, cow.addAll(List.of(1, 2, 2), (i) -> "#" + i));
+		Assertions.assertEquals(List.of("#1", "#2", "#2"), cow);
+	}
+
+	@Test
+	public void testRemoveMatching() {
+		final List<Integer> l = new ArrayList<>(List.of(1, 2, 3, 4, 5, 6));
+		final ShareableCollection<Integer> sc = new ShareableCollection<>(l);
+		Assertions.assertThrows(NullPointerException.class, () -> sc.removeMatching(null));
+		Assertions.assertEquals(3, sc.removeMatching((i) -> (i % 2) == 0));
+		Assertions.assertEquals(0, sc.removeMatching((i) -> (i % 2) == 0));
+		Assertions.assertEquals(List.of(1, 3, 5), l);
+
+		final ShareableList<Integer> cow = ShareableList.copyOnWrite(List.of(1, 2, 3));
+		Assertions.assertEquals(2, cow.removeMatching((i) -> i > 1));
+		Assertions.assertEquals(List.of(1), cow);
+	}
 }
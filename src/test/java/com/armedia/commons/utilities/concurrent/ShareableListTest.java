@@ -28,8 +28,11 @@ package com.armedia.commons.utilities.concurrent;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Spliterator;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -443,4 +446,99 @@ public class ShareableListTest {
 			}
 		}
 	}
+
+	@Test
+	public void testCopyOnWrite() throws Exception {
+		Assertions.assertFalse(new ShareableList<>(new ArrayList<>()).isCopyOnWrite());
+		Assertions.assertThrows(NullPointerException.class, () -> ShareableList.copyOnWrite(null));
+		final ShareableList<Integer> list = ShareableList.copyOnWrite(List.of(5, 3, 1, 4, 2));
+		Assertions.assertTrue(list.isCopyOnWrite());
+		Assertions.assertTrue(ShareableList.copyOnWrite().isEmpty());
+
+		// Reads must go through even while a writer holds the mutex
+		final CountDownLatch locked = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final Thread writer = new Thread(() -> {
+			try (MutexAutoLock lock = list.mutexAutoLock()) {
+				locked.countDown();
+				release.await();
+			} catch (InterruptedException e) {
+				// Just exit
+			}
+		});
+		writer.start();
+		try {
+			locked.await();
+			Assertions.assertEquals(5, list.size());
+			Assertions.assertEquals(3, list.get(1));
+			Assertions.assertEquals(2, list.indexOf(1));
+			Assertions.assertTrue(list.contains(4));
+			Assertions.assertEquals(15, list.stream().mapToInt(Integer::intValue).sum());
+			Assertions.assertEquals(15, list.parallelStream().mapToInt(Integer::intValue).sum());
+			int sum = 0;
+			for (Integer i : list) {
+				sum += i;
+			}
+			Assertions.assertEquals(15, sum);
+		} finally {
+			release.countDown();
+			writer.join();
+		}
+
+		// Iterators see the contents as they were when they started
+		final Iterator<Integer> it = list.iterator();
+		list.add(6);
+		int count = 0;
+		while (it.hasNext()) {
+			it.next();
+			count++;
+		}
+		Assertions.assertEquals(5, count);
+		Assertions.assertThrows(UnsupportedOperationException.class, () -> list.iterator().remove());
+
+		list.sort(Integer::compare);
+		Assertions.assertEquals(List.of(1, 2, 3, 4, 5, 6), list);
+		list.replaceAll((i) -> i * 10);
+		Assertions.assertEquals(List.of(10, 20, 30, 40, 50, 60), list);
+		Assertions.assertTrue(list.removeIf((i) -> i > 30));
+		Assertions.assertFalse(list.removeIf((i) -> i > 30));
+		Assertions.assertEquals(List.of(10, 20, 30), list);
+	}
+
+	@Test
+	public void testSnapshot() {
+		final List<Integer> l = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			l.add(i);
+		}
+		final List<ShareableList<Integer>> lists = List.of(new ShareableList<>(new ArrayList<>(l)),
+			ShareableList.copyOnWrite(l));
+		for (ShareableList<Integer> list : lists) {
+			final List<Integer> snapshot = list.snapshot();
+			Assertions.assertEquals(l, snapshot);
+			Assertions.assertThrows(UnsupportedOperationException.class, () -> snapshot.add(1));
+			Assertions.assertThrows(UnsupportedOperationException.class, () -> snapshot.set(0, 1));
+			list.add(1000);
+			Assertions.assertEquals(1000, snapshot.size());
+			Assertions.assertTrue(snapshot.spliterator().hasCharacteristics(Spliterator.SUBSIZED));
+			Assertions.assertNotNull(snapshot.spliterator().trySplit());
+			Assertions.assertEquals(499500, snapshot.parallelStream().mapToInt(Integer::intValue).sum());
+		}
+	}
+
+	@Test
+	public void testMutateList() {
+		final List<String> l = new ArrayList<>(List.of("a", "b", "c"));
+		final ShareableList<String> list = new ShareableList<>(l);
+		Assertions.assertThrows(NullPointerException.class, () -> list.mutateList(null));
+		Assertions.assertEquals(1, list.mutateList((x) -> {
+			x.add(0, "z");
+			x.set(2, "B");
+			x.add("d");
+			x.remove(1);
+		}));
+		Assertions.assertEquals(List.of("z", "B", "c", "d"), l);
+		Assertions.assertEquals(0, list.mutateList((x) -> x.sort(null)));
+		Assertions.assertEquals(List.of("B", "c", "d", "z"), l);
+	}
 }
@@ -872,4 +872,18 @@ public class ShareableMapTest {
 	@Test
 	public void testMerge() {
 	}
+
+	@Test
+	public void testSnapshot() {
+		final Map<String, Integer> m = new HashMap<>();
+		final ShareableMap<String, Integer> sm = new ShareableMap<>(m);
+		sm.put("a", 1);
+		sm.put("b", 2);
+		final Map<String, Integer> snapshot = sm.snapshot();
+		Assertions.assertEquals(m, snapshot);
+		Assertions.assertThrows(UnsupportedOperationException.class, () -> snapshot.put("c", 3));
+		sm.put("c", 3);
+		Assertions.assertFalse(snapshot.containsKey("c"));
+		Assertions.assertEquals(2, snapshot.size());
+	}
 }
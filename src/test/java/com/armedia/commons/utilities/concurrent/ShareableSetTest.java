@@ -26,8 +26,13 @@
  *******************************************************************************/
 package com.armedia.commons.utilities.concurrent;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.Spliterator;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -55,4 +60,52 @@ public class ShareableSetTest {
 		Assertions.assertThrows(NullPointerException.class, () -> new ShareableSet<>(new BaseShareableLockable(), s));
 		new ShareableSet<>(new BaseShareableLockable(), new HashSet<>());
 	}
+
+	@Test
+	public void testCopyOnWrite() {
+		Assertions.assertFalse(new ShareableSet<>(new HashSet<>()).isCopyOnWrite());
+		Assertions.assertThrows(NullPointerException.class, () -> ShareableSet.copyOnWrite(null));
+		final ShareableSet<String> set = ShareableSet.copyOnWrite(List.of("a", "b", "c", "a"));
+		Assertions.assertTrue(set.isCopyOnWrite());
+		Assertions.assertTrue(ShareableSet.copyOnWrite().isEmpty());
+		Assertions.assertEquals(3, set.size());
+		Assertions.assertTrue(set.contains("b"));
+		Assertions.assertFalse(set.add("a"));
+
+		final Iterator<String> it = set.iterator();
+		Assertions.assertTrue(set.add("d"));
+		final List<String> seen = new ArrayList<>();
+		it.forEachRemaining(seen::add);
+		Assertions.assertEquals(List.of("a", "b", "c"), seen);
+		Assertions.assertThrows(UnsupportedOperationException.class, () -> set.iterator().remove());
+		Assertions.assertTrue(set.removeIf("b"::equals));
+		Assertions.assertEquals(Set.of("a", "c", "d"), set);
+	}
+
+	@Test
+	public void testSnapshot() {
+		final Set<Integer> s = new LinkedHashSet<>();
+		for (int i = 999; i >= 0; i--) {
+			s.add(i);
+		}
+		final List<ShareableSet<Integer>> sets = List.of(new ShareableSet<>(new LinkedHashSet<>(s)),
+			ShareableSet.copyOnWrite(s));
+		for (ShareableSet<Integer> set : sets) {
+			final Set<Integer> snapshot = set.snapshot();
+			Assertions.assertEquals(s, snapshot);
+			Assertions.assertEquals(s.hashCode(), snapshot.hashCode());
+			Assertions.assertEquals(new ArrayList<>(s), new ArrayList<>(snapshot));
+			Assertions.assertTrue(snapshot.contains(500));
+			Assertions.assertFalse(snapshot.contains(1000));
+			Assertions.assertThrows(UnsupportedOperationException.class, () -> snapshot.add(1000));
+			Assertions.assertThrows(UnsupportedOperationException.class, () -> snapshot.remove(1));
+			Assertions.assertThrows(UnsupportedOperationException.class, () -> snapshot.iterator().remove());
+			set.add(1000);
+			Assertions.assertEquals(1000, snapshot.size());
+			final Spliterator<Integer> spliterator = snapshot.spliterator();
+			Assertions.assertTrue(spliterator.hasCharacteristics(Spliterator.DISTINCT | Spliterator.SUBSIZED));
+			Assertions.assertNotNull(spliterator.trySplit());
+			Assertions.assertEquals(499500, snapshot.parallelStream().mapToInt(Integer::intValue).sum());
+		}
+	}
 }
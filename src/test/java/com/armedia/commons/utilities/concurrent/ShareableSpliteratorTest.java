@@ -26,7 +26,9 @@
  *******************************************************************************/
 package com.armedia.commons.utilities.concurrent;
 
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.List;
 import java.util.Spliterator;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -340,4 +342,26 @@ public class ShareableSpliteratorTest {
 		Assertions.assertNull(ss.getComparator());
 		EasyMock.verify(s, rl, wl, c);
 	}
+
+	@Test
+	public void testDrainTo() {
+		final List<Integer> source = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			source.add(i);
+		}
+		final ShareableSpliterator<Integer> spliterator = new ShareableSpliterator<>(source.spliterator());
+		final List<Integer> chunk = new ArrayList<>();
+		Assertions.assertThrows(NullPointerException.class, () -> spliterator.drainTo(null, 1));
+		Assertions.assertEquals(0, spliterator.drainTo(chunk, 0));
+		Assertions.assertEquals(4, spliterator.drainTo(chunk, 4));
+		Assertions.assertEquals(List.of(0, 1, 2, 3), chunk);
+		chunk.clear();
+		Assertions.assertEquals(4, spliterator.drainTo(chunk, 4));
+		Assertions.assertEquals(List.of(4, 5, 6, 7), chunk);
+		chunk.clear();
+		Assertions.assertEquals(2, spliterator.drainTo(chunk, 4));
+		Assertions.assertEquals(List.of(8, 9), chunk);
+		Assertions.assertEquals(0, spliterator.drainTo(chunk, 4));
+		Assertions.assertEquals(2, chunk.size());
+	}
 }
@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * #%L
+ * Armedia Caliente
+ * %%
+ * Copyright (C) 2013 - 2025 Armedia, LLC
+ * %%
+ * This file is part of the Caliente software.
+ *
+ * If the software was purchased under a paid Caliente license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Caliente is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Caliente is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Caliente. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ *******************************************************************************/
+package com.armedia.commons.utilities.concurrent;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TokenBucketTest {
+
+	@Test
+	public void testConstructor() {
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new TokenBucket(Double.NaN));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new TokenBucket(Double.POSITIVE_INFINITY));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new TokenBucket(Double.NEGATIVE_INFINITY, 1));
+
+		TokenBucket b = new TokenBucket(-1);
+		Assertions.assertEquals(0, b.getRate());
+		Assertions.assertEquals(0, b.getBurst());
+		b = new TokenBucket(10.5, -5);
+		Assertions.assertEquals(10.5, b.getRate());
+		Assertions.assertEquals(0, b.getBurst());
+		// One second's worth of permits, rounded up
+		Assertions.assertEquals(11, b.getAvailable(), 0.5);
+		b = new TokenBucket(0.1);
+		// ... but at least one
+		Assertions.assertEquals(1, b.getAvailable(), 0.01);
+		b = new TokenBucket(100, 5);
+		Assertions.assertEquals(5, b.getBurst());
+		Assertions.assertEquals(5, b.getAvailable(), 0.01);
+		Assertions.assertNotNull(b.toString());
+	}
+
+	@Test
+	public void testUnlimited() throws Exception {
+		final TokenBucket b = new TokenBucket(0);
+		Assertions.assertEquals(Double.POSITIVE_INFINITY, b.getAvailable());
+		for (int i = 0; i < 1000; i++) {
+			Assertions.assertEquals(0, b.reserve(1000));
+			Assertions.assertTrue(b.tryAcquire(1000));
+			Assertions.assertEquals(0, b.acquire());
+		}
+		Assertions.assertThrows(IllegalArgumentException.class, () -> b.reserve(0));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> b.tryAcquire(-1));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> b.acquire(0));
+	}
+
+	@Test
+	public void testLimited() throws Exception {
+		final TokenBucket b = new TokenBucket(10, 5);
+		// The burst goes through right away...
+		for (int i = 0; i < 5; i++) {
+			Assertions.assertTrue(b.tryAcquire(1));
+		}
+		// ... but then the permits only trickle in
+		Assertions.assertFalse(b.tryAcquire(1));
+		final long wait = b.reserve(1);
+		Assertions.assertTrue(wait > TimeUnit.MILLISECONDS.toNanos(50), String.valueOf(wait));
+		Assertions.assertTrue(wait <= TimeUnit.MILLISECONDS.toNanos(100), String.valueOf(wait));
+		Assertions.assertTrue(b.getAvailable() < 0);
+		// Those who come later wait behind those who came before
+		Assertions.assertTrue(b.reserve(1) > wait);
+
+		// Disabling the limit takes effect right away, and re-enabling it starts out full
+		b.setRate(0);
+		Assertions.assertEquals(0, b.getRate());
+		Assertions.assertTrue(b.tryAcquire(100));
+		b.setRate(20);
+		Assertions.assertEquals(5, b.getAvailable(), 0.5);
+		b.setBurst(2);
+		Assertions.assertEquals(2, b.getBurst());
+		Assertions.assertEquals(2, b.getAvailable(), 0.5);
+		b.setBurst(0);
+		Assertions.assertEquals(0, b.getBurst());
+	}
+
+	@Test
+	public void testAcquire() throws Exception {
+		final TokenBucket b = new TokenBucket(20, 1);
+		final long start = System.nanoTime();
+		for (int i = 0; i < 6; i++) {
+			b.acquire();
+		}
+		// The first one is free, and the other 5 come in at 50ms apiece
+		final long elapsed = System.nanoTime() - start;
+		Assertions.assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(200), String.valueOf(elapsed));
+
+		// Several permits may be acquired at once
+		b.setRate(0);
+		b.setRate(100);
+		Assertions.assertTrue(b.acquire(10) > 0);
+	}
+}
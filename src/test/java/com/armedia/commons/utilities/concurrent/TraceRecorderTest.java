@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * #%L
+ * Armedia Caliente
+ * %%
+ * Copyright (C) 2013 - 2025 Armedia, LLC
+ * %%
+ * This file is part of the Caliente software.
+ *
+ * If the software was purchased under a paid Caliente license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Caliente is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Caliente is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Caliente. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ *******************************************************************************/
+package com.armedia.commons.utilities.concurrent;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TraceRecorderTest {
+
+	private TraceRecorder.Mode mode = null;
+
+	@BeforeEach
+	public void beforeEach() {
+		this.mode = TraceRecorder.getMode();
+		TraceRecorder.setRingSize(TraceRecorder.DEFAULT_RING_SIZE);
+	}
+
+	@AfterEach
+	public void afterEach() {
+		TraceRecorder.setMode(this.mode);
+		TraceRecorder.setSampleRate(1);
+		TraceRecorder.setRingSize(TraceRecorder.DEFAULT_RING_SIZE);
+	}
+
+	@Test
+	public void testSettings() {
+		Assertions.assertThrows(NullPointerException.class, () -> TraceRecorder.setMode(null));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> TraceRecorder.setSampleRate(0));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> TraceRecorder.setRingSize(0));
+		TraceRecorder.setSampleRate(10);
+		Assertions.assertEquals(10, TraceRecorder.getSampleRate());
+		TraceRecorder.setRingSize(5);
+		Assertions.assertEquals(5, TraceRecorder.getRingSize());
+	}
+
+	@Test
+	public void testDisabled() throws Exception {
+		TraceRecorder.setMode(TraceRecorder.Mode.DISABLED);
+		final TraceableReentrantLock lock = new TraceableReentrantLock("disabled");
+		Assertions.assertFalse(lock.isTracing());
+		lock.lock();
+		Assertions.assertTrue(lock.isHeldByCurrentThread());
+		Assertions.assertTrue(lock.tryLock(1, TimeUnit.MILLISECONDS));
+		lock.unlock();
+		lock.unlock();
+		Assertions.assertFalse(lock.isLocked());
+		Assertions.assertEquals(42, lock.trace(() -> 42, "answer"));
+		Assertions.assertTrue(TraceRecorder.getRecent().isEmpty());
+	}
+
+	@Test
+	public void testRing() throws Exception {
+		TraceRecorder.setMode(TraceRecorder.Mode.RING);
+		final TraceableReentrantReadWriteLock rw = new TraceableReentrantReadWriteLock("ring");
+		Assertions.assertTrue(rw.readLock() instanceof Traceable);
+		Assertions.assertTrue(((Traceable) rw.readLock()).isTracing());
+		rw.readLock().lock();
+		rw.readLock().unlock();
+		final Lock w = rw.writeLock();
+		Assertions.assertTrue(w.tryLock(1, TimeUnit.SECONDS));
+		final Condition c = w.newCondition();
+		c.signal();
+		Assertions.assertFalse(c.await(1, TimeUnit.MILLISECONDS));
+		w.unlock();
+
+		final List<TraceRecorder.Event> events = TraceRecorder.getRecent();
+		Assertions.assertEquals(6, events.size());
+		final String[] methods = {
+			"lock", "unlock", "tryLock", "signal", "await", "unlock"
+		};
+		for (int i = 0; i < methods.length; i++) {
+			final TraceRecorder.Event e = events.get(i);
+			Assertions.assertEquals(i, e.getSequence());
+			Assertions.assertEquals(methods[i], e.getMethod());
+			Assertions.assertTrue(e.isCompleted());
+			Assertions.assertEquals(Thread.currentThread().getName(), e.getThreadName());
+			Assertions.assertFalse(e.getDuration().isNegative());
+		}
+		Assertions.assertEquals("ReentrantReadWriteLock[ring].ReadLock", events.get(0).getName());
+		Assertions.assertEquals("1, SECONDS", events.get(2).getArgs());
+		Assertions.assertEquals(Boolean.TRUE, events.get(2).getResult());
+		Assertions.assertEquals(Boolean.FALSE, events.get(4).getResult());
+		Assertions.assertNotNull(events.get(2).toString());
+
+		final TraceableReentrantLock lock = new TraceableReentrantLock("failing");
+		Assertions.assertThrows(IllegalMonitorStateException.class, lock::unlock);
+		Assertions.assertFalse(TraceRecorder.getRecent().get(6).isCompleted());
+
+		TraceRecorder.clear();
+		Assertions.assertTrue(TraceRecorder.getRecent().isEmpty());
+	}
+
+	@Test
+	public void testRingWraps() {
+		TraceRecorder.setMode(TraceRecorder.Mode.RING);
+		TraceRecorder.setRingSize(4);
+		final TraceableReentrantLock lock = new TraceableReentrantLock("wraps");
+		for (int i = 0; i < 5; i++) {
+			lock.lock();
+			lock.unlock();
+		}
+		final List<TraceRecorder.Event> events = TraceRecorder.getRecent();
+		Assertions.assertEquals(4, events.size());
+		for (int i = 0; i < events.size(); i++) {
+			Assertions.assertEquals(6 + i, events.get(i).getSequence());
+		}
+	}
+
+	@Test
+	public void testSampling() {
+		TraceRecorder.setMode(TraceRecorder.Mode.RING);
+		TraceRecorder.setSampleRate(10);
+		final TraceableReentrantLock lock = new TraceableReentrantLock("sampled");
+		final int count = 1000;
+		for (int i = 0; i < count; i++) {
+			lock.lock();
+			lock.unlock();
+		}
+		final int recorded = TraceRecorder.getRecent().size();
+		// Roughly one in ten should have been recorded
+		Assertions.assertTrue((recorded > 0) && (recorded < TraceRecorder.getRingSize()), String.valueOf(recorded));
+		Assertions.assertFalse(lock.isLocked());
+	}
+}
@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * #%L
+ * Armedia Caliente
+ * %%
+ * Copyright (C) 2013 - 2025 Armedia, LLC
+ * %%
+ * This file is part of the Caliente software.
+ *
+ * If the software was purchased under a paid Caliente license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Caliente is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Caliente is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Caliente. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ *******************************************************************************/
+package com.armedia.commons.utilities.concurrent;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class WorkStealingBlockingQueueTest {
+
+	@Test
+	public void testConstructor() {
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new WorkStealingBlockingQueue<>(0));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new WorkStealingBlockingQueue<>(-1, 10));
+		WorkStealingBlockingQueue<Object> q = new WorkStealingBlockingQueue<>(4);
+		Assertions.assertEquals(4, q.getLanes());
+		Assertions.assertEquals(Integer.MAX_VALUE, q.remainingCapacity());
+		Assertions.assertTrue(q.isEmpty());
+		Assertions.assertEquals(0, q.size());
+		Assertions.assertNull(q.peek());
+		Assertions.assertNull(q.poll());
+
+		q = new WorkStealingBlockingQueue<>(4, 10);
+		Assertions.assertEquals(10, q.remainingCapacity());
+	}
+
+	@Test
+	public void testOperations() throws Exception {
+		final WorkStealingBlockingQueue<Integer> q = new WorkStealingBlockingQueue<>(4, 10);
+		Assertions.assertThrows(NullPointerException.class, () -> q.offer(null));
+		Assertions.assertThrows(NullPointerException.class, () -> q.put(null));
+		Assertions.assertThrows(NullPointerException.class, () -> q.offer(null, 1, TimeUnit.SECONDS));
+
+		for (int i = 0; i < 10; i++) {
+			if ((i % 2) == 0) {
+				Assertions.assertTrue(q.offer(i));
+			} else {
+				q.put(i);
+			}
+		}
+		Assertions.assertEquals(10, q.size());
+		Assertions.assertEquals(0, q.remainingCapacity());
+		Assertions.assertFalse(q.offer(10));
+		Assertions.assertFalse(q.offer(10, 10, TimeUnit.MILLISECONDS));
+		Assertions.assertThrows(IllegalStateException.class, () -> q.add(10));
+		Assertions.assertNotNull(q.peek());
+
+		// Everything is there, in some order
+		Set<Integer> found = new HashSet<>();
+		for (Integer i : q) {
+			found.add(i);
+		}
+		Assertions.assertEquals(10, found.size());
+		Assertions.assertTrue(q.contains(5));
+
+		Assertions.assertTrue(q.remove(5));
+		Assertions.assertFalse(q.remove(5));
+		Assertions.assertFalse(q.remove(null));
+		Assertions.assertEquals(9, q.size());
+		Assertions.assertEquals(1, q.remainingCapacity());
+
+		Iterator<Integer> it = q.iterator();
+		Assertions.assertThrows(IllegalStateException.class, it::remove);
+		final Integer first = it.next();
+		it.remove();
+		Assertions.assertFalse(q.contains(first));
+		Assertions.assertEquals(8, q.size());
+		Assertions.assertEquals(2, q.remainingCapacity());
+
+		Assertions.assertThrows(IllegalArgumentException.class, () -> q.drainTo(q));
+		List<Integer> drained = new ArrayList<>();
+		Assertions.assertEquals(3, q.drainTo(drained, 3));
+		Assertions.assertEquals(5, q.drainTo(drained));
+		Assertions.assertEquals(8, drained.size());
+		Assertions.assertTrue(q.isEmpty());
+		Assertions.assertEquals(10, q.remainingCapacity());
+		Assertions.assertNull(q.poll(10, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void testBlocking() throws Exception {
+		final WorkStealingBlockingQueue<Integer> q = new WorkStealingBlockingQueue<>(2, 1);
+		final CyclicBarrier barrier = new CyclicBarrier(2);
+
+		// take() blocks until there's an element
+		CompletableFuture<Integer> taker = CompletableFuture.supplyAsync(() -> {
+			try {
+				barrier.await();
+				return q.take();
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		});
+		barrier.await();
+		Thread.sleep(100);
+		Assertions.assertFalse(taker.isDone());
+		q.put(1);
+		Assertions.assertEquals(1, taker.get(10, TimeUnit.SECONDS).intValue());
+
+		// put() blocks until there's room
+		q.put(2);
+		CompletableFuture<Void> putter = CompletableFuture.runAsync(() -> {
+			try {
+				barrier.await();
+				q.put(3);
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		});
+		barrier.await();
+		Thread.sleep(100);
+		Assertions.assertFalse(putter.isDone());
+		Assertions.assertEquals(2, q.take().intValue());
+		putter.get(10, TimeUnit.SECONDS);
+		Assertions.assertEquals(3, q.poll(10, TimeUnit.SECONDS).intValue());
+	}
+
+	@Test
+	public void testConcurrency() throws Exception {
+		final int producers = 4;
+		final int consumers = 4;
+		final int items = 20000;
+		final WorkStealingBlockingQueue<Integer> q = new WorkStealingBlockingQueue<>(consumers, 100);
+		final Set<Integer> consumed = ConcurrentHashMap.newKeySet();
+		final ExecutorService executor = Executors.newFixedThreadPool(producers + consumers);
+		try {
+			final List<CompletableFuture<Void>> futures = new ArrayList<>();
+			for (int p = 0; p < producers; p++) {
+				final int base = p * items;
+				futures.add(CompletableFuture.runAsync(() -> {
+					try {
+						for (int i = 0; i < items; i++) {
+							q.put(base + i);
+						}
+					} catch (InterruptedException e) {
+						throw new RuntimeException(e);
+					}
+				}, executor));
+			}
+			for (int c = 0; c < consumers; c++) {
+				futures.add(CompletableFuture.runAsync(() -> {
+					try {
+						for (int i = 0; i < items; i++) {
+							Assertions.assertTrue(consumed.add(q.take()));
+						}
+					} catch (InterruptedException e) {
+						throw new RuntimeException(e);
+					}
+				}, executor));
+			}
+			CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(60, TimeUnit.SECONDS);
+		} finally {
+			executor.shutdownNow();
+		}
+		Assertions.assertEquals(producers * items, consumed.size());
+		Assertions.assertTrue(q.isEmpty());
+		Assertions.assertEquals(0, q.size());
+		Assertions.assertEquals(100, q.remainingCapacity());
+	}
+}